@@ -17,6 +17,7 @@
 package com.uppgarn.codelibf.io;
 
 import java.io.*;
+import java.util.*;
 
 public final class InputStreamTool {
   public static byte[] readBytes(InputStream in, int len) throws IOException {
@@ -39,6 +40,47 @@ public final class InputStreamTool {
     return bytes;
   }
   
+  /**
+   * Reads all remaining bytes. If their number is known in advance,
+   * it can be passed as {@code sizeHint} so that they are read into
+   * an array of the right size; otherwise {@code sizeHint} should
+   * be -1.
+   */
+  public static byte[] readAllBytes(InputStream in, long sizeHint)
+      throws IOException {
+    if (in == null) {
+      throw new IllegalArgumentException();
+    }
+    
+    int size = ((sizeHint >= 0) && (sizeHint <= Integer.MAX_VALUE / 2))
+               ? (int) sizeHint : 8192;
+    
+    byte[] bytes = new byte[size];
+    int    len   = 0;
+    
+    while (true) {
+      if (len == bytes.length) {
+        int b = in.read();
+        
+        if (b == -1) {
+          return bytes;
+        }
+        
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, 8192));
+        
+        bytes[len++] = (byte) b;
+      }
+      
+      int read = in.read(bytes, len, bytes.length - len);
+      
+      if (read == -1) {
+        return Arrays.copyOf(bytes, len);
+      }
+      
+      len += read;
+    }
+  }
+  
   public static void skip(InputStream in, int len) throws IOException {
     if ((in == null) || (len < 0)) {
       throw new IllegalArgumentException();
@@ -33,6 +33,34 @@ public final class ZipSource implements Source {
     this.entry = entry;
   }
   
+  /**
+   * Returns the name of the entry, qualified by the name of the file.
+   */
+  public String getName() {
+    return zip.getName() + "!" + entry.getName();
+  }
+  
+  /**
+   * Returns the modification time of the entry, or -1 if unknown.
+   */
+  public long getTime() {
+    return entry.getTime();
+  }
+  
+  /**
+   * Returns the CRC-32 of the uncompressed entry, or -1 if unknown.
+   */
+  public long getCRC() {
+    return entry.getCrc();
+  }
+  
+  /**
+   * Returns the uncompressed size of the entry, or -1 if unknown.
+   */
+  public long getSize() {
+    return entry.getSize();
+  }
+  
   @Override
   public InputStream newInputStream() throws SourceException {
     try {
@@ -0,0 +1,628 @@
+/*
+ * Headless.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola;
+
+import com.uppgarn.nuncabola.core.folder.*;
+import com.uppgarn.nuncabola.core.gui.*;
+import com.uppgarn.nuncabola.core.headless.*;
+import com.uppgarn.nuncabola.core.image.*;
+import com.uppgarn.nuncabola.core.level.*;
+import com.uppgarn.nuncabola.core.solid.*;
+import com.uppgarn.nuncabola.general.*;
+
+import com.uppgarn.codelibf.io.*;
+import com.uppgarn.codelibf.util.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.Path;
+import java.util.*;
+
+public final class Headless {
+  private static final int DEFAULT_TICKS      = 90 * 60;
+  private static final int DEFAULT_WARMUPS    = 3;
+  private static final int DEFAULT_ITERATIONS = 5;
+  
+  private static final String REPLAY_EXTENSION = ".nbr";
+  
+  /**
+   * Font sizes of the text check, in pixels.
+   */
+  private static final int TEXT_MIN  = 8;
+  private static final int TEXT_MAX  = 128;
+  private static final int TEXT_STEP = 4;
+  
+  /**
+   * Number of random strings of the text check, besides the samples.
+   */
+  private static final int TEXT_RANDOM_COUNT = 200;
+  
+  private static final String[] TEXT_SAMPLES = {
+    "Neverball",
+    "Level 1",
+    "Time: 01:23.45",
+    "Coins 100",
+    "Best Times",
+    "Most Coins",
+    "Fullscreen",
+    "Hello, World!",
+    "jqgy Ayj",
+    "WAVY Tij",
+    "ll",
+    "i",
+    "Ww",
+    "x.y,z;"
+  };
+  
+  public static void main(String[] args) {
+    System.exit(run(args));
+  }
+  
+  private static int run(String[] args) {
+    // Parse arguments.
+    
+    Path         dataDir    = null;
+    List<Path>   inputFiles = new ArrayList<>();
+    Path         replayDir  = null;
+    List<String> setPaths   = new ArrayList<>();
+    List<String> levelPaths = new ArrayList<>();
+    int          ticks      = DEFAULT_TICKS;
+    boolean      benchmark  = false;
+    boolean      text       = false;
+    boolean      batch      = false;
+    int          warmups    = DEFAULT_WARMUPS;
+    int          iterations = DEFAULT_ITERATIONS;
+    int          threads    = Runtime.getRuntime().availableProcessors();
+    int          instances  = 0;
+    
+    for (int idx = 0; idx < args.length; idx++) {
+      String arg = args[idx];
+      
+      // Usage.
+      
+      if (arg.equals("-h") || arg.equals("--help")) {
+        System.out.println(getUsage());
+        
+        return 0;
+      }
+      
+      // Benchmark.
+      
+      if (arg.equals("-b") || arg.equals("--benchmark")) {
+        benchmark = true;
+        
+        continue;
+      }
+      
+      // Text check.
+      
+      if (arg.equals("-x") || arg.equals("--text")) {
+        text = true;
+        
+        continue;
+      }
+      
+      // Batch check.
+      
+      if (arg.equals("-g") || arg.equals("--batch")) {
+        batch = true;
+        
+        continue;
+      }
+      
+      // Options with an argument.
+      
+      if (arg.startsWith("-")) {
+        if (idx + 1 == args.length) {
+          System.err.println("Option '" + arg + "' requires an argument.");
+          
+          return 1;
+        }
+        
+        String arg0 = args[++idx];
+        
+        try {
+          if (arg.equals("-d") || arg.equals("--data")) {
+            dataDir = Paths.get(arg0);
+          } else if (arg.equals("-i") || arg.equals("--input")) {
+            inputFiles.add(Paths.get(arg0));
+          } else if (arg.equals("-r") || arg.equals("--replays")) {
+            replayDir = Paths.get(arg0);
+          } else if (arg.equals("-s") || arg.equals("--set")) {
+            setPaths.add(arg0);
+          } else if (arg.equals("-t") || arg.equals("--ticks")) {
+            ticks = parsePositiveInt(arg0);
+          } else if (arg.equals("-w") || arg.equals("--warmup")) {
+            warmups = parsePositiveInt(arg0);
+          } else if (arg.equals("-n") || arg.equals("--iterations")) {
+            iterations = parsePositiveInt(arg0);
+          } else if (arg.equals("-j") || arg.equals("--threads")) {
+            threads = parsePositiveInt(arg0);
+          } else if (arg.equals("-m") || arg.equals("--instances")) {
+            instances = parsePositiveInt(arg0);
+          } else {
+            System.err.println("Unknown option '" + arg + "'.");
+            
+            return 1;
+          }
+        } catch (InvalidPathException | NumberFormatException ex) {
+          System.err.println(
+            "Invalid argument '" + arg0 + "' for option '" + arg + "'.");
+          
+          return 1;
+        }
+        
+        continue;
+      }
+      
+      // Level.
+      
+      levelPaths.add(arg);
+    }
+    
+    // Check batch.
+    
+    if (batch) {
+      return checkBatch();
+    }
+    
+    // Determine data directory.
+    
+    if (dataDir == null) {
+      Path jarDir = ClassPathTool.getJarDirectory(Headless.class);
+      
+      if (jarDir != null) {
+        dataDir = jarDir.resolve("data");
+      }
+    }
+    
+    if ((dataDir == null) || !Files.isDirectory(dataDir)) {
+      System.err.println("Failure to establish game data directory.");
+      
+      return 1;
+    }
+    
+    // Check text.
+    
+    if (text) {
+      Folder dataFolder = new RootFolder(Arrays.asList(new Path[] {dataDir}));
+      
+      try {
+        return checkText(dataFolder);
+      } finally {
+        dataFolder.close();
+      }
+    }
+    
+    // Verify replays.
+    
+    if (replayDir != null) {
+      Folder dataFolder = new RootFolder(Arrays.asList(new Path[] {dataDir}));
+      
+      try {
+        return verifyReplays(dataFolder, replayDir, threads);
+      } finally {
+        dataFolder.close();
+      }
+    }
+    
+    // Load input scripts.
+    
+    List<InputScript> scripts = new ArrayList<>();
+    
+    if (inputFiles.isEmpty()) {
+      scripts.add(InputScript.createDefault());
+    } else {
+      for (Path inputFile: inputFiles) {
+        try {
+          scripts.add(InputScriptReadTool.readInputScript(inputFile));
+        } catch (IOException ex) {
+          System.err.println(
+            "Failure to load input script '" + inputFile + "'.");
+          
+          return 1;
+        }
+      }
+    }
+    
+    if (instances == 0) {
+      instances = scripts.size();
+    }
+    
+    // Run levels.
+    
+    Folder dataFolder = new RootFolder(Arrays.asList(new Path[] {dataDir}));
+    
+    try {
+      if (levelPaths.isEmpty()) {
+        if (setPaths.isEmpty()) {
+          setPaths.addAll(getAllSetPaths(dataFolder));
+        }
+        
+        for (String setPath: setPaths) {
+          levelPaths.addAll(getLevelPaths(dataFolder, setPath));
+        }
+      }
+      
+      int failures = 0;
+      
+      for (String levelPath: levelPaths) {
+        if (!runLevel(
+            dataFolder,
+            levelPath,
+            scripts,
+            ticks,
+            benchmark,
+            warmups,
+            iterations,
+            instances,
+            threads)) {
+          failures++;
+        }
+      }
+      
+      return (failures == 0) ? 0 : 1;
+    } finally {
+      dataFolder.close();
+    }
+  }
+  
+  private static int parsePositiveInt(String str) {
+    int val = Integer.parseInt(str);
+    
+    if (val <= 0) {
+      throw new NumberFormatException();
+    }
+    
+    return val;
+  }
+  
+  private static List<String> getAllSetPaths(Folder dataFolder) {
+    List<String> paths = new ArrayList<>();
+    
+    try {
+      paths.addAll(LevelSetListReadTool.readLevelSetList(
+        dataFolder.getSource("sets.txt")).getSetPaths());
+    } catch (IOException ex) {
+      // Ignore missing set list.
+    }
+    
+    for (String path: dataFolder.getPaths("", false, new PathFilter() {
+      @Override
+      public boolean accepts(String path) {
+        return path.startsWith("set-") && path.endsWith(".txt");
+      }
+    })) {
+      if (!paths.contains(path)) {
+        paths.add(path);
+      }
+    }
+    
+    return paths;
+  }
+  
+  private static List<String> getLevelPaths(Folder dataFolder, String setPath) {
+    try {
+      return LevelSetReadTool.readLevelSet(
+        dataFolder.getSource(setPath)).getLevelPaths();
+    } catch (IOException ex) {
+      System.err.println("Failure to load level set '" + setPath + "'.");
+      
+      return Collections.emptyList();
+    }
+  }
+  
+  private static boolean runLevel(
+      Folder            dataFolder,
+      String            path,
+      List<InputScript> scripts,
+      int               ticks,
+      boolean           benchmark,
+      int               warmups,
+      int               iterations,
+      int               instances,
+      int               threads) {
+    SolidBase solBase;
+    
+    try {
+      solBase = SolidCache.getSolidBase(path, dataFolder.getSource(path));
+    } catch (IOException ex) {
+      System.err.println("Failure to load level '" + path + "'.");
+      
+      return false;
+    }
+    
+    if (solBase.ballBases.length == 0) {
+      System.err.println("Level '" + path + "' has no ball.");
+      
+      return false;
+    }
+    
+    Level level = LevelParser.parse(solBase.meta, path);
+    
+    if (benchmark) {
+      Benchmark bench = new Benchmark(level, solBase, scripts.get(0), ticks);
+      
+      for (Benchmark.Type type: Benchmark.Type.values()) {
+        BenchmarkResult result = bench.run(type, warmups, iterations);
+        
+        System.out.println(String.format(
+          Locale.ROOT,
+          "%s %s: %d ops, best %.1f ops/s, mean %.1f ops/s, %.1f ns/op",
+          path,
+          type,
+          result.getOperations(),
+          result.getBestOpsPerSecond(),
+          result.getMeanOpsPerSecond(),
+          result.getMeanNanosPerOp()));
+      }
+      
+      long hits   = bench.getMotionHitCount();
+      long misses = bench.getMotionMissCount();
+      
+      System.out.println(String.format(
+        Locale.ROOT,
+        "%s body transforms: %d cache hits, %d misses, %.1f%% hit rate",
+        path,
+        hits,
+        misses,
+        (hits + misses == 0) ? 0.0 : hits * 100.0 / (hits + misses)));
+    } else if (instances > 1) {
+      runInstances(level, solBase, path, scripts, ticks, instances, threads);
+    } else {
+      HeadlessResult result = HeadlessRunner.run(
+        level,
+        solBase,
+        scripts.get(0),
+        ticks);
+      
+      System.out.println(String.format(
+        Locale.ROOT,
+        "%s: %s, %d ticks, timer %d, coins %d, %d commands, %.1f ticks/s",
+        path,
+        result.getStatus(),
+        result.getTicks(),
+        result.getTimer(),
+        result.getCoins(),
+        result.getCommandCount(),
+        result.getTicksPerSecond()));
+    }
+    
+    return true;
+  }
+  
+  /**
+   * Plays {@code level} in {@code instances} parallel instances, which
+   * take turns over {@code scripts}.
+   */
+  private static void runInstances(
+      Level             level,
+      SolidBase         solBase,
+      String            path,
+      List<InputScript> scripts,
+      int               ticks,
+      int               instances,
+      int               threads) {
+    List<InputScript> instanceScripts = new ArrayList<>(instances);
+    
+    for (int idx = 0; idx < instances; idx++) {
+      instanceScripts.add(scripts.get(idx % scripts.size()));
+    }
+    
+    MultiRunResult multiResult =
+      MultiRunner.run(level, solBase, instanceScripts, ticks, threads);
+    
+    List<HeadlessResult> results = multiResult.getResults();
+    
+    for (int idx = 0; idx < results.size(); idx++) {
+      HeadlessResult result = results.get(idx);
+      
+      System.out.println(String.format(
+        Locale.ROOT,
+        "%s #%d: %s, %d ticks, timer %d, coins %d, %d commands",
+        path,
+        idx,
+        result.getStatus(),
+        result.getTicks(),
+        result.getTimer(),
+        result.getCoins(),
+        result.getCommandCount()));
+    }
+    
+    System.out.println(String.format(
+      Locale.ROOT,
+      "%s: %d instances, %d threads, %d ticks, %.1f ticks/s",
+      path,
+      results.size(),
+      threads,
+      multiResult.getTicks(),
+      multiResult.getTicksPerSecond()));
+  }
+  
+  private static int verifyReplays(
+      Folder dataFolder,
+      Path   replayDir,
+      int    threads) {
+    List<Path> files = new ArrayList<>();
+    
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(
+        replayDir,
+        "*" + REPLAY_EXTENSION)) {
+      for (Path entry: stream) {
+        if (Files.isRegularFile(entry)) {
+          files.add(entry);
+        }
+      }
+    } catch (IOException ex) {
+      System.err.println("Failure to list replay directory.");
+      
+      return 1;
+    }
+    
+    files.sort(null);
+    
+    long start = System.nanoTime();
+    
+    List<VerificationResult> results =
+      ReplayVerifier.verify(dataFolder, files, threads);
+    
+    long nanos = System.nanoTime() - start;
+    
+    int  failures = 0;
+    long updates  = 0;
+    
+    for (VerificationResult result: results) {
+      System.out.println(String.format(
+        Locale.ROOT,
+        "%s: %s, level %s, time %d, %d/%d updates, %.1f updates/s",
+        result.getFile().getFileName(),
+        result.getVerdict(),
+        result.getLevelPath(),
+        result.getTime(),
+        result.getUpdates(),
+        result.getUpdateCount(),
+        result.getUpdatesPerSecond()));
+      
+      switch (result.getVerdict()) {
+        case VALID:
+        case DECODED: {
+          break;
+        }
+        
+        default: {
+          failures++;
+          
+          break;
+        }
+      }
+      
+      updates += result.getUpdates();
+    }
+    
+    System.out.println(String.format(
+      Locale.ROOT,
+      "%d replays, %d failed, %d threads, %.1f updates/s,"
+        + " %d solid cache hits, %d misses",
+      results.size(),
+      failures,
+      threads,
+      (nanos == 0) ? 0.0 : updates * 1.0E9 / nanos,
+      SolidCache.getHitCount(),
+      SolidCache.getMissCount()));
+    
+    return (failures == 0) ? 0 : 1;
+  }
+  
+  private static int checkBatch() {
+    List<String> failures = GUIBatchCheck.run();
+    
+    for (String failure: failures) {
+      System.out.println("batch check failed: " + failure);
+    }
+    
+    System.out.println(String.format(
+      Locale.ROOT,
+      "batch: %d checks failed",
+      failures.size()));
+    
+    return failures.isEmpty() ? 0 : 1;
+  }
+  
+  private static int checkText(Folder dataFolder) {
+    List<String> strs = new ArrayList<>(Arrays.asList(TEXT_SAMPLES));
+    
+    Random random = new Random(0);
+    
+    for (int idx = 0; idx < TEXT_RANDOM_COUNT; idx++) {
+      char[] chars = new char[1 + random.nextInt(20)];
+      
+      for (int idx0 = 0; idx0 < chars.length; idx0++) {
+        chars[idx0] = (char) (' ' + random.nextInt(95));
+      }
+      
+      strs.add(new String(chars));
+    }
+    
+    TextImagizerCreator imagizerCreator = new TextImagizerCreator(
+      dataFolder.getSource("ttf/DejaVuSans-Bold.ttf"));
+    
+    int mismatches = 0;
+    
+    for (int size = TEXT_MIN; size <= TEXT_MAX; size += TEXT_STEP) {
+      TextCheck check = new TextCheck(imagizerCreator.create(true, size));
+      
+      for (String str: strs) {
+        check.check(str);
+      }
+      
+      System.out.println(String.format(
+        Locale.ROOT,
+        "text size %d: %d strings, %d from atlas, %d mismatched",
+        size,
+        check.getStringCount(),
+        check.getAtlasCount(),
+        check.getMismatchCount()));
+      
+      mismatches += check.getMismatchCount();
+    }
+    
+    return (mismatches == 0) ? 0 : 1;
+  }
+  
+  private static String getUsage() {
+    return
+        "Usage: java -cp "
+      + ProgramConstants.INTERNAL_NAME_LC
+      + ".jar "
+      + Headless.class.getName()
+      + " [options ...] [level ...]"
+      + StringTool.LS
+      + "Options:"
+      + StringTool.LS
+      + "  -h, --help                Show this usage message."
+      + StringTool.LS
+      + "  -d, --data <dir>          Use 'dir' as game data directory."
+      + StringTool.LS
+      + "  -s, --set <file>          Run all levels of the set 'file'."
+      + StringTool.LS
+      + "  -i, --input <file>        Read tilt input from the script 'file'."
+      + StringTool.LS
+      + "                            Repeat to play one instance per script."
+      + StringTool.LS
+      + "  -t, --ticks <count>       Run at most 'count' updates per level."
+      + StringTool.LS
+      + "  -b, --benchmark           Measure throughput instead of playing."
+      + StringTool.LS
+      + "  -w, --warmup <count>      Run 'count' warmup iterations."
+      + StringTool.LS
+      + "  -n, --iterations <count>  Run 'count' measured iterations."
+      + StringTool.LS
+      + "  -r, --replays <dir>       Verify all replays in 'dir'."
+      + StringTool.LS
+      + "  -x, --text                Check atlas text against text images."
+      + StringTool.LS
+      + "  -g, --batch               Check GUI batching without GL."
+      + StringTool.LS
+      + "  -m, --instances <count>   Play 'count' instances of each level."
+      + StringTool.LS
+      + "  -j, --threads <count>     Verify or play on 'count' threads.";
+  }
+  
+  private Headless() {
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * SourceStampTool.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.folder;
+
+import com.uppgarn.codelibf.io.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+
+public final class SourceStampTool {
+  /**
+   * Returns a string that identifies the current version of the file
+   * behind {@code src}, or {@code null} if there is none.
+   */
+  public static String getStamp(Source src) {
+    Path file = src.getFile();
+    
+    if (file != null) {
+      try {
+        BasicFileAttributes attrs =
+          Files.readAttributes(file, BasicFileAttributes.class);
+        
+        return file.toAbsolutePath()
+          + ":" + attrs.lastModifiedTime().toMillis()
+          + ":" + attrs.size();
+      } catch (IOException ex) {
+        return null;
+      }
+    }
+    
+    if (src instanceof ZipSource) {
+      ZipSource zipSrc = (ZipSource) src;
+      
+      return zipSrc.getName()
+        + ":" + zipSrc.getTime()
+        + ":" + zipSrc.getSize()
+        + ":" + zipSrc.getCRC();
+    }
+    
+    return null;
+  }
+  
+  /**
+   * Returns the size of the file behind {@code src}, or {@code -1}
+   * if it is unknown.
+   */
+  public static long getSize(Source src) {
+    Path file = src.getFile();
+    
+    if (file != null) {
+      try {
+        return Files.size(file);
+      } catch (IOException ex) {
+        return -1;
+      }
+    }
+    
+    if (src instanceof ZipSource) {
+      return ((ZipSource) src).getSize();
+    }
+    
+    return -1;
+  }
+  
+  private SourceStampTool() {
+  }
+}
@@ -152,9 +152,9 @@ public abstract class Command {
   }
   
   public static final class BallPosition extends Command {
-    public final float x;
-    public final float y;
-    public final float z;
+    public float x;
+    public float y;
+    public float z;
     
     public BallPosition(float x, float y, float z) {
       this.x = x;
@@ -166,6 +166,16 @@ public abstract class Command {
       this(p.x, p.y, p.z);
     }
     
+    void set(float x, float y, float z) {
+      this.x = x;
+      this.y = y;
+      this.z = z;
+    }
+    
+    void set(Vector3 p) {
+      set(p.x, p.y, p.z);
+    }
+    
     @Override
     public Type getType() {
       return Type.BALL_POSITION;
@@ -173,12 +183,16 @@ public abstract class Command {
   }
   
   public static final class BallRadius extends Command {
-    public final float r;
+    public float r;
     
     public BallRadius(float r) {
       this.r = r;
     }
     
+    void set(float r) {
+      this.r = r;
+    }
+    
     @Override
     public Type getType() {
       return Type.BALL_RADIUS;
@@ -186,12 +200,12 @@ public abstract class Command {
   }
   
   public static final class BallBasis extends Command {
-    public final float xX;
-    public final float xY;
-    public final float xZ;
-    public final float yX;
-    public final float yY;
-    public final float yZ;
+    public float xX;
+    public float xY;
+    public float xZ;
+    public float yX;
+    public float yY;
+    public float yZ;
     
     public BallBasis(
         float xX,
@@ -212,6 +226,25 @@ public abstract class Command {
       this(e.x.x, e.x.y, e.x.z, e.y.x, e.y.y, e.y.z);
     }
     
+    void set(
+        float xX,
+        float xY,
+        float xZ,
+        float yX,
+        float yY,
+        float yZ) {
+      this.xX = xX;
+      this.xY = xY;
+      this.xZ = xZ;
+      this.yX = yX;
+      this.yY = yY;
+      this.yZ = yZ;
+    }
+    
+    void set(Basis3 e) {
+      set(e.x.x, e.x.y, e.x.z, e.y.x, e.y.y, e.y.z);
+    }
+    
     @Override
     public Type getType() {
       return Type.BALL_BASIS;
@@ -219,12 +252,12 @@ public abstract class Command {
   }
   
   public static final class BallPendulumBasis extends Command {
-    public final float xX;
-    public final float xY;
-    public final float xZ;
-    public final float yX;
-    public final float yY;
-    public final float yZ;
+    public float xX;
+    public float xY;
+    public float xZ;
+    public float yX;
+    public float yY;
+    public float yZ;
     
     public BallPendulumBasis(
         float xX,
@@ -245,6 +278,25 @@ public abstract class Command {
       this(e_.x.x, e_.x.y, e_.x.z, e_.y.x, e_.y.y, e_.y.z);
     }
     
+    void set(
+        float xX,
+        float xY,
+        float xZ,
+        float yX,
+        float yY,
+        float yZ) {
+      this.xX = xX;
+      this.xY = xY;
+      this.xZ = xZ;
+      this.yX = yX;
+      this.yY = yY;
+      this.yZ = yZ;
+    }
+    
+    void set(Basis3 e_) {
+      set(e_.x.x, e_.x.y, e_.x.z, e_.y.x, e_.y.y, e_.y.z);
+    }
+    
     @Override
     public Type getType() {
       return Type.BALL_PENDULUM_BASIS;
@@ -387,14 +439,19 @@ public abstract class Command {
   }
   
   public static final class MoverPath extends Command {
-    public final int moverIdx;
-    public final int pathIdx;
+    public int moverIdx;
+    public int pathIdx;
     
     public MoverPath(int moverIdx, int pathIdx) {
       this.moverIdx = moverIdx;
       this.pathIdx  = pathIdx;
     }
     
+    void set(int moverIdx, int pathIdx) {
+      this.moverIdx = moverIdx;
+      this.pathIdx  = pathIdx;
+    }
+    
     @Override
     public Type getType() {
       return Type.MOVER_PATH;
@@ -402,14 +459,19 @@ public abstract class Command {
   }
   
   public static final class MoverTime extends Command {
-    public final int   moverIdx;
-    public final float t;
+    public int   moverIdx;
+    public float t;
     
     public MoverTime(int moverIdx, float t) {
       this.moverIdx = moverIdx;
       this.t        = t;
     }
     
+    void set(int moverIdx, float t) {
+      this.moverIdx = moverIdx;
+      this.t        = t;
+    }
+    
     @Override
     public Type getType() {
       return Type.MOVER_TIME;
@@ -445,12 +507,16 @@ public abstract class Command {
   }
   
   public static final class SimulationStep extends Command {
-    public final float dt;
+    public float dt;
     
     public SimulationStep(float dt) {
       this.dt = dt;
     }
     
+    void set(float dt) {
+      this.dt = dt;
+    }
+    
     @Override
     public Type getType() {
       return Type.SIMULATION_STEP;
@@ -458,14 +524,19 @@ public abstract class Command {
   }
   
   public static final class Sound extends Command {
-    public final String path;
-    public final float  amp;
+    public String path;
+    public float  amp;
     
     public Sound(String path, float amp) {
       this.path = path;
       this.amp  = amp;
     }
     
+    void set(String path, float amp) {
+      this.path = path;
+      this.amp  = amp;
+    }
+    
     @Override
     public Type getType() {
       return Type.SOUND;
@@ -549,12 +620,12 @@ public abstract class Command {
   }
   
   public static final class TiltAxes extends Command {
-    public final float xX;
-    public final float xY;
-    public final float xZ;
-    public final float zX;
-    public final float zY;
-    public final float zZ;
+    public float xX;
+    public float xY;
+    public float xZ;
+    public float zX;
+    public float zY;
+    public float zZ;
     
     public TiltAxes(
         float xX,
@@ -575,6 +646,25 @@ public abstract class Command {
       this(x.x, x.y, x.z, z.x, z.y, z.z);
     }
     
+    void set(
+        float xX,
+        float xY,
+        float xZ,
+        float zX,
+        float zY,
+        float zZ) {
+      this.xX = xX;
+      this.xY = xY;
+      this.xZ = xZ;
+      this.zX = zX;
+      this.zY = zY;
+      this.zZ = zZ;
+    }
+    
+    void set(Vector3 x, Vector3 z) {
+      set(x.x, x.y, x.z, z.x, z.y, z.z);
+    }
+    
     @Override
     public Type getType() {
       return Type.TILT_AXES;
@@ -582,14 +672,19 @@ public abstract class Command {
   }
   
   public static final class TiltAngles extends Command {
-    public final float x;
-    public final float z;
+    public float x;
+    public float z;
     
     public TiltAngles(float x, float z) {
       this.x = x;
       this.z = z;
     }
     
+    void set(float x, float z) {
+      this.x = x;
+      this.z = z;
+    }
+    
     @Override
     public Type getType() {
       return Type.TILT_ANGLES;
@@ -597,12 +692,16 @@ public abstract class Command {
   }
   
   public static final class Timer extends Command {
-    public final float timer;
+    public float timer;
     
     public Timer(float timer) {
       this.timer = timer;
     }
     
+    void set(float timer) {
+      this.timer = timer;
+    }
+    
     @Override
     public Type getType() {
       return Type.TIMER;
@@ -610,9 +709,9 @@ public abstract class Command {
   }
   
   public static final class ViewPosition extends Command {
-    public final float x;
-    public final float y;
-    public final float z;
+    public float x;
+    public float y;
+    public float z;
     
     public ViewPosition(float x, float y, float z) {
       this.x = x;
@@ -624,6 +723,16 @@ public abstract class Command {
       this(p.x, p.y, p.z);
     }
     
+    void set(float x, float y, float z) {
+      this.x = x;
+      this.y = y;
+      this.z = z;
+    }
+    
+    void set(Vector3 p) {
+      set(p.x, p.y, p.z);
+    }
+    
     @Override
     public Type getType() {
       return Type.VIEW_POSITION;
@@ -631,9 +740,9 @@ public abstract class Command {
   }
   
   public static final class ViewCenter extends Command {
-    public final float x;
-    public final float y;
-    public final float z;
+    public float x;
+    public float y;
+    public float z;
     
     public ViewCenter(float x, float y, float z) {
       this.x = x;
@@ -645,6 +754,16 @@ public abstract class Command {
       this(c.x, c.y, c.z);
     }
     
+    void set(float x, float y, float z) {
+      this.x = x;
+      this.y = y;
+      this.z = z;
+    }
+    
+    void set(Vector3 c) {
+      set(c.x, c.y, c.z);
+    }
+    
     @Override
     public Type getType() {
       return Type.VIEW_CENTER;
@@ -652,12 +771,12 @@ public abstract class Command {
   }
   
   public static final class ViewBasis extends Command {
-    public final float xX;
-    public final float xY;
-    public final float xZ;
-    public final float yX;
-    public final float yY;
-    public final float yZ;
+    public float xX;
+    public float xY;
+    public float xZ;
+    public float yX;
+    public float yY;
+    public float yZ;
     
     public ViewBasis(
         float xX,
@@ -678,6 +797,25 @@ public abstract class Command {
       this(e.x.x, e.x.y, e.x.z, e.y.x, e.y.y, e.y.z);
     }
     
+    void set(
+        float xX,
+        float xY,
+        float xZ,
+        float yX,
+        float yY,
+        float yZ) {
+      this.xX = xX;
+      this.xY = xY;
+      this.xZ = xZ;
+      this.yX = yX;
+      this.yY = yY;
+      this.yZ = yZ;
+    }
+    
+    void set(Basis3 e) {
+      set(e.x.x, e.x.y, e.x.z, e.y.x, e.y.y, e.y.z);
+    }
+    
     @Override
     public Type getType() {
       return Type.VIEW_BASIS;
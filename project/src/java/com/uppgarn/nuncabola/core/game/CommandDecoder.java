@@ -0,0 +1,573 @@
+/*
+ * CommandDecoder.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.game;
+
+import static com.uppgarn.nuncabola.core.game.CommandIOTool.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+
+/**
+ * Decodes commands from a little-endian buffer.
+ * <p>
+ * The buffer is either given as a whole or refilled from a stream
+ * in large chunks. The encoding is the one of {@link CommandReadTool},
+ * or the quantized one of {@link CommandEncoder}.
+ */
+public final class CommandDecoder {
+  private static final int CHUNK_SIZE = 8192;
+  
+  private final InputStream in;
+  private final boolean     quantized;
+  
+  private ByteBuffer buf;
+  
+  // Last two quantized values of each component.
+  
+  private final int[] ballPosition;
+  private final int[] ballBasis;
+  private final int[] ballPendulumBasis;
+  private final int[] viewPosition;
+  private final int[] viewCenter;
+  private final int[] viewBasis;
+  private final int[] tiltAxes;
+  private final int[] tiltAngles;
+  
+  public CommandDecoder(InputStream in) {
+    this(in, null, false);
+  }
+  
+  public CommandDecoder(ByteBuffer buf) {
+    this(null, buf, false);
+  }
+  
+  public CommandDecoder(ByteBuffer buf, boolean quantized) {
+    this(null, buf, quantized);
+  }
+  
+  private CommandDecoder(InputStream in, ByteBuffer buf, boolean quantized) {
+    this.in        = in;
+    this.quantized = quantized;
+    
+    if (in == null) {
+      this.buf = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    } else {
+      this.buf = ByteBuffer.allocate(CHUNK_SIZE);
+      this.buf.order(ByteOrder.LITTLE_ENDIAN);
+      this.buf.limit(0);
+    }
+    
+    ballPosition      = new int[6];
+    ballBasis         = new int[12];
+    ballPendulumBasis = new int[12];
+    viewPosition      = new int[6];
+    viewCenter        = new int[6];
+    viewBasis         = new int[12];
+    tiltAxes          = new int[12];
+    tiltAngles        = new int[4];
+  }
+  
+  /**
+   * Makes sure that at least {@code len} bytes can be read.
+   */
+  private void require(int len) throws IOException {
+    if (buf.remaining() >= len) {
+      return;
+    }
+    
+    if (in == null) {
+      throw new EOFException();
+    }
+    
+    // Keep unread bytes and refill.
+    
+    if (buf.capacity() < len) {
+      ByteBuffer newBuf = ByteBuffer.allocate(Math.max(len, CHUNK_SIZE));
+      newBuf.order(ByteOrder.LITTLE_ENDIAN);
+      newBuf.put(buf);
+      
+      buf = newBuf;
+    } else {
+      buf.compact();
+    }
+    
+    try {
+      while (buf.position() < len) {
+        int count = in.read(
+          buf.array(),
+          buf.arrayOffset() + buf.position(),
+          buf.remaining());
+        
+        if (count == -1) {
+          throw new EOFException();
+        }
+        
+        buf.position(buf.position() + count);
+      }
+    } finally {
+      buf.flip();
+    }
+  }
+  
+  private String getString(int end) throws IOException {
+    int nulIdx = buf.position();
+    
+    while ((nulIdx < end) && (buf.get(nulIdx) != 0)) {
+      nulIdx++;
+    }
+    
+    if (nulIdx == end) {
+      throw new EOFException();
+    }
+    
+    byte[] bytes = new byte[nulIdx - buf.position()];
+    
+    buf.get(bytes);
+    buf.get();
+    
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+  
+  private static Status getStatus(int value) {
+    switch (value) {
+      case 0: {
+        return Status.NONE;
+      }
+      case 1: {
+        return Status.TIME_OUT;
+      }
+      case 2: {
+        return Status.GOAL;
+      }
+      case 3: {
+        return Status.FALL_OUT;
+      }
+      
+      default: {
+        return Status.NONE;
+      }
+    }
+  }
+  
+  /**
+   * Returns the number of bytes at the start of the remaining part
+   * of the given buffer that form complete commands.
+   */
+  public static int getCompleteLength(ByteBuffer buf) {
+    int pos = buf.position();
+    int end = buf.limit();
+    
+    while (end - pos >= 3) {
+      int len = (buf.get(pos + 1) & 0xff) | ((buf.get(pos + 2) & 0xff) << 8);
+      
+      if (end - pos - 3 < len) {
+        break;
+      }
+      
+      pos += 3 + len;
+    }
+    
+    return pos - buf.position();
+  }
+  
+  /**
+   * Returns the position of the next command in the given buffer.
+   * <p>
+   * Only meaningful if the decoder was created from a buffer.
+   */
+  public int position() {
+    return buf.position();
+  }
+  
+  /**
+   * Returns whether the given buffer has bytes left.
+   * <p>
+   * Only meaningful if the decoder was created from a buffer.
+   */
+  public boolean hasRemaining() {
+    return buf.hasRemaining();
+  }
+  
+  /**
+   * Returns the type of the next command without consuming it.
+   */
+  public Command.Type peekType() throws IOException {
+    require(3);
+    
+    return getType(buf.get(buf.position()) & 0xff);
+  }
+  
+  /**
+   * Skips the next command without decoding it.
+   */
+  public Command.Type skip() throws IOException {
+    require(3);
+    
+    int id  = buf.get     () & 0xff;
+    int len = buf.getShort() & 0xffff;
+    
+    require(len);
+    
+    buf.position(buf.position() + len);
+    
+    return getType(id);
+  }
+  
+  public Command decode() throws IOException {
+    require(3);
+    
+    int id  = buf.get     () & 0xff;
+    int len = buf.getShort() & 0xffff;
+    
+    require(len);
+    
+    int end = buf.position() + len;
+    
+    try {
+      if (quantized) {
+        Command cmd = decodeQuantized(id);
+        
+        if (cmd != null) {
+          return cmd;
+        }
+      }
+      
+      return decode(id, end);
+    } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+      throw new EOFException();
+    } finally {
+      buf.position(end);
+    }
+  }
+  
+  private float getDelta(int[] last, int idx, float scale) {
+    // Read 7 bits per byte, then zigzag-decode the difference.
+    
+    int bits = 0;
+    
+    for (int shift = 0;; shift += 7) {
+      int b = buf.get();
+      
+      bits |= (b & 0x7f) << shift;
+      
+      if ((b & 0x80) == 0) {
+        break;
+      }
+    }
+    
+    // Add the difference to a constant rate of change.
+    
+    int q0 = last[idx * 2];
+    int q1 = last[idx * 2 + 1];
+    
+    int q = 2 * q0 - q1 + ((bits >>> 1) ^ -(bits & 1));
+    
+    last[idx * 2]     = q;
+    last[idx * 2 + 1] = q0;
+    
+    return q / scale;
+  }
+  
+  /**
+   * Decodes a command in quantized form, or returns {@code null}
+   * if the type has none.
+   */
+  private Command decodeQuantized(int id) {
+    switch (getType(id)) {
+      case BALL_POSITION: {
+        float x = getDelta(ballPosition, 0, POSITION_SCALE);
+        float y = getDelta(ballPosition, 1, POSITION_SCALE);
+        float z = getDelta(ballPosition, 2, POSITION_SCALE);
+        
+        return new Command.BallPosition(x, y, z);
+      }
+      case BALL_BASIS: {
+        float xX = getDelta(ballBasis, 0, BASIS_SCALE);
+        float xY = getDelta(ballBasis, 1, BASIS_SCALE);
+        float xZ = getDelta(ballBasis, 2, BASIS_SCALE);
+        float yX = getDelta(ballBasis, 3, BASIS_SCALE);
+        float yY = getDelta(ballBasis, 4, BASIS_SCALE);
+        float yZ = getDelta(ballBasis, 5, BASIS_SCALE);
+        
+        return new Command.BallBasis(xX, xY, xZ, yX, yY, yZ);
+      }
+      case BALL_PENDULUM_BASIS: {
+        float xX = getDelta(ballPendulumBasis, 0, BASIS_SCALE);
+        float xY = getDelta(ballPendulumBasis, 1, BASIS_SCALE);
+        float xZ = getDelta(ballPendulumBasis, 2, BASIS_SCALE);
+        float yX = getDelta(ballPendulumBasis, 3, BASIS_SCALE);
+        float yY = getDelta(ballPendulumBasis, 4, BASIS_SCALE);
+        float yZ = getDelta(ballPendulumBasis, 5, BASIS_SCALE);
+        
+        return new Command.BallPendulumBasis(xX, xY, xZ, yX, yY, yZ);
+      }
+      case VIEW_POSITION: {
+        float x = getDelta(viewPosition, 0, POSITION_SCALE);
+        float y = getDelta(viewPosition, 1, POSITION_SCALE);
+        float z = getDelta(viewPosition, 2, POSITION_SCALE);
+        
+        return new Command.ViewPosition(x, y, z);
+      }
+      case VIEW_CENTER: {
+        float x = getDelta(viewCenter, 0, POSITION_SCALE);
+        float y = getDelta(viewCenter, 1, POSITION_SCALE);
+        float z = getDelta(viewCenter, 2, POSITION_SCALE);
+        
+        return new Command.ViewCenter(x, y, z);
+      }
+      case VIEW_BASIS: {
+        float xX = getDelta(viewBasis, 0, BASIS_SCALE);
+        float xY = getDelta(viewBasis, 1, BASIS_SCALE);
+        float xZ = getDelta(viewBasis, 2, BASIS_SCALE);
+        float yX = getDelta(viewBasis, 3, BASIS_SCALE);
+        float yY = getDelta(viewBasis, 4, BASIS_SCALE);
+        float yZ = getDelta(viewBasis, 5, BASIS_SCALE);
+        
+        return new Command.ViewBasis(xX, xY, xZ, yX, yY, yZ);
+      }
+      case TILT_AXES: {
+        float xX = getDelta(tiltAxes, 0, BASIS_SCALE);
+        float xY = getDelta(tiltAxes, 1, BASIS_SCALE);
+        float xZ = getDelta(tiltAxes, 2, BASIS_SCALE);
+        float zX = getDelta(tiltAxes, 3, BASIS_SCALE);
+        float zY = getDelta(tiltAxes, 4, BASIS_SCALE);
+        float zZ = getDelta(tiltAxes, 5, BASIS_SCALE);
+        
+        return new Command.TiltAxes(xX, xY, xZ, zX, zY, zZ);
+      }
+      case TILT_ANGLES: {
+        float x = getDelta(tiltAngles, 0, ANGLE_SCALE);
+        float z = getDelta(tiltAngles, 1, ANGLE_SCALE);
+        
+        return new Command.TiltAngles(x, z);
+      }
+      
+      default: {
+        return null;
+      }
+    }
+  }
+  
+  private Command decode(int id, int end) throws IOException {
+    switch (getType(id)) {
+      case UNKNOWN: {
+        return Command.Unknown.INSTANCE;
+      }
+      case END_OF_UPDATE: {
+        return Command.EndOfUpdate.INSTANCE;
+      }
+      case BALLS_CLEAR: {
+        return Command.BallsClear.INSTANCE;
+      }
+      case BALL_CREATE: {
+        return Command.BallCreate.INSTANCE;
+      }
+      case BALL_POSITION: {
+        float x = buf.getFloat();
+        float y = buf.getFloat();
+        float z = buf.getFloat();
+        
+        return new Command.BallPosition(x, y, z);
+      }
+      case BALL_RADIUS: {
+        float r = buf.getFloat();
+        
+        return new Command.BallRadius(r);
+      }
+      case BALL_BASIS: {
+        float xX = buf.getFloat();
+        float xY = buf.getFloat();
+        float xZ = buf.getFloat();
+        float yX = buf.getFloat();
+        float yY = buf.getFloat();
+        float yZ = buf.getFloat();
+        
+        return new Command.BallBasis(xX, xY, xZ, yX, yY, yZ);
+      }
+      case BALL_PENDULUM_BASIS: {
+        float xX = buf.getFloat();
+        float xY = buf.getFloat();
+        float xZ = buf.getFloat();
+        float yX = buf.getFloat();
+        float yY = buf.getFloat();
+        float yZ = buf.getFloat();
+        
+        return new Command.BallPendulumBasis(xX, xY, xZ, yX, yY, yZ);
+      }
+      case BODY_PATH: {
+        int bodyIdx = buf.getInt();
+        int pathIdx = buf.getInt();
+        
+        return new Command.BodyPath(bodyIdx, pathIdx);
+      }
+      case BODY_TIME: {
+        int   bodyIdx = buf.getInt  ();
+        float t       = buf.getFloat();
+        
+        return new Command.BodyTime(bodyIdx, t);
+      }
+      case COINS: {
+        int coins = buf.getInt();
+        
+        return new Command.Coins(coins);
+      }
+      case CURRENT_BALL: {
+        int ballIdx = buf.getInt();
+        
+        return new Command.CurrentBall(ballIdx);
+      }
+      case GOALS_UNLOCK: {
+        return Command.GoalsUnlock.INSTANCE;
+      }
+      case ITEMS_CLEAR: {
+        return Command.ItemsClear.INSTANCE;
+      }
+      case ITEM_CREATE: {
+        float pX    = buf.getFloat();
+        float pY    = buf.getFloat();
+        float pZ    = buf.getFloat();
+        int   type  = buf.getInt  ();
+        int   value = buf.getInt  ();
+        
+        return new Command.ItemCreate(pX, pY, pZ, type, value);
+      }
+      case ITEM_COLLECT: {
+        int itemIdx = buf.getInt();
+        
+        return new Command.ItemCollect(itemIdx);
+      }
+      case LEVEL: {
+        String path         = getString (end);
+        int    majorVersion = buf.getInt();
+        int    minorVersion = buf.getInt();
+        
+        return new Command.Level(path, majorVersion, minorVersion);
+      }
+      case MOVER_PATH: {
+        int moverIdx = buf.getInt();
+        int pathIdx  = buf.getInt();
+        
+        return new Command.MoverPath(moverIdx, pathIdx);
+      }
+      case MOVER_TIME: {
+        int   moverIdx = buf.getInt  ();
+        float t        = buf.getFloat();
+        
+        return new Command.MoverTime(moverIdx, t);
+      }
+      case PATH_ENABLE: {
+        int     pathIdx = buf.getInt();
+        boolean enabled = buf.getInt() != 0;
+        
+        return new Command.PathEnable(pathIdx, enabled);
+      }
+      case RATE: {
+        int ups = buf.getInt();
+        
+        return new Command.Rate(ups);
+      }
+      case SIMULATION_STEP: {
+        float dt = buf.getFloat();
+        
+        return new Command.SimulationStep(dt);
+      }
+      case SOUND: {
+        String path = getString   (end);
+        float  amp  = buf.getFloat();
+        
+        return new Command.Sound(path, amp);
+      }
+      case STATUS: {
+        Status status = getStatus(buf.getInt());
+        
+        return new Command.Status(status);
+      }
+      case SWITCH_ENTER: {
+        int switchIdx = buf.getInt();
+        
+        return new Command.SwitchEnter(switchIdx);
+      }
+      case SWITCH_EXIT: {
+        int switchIdx = buf.getInt();
+        
+        return new Command.SwitchExit(switchIdx);
+      }
+      case SWITCH_TOGGLE: {
+        int switchIdx = buf.getInt();
+        
+        return new Command.SwitchToggle(switchIdx);
+      }
+      case TELEPORTER_ENTER: {
+        return Command.TeleporterEnter.INSTANCE;
+      }
+      case TELEPORTER_EXIT: {
+        return Command.TeleporterExit.INSTANCE;
+      }
+      case TILT_AXES: {
+        float xX = buf.getFloat();
+        float xY = buf.getFloat();
+        float xZ = buf.getFloat();
+        float zX = buf.getFloat();
+        float zY = buf.getFloat();
+        float zZ = buf.getFloat();
+        
+        return new Command.TiltAxes(xX, xY, xZ, zX, zY, zZ);
+      }
+      case TILT_ANGLES: {
+        float x = buf.getFloat();
+        float z = buf.getFloat();
+        
+        return new Command.TiltAngles(x, z);
+      }
+      case TIMER: {
+        float timer = buf.getFloat();
+        
+        return new Command.Timer(timer);
+      }
+      case VIEW_POSITION: {
+        float x = buf.getFloat();
+        float y = buf.getFloat();
+        float z = buf.getFloat();
+        
+        return new Command.ViewPosition(x, y, z);
+      }
+      case VIEW_CENTER: {
+        float x = buf.getFloat();
+        float y = buf.getFloat();
+        float z = buf.getFloat();
+        
+        return new Command.ViewCenter(x, y, z);
+      }
+      case VIEW_BASIS: {
+        float xX = buf.getFloat();
+        float xY = buf.getFloat();
+        float xZ = buf.getFloat();
+        float yX = buf.getFloat();
+        float yY = buf.getFloat();
+        float yZ = buf.getFloat();
+        
+        return new Command.ViewBasis(xX, xY, xZ, yX, yY, yZ);
+      }
+      
+      default: {
+        throw new AssertionError();
+      }
+    }
+  }
+}
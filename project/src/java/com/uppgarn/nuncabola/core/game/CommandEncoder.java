@@ -0,0 +1,656 @@
+/*
+ * CommandEncoder.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.game;
+
+import static com.uppgarn.nuncabola.core.game.CommandIOTool.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * Encodes commands into a growable little-endian buffer.
+ * <p>
+ * The encoding is the one of {@link CommandWriteTool}, so that
+ * whole updates can be written with a single bulk operation.
+ * <p>
+ * In quantized mode, ball and view positions and bases as well as
+ * tilt axes and angles are instead quantized and encoded as
+ * variable-length differences from a linear prediction based on
+ * the previous two commands of the same type since the last reset.
+ * They can only be read back in order by a quantized
+ * {@link CommandDecoder}.
+ */
+public final class CommandEncoder {
+  private static final int INITIAL_CAPACITY = 1024;
+  
+  /**
+   * Maximum payload length of a quantized command.
+   */
+  private static final int MAX_QUANTIZED_LENGTH = 6 * 5;
+  
+  private final boolean quantized;
+  
+  private ByteBuffer buf;
+  
+  // Last two quantized values of each component.
+  
+  private final int[] ballPosition;
+  private final int[] ballBasis;
+  private final int[] ballPendulumBasis;
+  private final int[] viewPosition;
+  private final int[] viewCenter;
+  private final int[] viewBasis;
+  private final int[] tiltAxes;
+  private final int[] tiltAngles;
+  
+  public CommandEncoder() {
+    this(false);
+  }
+  
+  public CommandEncoder(boolean quantized) {
+    this.quantized = quantized;
+    
+    buf = ByteBuffer.allocate(INITIAL_CAPACITY).order(ByteOrder.LITTLE_ENDIAN);
+    
+    ballPosition      = new int[6];
+    ballBasis         = new int[12];
+    ballPendulumBasis = new int[12];
+    viewPosition      = new int[6];
+    viewCenter        = new int[6];
+    viewBasis         = new int[12];
+    tiltAxes          = new int[12];
+    tiltAngles        = new int[4];
+  }
+  
+  /**
+   * Returns the number of encoded bytes.
+   */
+  public int size() {
+    return buf.position();
+  }
+  
+  public void reset() {
+    buf.clear();
+    
+    Arrays.fill(ballPosition,      0);
+    Arrays.fill(ballBasis,         0);
+    Arrays.fill(ballPendulumBasis, 0);
+    Arrays.fill(viewPosition,      0);
+    Arrays.fill(viewCenter,        0);
+    Arrays.fill(viewBasis,         0);
+    Arrays.fill(tiltAxes,          0);
+    Arrays.fill(tiltAngles,        0);
+  }
+  
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(buf.array(), 0, buf.position());
+  }
+  
+  /**
+   * Returns a read-only view of the encoded bytes.
+   */
+  public ByteBuffer getBytes() {
+    ByteBuffer view = buf.duplicate();
+    view.flip();
+    
+    return view.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+  }
+  
+  private void ensureRemaining(int len) {
+    if (buf.remaining() >= len) {
+      return;
+    }
+    
+    int capacity = buf.capacity();
+    
+    while (capacity - buf.position() < len) {
+      capacity *= 2;
+    }
+    
+    ByteBuffer newBuf = ByteBuffer.allocate(capacity);
+    newBuf.order(ByteOrder.LITTLE_ENDIAN);
+    newBuf.put(buf.array(), 0, buf.position());
+    
+    buf = newBuf;
+  }
+  
+  private void putHeader(Command.Type type, int len) {
+    ensureRemaining(3 + len);
+    
+    buf.put     ((byte) getID(type));
+    buf.putShort((short) len);
+  }
+  
+  private void putString(byte[] bytes) {
+    buf.put(bytes);
+    buf.put((byte) 0);
+  }
+  
+  private int beginQuantized(Command.Type type) {
+    ensureRemaining(3 + MAX_QUANTIZED_LENGTH);
+    
+    int start = buf.position();
+    
+    buf.put     ((byte) getID(type));
+    buf.putShort((short) 0);
+    
+    return start;
+  }
+  
+  private void endQuantized(int start) {
+    buf.putShort(start + 1, (short) (buf.position() - start - 3));
+  }
+  
+  private void putDelta(int[] last, int idx, float val, float scale) {
+    int q = Math.round(val * scale);
+    
+    // Predict a constant rate of change from the last two values.
+    
+    int q0 = last[idx * 2];
+    int q1 = last[idx * 2 + 1];
+    
+    last[idx * 2]     = q;
+    last[idx * 2 + 1] = q0;
+    
+    // Zigzag-encode the difference, then write 7 bits per byte.
+    
+    int diff = q - (2 * q0 - q1);
+    int bits = (diff << 1) ^ (diff >> 31);
+    
+    while ((bits & ~0x7f) != 0) {
+      buf.put((byte) ((bits & 0x7f) | 0x80));
+      
+      bits >>>= 7;
+    }
+    
+    buf.put((byte) bits);
+  }
+  
+  private void putQuantizedVector(int[] last, float x, float y, float z) {
+    putDelta(last, 0, x, POSITION_SCALE);
+    putDelta(last, 1, y, POSITION_SCALE);
+    putDelta(last, 2, z, POSITION_SCALE);
+  }
+  
+  private void putQuantizedBasis(
+      int[] last,
+      float xX,
+      float xY,
+      float xZ,
+      float yX,
+      float yY,
+      float yZ) {
+    putDelta(last, 0, xX, BASIS_SCALE);
+    putDelta(last, 1, xY, BASIS_SCALE);
+    putDelta(last, 2, xZ, BASIS_SCALE);
+    putDelta(last, 3, yX, BASIS_SCALE);
+    putDelta(last, 4, yY, BASIS_SCALE);
+    putDelta(last, 5, yZ, BASIS_SCALE);
+  }
+  
+  /**
+   * Encodes the specified command in quantized form if it has one.
+   */
+  private boolean encodeQuantized(Command cmd) {
+    int start;
+    
+    switch (cmd.getType()) {
+      case BALL_POSITION: {
+        Command.BallPosition myCmd = (Command.BallPosition) cmd;
+        
+        start = beginQuantized(cmd.getType());
+        
+        putQuantizedVector(ballPosition, myCmd.x, myCmd.y, myCmd.z);
+        
+        break;
+      }
+      case BALL_BASIS: {
+        Command.BallBasis myCmd = (Command.BallBasis) cmd;
+        
+        start = beginQuantized(cmd.getType());
+        
+        putQuantizedBasis(
+          ballBasis,
+          myCmd.xX,
+          myCmd.xY,
+          myCmd.xZ,
+          myCmd.yX,
+          myCmd.yY,
+          myCmd.yZ);
+        
+        break;
+      }
+      case BALL_PENDULUM_BASIS: {
+        Command.BallPendulumBasis myCmd = (Command.BallPendulumBasis) cmd;
+        
+        start = beginQuantized(cmd.getType());
+        
+        putQuantizedBasis(
+          ballPendulumBasis,
+          myCmd.xX,
+          myCmd.xY,
+          myCmd.xZ,
+          myCmd.yX,
+          myCmd.yY,
+          myCmd.yZ);
+        
+        break;
+      }
+      case VIEW_POSITION: {
+        Command.ViewPosition myCmd = (Command.ViewPosition) cmd;
+        
+        start = beginQuantized(cmd.getType());
+        
+        putQuantizedVector(viewPosition, myCmd.x, myCmd.y, myCmd.z);
+        
+        break;
+      }
+      case VIEW_CENTER: {
+        Command.ViewCenter myCmd = (Command.ViewCenter) cmd;
+        
+        start = beginQuantized(cmd.getType());
+        
+        putQuantizedVector(viewCenter, myCmd.x, myCmd.y, myCmd.z);
+        
+        break;
+      }
+      case VIEW_BASIS: {
+        Command.ViewBasis myCmd = (Command.ViewBasis) cmd;
+        
+        start = beginQuantized(cmd.getType());
+        
+        putQuantizedBasis(
+          viewBasis,
+          myCmd.xX,
+          myCmd.xY,
+          myCmd.xZ,
+          myCmd.yX,
+          myCmd.yY,
+          myCmd.yZ);
+        
+        break;
+      }
+      case TILT_AXES: {
+        Command.TiltAxes myCmd = (Command.TiltAxes) cmd;
+        
+        start = beginQuantized(cmd.getType());
+        
+        putQuantizedBasis(
+          tiltAxes,
+          myCmd.xX,
+          myCmd.xY,
+          myCmd.xZ,
+          myCmd.zX,
+          myCmd.zY,
+          myCmd.zZ);
+        
+        break;
+      }
+      case TILT_ANGLES: {
+        Command.TiltAngles myCmd = (Command.TiltAngles) cmd;
+        
+        start = beginQuantized(cmd.getType());
+        
+        putDelta(tiltAngles, 0, myCmd.x, ANGLE_SCALE);
+        putDelta(tiltAngles, 1, myCmd.z, ANGLE_SCALE);
+        
+        break;
+      }
+      
+      default: {
+        return false;
+      }
+    }
+    
+    endQuantized(start);
+    
+    return true;
+  }
+  
+  private static int getStatusInt(Status status) {
+    switch (status) {
+      case NONE: {
+        return 0;
+      }
+      case GOAL: {
+        return 2;
+      }
+      case FALL_OUT: {
+        return 3;
+      }
+      case TIME_OUT: {
+        return 1;
+      }
+      
+      default: {
+        throw new AssertionError();
+      }
+    }
+  }
+  
+  public void encode(Command cmd) {
+    if (quantized && encodeQuantized(cmd)) {
+      return;
+    }
+    
+    switch (cmd.getType()) {
+      case UNKNOWN: {
+        break;
+      }
+      case END_OF_UPDATE:
+      case BALLS_CLEAR:
+      case BALL_CREATE:
+      case GOALS_UNLOCK:
+      case ITEMS_CLEAR:
+      case TELEPORTER_ENTER:
+      case TELEPORTER_EXIT: {
+        putHeader(cmd.getType(), 0);
+        
+        break;
+      }
+      case BALL_POSITION: {
+        Command.BallPosition myCmd = (Command.BallPosition) cmd;
+        
+        putHeader(cmd.getType(), 12);
+        
+        buf.putFloat(myCmd.x);
+        buf.putFloat(myCmd.y);
+        buf.putFloat(myCmd.z);
+        
+        break;
+      }
+      case BALL_RADIUS: {
+        Command.BallRadius myCmd = (Command.BallRadius) cmd;
+        
+        putHeader(cmd.getType(), 4);
+        
+        buf.putFloat(myCmd.r);
+        
+        break;
+      }
+      case BALL_BASIS: {
+        Command.BallBasis myCmd = (Command.BallBasis) cmd;
+        
+        putHeader(cmd.getType(), 24);
+        
+        buf.putFloat(myCmd.xX);
+        buf.putFloat(myCmd.xY);
+        buf.putFloat(myCmd.xZ);
+        buf.putFloat(myCmd.yX);
+        buf.putFloat(myCmd.yY);
+        buf.putFloat(myCmd.yZ);
+        
+        break;
+      }
+      case BALL_PENDULUM_BASIS: {
+        Command.BallPendulumBasis myCmd = (Command.BallPendulumBasis) cmd;
+        
+        putHeader(cmd.getType(), 24);
+        
+        buf.putFloat(myCmd.xX);
+        buf.putFloat(myCmd.xY);
+        buf.putFloat(myCmd.xZ);
+        buf.putFloat(myCmd.yX);
+        buf.putFloat(myCmd.yY);
+        buf.putFloat(myCmd.yZ);
+        
+        break;
+      }
+      case BODY_PATH: {
+        Command.BodyPath myCmd = (Command.BodyPath) cmd;
+        
+        putHeader(cmd.getType(), 8);
+        
+        buf.putInt(myCmd.bodyIdx);
+        buf.putInt(myCmd.pathIdx);
+        
+        break;
+      }
+      case BODY_TIME: {
+        Command.BodyTime myCmd = (Command.BodyTime) cmd;
+        
+        putHeader(cmd.getType(), 8);
+        
+        buf.putInt  (myCmd.bodyIdx);
+        buf.putFloat(myCmd.t);
+        
+        break;
+      }
+      case COINS: {
+        Command.Coins myCmd = (Command.Coins) cmd;
+        
+        putHeader(cmd.getType(), 4);
+        
+        buf.putInt(myCmd.coins);
+        
+        break;
+      }
+      case CURRENT_BALL: {
+        Command.CurrentBall myCmd = (Command.CurrentBall) cmd;
+        
+        putHeader(cmd.getType(), 4);
+        
+        buf.putInt(myCmd.ballIdx);
+        
+        break;
+      }
+      case ITEM_CREATE: {
+        Command.ItemCreate myCmd = (Command.ItemCreate) cmd;
+        
+        putHeader(cmd.getType(), 20);
+        
+        buf.putFloat(myCmd.pX);
+        buf.putFloat(myCmd.pY);
+        buf.putFloat(myCmd.pZ);
+        buf.putInt  (myCmd.type);
+        buf.putInt  (myCmd.value);
+        
+        break;
+      }
+      case ITEM_COLLECT: {
+        Command.ItemCollect myCmd = (Command.ItemCollect) cmd;
+        
+        putHeader(cmd.getType(), 4);
+        
+        buf.putInt(myCmd.itemIdx);
+        
+        break;
+      }
+      case LEVEL: {
+        Command.Level myCmd = (Command.Level) cmd;
+        
+        byte[] path = myCmd.path.getBytes(StandardCharsets.UTF_8);
+        
+        putHeader(cmd.getType(), path.length + 1 + 8);
+        
+        putString (path);
+        buf.putInt(myCmd.majorVersion);
+        buf.putInt(myCmd.minorVersion);
+        
+        break;
+      }
+      case MOVER_PATH: {
+        Command.MoverPath myCmd = (Command.MoverPath) cmd;
+        
+        putHeader(cmd.getType(), 8);
+        
+        buf.putInt(myCmd.moverIdx);
+        buf.putInt(myCmd.pathIdx);
+        
+        break;
+      }
+      case MOVER_TIME: {
+        Command.MoverTime myCmd = (Command.MoverTime) cmd;
+        
+        putHeader(cmd.getType(), 8);
+        
+        buf.putInt  (myCmd.moverIdx);
+        buf.putFloat(myCmd.t);
+        
+        break;
+      }
+      case PATH_ENABLE: {
+        Command.PathEnable myCmd = (Command.PathEnable) cmd;
+        
+        putHeader(cmd.getType(), 8);
+        
+        buf.putInt(myCmd.pathIdx);
+        buf.putInt(myCmd.enabled ? 1 : 0);
+        
+        break;
+      }
+      case RATE: {
+        Command.Rate myCmd = (Command.Rate) cmd;
+        
+        putHeader(cmd.getType(), 4);
+        
+        buf.putInt(myCmd.ups);
+        
+        break;
+      }
+      case SIMULATION_STEP: {
+        Command.SimulationStep myCmd = (Command.SimulationStep) cmd;
+        
+        putHeader(cmd.getType(), 4);
+        
+        buf.putFloat(myCmd.dt);
+        
+        break;
+      }
+      case SOUND: {
+        Command.Sound myCmd = (Command.Sound) cmd;
+        
+        byte[] path = myCmd.path.getBytes(StandardCharsets.UTF_8);
+        
+        putHeader(cmd.getType(), path.length + 1 + 4);
+        
+        putString   (path);
+        buf.putFloat(myCmd.amp);
+        
+        break;
+      }
+      case STATUS: {
+        Command.Status myCmd = (Command.Status) cmd;
+        
+        putHeader(cmd.getType(), 4);
+        
+        buf.putInt(getStatusInt(myCmd.status));
+        
+        break;
+      }
+      case SWITCH_ENTER: {
+        Command.SwitchEnter myCmd = (Command.SwitchEnter) cmd;
+        
+        putHeader(cmd.getType(), 4);
+        
+        buf.putInt(myCmd.switchIdx);
+        
+        break;
+      }
+      case SWITCH_EXIT: {
+        Command.SwitchExit myCmd = (Command.SwitchExit) cmd;
+        
+        putHeader(cmd.getType(), 4);
+        
+        buf.putInt(myCmd.switchIdx);
+        
+        break;
+      }
+      case SWITCH_TOGGLE: {
+        Command.SwitchToggle myCmd = (Command.SwitchToggle) cmd;
+        
+        putHeader(cmd.getType(), 4);
+        
+        buf.putInt(myCmd.switchIdx);
+        
+        break;
+      }
+      case TILT_AXES: {
+        Command.TiltAxes myCmd = (Command.TiltAxes) cmd;
+        
+        putHeader(cmd.getType(), 24);
+        
+        buf.putFloat(myCmd.xX);
+        buf.putFloat(myCmd.xY);
+        buf.putFloat(myCmd.xZ);
+        buf.putFloat(myCmd.zX);
+        buf.putFloat(myCmd.zY);
+        buf.putFloat(myCmd.zZ);
+        
+        break;
+      }
+      case TILT_ANGLES: {
+        Command.TiltAngles myCmd = (Command.TiltAngles) cmd;
+        
+        putHeader(cmd.getType(), 8);
+        
+        buf.putFloat(myCmd.x);
+        buf.putFloat(myCmd.z);
+        
+        break;
+      }
+      case TIMER: {
+        Command.Timer myCmd = (Command.Timer) cmd;
+        
+        putHeader(cmd.getType(), 4);
+        
+        buf.putFloat(myCmd.timer);
+        
+        break;
+      }
+      case VIEW_POSITION: {
+        Command.ViewPosition myCmd = (Command.ViewPosition) cmd;
+        
+        putHeader(cmd.getType(), 12);
+        
+        buf.putFloat(myCmd.x);
+        buf.putFloat(myCmd.y);
+        buf.putFloat(myCmd.z);
+        
+        break;
+      }
+      case VIEW_CENTER: {
+        Command.ViewCenter myCmd = (Command.ViewCenter) cmd;
+        
+        putHeader(cmd.getType(), 12);
+        
+        buf.putFloat(myCmd.x);
+        buf.putFloat(myCmd.y);
+        buf.putFloat(myCmd.z);
+        
+        break;
+      }
+      case VIEW_BASIS: {
+        Command.ViewBasis myCmd = (Command.ViewBasis) cmd;
+        
+        putHeader(cmd.getType(), 24);
+        
+        buf.putFloat(myCmd.xX);
+        buf.putFloat(myCmd.xY);
+        buf.putFloat(myCmd.xZ);
+        buf.putFloat(myCmd.yX);
+        buf.putFloat(myCmd.yY);
+        buf.putFloat(myCmd.yZ);
+        
+        break;
+      }
+    }
+  }
+}
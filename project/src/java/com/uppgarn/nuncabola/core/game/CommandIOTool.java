@@ -18,6 +18,14 @@
 package com.uppgarn.nuncabola.core.game;
 
 final class CommandIOTool {
+  /**
+   * Quantization steps per unit of quantized positions, bases
+   * and tilt angles (in degrees).
+   */
+  public static final float POSITION_SCALE = 4096.0f;
+  public static final float BASIS_SCALE    = 8192.0f;
+  public static final float ANGLE_SCALE    = 4096.0f;
+  
   private static final Command.Type[] TYPES = createTypes();
   private static final int         [] IDS   = createIDs();
   
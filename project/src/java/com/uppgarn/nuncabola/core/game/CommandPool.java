@@ -0,0 +1,277 @@
+/*
+ * CommandPool.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.game;
+
+import com.uppgarn.nuncabola.core.math.*;
+
+import java.util.*;
+
+/**
+ * Reuses the commands a server sends on every update.
+ * <p>
+ * A command obtained from the pool stays valid until the pool
+ * is reset, which happens when the server clears its commands.
+ */
+final class CommandPool {
+  private final Slots<Command.BallPosition>      ballPositions;
+  private final Slots<Command.BallRadius>        ballRadii;
+  private final Slots<Command.BallBasis>         ballBases;
+  private final Slots<Command.BallPendulumBasis> ballPendulumBases;
+  private final Slots<Command.MoverPath>         moverPaths;
+  private final Slots<Command.MoverTime>         moverTimes;
+  private final Slots<Command.SimulationStep>    simulationSteps;
+  private final Slots<Command.Sound>             sounds;
+  private final Slots<Command.TiltAxes>          tiltAxes;
+  private final Slots<Command.TiltAngles>        tiltAngles;
+  private final Slots<Command.Timer>             timers;
+  private final Slots<Command.ViewPosition>      viewPositions;
+  private final Slots<Command.ViewCenter>        viewCenters;
+  private final Slots<Command.ViewBasis>         viewBases;
+  
+  public CommandPool() {
+    ballPositions     = new Slots<>();
+    ballRadii         = new Slots<>();
+    ballBases         = new Slots<>();
+    ballPendulumBases = new Slots<>();
+    moverPaths        = new Slots<>();
+    moverTimes        = new Slots<>();
+    simulationSteps   = new Slots<>();
+    sounds            = new Slots<>();
+    tiltAxes          = new Slots<>();
+    tiltAngles        = new Slots<>();
+    timers            = new Slots<>();
+    viewPositions     = new Slots<>();
+    viewCenters       = new Slots<>();
+    viewBases         = new Slots<>();
+  }
+  
+  public void reset() {
+    ballPositions    .reset();
+    ballRadii        .reset();
+    ballBases        .reset();
+    ballPendulumBases.reset();
+    moverPaths       .reset();
+    moverTimes       .reset();
+    simulationSteps  .reset();
+    sounds           .reset();
+    tiltAxes         .reset();
+    tiltAngles       .reset();
+    timers           .reset();
+    viewPositions    .reset();
+    viewCenters      .reset();
+    viewBases        .reset();
+  }
+  
+  public Command.BallPosition getBallPosition(Vector3 p) {
+    Command.BallPosition cmd = ballPositions.next();
+    
+    if (cmd == null) {
+      return ballPositions.add(new Command.BallPosition(p));
+    }
+    
+    cmd.set(p);
+    
+    return cmd;
+  }
+  
+  public Command.BallRadius getBallRadius(float r) {
+    Command.BallRadius cmd = ballRadii.next();
+    
+    if (cmd == null) {
+      return ballRadii.add(new Command.BallRadius(r));
+    }
+    
+    cmd.set(r);
+    
+    return cmd;
+  }
+  
+  public Command.BallBasis getBallBasis(Basis3 e) {
+    Command.BallBasis cmd = ballBases.next();
+    
+    if (cmd == null) {
+      return ballBases.add(new Command.BallBasis(e));
+    }
+    
+    cmd.set(e);
+    
+    return cmd;
+  }
+  
+  public Command.BallPendulumBasis getBallPendulumBasis(Basis3 e_) {
+    Command.BallPendulumBasis cmd = ballPendulumBases.next();
+    
+    if (cmd == null) {
+      return ballPendulumBases.add(new Command.BallPendulumBasis(e_));
+    }
+    
+    cmd.set(e_);
+    
+    return cmd;
+  }
+  
+  public Command.MoverPath getMoverPath(int moverIdx, int pathIdx) {
+    Command.MoverPath cmd = moverPaths.next();
+    
+    if (cmd == null) {
+      return moverPaths.add(new Command.MoverPath(moverIdx, pathIdx));
+    }
+    
+    cmd.set(moverIdx, pathIdx);
+    
+    return cmd;
+  }
+  
+  public Command.MoverTime getMoverTime(int moverIdx, float t) {
+    Command.MoverTime cmd = moverTimes.next();
+    
+    if (cmd == null) {
+      return moverTimes.add(new Command.MoverTime(moverIdx, t));
+    }
+    
+    cmd.set(moverIdx, t);
+    
+    return cmd;
+  }
+  
+  public Command.SimulationStep getSimulationStep(float dt) {
+    Command.SimulationStep cmd = simulationSteps.next();
+    
+    if (cmd == null) {
+      return simulationSteps.add(new Command.SimulationStep(dt));
+    }
+    
+    cmd.set(dt);
+    
+    return cmd;
+  }
+  
+  public Command.Sound getSound(String path, float amp) {
+    Command.Sound cmd = sounds.next();
+    
+    if (cmd == null) {
+      return sounds.add(new Command.Sound(path, amp));
+    }
+    
+    cmd.set(path, amp);
+    
+    return cmd;
+  }
+  
+  public Command.TiltAxes getTiltAxes(Vector3 x, Vector3 z) {
+    Command.TiltAxes cmd = tiltAxes.next();
+    
+    if (cmd == null) {
+      return tiltAxes.add(new Command.TiltAxes(x, z));
+    }
+    
+    cmd.set(x, z);
+    
+    return cmd;
+  }
+  
+  public Command.TiltAngles getTiltAngles(float x, float z) {
+    Command.TiltAngles cmd = tiltAngles.next();
+    
+    if (cmd == null) {
+      return tiltAngles.add(new Command.TiltAngles(x, z));
+    }
+    
+    cmd.set(x, z);
+    
+    return cmd;
+  }
+  
+  public Command.Timer getTimer(float timer) {
+    Command.Timer cmd = timers.next();
+    
+    if (cmd == null) {
+      return timers.add(new Command.Timer(timer));
+    }
+    
+    cmd.set(timer);
+    
+    return cmd;
+  }
+  
+  public Command.ViewPosition getViewPosition(Vector3 p) {
+    Command.ViewPosition cmd = viewPositions.next();
+    
+    if (cmd == null) {
+      return viewPositions.add(new Command.ViewPosition(p));
+    }
+    
+    cmd.set(p);
+    
+    return cmd;
+  }
+  
+  public Command.ViewCenter getViewCenter(Vector3 c) {
+    Command.ViewCenter cmd = viewCenters.next();
+    
+    if (cmd == null) {
+      return viewCenters.add(new Command.ViewCenter(c));
+    }
+    
+    cmd.set(c);
+    
+    return cmd;
+  }
+  
+  public Command.ViewBasis getViewBasis(Basis3 e) {
+    Command.ViewBasis cmd = viewBases.next();
+    
+    if (cmd == null) {
+      return viewBases.add(new Command.ViewBasis(e));
+    }
+    
+    cmd.set(e);
+    
+    return cmd;
+  }
+  
+  private static final class Slots<T extends Command> {
+    private final List<T> cmds;
+    
+    private int count;
+    
+    public Slots() {
+      cmds  = new ArrayList<>();
+      count = 0;
+    }
+    
+    /**
+     * Returns the next free command, or {@code null} if all are in use.
+     */
+    public T next() {
+      return (count < cmds.size()) ? cmds.get(count++) : null;
+    }
+    
+    public T add(T cmd) {
+      cmds.add(cmd);
+      
+      count++;
+      
+      return cmd;
+    }
+    
+    public void reset() {
+      count = 0;
+    }
+  }
+}
@@ -63,6 +63,32 @@ public final class GameClient {
     levelCompatibleSet = false;
   }
   
+  /**
+   * Returns the state not kept in the game.
+   * <p>
+   * Only valid between updates.
+   */
+  public State getState() {
+    return new State(rate, currBallIdx, firstUpdate);
+  }
+  
+  /**
+   * Restores a state returned by {@link #getState}.
+   * <p>
+   * The game must be restored separately.
+   */
+  public void setState(State state) {
+    rate        = state.rate;
+    currBallIdx = state.currBallIdx;
+    
+    firstUpdate        = state.firstUpdate;
+    goalsJustUnlocked  = false;
+    teleJustEntered    = false;
+    tiltAxesSet        = false;
+    viewSet            = false;
+    levelCompatibleSet = false;
+  }
+  
   public void execute(Command cmd) {
     switch (cmd.getType()) {
       case END_OF_UPDATE: {
@@ -494,4 +520,16 @@ public final class GameClient {
       }
     }
   }
+  
+  public static final class State {
+    private final Rate    rate;
+    private final int     currBallIdx;
+    private final boolean firstUpdate;
+    
+    private State(Rate rate, int currBallIdx, boolean firstUpdate) {
+      this.rate        = rate;
+      this.currBallIdx = currBallIdx;
+      this.firstUpdate = firstUpdate;
+    }
+  }
 }
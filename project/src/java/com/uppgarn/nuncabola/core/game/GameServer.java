@@ -25,23 +25,43 @@ public abstract class GameServer {
   private List<Command> cmds;
   private List<Command> cmdsR;
   
+  private CommandPool cmdPool;
+  
   protected GameServer() {
     rate = Rate.DEFAULT;
     
     cmds  = new ArrayList<>();
     cmdsR = Collections.unmodifiableList(cmds);
+    
+    cmdPool = new CommandPool();
   }
   
   public final Rate getRate() {
     return rate;
   }
   
+  protected final void setRate(Rate rate) {
+    this.rate = rate;
+  }
+  
+  /**
+   * Returns the commands of the current update.
+   * <p>
+   * Commands may be reused for later updates, so they must be
+   * consumed before the server is stepped again.
+   */
   public final List<Command> getCommands() {
     return cmdsR;
   }
   
+  final CommandPool getCommandPool() {
+    return cmdPool;
+  }
+  
   protected final void clearCommands() {
     cmds.clear();
+    
+    cmdPool.reset();
   }
   
   protected final void sendCommand(Command cmd) {
@@ -19,7 +19,7 @@ package com.uppgarn.nuncabola.core.game;
 
 import com.uppgarn.nuncabola.core.math.*;
 
-final class Gravity {
+public final class Gravity {
   private static final Vector3 NORMAL   = new Vector3(0.0f, -9.8f, 0.0f);
   private static final Vector3 INVERTED = new Vector3(0.0f, +9.8f, 0.0f);
   
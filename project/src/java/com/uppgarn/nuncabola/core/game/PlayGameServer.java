@@ -76,10 +76,19 @@ public final class PlayGameServer extends GameServer {
   private float extraTime;
   
   private Input input;
+  private Tilt  fixedTilt;
   
   private Simulation     sim;
   private PathEnabler    pathEnabler;
   private EntityDetector entDetect;
+  private EntityIndex    entIndex;
+  
+  // Scratch space for entity queries.
+  
+  private int[] itemIdxs;
+  private int[] switchIdxs;
+  private int[] teleIdxs;
+  private int[] goalIdxs;
   
   public PlayGameServer(
       Level        level,
@@ -127,11 +136,18 @@ public final class PlayGameServer extends GameServer {
     
     extraTime = 0.0f;
     
-    input = new Input();
+    input     = new Input();
+    fixedTilt = null;
     
     sim         = new Simulation (sol, createSimulationListener());
     pathEnabler = new PathEnabler(sol, createPathEnablerListener());
     entDetect   = new EntityDetector();
+    entIndex    = new EntityIndex   (sol);
+    
+    itemIdxs   = new int[sol.items.length];
+    switchIdxs = new int[sol.switches.length];
+    teleIdxs   = new int[sol.base.teles.length];
+    goalIdxs   = new int[sol.base.goals.length];
     
     start();
   }
@@ -183,19 +199,19 @@ public final class PlayGameServer extends GameServer {
   }
   
   private void sendBallPositionCommand() {
-    sendCommand(new Command.BallPosition(ball.p));
+    sendCommand(getCommandPool().getBallPosition(ball.p));
   }
   
   private void sendBallRadiusCommand() {
-    sendCommand(new Command.BallRadius(ball.r));
+    sendCommand(getCommandPool().getBallRadius(ball.r));
   }
   
   private void sendBallBasisCommand() {
-    sendCommand(new Command.BallBasis(ball.e));
+    sendCommand(getCommandPool().getBallBasis(ball.e));
   }
   
   private void sendBallPendulumBasisCommand() {
-    sendCommand(new Command.BallPendulumBasis(ball.e_));
+    sendCommand(getCommandPool().getBallPendulumBasis(ball.e_));
   }
   
   private void sendCoinsCommand() {
@@ -226,11 +242,11 @@ public final class PlayGameServer extends GameServer {
   }
   
   private void sendMoverPathCommand(int moverIdx, int pathIdx) {
-    sendCommand(new Command.MoverPath(moverIdx, pathIdx));
+    sendCommand(getCommandPool().getMoverPath(moverIdx, pathIdx));
   }
   
   private void sendMoverTimeCommand(int moverIdx, float t) {
-    sendCommand(new Command.MoverTime(moverIdx, t));
+    sendCommand(getCommandPool().getMoverTime(moverIdx, t));
   }
   
   private void sendPathEnableCommand(int pathIdx, boolean enabled) {
@@ -242,11 +258,11 @@ public final class PlayGameServer extends GameServer {
   }
   
   private void sendSimulationStepCommand(float dt) {
-    sendCommand(new Command.SimulationStep(dt));
+    sendCommand(getCommandPool().getSimulationStep(dt));
   }
   
   private void sendSoundCommand(String path, float amp) {
-    sendCommand(new Command.Sound(path, amp));
+    sendCommand(getCommandPool().getSound(path, amp));
   }
   
   private void sendStatusCommand() {
@@ -274,27 +290,27 @@ public final class PlayGameServer extends GameServer {
   }
   
   private void sendTiltAxesCommand() {
-    sendCommand(new Command.TiltAxes(tilt.x, tilt.z));
+    sendCommand(getCommandPool().getTiltAxes(tilt.x, tilt.z));
   }
   
   private void sendTiltAnglesCommand() {
-    sendCommand(new Command.TiltAngles(tilt.rx, tilt.rz));
+    sendCommand(getCommandPool().getTiltAngles(tilt.rx, tilt.rz));
   }
   
   private void sendTimerCommand() {
-    sendCommand(new Command.Timer(timer));
+    sendCommand(getCommandPool().getTimer(timer));
   }
   
   private void sendViewPositionCommand() {
-    sendCommand(new Command.ViewPosition(view.p));
+    sendCommand(getCommandPool().getViewPosition(view.p));
   }
   
   private void sendViewCenterCommand() {
-    sendCommand(new Command.ViewCenter(view.c));
+    sendCommand(getCommandPool().getViewCenter(view.c));
   }
   
   private void sendViewBasisCommand() {
-    sendCommand(new Command.ViewBasis(view.e));
+    sendCommand(getCommandPool().getViewBasis(view.e));
   }
   
   private void start() {
@@ -349,15 +365,19 @@ public final class PlayGameServer extends GameServer {
   }
   
   private void stepTilt() {
-    tilt.x.copyFrom(view.e.x);
-    tilt.z.copyFrom(view.e.z);
-    
-    // Smooth jittery or discontinuous input.
-    
-    float k = rate.getTime() / Math.max(input.getResponse(), rate.getTime());
-    
-    tilt.rx += (input.getX() - tilt.rx) * k;
-    tilt.rz += (input.getZ() - tilt.rz) * k;
+    if (fixedTilt == null) {
+      tilt.x.copyFrom(view.e.x);
+      tilt.z.copyFrom(view.e.z);
+      
+      // Smooth jittery or discontinuous input.
+      
+      float k = rate.getTime() / Math.max(input.getResponse(), rate.getTime());
+      
+      tilt.rx += (input.getX() - tilt.rx) * k;
+      tilt.rz += (input.getZ() - tilt.rz) * k;
+    } else {
+      tilt.copyFrom(fixedTilt);
+    }
     
     sendTiltAxesCommand();
     sendTiltAnglesCommand();
@@ -630,8 +650,11 @@ public final class PlayGameServer extends GameServer {
       return;
     }
     
-    for (int itemIdx = 0; itemIdx < sol.items.length; itemIdx++) {
-      Item item = sol.items[itemIdx];
+    int count = entIndex.findItems(itemIdxs, ball);
+    
+    for (int idx = 0; idx < count; idx++) {
+      int  itemIdx = itemIdxs[idx];
+      Item item    = sol.items[itemIdx];
       
       if ((item.type != ItemBase.NONE) && entDetect.testItem(item, ball)) {
         handleItem(itemIdx, item);
@@ -649,6 +672,8 @@ public final class PlayGameServer extends GameServer {
       
       zwitch.ballInside = true;
       
+      entIndex.setSwitchPinned(switchIdx, true);
+      
       sendSwitchEnterCommand(switchIdx);
     }
     
@@ -671,6 +696,10 @@ public final class PlayGameServer extends GameServer {
         pathEnabler.setPathEnabled(zwitch.base.pathIdx, zwitch.enabled);
       }
       
+      // Reschedule path changes.
+      
+      sim.invalidatePathSchedule();
+      
       // Report an interaction with a visible switch.
       
       if (!zwitch.base.invisible) {
@@ -687,6 +716,8 @@ public final class PlayGameServer extends GameServer {
       
       zwitch.ballInside = false;
       
+      entIndex.setSwitchPinned(switchIdx, false);
+      
       sendSwitchExitCommand(switchIdx);
     }
   }
@@ -698,8 +729,11 @@ public final class PlayGameServer extends GameServer {
     
     boolean visibleSwitchToggled = false;
     
-    for (int switchIdx = 0; switchIdx < sol.switches.length; switchIdx++) {
-      Switch zwitch = sol.switches[switchIdx];
+    int count = entIndex.findSwitches(switchIdxs, ball);
+    
+    for (int idx = 0; idx < count; idx++) {
+      int    switchIdx = switchIdxs[idx];
+      Switch zwitch    = sol.switches[switchIdx];
       
       HaloTest result = entDetect.testSwitch(zwitch.base, ball);
       
@@ -741,8 +775,12 @@ public final class PlayGameServer extends GameServer {
       return;
     }
     
+    int count = entIndex.findTeleporters(teleIdxs, ball);
+    
     if (teleEnabled) {
-      for (Teleporter tele: sol.base.teles) {
+      for (int idx = 0; idx < count; idx++) {
+        Teleporter tele = sol.base.teles[teleIdxs[idx]];
+        
         if (entDetect.testTeleporter(tele, ball) == HaloTest.INSIDE) {
           handleTeleporterInside(tele);
           
@@ -752,7 +790,9 @@ public final class PlayGameServer extends GameServer {
     } else {
       boolean outside = true;
       
-      for (Teleporter tele: sol.base.teles) {
+      for (int idx = 0; idx < count; idx++) {
+        Teleporter tele = sol.base.teles[teleIdxs[idx]];
+        
         if (entDetect.testTeleporter(tele, ball) != HaloTest.OUTSIDE) {
           outside = false;
           
@@ -780,7 +820,11 @@ public final class PlayGameServer extends GameServer {
     }
     
     if (goalsUnlocked) {
-      for (Goal goal: sol.base.goals) {
+      int count = entIndex.findGoals(goalIdxs, ball);
+      
+      for (int idx = 0; idx < count; idx++) {
+        Goal goal = sol.base.goals[goalIdxs[idx]];
+        
         if (entDetect.testGoal(goal, ball)) {
           handleStatus(Status.GOAL, SOUND_GOAL);
           
@@ -845,4 +889,16 @@ public final class PlayGameServer extends GameServer {
     
     step();
   }
+  
+  /**
+   * Steps with the specified tilt instead of the one derived
+   * from input and view, such as the tilt recorded in a replay.
+   */
+  public void step(Tilt tilt) {
+    fixedTilt = tilt;
+    
+    step();
+    
+    fixedTilt = null;
+  }
 }
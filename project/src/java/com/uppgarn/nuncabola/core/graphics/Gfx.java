@@ -143,6 +143,10 @@ public final class Gfx {
     return maxTextureUnits;
   }
   
+  public static int getMaximumTextureSize() {
+    return maxTextureSize;
+  }
+  
   public static void setPerspective(float fov, float n, float f) {
     float c = (float) (1.0 / Math.tan(Math.toRadians(fov / 2)));
     float a = (float) width / height;
@@ -218,16 +222,26 @@ public final class Gfx {
     return new Image(buf, width, height, true);
   }
   
-  private static Image getTextureImage(Image img) {
+  /**
+   * Returns the factor by which an image of the given size is scaled
+   * down for use as a texture.
+   */
+  public static int getTextureFactor(int imgWidth, int imgHeight) {
     // Scale the image as configured, or to fit the OpenGL limitations.
     
     int factor = textures;
     
-    while ((img.getWidth () / factor > maxTextureSize)
-        || (img.getHeight() / factor > maxTextureSize)) {
+    while ((imgWidth  / factor > maxTextureSize)
+        || (imgHeight / factor > maxTextureSize)) {
       factor *= 2;
     }
     
+    return factor;
+  }
+  
+  public static Image getTextureImage(Image img) {
+    int factor = getTextureFactor(img.getWidth(), img.getHeight());
+    
     if (factor == 1) {
       return img;
     } else {
@@ -240,7 +254,17 @@ public final class Gfx {
       return 0;
     }
     
-    Image textureImg = getTextureImage(img);
+    return uploadTexture(getTextureImage(img), allowMipmap);
+  }
+  
+  /**
+   * Creates a texture from an image that has already been passed
+   * through {@link #getTextureImage}.
+   */
+  public static int uploadTexture(Image textureImg, boolean allowMipmap) {
+    if (textureImg == null) {
+      return 0;
+    }
     
     // Generate a new OpenGL texture.
     
@@ -0,0 +1,88 @@
+/*
+ * BatchBuffer.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.gui;
+
+import static org.lwjgl.opengl.ARBVertexBufferObject.*;
+import static org.lwjgl.opengl.GL11.*;
+
+import java.nio.*;
+
+/**
+ * Dynamic vertex buffer a {@link GUI} draws its {@link GUIBatch} from.
+ */
+final class BatchBuffer {
+  private final int vbo;
+  
+  private int capacity;
+  
+  public BatchBuffer() {
+    vbo      = glGenBuffersARB();
+    capacity = 0;
+  }
+  
+  private void upload(GUIBatch batch) {
+    ByteBuffer stream = batch.getStream();
+    DirtyRange range  = batch.getDirtyRange();
+    
+    if (stream.capacity() > capacity) {
+      // Reallocate, uploading the whole stream.
+      
+      ByteBuffer buf = stream.duplicate();
+      
+      buf.clear();
+      glBufferDataARB(GL_ARRAY_BUFFER_ARB, buf, GL_DYNAMIC_DRAW_ARB);
+      
+      capacity = buf.capacity();
+    } else if (!range.isEmpty()) {
+      ByteBuffer buf = stream.duplicate();
+      
+      buf.limit(range.getEnd()).position(range.getStart());
+      glBufferSubDataARB(GL_ARRAY_BUFFER_ARB, range.getStart(), buf);
+    }
+    
+    range.clear();
+  }
+  
+  /**
+   * Draws the runs of the last pass of {@code batch}.
+   */
+  public void draw(GUIBatch batch, boolean colorEnabled) {
+    if (batch.getRunCount() == 0) {
+      return;
+    }
+    
+    LookManager lookMgr = GUIHome.getLookManager();
+    
+    lookMgr.pointTo(vbo, colorEnabled);
+    upload(batch);
+    
+    for (int idx = 0; idx < batch.getRunCount(); idx++) {
+      int first = batch.getRunFirst      (idx);
+      int count = batch.getRunVertexCount(idx);
+      
+      glBindTexture(GL_TEXTURE_2D, batch.getRunTexture(idx));
+      glDrawArrays (GL_TRIANGLES, first, count);
+    }
+    
+    lookMgr.pointBack(colorEnabled);
+  }
+  
+  public void deinitialize() {
+    glDeleteBuffersARB(vbo);
+  }
+}
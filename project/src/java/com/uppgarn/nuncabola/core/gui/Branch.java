@@ -194,20 +194,29 @@ public abstract class Branch extends Widget {
   final void drawContents() {
     glPushMatrix();
     {
-      float k = getScale();
+      GUIBatch batch = getGUI().getBatch();
+      float    k     = getScale();
       
       if (k != 1.0f) {
+        flushBatch();
+        
         float x = getX() + getWidth () / 2.0f; // float, cannot use getCenterX()
         float y = getY() + getHeight() / 2.0f; // float, cannot use getCenterY()
         
         glTranslatef(+x, +y, 0.0f);
         glScalef(k, k, k);
         glTranslatef(-x, -y, 0.0f);
+        
+        batch.beginTransform();
       }
       
       for (Widget child: children) {
         child.drawContents();
       }
+      
+      if (k != 1.0f) {
+        batch.endTransform();
+      }
     }
     glPopMatrix();
   }
@@ -0,0 +1,59 @@
+/*
+ * DirtyRange.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.gui;
+
+/**
+ * Range of bytes of a buffer changed since it was last uploaded.
+ * <p>
+ * Changes are merged into a single range, so that they can be
+ * uploaded with one call.
+ */
+final class DirtyRange {
+  private int start;
+  private int end;
+  
+  public DirtyRange() {
+    clear();
+  }
+  
+  public boolean isEmpty() {
+    return start >= end;
+  }
+  
+  public int getStart() {
+    return start;
+  }
+  
+  public int getEnd() {
+    return end;
+  }
+  
+  public void add(int start, int end) {
+    if (start >= end) {
+      return;
+    }
+    
+    this.start = Math.min(this.start, start);
+    this.end   = Math.max(this.end,   end);
+  }
+  
+  public void clear() {
+    start = Integer.MAX_VALUE;
+    end   = 0;
+  }
+}
@@ -18,6 +18,10 @@
 package com.uppgarn.nuncabola.core.gui;
 
 public final class GUI {
+  private final GUIBatch batch;
+  
+  private BatchBuffer batchBuf;
+  
   private Widget root;
   
   private int xPos;
@@ -26,6 +30,10 @@ public final class GUI {
   private Widget focusWidget;
   
   public GUI() {
+    batch = new GUIBatch();
+    
+    batchBuf = null;
+    
     root = null;
     
     xPos = 0;
@@ -34,6 +42,23 @@ public final class GUI {
     focusWidget = null;
   }
   
+  GUIBatch getBatch() {
+    return batch;
+  }
+  
+  /**
+   * Ends the current pass of the batch and draws it.
+   */
+  void drawBatch(boolean colorEnabled) {
+    batch.endPass();
+    
+    if (batchBuf == null) {
+      batchBuf = new BatchBuffer();
+    }
+    
+    batchBuf.draw(batch, colorEnabled);
+  }
+  
   void setRoot(Widget widget) {
     root = widget;
   }
@@ -354,5 +379,9 @@ public final class GUI {
     if (root != null) {
       root.deinitialize();
     }
+    
+    if (batchBuf != null) {
+      batchBuf.deinitialize();
+    }
   }
 }
@@ -0,0 +1,374 @@
+/*
+ * GUIBatch.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.gui;
+
+import java.nio.*;
+import java.util.*;
+
+/**
+ * Collects the geometry drawn by the widgets of a {@link GUI}
+ * into a single vertex stream.
+ * <p>
+ * Geometry is given in the vertex format of {@link Look}, moved to
+ * its place on the screen and converted to triangles. Geometry added
+ * right after geometry with the same texture joins its item. When a
+ * pass ends, its items are written to the stream in the order they
+ * were added, after those of the passes before, and drawn with one
+ * call each. Contents drawn with a transformation of their own end
+ * the pass before they are drawn, so that everything is drawn in the
+ * order it was added.
+ * <p>
+ * The stream is kept from frame to frame. Only the bytes that differ
+ * from those of the previous frame are added to the dirty range,
+ * which has to be uploaded and cleared after every pass.
+ */
+final class GUIBatch {
+  private static final int ENTRY = Look.VBO_ENTRY;
+  
+  private ByteBuffer itemBuf;
+  private int[]      itemTextures;
+  private int[]      itemEnds;
+  private int        itemCount;
+  
+  private ByteBuffer stream;
+  private int        streamSize;
+  private int        validSize;
+  private DirtyRange dirtyRange;
+  
+  private int[] runTextures;
+  private int[] runFirsts;
+  private int[] runCounts;
+  private int   runCount;
+  
+  private int transformDepth;
+  
+  public GUIBatch() {
+    itemBuf      = createBuffer(64 * ENTRY);
+    itemTextures = new int[16];
+    itemEnds     = new int[16];
+    itemCount    = 0;
+    
+    stream     = createBuffer(0);
+    streamSize = 0;
+    validSize  = 0;
+    dirtyRange = new DirtyRange();
+    
+    runTextures = new int[4];
+    runFirsts   = new int[4];
+    runCounts   = new int[4];
+    runCount    = 0;
+    
+    transformDepth = 0;
+  }
+  
+  private static ByteBuffer createBuffer(int size) {
+    return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+  }
+  
+  /**
+   * Returns the stream. Its position and limit are undefined.
+   */
+  public ByteBuffer getStream() {
+    return stream;
+  }
+  
+  /**
+   * Returns the number of bytes written to the stream this frame.
+   */
+  public int getStreamSize() {
+    return streamSize;
+  }
+  
+  public DirtyRange getDirtyRange() {
+    return dirtyRange;
+  }
+  
+  /**
+   * Returns the number of runs of the last pass, one per item.
+   */
+  public int getRunCount() {
+    return runCount;
+  }
+  
+  public int getRunTexture(int idx) {
+    return runTextures[idx];
+  }
+  
+  /**
+   * Returns the index of the first vertex of a run in the stream.
+   */
+  public int getRunFirst(int idx) {
+    return runFirsts[idx];
+  }
+  
+  public int getRunVertexCount(int idx) {
+    return runCounts[idx];
+  }
+  
+  /**
+   * Returns whether geometry is drawn with a transformation
+   * and cannot be added.
+   */
+  public boolean isTransformed() {
+    return transformDepth > 0;
+  }
+  
+  public void beginTransform() {
+    transformDepth++;
+  }
+  
+  public void endTransform() {
+    transformDepth--;
+  }
+  
+  /**
+   * Starts a new frame.
+   */
+  public void begin() {
+    itemBuf.clear();
+    
+    itemCount      = 0;
+    streamSize     = 0;
+    runCount       = 0;
+    transformDepth = 0;
+  }
+  
+  private void beginItem(int texture, int vertCount) {
+    // Grow the item buffer if needed.
+    
+    int size = vertCount * ENTRY;
+    
+    if (itemBuf.remaining() < size) {
+      int        cap = itemBuf.position() + size;
+      ByteBuffer buf = createBuffer(Math.max(itemBuf.capacity() * 2, cap));
+      
+      itemBuf.flip();
+      buf.put(itemBuf);
+      
+      itemBuf = buf;
+    }
+    
+    // Continue the last item if it has the same texture.
+    
+    if ((itemCount > 0) && (itemTextures[itemCount - 1] == texture)) {
+      return;
+    }
+    
+    if (itemCount == itemTextures.length) {
+      itemTextures = Arrays.copyOf(itemTextures, itemCount * 2);
+      itemEnds     = Arrays.copyOf(itemEnds,     itemCount * 2);
+    }
+    
+    itemTextures[itemCount++] = texture;
+  }
+  
+  private void endItem() {
+    itemEnds[itemCount - 1] = itemBuf.position();
+  }
+  
+  private void putVertex(ByteBuffer src, int pos, int dx, int dy) {
+    for (int idx = 0; idx < 4; idx++) {
+      itemBuf.put(src.get(pos + Look.VBO_OFF0 + idx));
+    }
+    
+    itemBuf.putFloat(src.getFloat(pos + Look.VBO_OFF1));
+    itemBuf.putFloat(src.getFloat(pos + Look.VBO_OFF1 + 4));
+    itemBuf.putShort((short) (src.getShort(pos + Look.VBO_OFF2)     + dx));
+    itemBuf.putShort((short) (src.getShort(pos + Look.VBO_OFF2 + 2) + dy));
+  }
+  
+  private void putTriangle(
+      ByteBuffer src,
+      int        pos,
+      int        elem0,
+      int        elem1,
+      int        elem2,
+      int        dx,
+      int        dy) {
+    // Skip degenerate triangles.
+    
+    if ((elem0 == elem1) || (elem1 == elem2) || (elem2 == elem0)) {
+      return;
+    }
+    
+    putVertex(src, pos + elem0 * ENTRY, dx, dy);
+    putVertex(src, pos + elem1 * ENTRY, dx, dy);
+    putVertex(src, pos + elem2 * ENTRY, dx, dy);
+  }
+  
+  /**
+   * Adds the triangle strip of the {@code count} vertices
+   * at {@code pos} in {@code src}, moved by ({@code dx}, {@code dy}).
+   */
+  public void addStrip(
+      int        texture,
+      ByteBuffer src,
+      int        pos,
+      int        count,
+      int        dx,
+      int        dy) {
+    if (count < 3) {
+      return;
+    }
+    
+    beginItem(texture, (count - 2) * 3);
+    
+    for (int idx = 0; idx < count - 2; idx++) {
+      // Every other triangle is flipped to keep the winding.
+      
+      int odd = idx % 2;
+      
+      putTriangle(src, pos, idx + odd, idx + 1 - odd, idx + 2, dx, dy);
+    }
+    
+    endItem();
+  }
+  
+  /**
+   * Adds the triangle strip of the vertices indexed by {@code elems}
+   * relative to {@code pos} in {@code src}, moved by ({@code dx},
+   * {@code dy}).
+   */
+  public void addStrip(
+      int        texture,
+      ByteBuffer src,
+      int        pos,
+      int[]      elems,
+      int        dx,
+      int        dy) {
+    if (elems.length < 3) {
+      return;
+    }
+    
+    beginItem(texture, (elems.length - 2) * 3);
+    
+    for (int idx = 0; idx < elems.length - 2; idx++) {
+      // Every other triangle is flipped to keep the winding.
+      
+      int odd = idx % 2;
+      
+      putTriangle(
+        src,
+        pos,
+        elems[idx + odd],
+        elems[idx + 1 - odd],
+        elems[idx + 2],
+        dx,
+        dy);
+    }
+    
+    endItem();
+  }
+  
+  /**
+   * Adds the quads of the {@code count} vertices at {@code pos}
+   * in {@code src}, moved by ({@code dx}, {@code dy}).
+   */
+  public void addQuads(
+      int        texture,
+      ByteBuffer src,
+      int        pos,
+      int        count,
+      int        dx,
+      int        dy) {
+    if (count < 4) {
+      return;
+    }
+    
+    beginItem(texture, count / 4 * 6);
+    
+    for (int idx = 0; idx + 3 < count; idx += 4) {
+      putTriangle(src, pos, idx, idx + 1, idx + 2, dx, dy);
+      putTriangle(src, pos, idx, idx + 2, idx + 3, dx, dy);
+    }
+    
+    endItem();
+  }
+  
+  private void write(int itemIdx) {
+    int start = (itemIdx == 0) ? 0 : itemEnds[itemIdx - 1];
+    int size  = itemEnds[itemIdx] - start;
+    
+    // Grow the stream if needed.
+    
+    if (stream.capacity() < streamSize + size) {
+      int        cap = streamSize + size;
+      ByteBuffer buf = createBuffer(Math.max(stream.capacity() * 2, cap));
+      
+      stream.clear();
+      buf.put(stream);
+      
+      stream = buf;
+    }
+    
+    // Write the bytes that differ from those of the previous frame.
+    
+    int dirtyStart = Integer.MAX_VALUE;
+    int dirtyEnd   = 0;
+    
+    for (int off = 0; off < size; off++) {
+      byte b = itemBuf.get(start + off);
+      int  p = streamSize + off;
+      
+      if ((p >= validSize) || (stream.get(p) != b)) {
+        stream.put(p, b);
+        
+        dirtyStart = Math.min(dirtyStart, p);
+        dirtyEnd   = p + 1;
+      }
+    }
+    
+    dirtyRange.add(dirtyStart, dirtyEnd);
+    
+    streamSize += size;
+  }
+  
+  private void addRun(int texture, int first, int count) {
+    if (runCount == runTextures.length) {
+      runTextures = Arrays.copyOf(runTextures, runCount * 2);
+      runFirsts   = Arrays.copyOf(runFirsts,   runCount * 2);
+      runCounts   = Arrays.copyOf(runCounts,   runCount * 2);
+    }
+    
+    runTextures[runCount] = texture;
+    runFirsts  [runCount] = first;
+    runCounts  [runCount] = count;
+    
+    runCount++;
+  }
+  
+  /**
+   * Ends a pass, writing its items to the stream.
+   */
+  public void endPass() {
+    runCount = 0;
+    
+    for (int idx = 0; idx < itemCount; idx++) {
+      int first = streamSize / ENTRY;
+      
+      write(idx);
+      
+      addRun(itemTextures[idx], first, streamSize / ENTRY - first);
+    }
+    
+    validSize = Math.max(validSize, streamSize);
+    
+    itemBuf.clear();
+    itemCount = 0;
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * GUIBatchCheck.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.gui;
+
+import java.nio.*;
+import java.util.*;
+
+/**
+ * Checks of the runs and dirty ranges of a {@link GUIBatch}, which
+ * do not need GL.
+ */
+public final class GUIBatchCheck {
+  private static final int ENTRY = Look.VBO_ENTRY;
+  
+  /**
+   * Number of vertices of the triangles of a quad.
+   */
+  private static final int QUAD = 6;
+  
+  /**
+   * Runs all checks and returns the names of those that fail.
+   */
+  public static List<String> run() {
+    List<String> failures = new ArrayList<>();
+    
+    checkOrder      (failures);
+    checkMerge      (failures);
+    checkPasses     (failures);
+    checkDirtyRanges(failures);
+    
+    return failures;
+  }
+  
+  private static ByteBuffer createQuad() {
+    ByteBuffer buf = ByteBuffer.allocate(4 * ENTRY);
+    buf.order(ByteOrder.nativeOrder());
+    
+    for (int idx = 0; idx < 4; idx++) {
+      int pos = idx * ENTRY;
+      int x   = ((idx == 1) || (idx == 2)) ? 1 : 0;
+      int y   = (idx >= 2)                 ? 1 : 0;
+      
+      buf.putInt  (pos + Look.VBO_OFF0,     -1);
+      buf.putFloat(pos + Look.VBO_OFF1,     x);
+      buf.putFloat(pos + Look.VBO_OFF1 + 4, y);
+      buf.putShort(pos + Look.VBO_OFF2,     (short) (x * 10));
+      buf.putShort(pos + Look.VBO_OFF2 + 2, (short) (y * 10));
+    }
+    
+    return buf;
+  }
+  
+  private static void addQuad(GUIBatch batch, int texture, int dx) {
+    batch.addQuads(texture, createQuad(), 0, 4, dx, 0);
+  }
+  
+  private static boolean isRun(
+      GUIBatch batch,
+      int      idx,
+      int      texture,
+      int      first,
+      int      count) {
+    return (batch.getRunTexture    (idx) == texture)
+      && (batch.getRunFirst      (idx) == first)
+      && (batch.getRunVertexCount(idx) == count);
+  }
+  
+  /**
+   * Items are drawn in the order they were added.
+   */
+  private static void checkOrder(List<String> failures) {
+    GUIBatch batch = new GUIBatch();
+    
+    batch.begin();
+    addQuad(batch, 1,  0);
+    addQuad(batch, 2, 20);
+    addQuad(batch, 1, 40);
+    batch.endPass();
+    
+    if ((batch.getRunCount() != 3)
+        || !isRun(batch, 0, 1, 0,        QUAD)
+        || !isRun(batch, 1, 2, QUAD,     QUAD)
+        || !isRun(batch, 2, 1, QUAD * 2, QUAD)) {
+      failures.add("order");
+    }
+  }
+  
+  /**
+   * Adjacent geometry with the same texture is drawn with one call.
+   */
+  private static void checkMerge(List<String> failures) {
+    GUIBatch batch = new GUIBatch();
+    
+    batch.begin();
+    addQuad(batch, 1,  0);
+    addQuad(batch, 1, 20);
+    addQuad(batch, 2, 40);
+    batch.endPass();
+    
+    if ((batch.getRunCount() != 2)
+        || !isRun(batch, 0, 1, 0,        QUAD * 2)
+        || !isRun(batch, 1, 2, QUAD * 2, QUAD)) {
+      failures.add("merge");
+    }
+  }
+  
+  /**
+   * A pass is written after the passes before it in the same frame.
+   */
+  private static void checkPasses(List<String> failures) {
+    GUIBatch batch = new GUIBatch();
+    
+    batch.begin();
+    addQuad(batch, 1, 0);
+    batch.endPass();
+    addQuad(batch, 1, 20);
+    batch.endPass();
+    
+    if ((batch.getRunCount() != 1)
+        || !isRun(batch, 0, 1, QUAD, QUAD)
+        || (batch.getStreamSize() != QUAD * 2 * ENTRY)) {
+      failures.add("passes");
+    }
+  }
+  
+  /**
+   * Only the bytes that differ from the previous frame are dirty.
+   */
+  private static void checkDirtyRanges(List<String> failures) {
+    GUIBatch   batch = new GUIBatch();
+    DirtyRange range = batch.getDirtyRange();
+    
+    // First frame.
+    
+    batch.begin();
+    addQuad(batch, 1,  0);
+    addQuad(batch, 2, 20);
+    batch.endPass();
+    
+    if ((range.getStart() != 0) || (range.getEnd() != QUAD * 2 * ENTRY)) {
+      failures.add("dirty range of first frame");
+    }
+    
+    range.clear();
+    
+    // Same frame.
+    
+    batch.begin();
+    addQuad(batch, 1,  0);
+    addQuad(batch, 2, 20);
+    batch.endPass();
+    
+    if (!range.isEmpty()) {
+      failures.add("dirty range of same frame");
+    }
+    
+    range.clear();
+    
+    // Frame with the second quad moved.
+    
+    batch.begin();
+    addQuad(batch, 1,  0);
+    addQuad(batch, 2, 21);
+    batch.endPass();
+    
+    if (range.isEmpty()
+        || (range.getStart() < QUAD * ENTRY)
+        || (range.getEnd()   > QUAD * 2 * ENTRY)) {
+      failures.add("dirty range of changed frame");
+    }
+  }
+  
+  private GUIBatchCheck() {
+  }
+}
@@ -35,6 +35,7 @@ public final class GUIHome {
   
   private static Map<Font, TextImagizer> textImagizers;
   private static Map<Font, Digit[]     > digitArrays;
+  private static TextAtlas               textAtlas;
   
   public static void initialize(Folder dataFolder, String themeDir) {
     GUIHome.dataFolder = dataFolder;
@@ -47,6 +48,7 @@ public final class GUIHome {
     
     textImagizers = createTextImagizers();
     digitArrays   = createDigitArrays();
+    textAtlas     = new TextAtlas();
   }
   
   private static int createReferenceHeight() {
@@ -110,6 +112,10 @@ public final class GUIHome {
     return textImagizers.get(font);
   }
   
+  static TextAtlas getTextAtlas() {
+    return textAtlas;
+  }
+  
   static Digit getDigit(Font font, int d) {
     return digitArrays.get(font)[d];
   }
@@ -133,14 +139,16 @@ public final class GUIHome {
       }
     }
     
-    lookMgr.deinitialize();
-    theme  .deinitialize();
+    textAtlas.deinitialize();
+    lookMgr  .deinitialize();
+    theme    .deinitialize();
     
     dataFolder    = null;
     theme         = null;
     lookMgr       = null;
     textImagizers = null;
     digitArrays   = null;
+    textAtlas     = null;
   }
   
   private GUIHome() {
@@ -80,6 +80,16 @@ public final class ImageLabel extends Label {
       return;
     }
     
+    if (isBatchable()) {
+      GUIBatch batch = getGUI().getBatch();
+      
+      getLook().batchImage(batch, texture, getCenterX(), getCenterY());
+      
+      return;
+    }
+    
+    flushBatch();
+    
     glPushMatrix();
     {
       float k = getScale();
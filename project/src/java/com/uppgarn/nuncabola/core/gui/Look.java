@@ -19,7 +19,6 @@ package com.uppgarn.nuncabola.core.gui;
 
 import com.uppgarn.nuncabola.core.util.*;
 
-import static org.lwjgl.opengl.ARBVertexBufferObject.*;
 import static org.lwjgl.opengl.GL11.*;
 
 import java.nio.*;
@@ -35,9 +34,6 @@ final class Look {
   public static final int VBO_CONTENT   = VBO_TEXT;
   public static final int VBO_BLOCK     = VBO_RECTANGLE + VBO_CONTENT;
   public static final int VBO_TOTAL     = VBO_BLOCK * VBO_ENTRY;
-  public static final int EBO_ENTRY     = 2;
-  public static final int EBO_BLOCK     = 28;
-  public static final int EBO_TOTAL     = EBO_BLOCK * EBO_ENTRY;
   
   private static final int[] RECTANGLE_BASE_ELEMS = {
     0, 1, 4, 5, 8, 9, 12, 13, 13, 1,  // top
@@ -46,9 +42,7 @@ final class Look {
   };
   
   private final ByteBuffer vboBuf;
-  private final ByteBuffer eboBuf;
-  private final int        vbo;
-  private final int        ebo;
+  private final DirtyRange dirtyRange;
   private final boolean[]  used;
   private final int        baseIdx;
   
@@ -56,17 +50,13 @@ final class Look {
   
   public Look(
       ByteBuffer vboBuf,
-      ByteBuffer eboBuf,
-      int        vbo,
-      int        ebo,
+      DirtyRange dirtyRange,
       boolean[]  used,
       int        baseIdx) {
-    this.vboBuf  = vboBuf;
-    this.eboBuf  = eboBuf;
-    this.vbo     = vbo;
-    this.ebo     = ebo;
-    this.used    = used;
-    this.baseIdx = baseIdx;
+    this.vboBuf     = vboBuf;
+    this.dirtyRange = dirtyRange;
+    this.used       = used;
+    this.baseIdx    = baseIdx;
     
     theme = GUIHome.getTheme();
     
@@ -78,7 +68,6 @@ final class Look {
     int limit = pos + VBO_RECTANGLE * VBO_ENTRY;
     
     vboBuf.limit(limit).position(pos);
-    eboBuf.clear();
   }
   
   private void positionForText() {
@@ -106,24 +95,12 @@ final class Look {
     vboBuf.putShort((short) y);
   }
   
-  private void setElement(int elem) {
-    eboBuf.putShort((short) elem);
-  }
-  
+  /**
+   * Marks the vertex data for upload by the next
+   * {@link LookManager#flush}.
+   */
   private void copyVertexData() {
-    int off = vboBuf.position();
-    
-    glBindBufferARB   (GL_ARRAY_BUFFER_ARB, vbo);
-    glBufferSubDataARB(GL_ARRAY_BUFFER_ARB, off, vboBuf);
-    glBindBufferARB   (GL_ARRAY_BUFFER_ARB, 0);
-  }
-  
-  private void copyElementData() {
-    int off = baseIdx * EBO_TOTAL;
-    
-    glBindBufferARB   (GL_ELEMENT_ARRAY_BUFFER_ARB, ebo);
-    glBufferSubDataARB(GL_ELEMENT_ARRAY_BUFFER_ARB, off, eboBuf);
-    glBindBufferARB   (GL_ELEMENT_ARRAY_BUFFER_ARB, 0);
+    dirtyRange.add(vboBuf.position(), vboBuf.limit());
   }
   
   public void setRectangleData(
@@ -174,13 +151,8 @@ final class Look {
     setVertex(x3, y2, s3, t2, Color.WHITE);
     setVertex(x3, y3, s3, t3, Color.WHITE);
     
-    for (int idx = 0; idx < EBO_BLOCK; idx++) {
-      setElement(baseIdx * VBO_BLOCK + RECTANGLE_BASE_ELEMS[idx]);
-    }
-    
     positionForRectangle();
     copyVertexData();
-    copyElementData();
   }
   
   public void setTextData(
@@ -253,17 +225,29 @@ final class Look {
     copyVertexData();
   }
   
-  public void drawRectangle() {
-    int first = baseIdx * EBO_TOTAL;
-    int count = EBO_BLOCK;
+  public void batchRectangle(GUIBatch batch, int texture, int dx, int dy) {
+    int pos = baseIdx * VBO_TOTAL;
+    
+    batch.addStrip(texture, vboBuf, pos, RECTANGLE_BASE_ELEMS, dx, dy);
+  }
+  
+  public void batchText(GUIBatch batch, int texture, int dx, int dy) {
+    int pos = baseIdx * VBO_TOTAL + VBO_RECTANGLE * VBO_ENTRY;
+    
+    batch.addStrip(texture, vboBuf, pos, VBO_TEXT, dx, dy);
+  }
+  
+  public void batchImage(GUIBatch batch, int texture, int dx, int dy) {
+    int pos = baseIdx * VBO_TOTAL + VBO_RECTANGLE * VBO_ENTRY;
     
-    glDrawElements(GL_TRIANGLE_STRIP, count, GL_UNSIGNED_SHORT, first);
+    batch.addStrip(texture, vboBuf, pos, VBO_IMAGE, dx, dy);
   }
   
   public void drawText() {
     int first = baseIdx * VBO_BLOCK + VBO_RECTANGLE;
     int count = VBO_TEXT;
     
+    GUIHome.getLookManager().flush();
     glDrawArrays(GL_TRIANGLE_STRIP, first, count);
   }
   
@@ -271,6 +255,7 @@ final class Look {
     int first = baseIdx * VBO_BLOCK + VBO_RECTANGLE;
     int count = VBO_IMAGE;
     
+    GUIHome.getLookManager().flush();
     glDrawArrays(GL_TRIANGLE_STRIP, first, count);
   }
   
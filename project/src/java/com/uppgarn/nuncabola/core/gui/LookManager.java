@@ -28,20 +28,17 @@ final class LookManager {
   private static final int COUNT = 256;
   
   private static final int VBO_SIZE = COUNT * Look.VBO_TOTAL;
-  private static final int EBO_SIZE = COUNT * Look.EBO_TOTAL;
   
   private ByteBuffer vboBuf;
-  private ByteBuffer eboBuf;
+  private DirtyRange dirtyRange;
   private int        vbo;
-  private int        ebo;
   private boolean[]  used;
   
   public LookManager() {
-    vboBuf = BufferUtils.createByteBuffer(VBO_SIZE);
-    eboBuf = BufferUtils.createByteBuffer(EBO_SIZE / COUNT);
-    vbo    = createVBO();
-    ebo    = createEBO();
-    used   = new boolean[COUNT];
+    vboBuf     = BufferUtils.createByteBuffer(VBO_SIZE);
+    dirtyRange = new DirtyRange();
+    vbo        = createVBO();
+    used       = new boolean[COUNT];
   }
   
   private int createVBO() {
@@ -54,20 +51,10 @@ final class LookManager {
     return vbo;
   }
   
-  private int createEBO() {
-    int ebo = glGenBuffersARB();
-    
-    glBindBufferARB(GL_ELEMENT_ARRAY_BUFFER_ARB, ebo);
-    glBufferDataARB(GL_ELEMENT_ARRAY_BUFFER_ARB, EBO_SIZE, GL_STATIC_DRAW_ARB);
-    glBindBufferARB(GL_ELEMENT_ARRAY_BUFFER_ARB, 0);
-    
-    return ebo;
-  }
-  
   public Look createLook() {
     for (int idx = 0; idx < COUNT; idx++) {
       if (!used[idx]) {
-        return new Look(vboBuf, eboBuf, vbo, ebo, used, idx);
+        return new Look(vboBuf, dirtyRange, used, idx);
       }
     }
     
@@ -75,9 +62,30 @@ final class LookManager {
   }
   
   public void enableDrawing(boolean colorEnabled) {
-    glBindBufferARB(GL_ARRAY_BUFFER_ARB,         vbo);
-    glBindBufferARB(GL_ELEMENT_ARRAY_BUFFER_ARB, ebo);
+    glBindBufferARB(GL_ARRAY_BUFFER_ARB, vbo);
+    
+    flush();
+    setPointers(colorEnabled);
+  }
+  
+  /**
+   * Uploads the vertex data changed since the last flush.
+   * The look buffer has to be bound.
+   */
+  public void flush() {
+    if (dirtyRange.isEmpty()) {
+      return;
+    }
+    
+    ByteBuffer buf = vboBuf.duplicate();
     
+    buf.limit(dirtyRange.getEnd()).position(dirtyRange.getStart());
+    glBufferSubDataARB(GL_ARRAY_BUFFER_ARB, dirtyRange.getStart(), buf);
+    
+    dirtyRange.clear();
+  }
+  
+  private void setPointers(boolean colorEnabled) {
     if (colorEnabled) {
       glEnableClientState(GL_COLOR_ARRAY);
       glColorPointer     (4, GL_UNSIGNED_BYTE, Look.VBO_ENTRY, Look.VBO_OFF0);
@@ -90,9 +98,34 @@ final class LookManager {
     glVertexPointer    (2, GL_SHORT, Look.VBO_ENTRY, Look.VBO_OFF2);
   }
   
+  /**
+   * Points to another buffer laid out like the look buffer.
+   */
+  public void pointTo(int otherVBO, boolean colorEnabled) {
+    glBindBufferARB(GL_ARRAY_BUFFER_ARB, otherVBO);
+    setPointers(colorEnabled);
+  }
+  
+  /**
+   * Points back to the look buffer.
+   */
+  public void pointBack(boolean colorEnabled) {
+    pointTo(vbo, colorEnabled);
+  }
+  
+  /**
+   * Draws {@code count} colored vertices of another buffer laid out
+   * like the look buffer as quads, then points back to the look
+   * buffer.
+   */
+  public void drawQuads(int quadVBO, int count) {
+    pointTo(quadVBO, true);
+    glDrawArrays(GL_QUADS, 0, count);
+    pointBack(true);
+  }
+  
   public void disableDrawing() {
-    glBindBufferARB(GL_ARRAY_BUFFER_ARB,         0);
-    glBindBufferARB(GL_ELEMENT_ARRAY_BUFFER_ARB, 0);
+    glBindBufferARB(GL_ARRAY_BUFFER_ARB, 0);
     
     glDisableClientState(GL_VERTEX_ARRAY);
     glDisableClientState(GL_TEXTURE_COORD_ARRAY);
@@ -101,6 +134,5 @@ final class LookManager {
   
   public void deinitialize() {
     glDeleteBuffersARB(vbo);
-    glDeleteBuffersARB(ebo);
   }
 }
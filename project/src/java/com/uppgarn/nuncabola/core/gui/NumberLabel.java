@@ -62,6 +62,8 @@ public final class NumberLabel extends Label {
       return;
     }
     
+    flushBatch();
+    
     glPushMatrix();
     {
       float k = getScale();
@@ -0,0 +1,128 @@
+/*
+ * TextAtlas.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.gui;
+
+import com.uppgarn.nuncabola.core.graphics.*;
+import com.uppgarn.nuncabola.core.image.*;
+
+import org.lwjgl.*;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.*;
+
+import java.nio.*;
+
+/**
+ * Texture of the glyph atlas shared by all text labels.
+ * <p>
+ * Glyphs are uploaded as white luminance with their coverage as
+ * alpha, so that they blend like the text textures of
+ * {@link TextImagizer#getImage}.
+ */
+final class TextAtlas {
+  private static final int MAX_SIZE = 2048;
+  
+  private final GlyphAtlas atlas;
+  private final int        texture;
+  
+  public TextAtlas() {
+    atlas   = new GlyphAtlas(Math.min(Gfx.getMaximumTextureSize(), MAX_SIZE));
+    texture = createTexture();
+  }
+  
+  private int createTexture() {
+    int size    = atlas.getSize();
+    int texture = glGenTextures();
+    
+    glBindTexture(GL_TEXTURE_2D, texture);
+    
+    glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+    glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+    
+    glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+    glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
+    
+    glTexImage2D(
+      GL_TEXTURE_2D,
+      0,
+      GL_LUMINANCE_ALPHA,
+      size,
+      size,
+      0,
+      GL_LUMINANCE_ALPHA,
+      GL_UNSIGNED_BYTE,
+      (ByteBuffer) null);
+    
+    return texture;
+  }
+  
+  /**
+   * Lays out {@code str} in {@code font}. Returns {@code false} if it
+   * has to be drawn from a texture of its own.
+   */
+  public boolean layout(Font font, String str, GlyphLayout layout) {
+    return atlas.layout(GUIHome.getTextImagizer(font), str, layout);
+  }
+  
+  /**
+   * Binds the texture, uploading the rows changed since last time,
+   * and returns it.
+   */
+  public int bind() {
+    glBindTexture(GL_TEXTURE_2D, texture);
+    
+    int y0 = atlas.getDirtyY0();
+    int y1 = atlas.getDirtyY1();
+    
+    if (y0 >= y1) {
+      return texture;
+    }
+    
+    int        size = atlas.getSize();
+    ByteBuffer src  = atlas.getBuffer();
+    ByteBuffer buf  = BufferUtils.createByteBuffer((y1 - y0) * size * 2);
+    
+    src.position(y0 * size);
+    
+    for (int p = (y1 - y0) * size; p != 0; p--) {
+      buf.put((byte) 255);
+      buf.put(src.get());
+    }
+    
+    buf.flip();
+    
+    glTexSubImage2D(
+      GL_TEXTURE_2D,
+      0,
+      0,
+      y0,
+      size,
+      y1 - y0,
+      GL_LUMINANCE_ALPHA,
+      GL_UNSIGNED_BYTE,
+      buf);
+    
+    atlas.clearDirtyRows();
+    
+    return texture;
+  }
+  
+  public void deinitialize() {
+    glDeleteTextures(texture);
+  }
+}
@@ -27,8 +27,9 @@ import static org.lwjgl.opengl.GL11.*;
 import java.util.*;
 
 public class TextLabel extends Label {
-  private final Font     font;
-  private final String[] layoutTexts;
+  private final Font        font;
+  private final String[]    layoutTexts;
+  private final GlyphLayout glyphLayout;
   
   private Truncation truncation;
   private String     text;
@@ -40,6 +41,13 @@ public class TextLabel extends Label {
   private int       texture;
   private Dimension textSize;
   
+  /**
+   * Whether the text is drawn from the shared text atlas
+   * instead of a texture of its own.
+   */
+  private boolean  glyphsUsed;
+  private TextMesh textMesh;
+  
   TextLabel(
       GUI      gui,
       Branch   parent,
@@ -52,6 +60,8 @@ public class TextLabel extends Label {
     this.font        = font;
     this.layoutTexts = (layoutTexts == null) ? null : layoutTexts.clone();
     
+    glyphLayout = new GlyphLayout();
+    
     truncation = Truncation.NONE;
     text       = "";
     color0     = null;
@@ -60,6 +70,9 @@ public class TextLabel extends Label {
     widgetSizeSet  = false;
     textureCreated = false;
     texture        = 0;
+    
+    glyphsUsed = false;
+    textMesh   = null;
   }
   
   @Override
@@ -116,6 +129,22 @@ public class TextLabel extends Label {
       return;
     }
     
+    if (isBatchable()) {
+      GUIBatch batch = getGUI().getBatch();
+      int      x     = getCenterX();
+      int      y     = getCenterY();
+      
+      if (glyphsUsed) {
+        textMesh.batch(batch, GUIHome.getTextAtlas().bind(), x, y);
+      } else {
+        getLook().batchText(batch, texture, x, y);
+      }
+      
+      return;
+    }
+    
+    flushBatch();
+    
     glPushMatrix();
     {
       float k = getScale();
@@ -123,8 +152,13 @@ public class TextLabel extends Label {
       glTranslatef(getCenterX(), getCenterY(), 0.0f);
       glScalef(k, k, k);
       
-      glBindTexture(GL_TEXTURE_2D, texture);
-      getLook().drawText();
+      if (glyphsUsed) {
+        GUIHome.getTextAtlas().bind();
+        textMesh.draw();
+      } else {
+        glBindTexture(GL_TEXTURE_2D, texture);
+        getLook().drawText();
+      }
     }
     glPopMatrix();
   }
@@ -230,21 +264,48 @@ public class TextLabel extends Label {
       str = truncation.getText(text, availWidth, imagizer);
     }
     
-    Holder<Dimension> origSize = new Holder<>();
+    if (GUIHome.getTextAtlas().layout(font, str, glyphLayout)) {
+      // Draw the text from the shared text atlas.
+      
+      texture    = 0;
+      textSize   = new Dimension(
+        glyphLayout.getWidth (),
+        glyphLayout.getHeight());
+      glyphsUsed = true;
+    } else {
+      // Render the text into a texture of its own.
+      
+      Holder<Dimension> origSize = new Holder<>();
+      
+      texture    = Gfx.createTexture(imagizer.getImage(str, origSize), false);
+      textSize   = origSize.get();
+      glyphsUsed = false;
+    }
     
-    texture        = Gfx.createTexture(imagizer.getImage(str, origSize), false);
-    textSize       = origSize.get();
     textureCreated = true;
   }
   
   private void updateLookTextData() {
-    getLook().setTextData(
-      -textSize.getWidth () / 2,
-      -textSize.getHeight() / 2,
-      textSize.getWidth (),
-      textSize.getHeight(),
-      (color0 != null) ? color0 : getDefaultColor0(),
-      (color1 != null) ? color1 : getDefaultColor1());
+    int   x  = -textSize.getWidth () / 2;
+    int   y  = -textSize.getHeight() / 2;
+    Color c0 = (color0 != null) ? color0 : getDefaultColor0();
+    Color c1 = (color1 != null) ? color1 : getDefaultColor1();
+    
+    if (glyphsUsed) {
+      if (textMesh == null) {
+        textMesh = new TextMesh();
+      }
+      
+      textMesh.setData(glyphLayout, x, y, c0, c1);
+    } else {
+      getLook().setTextData(
+        x,
+        y,
+        textSize.getWidth (),
+        textSize.getHeight(),
+        c0,
+        c1);
+    }
   }
   
   private void deleteTexture() {
@@ -255,6 +316,10 @@ public class TextLabel extends Label {
   final void deinitialize() {
     deleteTexture();
     
+    if (textMesh != null) {
+      textMesh.deinitialize();
+    }
+    
     super.deinitialize();
   }
 }
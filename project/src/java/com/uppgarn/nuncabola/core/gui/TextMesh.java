@@ -0,0 +1,190 @@
+/*
+ * TextMesh.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.gui;
+
+import com.uppgarn.nuncabola.core.image.*;
+
+import org.lwjgl.*;
+
+import static org.lwjgl.opengl.ARBVertexBufferObject.*;
+
+import java.nio.*;
+
+/**
+ * Vertex buffer of a text laid out from the {@link TextAtlas}.
+ * <p>
+ * Every glyph gets a shadow quad and a text quad, in the vertex
+ * format of {@link Look}. All shadows come first, so that no shadow
+ * covers the glyph before it.
+ */
+final class TextMesh {
+  private ByteBuffer vboBuf;
+  private int        vbo;
+  private int        vertCount;
+  private boolean    vboDirty;
+  
+  public TextMesh() {
+    vboBuf    = BufferUtils.createByteBuffer(0);
+    vbo       = 0;
+    vertCount = 0;
+    vboDirty  = false;
+  }
+  
+  private static int mix(int c0, int c1, int y, int height) {
+    return (height == 0) ? c0 : c0 + (c1 - c0) * y / height;
+  }
+  
+  private void setVertex(int x, int y, float s, float t, Color color) {
+    vboBuf.put     ((byte) color.getR());
+    vboBuf.put     ((byte) color.getG());
+    vboBuf.put     ((byte) color.getB());
+    vboBuf.put     ((byte) color.getA());
+    vboBuf.putFloat(s);
+    vboBuf.putFloat(t);
+    vboBuf.putShort((short) x);
+    vboBuf.putShort((short) y);
+  }
+  
+  private void setVertex(
+      int   x,
+      int   y,
+      float s,
+      float t,
+      int   textY,
+      int   height,
+      Color color0,
+      Color color1) {
+    // Blend the colors from the top to the bottom of the text.
+    
+    int y0 = Math.max(Math.min(textY, height), 0);
+    
+    vboBuf.put     ((byte) mix(color0.getR(), color1.getR(), y0, height));
+    vboBuf.put     ((byte) mix(color0.getG(), color1.getG(), y0, height));
+    vboBuf.put     ((byte) mix(color0.getB(), color1.getB(), y0, height));
+    vboBuf.put     ((byte) mix(color0.getA(), color1.getA(), y0, height));
+    vboBuf.putFloat(s);
+    vboBuf.putFloat(t);
+    vboBuf.putShort((short) x);
+    vboBuf.putShort((short) y);
+  }
+  
+  /**
+   * Sets the quads of {@code layout}, with the bottom left corner
+   * of the text at ({@code x}, {@code y}).
+   */
+  public void setData(
+      GlyphLayout layout,
+      int         x,
+      int         y,
+      Color       color0,
+      Color       color1) {
+    int     quadCount = layout.getQuadCount();
+    int  [] coords    = layout.getCoordinates();
+    float[] texCoords = layout.getTextureCoordinates();
+    int     height    = layout.getHeight();
+    int     d         = height / 16;
+    int     top       = y + height;
+    
+    vertCount = quadCount * 8;
+    
+    if (vboBuf.capacity() < vertCount * Look.VBO_ENTRY) {
+      vboBuf = BufferUtils.createByteBuffer(vertCount * Look.VBO_ENTRY * 2);
+    }
+    
+    vboBuf.clear();
+    
+    // Shadows.
+    
+    for (int idx = 0, off = 0; idx < quadCount; idx++, off += 4) {
+      int x0 = x   + coords[off + 0] + d;
+      int y0 = top - coords[off + 1] - d;
+      int x1 = x   + coords[off + 2] + d;
+      int y1 = top - coords[off + 3] - d;
+      
+      float s0 = texCoords[off + 0];
+      float t0 = texCoords[off + 1];
+      float s1 = texCoords[off + 2];
+      float t1 = texCoords[off + 3];
+      
+      setVertex(x0, y0, s0, t0, Color.SHADOW);
+      setVertex(x0, y1, s0, t1, Color.SHADOW);
+      setVertex(x1, y1, s1, t1, Color.SHADOW);
+      setVertex(x1, y0, s1, t0, Color.SHADOW);
+    }
+    
+    // Text.
+    
+    for (int idx = 0, off = 0; idx < quadCount; idx++, off += 4) {
+      int x0 = x   + coords[off + 0];
+      int y0 = top - coords[off + 1];
+      int x1 = x   + coords[off + 2];
+      int y1 = top - coords[off + 3];
+      
+      float s0 = texCoords[off + 0];
+      float t0 = texCoords[off + 1];
+      float s1 = texCoords[off + 2];
+      float t1 = texCoords[off + 3];
+      
+      int textY0 = coords[off + 1];
+      int textY1 = coords[off + 3];
+      
+      setVertex(x0, y0, s0, t0, textY0, height, color0, color1);
+      setVertex(x0, y1, s0, t1, textY1, height, color0, color1);
+      setVertex(x1, y1, s1, t1, textY1, height, color0, color1);
+      setVertex(x1, y0, s1, t0, textY0, height, color0, color1);
+    }
+    
+    vboBuf.flip();
+    
+    vboDirty = true;
+  }
+  
+  public void batch(GUIBatch batch, int texture, int dx, int dy) {
+    batch.addQuads(texture, vboBuf, 0, vertCount, dx, dy);
+  }
+  
+  /**
+   * Draws the quads from a vertex buffer of their own. Batched text
+   * never gets one, so the buffer is only created and filled here.
+   */
+  public void draw() {
+    if (vertCount == 0) {
+      return;
+    }
+    
+    if (vbo == 0) {
+      vbo = glGenBuffersARB();
+    }
+    
+    if (vboDirty) {
+      glBindBufferARB(GL_ARRAY_BUFFER_ARB, vbo);
+      glBufferDataARB(GL_ARRAY_BUFFER_ARB, vboBuf, GL_DYNAMIC_DRAW_ARB);
+      glBindBufferARB(GL_ARRAY_BUFFER_ARB, 0);
+      
+      vboDirty = false;
+    }
+    
+    GUIHome.getLookManager().drawQuads(vbo, vertCount);
+  }
+  
+  public void deinitialize() {
+    if (vbo != 0) {
+      glDeleteBuffersARB(vbo);
+    }
+  }
+}
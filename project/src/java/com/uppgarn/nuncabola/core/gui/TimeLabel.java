@@ -59,6 +59,8 @@ public final class TimeLabel extends Label {
     float dxLarge = GUIHome.getDigit(font, 0).getWidth();
     float dxSmall = dxLarge * 0.75f;
     
+    flushBatch();
+    
     glPushMatrix();
     {
       float k = getScale();
@@ -251,21 +251,30 @@ public abstract class Widget {
       return false;
     }
     
-    glPushMatrix();
-    {
-      Theme theme   = GUIHome.getTheme();
-      int   texture = theme.getTexture(drawSelected, drawFocused);
-      
-      glTranslatef(getCenterX(), getCenterY(), 0.0f);
-      
-      glBindTexture(GL_TEXTURE_2D, texture);
-      look.drawRectangle();
-    }
-    glPopMatrix();
+    Theme theme   = GUIHome.getTheme();
+    int   texture = theme.getTexture(drawSelected, drawFocused);
+    
+    look.batchRectangle(gui.getBatch(), texture, getCenterX(), getCenterY());
     
     return true;
   }
   
+  /**
+   * Returns whether the contents can be added to the batch of the GUI
+   * instead of being drawn with a transformation of their own.
+   */
+  final boolean isBatchable() {
+    return (scale == 1.0f) && !gui.getBatch().isTransformed();
+  }
+  
+  /**
+   * Draws the contents batched so far, before contents that are drawn
+   * with a transformation of their own.
+   */
+  final void flushBatch() {
+    gui.drawBatch(true);
+  }
+  
   abstract void drawBackground(boolean branchSelected, boolean branchFocused);
   
   abstract void drawContents();
@@ -277,11 +286,15 @@ public abstract class Widget {
     {
       LookManager lookMgr = GUIHome.getLookManager();
       
+      gui.getBatch().begin();
+      
       lookMgr.enableDrawing(false);
       drawBackground(false, false);
+      gui.drawBatch(false);
       
       lookMgr.enableDrawing(true);
       drawContents();
+      gui.drawBatch(true);
       
       lookMgr.disableDrawing();
       glColor4ub((byte) 255, (byte) 255, (byte) 255, (byte) 255);
@@ -0,0 +1,299 @@
+/*
+ * Benchmark.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.headless;
+
+import com.uppgarn.nuncabola.core.game.*;
+import com.uppgarn.nuncabola.core.image.*;
+import com.uppgarn.nuncabola.core.level.*;
+import com.uppgarn.nuncabola.core.math.*;
+import com.uppgarn.nuncabola.core.physics.*;
+import com.uppgarn.nuncabola.core.renderers.*;
+import com.uppgarn.nuncabola.core.solid.*;
+
+import java.awt.image.*;
+import java.util.*;
+
+public final class Benchmark {
+  public enum Type {
+    /**
+     * Full {@link PlayGameServer} updates.
+     */
+    SERVER_TICK,
+    
+    /**
+     * {@link Simulation} steps of the first ball and all movers.
+     */
+    SIMULATION_STEP,
+    
+    /**
+     * {@link CollisionDetector#testBodies} calls on recorded states.
+     */
+    COLLISION_TEST,
+    
+    /**
+     * Mesh data builds by {@link MeshCreator}, without GL.
+     */
+    MESH_BUILD,
+    
+    /**
+     * Conversions of a decoded texture-sized image by
+     * {@link ImageLoader}.
+     */
+    IMAGE_CONVERT,
+    
+    /**
+     * The conversions of {@link #IMAGE_CONVERT} by
+     * {@link ReferenceImageTool}.
+     */
+    IMAGE_CONVERT_REFERENCE,
+    
+    /**
+     * {@link Image#scaledDown(int)} and
+     * {@link Image#scaledDown(int, int)} calls on a texture-sized image.
+     */
+    IMAGE_SCALE,
+    
+    /**
+     * The scalings of {@link #IMAGE_SCALE} by {@link ReferenceImageTool}.
+     */
+    IMAGE_SCALE_REFERENCE
+  }
+  
+  /**
+   * Size of the synthesized image of the image benchmarks.
+   */
+  private static final int IMAGE_SIZE = 2048;
+  
+  private static BufferedImage createBufferedImage() {
+    BufferedImage bufImg = new BufferedImage(
+      IMAGE_SIZE,
+      IMAGE_SIZE,
+      BufferedImage.TYPE_4BYTE_ABGR);
+    
+    DataBuffer dataBuf = bufImg.getRaster().getDataBuffer();
+    byte[]     data    = ((DataBufferByte) dataBuf).getData();
+    
+    Random random = new Random(0);
+    
+    random.nextBytes(data);
+    
+    return bufImg;
+  }
+  
+  private final Level       level;
+  private final SolidBase   solBase;
+  private final InputScript script;
+  private final int         ticks;
+  
+  /**
+   * Keeps results alive so that the measured work is not eliminated.
+   */
+  private float sink;
+  
+  /**
+   * Body transform cache counters of the last simulation run.
+   */
+  private long motionHits;
+  private long motionMisses;
+  
+  private List<CollisionDetector> collDetects;
+  
+  private BufferedImage bufImg;
+  private Image         img;
+  
+  public Benchmark(
+      Level       level,
+      SolidBase   solBase,
+      InputScript script,
+      int         ticks) {
+    this.level   = level;
+    this.solBase = solBase;
+    this.script  = script;
+    this.ticks   = ticks;
+  }
+  
+  public BenchmarkResult run(Type type, int warmups, int iterations) {
+    List<Solid> states = (type == Type.COLLISION_TEST)
+      ? recordStates()
+      : null;
+    
+    collDetects = null;
+    
+    for (int i = 0; i < warmups; i++) {
+      runIteration(type, states);
+    }
+    
+    long ops        = 0;
+    long minNanos   = Long.MAX_VALUE;
+    long totalNanos = 0;
+    
+    for (int i = 0; i < iterations; i++) {
+      long start = System.nanoTime();
+      
+      ops = runIteration(type, states);
+      
+      long nanos = System.nanoTime() - start;
+      
+      minNanos    = Math.min(minNanos, nanos);
+      totalNanos += nanos;
+    }
+    
+    if (iterations == 0) {
+      minNanos = 0;
+    }
+    
+    return new BenchmarkResult(type, ops, minNanos, totalNanos, iterations);
+  }
+  
+  private long runIteration(Type type, List<Solid> states) {
+    switch (type) {
+      case SERVER_TICK:             return runServerTicks();
+      case SIMULATION_STEP:         return runSimulationSteps(null);
+      case COLLISION_TEST:          return runCollisionTests(states);
+      case MESH_BUILD:              return runMeshBuilds();
+      case IMAGE_CONVERT:           return runImageConversions(false);
+      case IMAGE_CONVERT_REFERENCE: return runImageConversions(true);
+      case IMAGE_SCALE:             return runImageScalings(false);
+      case IMAGE_SCALE_REFERENCE:   return runImageScalings(true);
+      
+      default: throw new AssertionError();
+    }
+  }
+  
+  private long runServerTicks() {
+    HeadlessResult result = HeadlessRunner.run(level, solBase, script, ticks);
+    
+    sink += result.getTimer();
+    
+    return result.getTicks();
+  }
+  
+  private long runSimulationSteps(List<Solid> states) {
+    Solid      sol = new Solid(solBase);
+    Simulation sim = new Simulation(sol, null);
+    
+    Input   input = new Input();
+    Tilt    tilt  = new Tilt();
+    Vector3 g     = new Vector3();
+    
+    float dt = Rate.DEFAULT.getTime();
+    
+    for (int tick = 0; tick < ticks; tick++) {
+      if (states != null) {
+        states.add(new Solid(sol));
+      }
+      
+      script.apply(tick, input);
+      
+      tilt.rx = input.getX();
+      tilt.rz = input.getZ();
+      
+      Gravity.get(g, false, tilt);
+      
+      sink += sim.step(0, g, dt);
+    }
+    
+    motionHits   = sim.getMotion().getHitCount();
+    motionMisses = sim.getMotion().getMissCount();
+    
+    return ticks;
+  }
+  
+  private List<Solid> recordStates() {
+    List<Solid> states = new ArrayList<>(ticks);
+    
+    runSimulationSteps(states);
+    
+    return states;
+  }
+  
+  private long runCollisionTests(List<Solid> states) {
+    Vector3 t_ = new Vector3();
+    Vector3 v_ = new Vector3();
+    
+    float dt = Rate.DEFAULT.getTime();
+    
+    if (collDetects == null) {
+      collDetects = new ArrayList<>(states.size());
+      
+      for (Solid state: states) {
+        collDetects.add(new CollisionDetector(state));
+      }
+    }
+    
+    for (int i = 0; i < states.size(); i++) {
+      Ball ball = states.get(i).balls[0];
+      
+      sink += collDetects.get(i).testBodies(t_, v_, ball, dt);
+    }
+    
+    return states.size();
+  }
+  
+  private long runMeshBuilds() {
+    sink += MeshCreator.getElementCount(solBase);
+    
+    return 1;
+  }
+  
+  private long runImageConversions(boolean reference) {
+    if (bufImg == null) {
+      bufImg = createBufferedImage();
+    }
+    
+    Image newImg = reference
+      ? ReferenceImageTool.getImage(bufImg, false)
+      : ImageLoader       .load    (bufImg, false);
+    
+    sink += newImg.getBuffer().get(0);
+    
+    return 1;
+  }
+  
+  private long runImageScalings(boolean reference) {
+    if (img == null) {
+      img = ImageLoader.load(createBufferedImage(), false);
+    }
+    
+    int newSize = IMAGE_SIZE * 3 / 5;
+    
+    if (reference) {
+      sink += ReferenceImageTool.scaledDown(img, 2)
+        .getBuffer().get(0);
+      sink += ReferenceImageTool.scaledDown(img, newSize, newSize)
+        .getBuffer().get(0);
+    } else {
+      sink += img.scaledDown(2)                .getBuffer().get(0);
+      sink += img.scaledDown(newSize, newSize).getBuffer().get(0);
+    }
+    
+    return 2;
+  }
+  
+  public float getSink() {
+    return sink;
+  }
+  
+  public long getMotionHitCount() {
+    return motionHits;
+  }
+  
+  public long getMotionMissCount() {
+    return motionMisses;
+  }
+}
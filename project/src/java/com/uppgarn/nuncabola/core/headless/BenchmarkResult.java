@@ -0,0 +1,66 @@
+/*
+ * BenchmarkResult.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.headless;
+
+public final class BenchmarkResult {
+  private final Benchmark.Type type;
+  private final long           ops;
+  private final long           minNanos;
+  private final long           totalNanos;
+  private final int            iterations;
+  
+  public BenchmarkResult(
+      Benchmark.Type type,
+      long           ops,
+      long           minNanos,
+      long           totalNanos,
+      int            iterations) {
+    this.type       = type;
+    this.ops        = ops;
+    this.minNanos   = minNanos;
+    this.totalNanos = totalNanos;
+    this.iterations = iterations;
+  }
+  
+  public Benchmark.Type getType() {
+    return type;
+  }
+  
+  /**
+   * Returns the number of operations per measured iteration.
+   */
+  public long getOperations() {
+    return ops;
+  }
+  
+  public int getIterations() {
+    return iterations;
+  }
+  
+  public double getBestOpsPerSecond() {
+    return (minNanos == 0) ? 0.0 : ops * 1.0E9 / minNanos;
+  }
+  
+  public double getMeanOpsPerSecond() {
+    return (totalNanos == 0) ? 0.0 : ops * iterations * 1.0E9 / totalNanos;
+  }
+  
+  public double getMeanNanosPerOp() {
+    return (ops == 0) ? 0.0 : (double) totalNanos / iterations / ops;
+  }
+}
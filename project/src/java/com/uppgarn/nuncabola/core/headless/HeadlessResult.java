@@ -0,0 +1,85 @@
+/*
+ * HeadlessResult.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.headless;
+
+import com.uppgarn.nuncabola.core.game.*;
+
+public final class HeadlessResult {
+  private final String levelPath;
+  private final Status status;
+  private final int    ticks;
+  private final int    timer;
+  private final int    coins;
+  private final long   cmdCount;
+  private final long   nanos;
+  
+  public HeadlessResult(
+      String levelPath,
+      Status status,
+      int    ticks,
+      int    timer,
+      int    coins,
+      long   cmdCount,
+      long   nanos) {
+    this.levelPath = levelPath;
+    this.status    = status;
+    this.ticks     = ticks;
+    this.timer     = timer;
+    this.coins     = coins;
+    this.cmdCount  = cmdCount;
+    this.nanos     = nanos;
+  }
+  
+  public String getLevelPath() {
+    return levelPath;
+  }
+  
+  public Status getStatus() {
+    return status;
+  }
+  
+  /**
+   * Returns the number of server updates that were run.
+   */
+  public int getTicks() {
+    return ticks;
+  }
+  
+  /**
+   * Returns the final timer value (centiseconds).
+   */
+  public int getTimer() {
+    return timer;
+  }
+  
+  public int getCoins() {
+    return coins;
+  }
+  
+  public long getCommandCount() {
+    return cmdCount;
+  }
+  
+  public long getNanos() {
+    return nanos;
+  }
+  
+  public double getTicksPerSecond() {
+    return (nanos == 0) ? 0.0 : ticks * 1.0E9 / nanos;
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * HeadlessRunner.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.headless;
+
+import com.uppgarn.nuncabola.core.game.*;
+import com.uppgarn.nuncabola.core.level.*;
+import com.uppgarn.nuncabola.core.solid.*;
+
+import java.util.*;
+
+public final class HeadlessRunner {
+  /**
+   * View distance matching the default preferences.
+   */
+  public static final ViewDistance VIEW_DISTANCE =
+    new ViewDistance(0.75f, 2.0f, 0.25f);
+  
+  /**
+   * Plays {@code level} with inputs from {@code script} until
+   * the server has no more updates or {@code maxTicks} updates
+   * have been run.
+   */
+  public static HeadlessResult run(
+      Level       level,
+      SolidBase   solBase,
+      InputScript script,
+      int         maxTicks) {
+    Input input = new Input();
+    
+    Status status = Status.NONE;
+    int    timer  = level.getTime();
+    int    coins  = 0;
+    
+    long cmdCount = 0;
+    int  ticks    = 0;
+    
+    long start = System.nanoTime();
+    
+    PlayGameServer server = new PlayGameServer(
+      level,
+      solBase,
+      false,
+      VIEW_DISTANCE,
+      Rate.DEFAULT);
+    
+    for (List<Command> cmds = server.getCommands();
+        !cmds.isEmpty() && (ticks < maxTicks);
+        cmds = server.getCommands()) {
+      for (Command cmd: cmds) {
+        switch (cmd.getType()) {
+          case STATUS: {
+            status = ((Command.Status) cmd).status;
+            
+            break;
+          }
+          case TIMER: {
+            timer = (int) (((Command.Timer) cmd).timer * 100.0f);
+            
+            break;
+          }
+          case COINS: {
+            coins = ((Command.Coins) cmd).coins;
+            
+            break;
+          }
+          
+          default: {
+            break;
+          }
+        }
+      }
+      
+      cmdCount += cmds.size();
+      
+      script.apply(ticks, input);
+      
+      server.step(input);
+      
+      ticks++;
+    }
+    
+    long nanos = System.nanoTime() - start;
+    
+    return new HeadlessResult(
+      level.getSolidPath(),
+      status,
+      ticks,
+      timer,
+      coins,
+      cmdCount,
+      nanos);
+  }
+  
+  private HeadlessRunner() {
+  }
+}
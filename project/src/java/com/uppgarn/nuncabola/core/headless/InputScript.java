@@ -0,0 +1,112 @@
+/*
+ * InputScript.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.headless;
+
+import com.uppgarn.nuncabola.core.game.*;
+
+import java.util.*;
+
+public final class InputScript {
+  private List<Segment> segments;
+  
+  private int length;
+  
+  public InputScript() {
+    segments = new ArrayList<>();
+    
+    length = 0;
+  }
+  
+  /**
+   * Creates the script used when none is given: a slow circle
+   * of full tilts in all four directions.
+   */
+  public static InputScript createDefault() {
+    InputScript script = new InputScript();
+    
+    script.add(90,  0.0f,            -Input.MAX_TILT, 0.0f);
+    script.add(90, +Input.MAX_TILT,   0.0f,           0.0f);
+    script.add(90,  0.0f,            +Input.MAX_TILT, 0.0f);
+    script.add(90, -Input.MAX_TILT,   0.0f,           0.0f);
+    script.add(45,  0.0f,             0.0f,           0.0f);
+    
+    return script;
+  }
+  
+  public void add(int ticks, float x, float z, float rotation) {
+    if (ticks <= 0) {
+      throw new IllegalArgumentException();
+    }
+    
+    segments.add(new Segment(ticks, x, z, rotation));
+    
+    length += ticks;
+  }
+  
+  public boolean isEmpty() {
+    return segments.isEmpty();
+  }
+  
+  /**
+   * Returns the number of updates after which the script repeats.
+   */
+  public int getLength() {
+    return length;
+  }
+  
+  /**
+   * Sets tilt and rotation of {@code input} for update {@code tick}.
+   */
+  public void apply(int tick, Input input) {
+    if (segments.isEmpty()) {
+      input.setX       (0.0f);
+      input.setZ       (0.0f);
+      input.setRotation(0.0f);
+      
+      return;
+    }
+    
+    int t = tick % length;
+    
+    for (Segment segment: segments) {
+      if (t < segment.ticks) {
+        input.setX       (segment.x);
+        input.setZ       (segment.z);
+        input.setRotation(segment.rotation);
+        
+        return;
+      }
+      
+      t -= segment.ticks;
+    }
+  }
+  
+  private static final class Segment {
+    public final int   ticks;
+    public final float x;
+    public final float z;
+    public final float rotation;
+    
+    public Segment(int ticks, float x, float z, float rotation) {
+      this.ticks    = ticks;
+      this.x        = x;
+      this.z        = z;
+      this.rotation = rotation;
+    }
+  }
+}
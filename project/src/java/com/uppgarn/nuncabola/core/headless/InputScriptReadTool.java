@@ -0,0 +1,88 @@
+/*
+ * InputScriptReadTool.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.headless;
+
+import com.uppgarn.nuncabola.core.util.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+/**
+ * Reads input scripts from text.
+ * <p>
+ * Each non-empty line not starting with '#' describes one segment
+ * as {@code ticks x z [rotation]}, separated by whitespace.
+ */
+public final class InputScriptReadTool {
+  private static void readSegment(InputScript script, String str)
+      throws IOException {
+    String[] parts = str.split("\\s+");
+    
+    if ((parts.length < 3) || (parts.length > 4)) {
+      throw new InvalidDataException();
+    }
+    
+    try {
+      int   ticks    = Integer.parseInt(parts[0]);
+      float x        = Float.parseFloat(parts[1]);
+      float z        = Float.parseFloat(parts[2]);
+      float rotation = (parts.length > 3) ? Float.parseFloat(parts[3]) : 0.0f;
+      
+      if (ticks <= 0) {
+        throw new InvalidDataException();
+      }
+      
+      script.add(ticks, x, z, rotation);
+    } catch (NumberFormatException ex) {
+      throw new InvalidDataException();
+    }
+  }
+  
+  private static InputScript readInputScript(BufferedReader in)
+      throws IOException {
+    InputScript script = new InputScript();
+    
+    for (String str; (str = in.readLine()) != null;) {
+      str = str.trim();
+      
+      if (!str.isEmpty() && !str.startsWith("#")) {
+        readSegment(script, str);
+      }
+    }
+    
+    return script;
+  }
+  
+  public static InputScript readInputScript(InputStream inStream)
+      throws IOException {
+    BufferedReader in = new BufferedReader(
+      new InputStreamReader(inStream, StandardCharsets.UTF_8));
+    
+    return readInputScript(in);
+  }
+  
+  public static InputScript readInputScript(Path file) throws IOException {
+    try (InputStream in = Files.newInputStream(file)) {
+      return readInputScript(in);
+    }
+  }
+  
+  private InputScriptReadTool() {
+  }
+}
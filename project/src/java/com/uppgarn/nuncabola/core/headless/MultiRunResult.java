@@ -0,0 +1,61 @@
+/*
+ * MultiRunResult.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.headless;
+
+import java.util.*;
+
+public final class MultiRunResult {
+  private final List<HeadlessResult> results;
+  private final long                 nanos;
+  
+  public MultiRunResult(List<HeadlessResult> results, long nanos) {
+    this.results = Collections.unmodifiableList(new ArrayList<>(results));
+    this.nanos   = nanos;
+  }
+  
+  /**
+   * Returns the result of each instance.
+   */
+  public List<HeadlessResult> getResults() {
+    return results;
+  }
+  
+  /**
+   * Returns the total number of server updates of all instances.
+   */
+  public long getTicks() {
+    long ticks = 0;
+    
+    for (HeadlessResult result: results) {
+      ticks += result.getTicks();
+    }
+    
+    return ticks;
+  }
+  
+  /**
+   * Returns the wall-clock time of the whole run.
+   */
+  public long getNanos() {
+    return nanos;
+  }
+  
+  public double getTicksPerSecond() {
+    return (nanos == 0) ? 0.0 : getTicks() * 1.0E9 / nanos;
+  }
+}
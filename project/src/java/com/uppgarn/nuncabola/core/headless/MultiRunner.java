@@ -0,0 +1,75 @@
+/*
+ * MultiRunner.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.headless;
+
+import com.uppgarn.nuncabola.core.level.*;
+import com.uppgarn.nuncabola.core.solid.*;
+import com.uppgarn.nuncabola.core.util.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Plays one level in many independent instances at once.
+ * <p>
+ * All instances share the immutable {@link SolidBase}; each one
+ * creates its own server and solid state and follows its own input
+ * script.
+ */
+public final class MultiRunner {
+  /**
+   * Plays {@code level} once per script on a pool of
+   * {@code parallelism} threads. Results are returned in the order
+   * of the scripts.
+   */
+  public static MultiRunResult run(
+      final Level       level,
+      final SolidBase   solBase,
+      List<InputScript> scripts,
+      final int         maxTicks,
+      int               parallelism) {
+    // Build the shared collision data up front rather than in
+    // every instance.
+    
+    solBase.getCollisionBase();
+    
+    List<Callable<HeadlessResult>> tasks = new ArrayList<>(scripts.size());
+    
+    for (final InputScript script: scripts) {
+      tasks.add(new Callable<HeadlessResult>() {
+        @Override
+        public HeadlessResult call() {
+          return HeadlessRunner.run(level, solBase, script, maxTicks);
+        }
+      });
+    }
+    
+    long start = System.nanoTime();
+    
+    List<HeadlessResult> results = TaskTool.invokeAll(tasks, parallelism);
+    
+    if (results == null) {
+      results = Collections.emptyList();
+    }
+    
+    return new MultiRunResult(results, System.nanoTime() - start);
+  }
+  
+  private MultiRunner() {
+  }
+}
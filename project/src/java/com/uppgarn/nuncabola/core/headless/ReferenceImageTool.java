@@ -0,0 +1,381 @@
+/*
+ * ReferenceImageTool.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+
+package com.uppgarn.nuncabola.core.headless;
+
+import com.uppgarn.nuncabola.core.image.*;
+import com.uppgarn.nuncabola.core.util.*;
+
+import java.awt.color.*;
+import java.awt.image.*;
+import java.nio.*;
+
+/**
+ * Image conversion and scaling as done before they were split into
+ * rows, kept as the baseline of the image benchmarks of
+ * {@link Benchmark}.
+ * <p>
+ * The results are the same bytes as those of {@link ImageLoader}
+ * and {@link Image}.
+ */
+final class ReferenceImageTool {
+  /**
+   * Converts {@code bufImg} pixel by pixel.
+   */
+  public static Image getImage(BufferedImage bufImg, boolean topDown) {
+    Raster     raster  = bufImg.getRaster();
+    DataBuffer dataBuf = raster.getDataBuffer();
+    ColorModel model   = bufImg.getColorModel();
+    ColorSpace space   = model .getColorSpace();
+    int        width   = bufImg.getWidth ();
+    int        height  = bufImg.getHeight();
+    boolean    alpha   = model .hasAlpha();
+    
+    // Create byte buffer.
+    
+    ByteBuffer buf = ByteBuffer.allocateDirect(
+      width * height * (alpha ? 4 : 3));
+    
+    // Fill byte buffer.
+    
+    int y0;
+    int y1;
+    int yStep;
+    
+    if (topDown) {
+      y0    = 0;
+      y1    = height;
+      yStep = +1;
+    } else {
+      y0    = height - 1;
+      y1    = -1;
+      yStep = -1;
+    }
+    
+    if (bufImg.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+      // TYPE_3BYTE_BGR.
+      
+      byte[] data = ((DataBufferByte) dataBuf).getData();
+      
+      for (int y = y0; y != y1; y += yStep) {
+        for (int x = width, idx = y * width * 3; x != 0; x--, idx += 3) {
+          buf.put(data[idx + 2]);
+          buf.put(data[idx + 1]);
+          buf.put(data[idx]);
+        }
+      }
+    } else if (bufImg.getType() == BufferedImage.TYPE_4BYTE_ABGR) {
+      // TYPE_4BYTE_ABGR.
+      
+      byte[] data = ((DataBufferByte) dataBuf).getData();
+      
+      for (int y = y0; y != y1; y += yStep) {
+        for (int x = width, idx = y * width * 4; x != 0; x--, idx += 4) {
+          buf.put(data[idx + 3]);
+          buf.put(data[idx + 2]);
+          buf.put(data[idx + 1]);
+          buf.put(data[idx]);
+        }
+      }
+    } else if (bufImg.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+      // TYPE_BYTE_GRAY.
+      
+      byte[] data = ((DataBufferByte) dataBuf).getData();
+      
+      for (int y = y0; y != y1; y += yStep) {
+        for (int x = width, idx = y * width; x != 0; x--, idx++) {
+          byte b = data[idx];
+          
+          buf.put(b);
+          buf.put(b);
+          buf.put(b);
+        }
+      }
+    } else if ((raster.getNumBands() == 3)
+        && (model.getPixelSize() == 24)
+        && !alpha) {
+      // Standard RGB.
+      
+      for (int y = y0; y != y1; y += yStep) {
+        for (int x = 0; x < width; x++) {
+          buf.put((byte) raster.getSample(x, y, 0));
+          buf.put((byte) raster.getSample(x, y, 1));
+          buf.put((byte) raster.getSample(x, y, 2));
+        }
+      }
+    } else if ((raster.getNumBands() == 4)
+        && (model.getPixelSize() == 32)
+        && alpha
+        && !model.isAlphaPremultiplied()) {
+      // Standard RGBA.
+      
+      for (int y = y0; y != y1; y += yStep) {
+        for (int x = 0; x < width; x++) {
+          buf.put((byte) raster.getSample(x, y, 0));
+          buf.put((byte) raster.getSample(x, y, 1));
+          buf.put((byte) raster.getSample(x, y, 2));
+          buf.put((byte) raster.getSample(x, y, 3));
+        }
+      }
+    } else if ((space.getType() == ColorSpace.TYPE_GRAY)
+        && (raster.getNumBands() == 1)
+        && (model.getPixelSize() == 8)
+        && !alpha) {
+      // Standard grayscale.
+      
+      for (int y = y0; y != y1; y += yStep) {
+        for (int x = 0; x < width; x++) {
+          byte b = (byte) raster.getSample(x, y, 0);
+          
+          buf.put(b);
+          buf.put(b);
+          buf.put(b);
+        }
+      }
+    } else if ((space.getType() == ColorSpace.TYPE_GRAY)
+        && (raster.getNumBands() == 2)
+        && (model.getPixelSize() == 16)
+        && alpha
+        && !model.isAlphaPremultiplied()) {
+      // Standard grayscale with alpha.
+      
+      for (int y = y0; y != y1; y += yStep) {
+        for (int x = 0; x < width; x++) {
+          byte b0 = (byte) raster.getSample(x, y, 0);
+          byte b1 = (byte) raster.getSample(x, y, 1);
+          
+          buf.put(b0);
+          buf.put(b0);
+          buf.put(b0);
+          buf.put(b1);
+        }
+      }
+    } else {
+      // Other image type. Retrieve the pixel data using
+      // format-independent code (which is slower).
+      
+      Object data = null;
+      
+      if (!alpha) {
+        // No alpha.
+        
+        for (int y = y0; y != y1; y += yStep) {
+          for (int x = 0; x < width; x++) {
+            data = raster.getDataElements(x, y, data);
+            
+            buf.put((byte) model.getRed  (data));
+            buf.put((byte) model.getGreen(data));
+            buf.put((byte) model.getBlue (data));
+          }
+        }
+      } else {
+        // Alpha.
+        
+        for (int y = y0; y != y1; y += yStep) {
+          for (int x = 0; x < width; x++) {
+            data = raster.getDataElements(x, y, data);
+            
+            buf.put((byte) model.getRed  (data));
+            buf.put((byte) model.getGreen(data));
+            buf.put((byte) model.getBlue (data));
+            buf.put((byte) model.getAlpha(data));
+          }
+        }
+      }
+    }
+    
+    return new Image(buf, width, height, alpha);
+  }
+  
+  /**
+   * Scales {@code img} down as {@link Image#scaledDown(int)}, one
+   * component at a time.
+   */
+  public static Image scaledDown(Image img, int factor) {
+    ByteBuffer buf    = img.getBuffer();
+    int        width  = img.getWidth ();
+    int        height = img.getHeight();
+    boolean    alpha  = img.hasAlpha ();
+    
+    assert factor >= 1;
+    
+    int newWidth  = width  / factor;
+    int newHeight = height / factor;
+    int bytes     = alpha ? 4 : 3;
+    
+    // Create byte buffer.
+    
+    ByteBuffer newBuf = ByteBuffer.allocateDirect(newWidth * newHeight * bytes);
+    
+    // Iterate each component of each destination pixel.
+    
+    int y0Inc    = (width - newWidth) * factor * bytes;
+    int x0Inc    = (factor - 1)                * bytes;
+    int y1Inc    = (width - factor)            * bytes;
+    int xyFactor = factor * factor;
+    
+    for (int y0 = newHeight, off = 0; y0 != 0; y0--, off += y0Inc) {
+      for (int x0 = newWidth; x0 != 0; x0--, off += x0Inc) {
+        for (int b = bytes; b != 0; b--, off++) {
+          // Average the source pixel block for each.
+          
+          int value = 0;
+          
+          for (int y1 = factor, idx = off; y1 != 0; y1--, idx += y1Inc) {
+            for (int x1 = factor; x1 != 0; x1--, idx += bytes) {
+              value += buf.get(idx) & 0xFF;
+            }
+          }
+          
+          newBuf.put((byte) (value / xyFactor));
+        }
+      }
+    }
+    
+    return new Image(newBuf, newWidth, newHeight, alpha);
+  }
+  
+  /**
+   * Scales {@code img} down as {@link Image#scaledDown(int, int)},
+   * one component at a time.
+   */
+  public static Image scaledDown(Image img, int newWidth, int newHeight) {
+    ByteBuffer buf    = img.getBuffer();
+    int        width  = img.getWidth ();
+    int        height = img.getHeight();
+    boolean    alpha  = img.hasAlpha ();
+    
+    assert newWidth  <= width;
+    assert newHeight <= height;
+    
+    int bytes = alpha ? 4 : 3;
+    
+    // Create byte buffer.
+    
+    ByteBuffer newBuf = ByteBuffer.allocateDirect(newWidth * newHeight * bytes);
+    
+    // Calculate indices, weights and factors for both axes.
+    
+    int  [] xIndices0 = null, yIndices0 = null;
+    int  [] xIndices1 = null, yIndices1 = null;
+    float[] xWeights0 = null, yWeights0 = null;
+    float[] xWeights1 = null, yWeights1 = null;
+    float[] xFactors  = null, yFactors  = null;
+    
+    for (int axis = 0; axis < 2; axis++) {
+      int size;
+      int newSize;
+      
+      if (axis == 0) {
+        size    = width;
+        newSize = newWidth;
+      } else {
+        size    = height;
+        newSize = newHeight;
+      }
+      
+      int  [] indices0 = new int  [newSize];
+      int  [] indices1 = new int  [newSize];
+      float[] weights0 = new float[newSize];
+      float[] weights1 = new float[newSize];
+      float[] factors  = new float[newSize];
+      
+      float factor = (float) size / newSize;
+      float fIdx0  = 0.0f;
+      
+      for (int idx = 0; idx < newSize; idx++) {
+        float fIdx1 = Util.snapToInt((idx + 1) * factor, 0.01f);
+        int   iIdx0 = (int) fIdx0;
+        int   iIdx1 = (int) fIdx1;
+        
+        indices0[idx] = iIdx0;
+        indices1[idx] = (iIdx1 < fIdx1) ? iIdx1 : iIdx1 - 1;
+        weights0[idx] = 1 - (fIdx0 - indices0[idx]);
+        weights1[idx] = fIdx1 - indices1[idx];
+        factors [idx] = weights0[idx]
+                      + ((indices0[idx] != indices1[idx]) ? weights1[idx] : 0)
+                      + Math.max(indices1[idx] - indices0[idx] - 1, 0);
+        
+        fIdx0 = fIdx1;
+      }
+      
+      if (axis == 0) {
+        xIndices0 = indices0;
+        xIndices1 = indices1;
+        xWeights0 = weights0;
+        xWeights1 = weights1;
+        xFactors  = factors;
+      } else {
+        yIndices0 = indices0;
+        yIndices1 = indices1;
+        yWeights0 = weights0;
+        yWeights1 = weights1;
+        yFactors  = factors;
+      }
+    }
+    
+    // Iterate each component of each destination pixel.
+    
+    for (int y0 = 0; y0 < newHeight; y0++) {
+      for (int x0 = 0; x0 < newWidth; x0++) {
+        for (int b = 0; b < bytes; b++) {
+          // Average the source pixel block for each.
+          
+          float yValue = 0.0f;
+          
+          for (int y1 = yIndices0[y0]; y1 <= yIndices1[y0]; y1++) {
+            float xValue = 0.0f;
+            
+            for (int x1 = xIndices0[x0], idx = (y1 * width + x1) * bytes + b;
+                x1 <= xIndices1[x0];
+                x1++, idx += bytes) {
+              int value = buf.get(idx) & 0xFF;
+              
+              if (x1 == xIndices0[x0]) {
+                xValue += value * xWeights0[x0];
+              } else if (x1 == xIndices1[x0]) {
+                xValue += value * xWeights1[x0];
+              } else {
+                xValue += value;
+              }
+            }
+            
+            xValue /= xFactors[x0];
+            
+            if (y1 == yIndices0[y0]) {
+              yValue += xValue * yWeights0[y0];
+            } else if (y1 == yIndices1[y0]) {
+              yValue += xValue * yWeights1[y0];
+            } else {
+              yValue += xValue;
+            }
+          }
+          
+          yValue /= yFactors[y0];
+          
+          newBuf.put((byte) (yValue + 0.5f));
+        }
+      }
+    }
+    
+    return new Image(newBuf, newWidth, newHeight, alpha);
+  }
+  
+  private ReferenceImageTool() {
+  }
+}
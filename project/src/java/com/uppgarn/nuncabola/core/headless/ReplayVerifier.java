@@ -0,0 +1,304 @@
+/*
+ * ReplayVerifier.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.headless;
+
+import com.uppgarn.nuncabola.core.folder.*;
+import com.uppgarn.nuncabola.core.game.*;
+import com.uppgarn.nuncabola.core.level.*;
+import com.uppgarn.nuncabola.core.replay.*;
+import com.uppgarn.nuncabola.core.solid.*;
+import com.uppgarn.nuncabola.core.util.*;
+
+import com.uppgarn.codelibf.io.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Checks replays by playing their level again with the recorded tilt
+ * and comparing the commands of each update with the recorded ones.
+ * <p>
+ * View commands are not compared, as they depend on camera input
+ * that is not recorded.
+ */
+public final class ReplayVerifier {
+  /**
+   * Verifies the given replays on a pool of {@code parallelism}
+   * threads. Results are returned in the order of the files.
+   */
+  public static List<VerificationResult> verify(
+      final Folder dataFolder,
+      List<Path>   files,
+      int          parallelism) {
+    List<Callable<VerificationResult>> tasks = new ArrayList<>(files.size());
+    
+    for (final Path file: files) {
+      tasks.add(new Callable<VerificationResult>() {
+        @Override
+        public VerificationResult call() {
+          return verifyIsolated(dataFolder, file);
+        }
+      });
+    }
+    
+    List<VerificationResult> results = TaskTool.invokeAll(tasks, parallelism);
+    
+    if (results == null) {
+      return Collections.emptyList();
+    }
+    
+    return results;
+  }
+  
+  /**
+   * Verifies {@code file} like {@link #verify(Folder, Path)}, but
+   * reports any failure as an unreadable replay, so that one bad
+   * replay does not discard the results of a whole batch.
+   */
+  private static VerificationResult verifyIsolated(
+      Folder dataFolder,
+      Path   file) {
+    long start = System.nanoTime();
+    
+    try {
+      return verify(dataFolder, file);
+    } catch (RuntimeException | Error ex) {
+      return new VerificationResult(
+        file,
+        VerificationResult.Verdict.UNREADABLE,
+        null,
+        0,
+        0,
+        0,
+        System.nanoTime() - start);
+    }
+  }
+  
+  public static VerificationResult verify(Folder dataFolder, Path file) {
+    long start = System.nanoTime();
+    
+    // Read header.
+    
+    ReplayInfo info;
+    
+    try {
+      info = ReplayInfoReadTool.readReplayInfo(file);
+    } catch (IOException ex) {
+      return new VerificationResult(
+        file,
+        VerificationResult.Verdict.UNREADABLE,
+        null,
+        0,
+        0,
+        0,
+        System.nanoTime() - start);
+    }
+    
+    // Load level.
+    
+    SolidBase solBase;
+    
+    try {
+      solBase = SolidCache.getSolidBase(
+        info.getLevelPath(),
+        dataFolder.getSource(info.getLevelPath()));
+    } catch (IOException ex) {
+      solBase = null;
+    }
+    
+    if ((solBase == null) || (solBase.ballBases.length == 0)) {
+      return new VerificationResult(
+        file,
+        VerificationResult.Verdict.LEVEL_MISSING,
+        info.getLevelPath(),
+        info.getTime(),
+        0,
+        0,
+        System.nanoTime() - start);
+    }
+    
+    Level level = LevelParser.parse(solBase.meta, info.getLevelPath());
+    level.setTime(info.getLevelTime());
+    level.setGoal(info.getLevelGoal());
+    
+    // Compare updates.
+    
+    ReplayGameServer replay = new ReplayGameServer(new FileSource(file));
+    
+    try {
+      int count = replay.getUpdateCount();
+      int idx   = compare(level, solBase, replay, info.isCompressed());
+      
+      VerificationResult.Verdict verdict;
+      
+      if (idx == -1) {
+        verdict = VerificationResult.Verdict.UNREADABLE;
+      } else if (idx < count) {
+        verdict = VerificationResult.Verdict.DESYNCED;
+      } else if (info.isCompressed()) {
+        verdict = VerificationResult.Verdict.DECODED;
+      } else {
+        verdict = VerificationResult.Verdict.VALID;
+      }
+      
+      return new VerificationResult(
+        file,
+        verdict,
+        info.getLevelPath(),
+        info.getTime(),
+        Math.max(idx, 0),
+        count,
+        System.nanoTime() - start);
+    } finally {
+      replay.close();
+    }
+  }
+  
+  /**
+   * Returns the index of the first update that differs from
+   * re-simulation, the update count if none does, or -1 if
+   * the replay is unreadable. Re-simulation is skipped if
+   * {@code decodeOnly} is set.
+   */
+  private static int compare(
+      Level            level,
+      SolidBase        solBase,
+      ReplayGameServer replay,
+      boolean          decodeOnly) {
+    int count = replay.getUpdateCount();
+    
+    if (count == 0) {
+      return -1;
+    }
+    
+    // Create server as it was at recording time.
+    
+    List<Command> cmds = replay.getCommands();
+    
+    Rate    rate        = Rate.DEFAULT;
+    boolean unlockGoals = false;
+    
+    for (Command cmd: cmds) {
+      if (cmd.getType() == Command.Type.RATE) {
+        rate = new Rate(((Command.Rate) cmd).ups);
+      } else if (cmd.getType() == Command.Type.GOALS_UNLOCK) {
+        unlockGoals = true;
+      }
+    }
+    
+    PlayGameServer server = decodeOnly ? null : new PlayGameServer(
+      level,
+      solBase,
+      unlockGoals,
+      HeadlessRunner.VIEW_DISTANCE,
+      rate);
+    
+    Tilt tilt = new Tilt();
+    
+    CommandEncoder expected = new CommandEncoder();
+    CommandEncoder actual   = new CommandEncoder();
+    
+    for (int idx = 0; idx < count; idx++) {
+      if (idx > 0) {
+        replay.step();
+        
+        cmds = replay.getCommands();
+      }
+      
+      if (cmds.isEmpty()
+          || (cmds.get(cmds.size() - 1).getType()
+            != Command.Type.END_OF_UPDATE)) {
+        return -1;
+      }
+      
+      if (server == null) {
+        continue;
+      }
+      
+      // Step with the recorded tilt.
+      
+      if (idx > 0) {
+        getTilt(tilt, cmds);
+        
+        server.step(tilt);
+      }
+      
+      encode(expected, cmds);
+      encode(actual,   server.getCommands());
+      
+      if (!expected.getBytes().equals(actual.getBytes())) {
+        return idx;
+      }
+    }
+    
+    return count;
+  }
+  
+  private static void getTilt(Tilt tilt, List<Command> cmds) {
+    for (Command cmd: cmds) {
+      switch (cmd.getType()) {
+        case TILT_AXES: {
+          Command.TiltAxes cmd0 = (Command.TiltAxes) cmd;
+          
+          tilt.x.set(cmd0.xX, cmd0.xY, cmd0.xZ);
+          tilt.z.set(cmd0.zX, cmd0.zY, cmd0.zZ);
+          
+          break;
+        }
+        case TILT_ANGLES: {
+          Command.TiltAngles cmd0 = (Command.TiltAngles) cmd;
+          
+          tilt.rx = cmd0.x;
+          tilt.rz = cmd0.z;
+          
+          break;
+        }
+        
+        default: {
+          break;
+        }
+      }
+    }
+  }
+  
+  private static void encode(CommandEncoder encoder, List<Command> cmds) {
+    encoder.reset();
+    
+    for (Command cmd: cmds) {
+      switch (cmd.getType()) {
+        case VIEW_POSITION:
+        case VIEW_CENTER:
+        case VIEW_BASIS: {
+          break;
+        }
+        
+        default: {
+          encoder.encode(cmd);
+          
+          break;
+        }
+      }
+    }
+  }
+  
+  private ReplayVerifier() {
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * TextCheck.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.headless;
+
+import com.uppgarn.nuncabola.core.image.*;
+
+import com.uppgarn.codelibf.util.*;
+
+import java.nio.*;
+
+/**
+ * Check of the text drawn from a {@link GlyphAtlas} against the
+ * image of {@link TextImagizer#getImage}, without GL.
+ * <p>
+ * The quads of each string are blended onto a blank canvas the way
+ * text labels draw them, and compared to the image centered on the
+ * text size and clipped to it. Coverage may differ by one step,
+ * since overlapping glyphs are blended in a different precision.
+ */
+public final class TextCheck {
+  private static final int ATLAS_SIZE = 2048;
+  
+  private final TextImagizer imagizer;
+  private final GlyphAtlas   atlas;
+  private final GlyphLayout  layout;
+  
+  private int strCount;
+  private int atlasCount;
+  private int mismatchCount;
+  
+  public TextCheck(TextImagizer imagizer) {
+    this.imagizer = imagizer;
+    
+    atlas  = new GlyphAtlas(ATLAS_SIZE);
+    layout = new GlyphLayout();
+  }
+  
+  public void check(String str) {
+    strCount++;
+    
+    Holder<Dimension> origSize = new Holder<>();
+    
+    Image img = imagizer.getImage(str, origSize);
+    
+    if (!atlas.layout(imagizer, str, layout)) {
+      return;
+    }
+    
+    atlasCount++;
+    
+    if (img == null) {
+      if (layout.getQuadCount() != 0) {
+        mismatchCount++;
+      }
+      
+      return;
+    }
+    
+    if (!matches(img, origSize.get())) {
+      mismatchCount++;
+    }
+  }
+  
+  private boolean matches(Image img, Dimension origSize) {
+    int width  = origSize.getWidth ();
+    int height = origSize.getHeight();
+    int padX   = img.getWidth () - width;
+    int padY   = img.getHeight() - height;
+    int offX   = (padX + 1) / 2;
+    int offY   = (padY + 1) / 2;
+    
+    // Canvas covering the text size plus the extra pixel of an odd
+    // difference.
+    
+    int x0 = -(padX % 2);
+    int y0 = -(padY % 2);
+    int w  = width  - x0;
+    int h  = height - y0;
+    
+    float[] canvas = new float[w * h];
+    
+    if (!blendQuads(canvas, x0, y0, w, h)) {
+      return false;
+    }
+    
+    ByteBuffer imgBuf = img.getBuffer();
+    
+    for (int y = 0; y < h; y++) {
+      for (int x = 0; x < w; x++) {
+        int imgIdx = (y + y0 + offY) * img.getWidth() + x + x0 + offX;
+        int alpha0 = imgBuf.get(imgIdx * 4 + 3) & 0xFF;
+        int alpha1 = Math.round(canvas[y * w + x] * 255);
+        
+        if (Math.abs(alpha0 - alpha1) > 1) {
+          return false;
+        }
+      }
+    }
+    
+    return true;
+  }
+  
+  private boolean blendQuads(float[] canvas, int x0, int y0, int w, int h) {
+    ByteBuffer atlasBuf  = atlas.getBuffer();
+    int        atlasSize = atlas.getSize();
+    int []     coords    = layout.getCoordinates();
+    float[]    texCoords = layout.getTextureCoordinates();
+    
+    for (int idx = 0; idx < layout.getQuadCount(); idx++) {
+      int off = idx * 4;
+      
+      int quadX0 = coords[off + 0] - x0;
+      int quadY0 = coords[off + 1] - y0;
+      int quadX1 = coords[off + 2] - x0;
+      int quadY1 = coords[off + 3] - y0;
+      
+      if ((quadX0 < 0) || (quadX1 > w) || (quadY0 < 0) || (quadY1 > h)) {
+        return false;
+      }
+      
+      int atlasX = Math.round(texCoords[off + 0] * atlasSize) - quadX0;
+      int atlasY = Math.round(texCoords[off + 1] * atlasSize) - quadY0;
+      
+      for (int y = quadY0; y < quadY1; y++) {
+        for (int x = quadX0; x < quadX1; x++) {
+          int   atlasIdx = (atlasY + y) * atlasSize + atlasX + x;
+          float alpha    = (atlasBuf.get(atlasIdx) & 0xFF) / 255.0f;
+          float dst      = canvas[y * w + x];
+          
+          canvas[y * w + x] = alpha + dst * (1 - alpha);
+        }
+      }
+    }
+    
+    return true;
+  }
+  
+  /**
+   * Returns the number of strings checked.
+   */
+  public int getStringCount() {
+    return strCount;
+  }
+  
+  /**
+   * Returns the number of strings drawn from the atlas. The others
+   * are drawn from an image of their own and not compared.
+   */
+  public int getAtlasCount() {
+    return atlasCount;
+  }
+  
+  /**
+   * Returns the number of strings drawn from the atlas that do not
+   * match their image.
+   */
+  public int getMismatchCount() {
+    return mismatchCount;
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * VerificationResult.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.headless;
+
+import java.nio.file.*;
+
+public final class VerificationResult {
+  public enum Verdict {
+    /**
+     * Re-simulation reproduced every update.
+     */
+    VALID,
+    
+    /**
+     * Every update could be read, but the replay is compressed,
+     * so its tilt is not exact enough to be re-simulated.
+     */
+    DECODED,
+    
+    /**
+     * Re-simulation differs from the recorded commands.
+     */
+    DESYNCED,
+    
+    /**
+     * The replay could not be read.
+     */
+    UNREADABLE,
+    
+    /**
+     * The level of the replay could not be loaded.
+     */
+    LEVEL_MISSING
+  }
+  
+  private final Path    file;
+  private final Verdict verdict;
+  private final String  levelPath;
+  private final int     time;
+  private final int     updates;
+  private final int     updateCount;
+  private final long    nanos;
+  
+  public VerificationResult(
+      Path    file,
+      Verdict verdict,
+      String  levelPath,
+      int     time,
+      int     updates,
+      int     updateCount,
+      long    nanos) {
+    this.file        = file;
+    this.verdict     = verdict;
+    this.levelPath   = levelPath;
+    this.time        = time;
+    this.updates     = updates;
+    this.updateCount = updateCount;
+    this.nanos       = nanos;
+  }
+  
+  public Path getFile() {
+    return file;
+  }
+  
+  public Verdict getVerdict() {
+    return verdict;
+  }
+  
+  /**
+   * Returns the level path, or {@code null} if the header
+   * could not be read.
+   */
+  public String getLevelPath() {
+    return levelPath;
+  }
+  
+  /**
+   * Returns the recorded level time (centiseconds).
+   */
+  public int getTime() {
+    return time;
+  }
+  
+  /**
+   * Returns the number of updates that were verified. If the replay
+   * is desynced, this is the index of the first differing update.
+   */
+  public int getUpdates() {
+    return updates;
+  }
+  
+  public int getUpdateCount() {
+    return updateCount;
+  }
+  
+  public long getNanos() {
+    return nanos;
+  }
+  
+  public double getUpdatesPerSecond() {
+    return (nanos == 0) ? 0.0 : updates * 1.0E9 / nanos;
+  }
+}
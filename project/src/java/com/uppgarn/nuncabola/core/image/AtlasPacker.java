@@ -0,0 +1,100 @@
+/*
+ * AtlasPacker.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.image;
+
+import java.util.*;
+
+/**
+ * Packs rectangles into an atlas on horizontal shelves.
+ * <p>
+ * A rectangle goes onto the flattest shelf that is high enough and
+ * has room left, or onto a new shelf as high as the rectangle.
+ */
+final class AtlasPacker {
+  private final int width;
+  private final int height;
+  
+  private final List<Shelf> shelves;
+  
+  private int shelfY;
+  
+  public AtlasPacker(int width, int height) {
+    this.width  = width;
+    this.height = height;
+    
+    shelves = new ArrayList<>();
+    shelfY  = 0;
+  }
+  
+  /**
+   * Reserves space for a rectangle, storing its position in
+   * {@code pos}. Returns {@code false} if the atlas is full.
+   */
+  public boolean add(int rectWidth, int rectHeight, int[] pos) {
+    if ((rectWidth > width) || (rectHeight > height)) {
+      return false;
+    }
+    
+    // Find the flattest existing shelf that fits.
+    
+    Shelf best = null;
+    
+    for (Shelf shelf: shelves) {
+      if ((shelf.height >= rectHeight)
+          && (width - shelf.x >= rectWidth)
+          && ((best == null) || (shelf.height < best.height))) {
+        best = shelf;
+      }
+    }
+    
+    // Otherwise open a new shelf.
+    
+    if (best == null) {
+      if (height - shelfY < rectHeight) {
+        return false;
+      }
+      
+      best = new Shelf(shelfY, rectHeight);
+      
+      shelves.add(best);
+      
+      shelfY += rectHeight;
+    }
+    
+    pos[0] = best.x;
+    pos[1] = best.y;
+    
+    best.x += rectWidth;
+    
+    return true;
+  }
+  
+  private static final class Shelf {
+    public final int y;
+    public final int height;
+    
+    public int x;
+    
+    public Shelf(int y, int height) {
+      this.y      = y;
+      this.height = height;
+      
+      x = 0;
+    }
+  }
+}
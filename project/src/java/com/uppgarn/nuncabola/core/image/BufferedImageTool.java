@@ -23,115 +23,114 @@ import java.nio.*;
 
 final class BufferedImageTool {
   public static Image getImage(BufferedImage bufImg, boolean topDown) {
-    Raster     raster  = bufImg.getRaster();
-    DataBuffer dataBuf = raster.getDataBuffer();
-    ColorModel model   = bufImg.getColorModel();
-    ColorSpace space   = model .getColorSpace();
-    int        width   = bufImg.getWidth ();
-    int        height  = bufImg.getHeight();
-    boolean    alpha   = model .hasAlpha();
+    final Raster     raster  = bufImg.getRaster();
+    final DataBuffer dataBuf = raster.getDataBuffer();
+    final ColorModel model   = bufImg.getColorModel();
+    final ColorSpace space   = model .getColorSpace();
+    final int        width   = bufImg.getWidth ();
+    final int        height  = bufImg.getHeight();
+    final boolean    alpha   = model .hasAlpha();
+    final int        rowLen  = width * (alpha ? 4 : 3);
     
     // Create byte buffer.
     
-    ByteBuffer buf = ByteBuffer.allocateDirect(
-      width * height * (alpha ? 4 : 3));
+    ByteBuffer buf = ByteBuffer.allocateDirect(rowLen * height);
     
     // Fill byte buffer.
     
-    int y0;
-    int y1;
-    int yStep;
-    
-    if (topDown) {
-      y0    = 0;
-      y1    = height;
-      yStep = +1;
-    } else {
-      y0    = height - 1;
-      y1    = -1;
-      yStep = -1;
-    }
+    RowConverter conv;
     
     if (bufImg.getType() == BufferedImage.TYPE_3BYTE_BGR) {
       // TYPE_3BYTE_BGR.
       
-      byte[] data = ((DataBufferByte) dataBuf).getData();
+      final byte[] data = ((DataBufferByte) dataBuf).getData();
       
-      for (int y = y0; y != y1; y += yStep) {
-        for (int x = width, idx = y * width * 3; x != 0; x--, idx += 3) {
-          buf.put(data[idx + 2]);
-          buf.put(data[idx + 1]);
-          buf.put(data[idx]);
+      conv = new RowConverter(buf, rowLen, height, topDown, 0) {
+        @Override
+        protected void convert(int y, byte[] row, int[] samples) {
+          for (int x = 0, idx = y * width * 3; x < row.length; x += 3) {
+            row[x]     = data[idx + 2];
+            row[x + 1] = data[idx + 1];
+            row[x + 2] = data[idx];
+            
+            idx += 3;
+          }
         }
-      }
+      };
     } else if (bufImg.getType() == BufferedImage.TYPE_4BYTE_ABGR) {
       // TYPE_4BYTE_ABGR.
       
-      byte[] data = ((DataBufferByte) dataBuf).getData();
+      final byte[] data = ((DataBufferByte) dataBuf).getData();
       
-      for (int y = y0; y != y1; y += yStep) {
-        for (int x = width, idx = y * width * 4; x != 0; x--, idx += 4) {
-          buf.put(data[idx + 3]);
-          buf.put(data[idx + 2]);
-          buf.put(data[idx + 1]);
-          buf.put(data[idx]);
+      conv = new RowConverter(buf, rowLen, height, topDown, 0) {
+        @Override
+        protected void convert(int y, byte[] row, int[] samples) {
+          for (int x = 0, idx = y * width * 4; x < row.length; x += 4) {
+            row[x]     = data[idx + 3];
+            row[x + 1] = data[idx + 2];
+            row[x + 2] = data[idx + 1];
+            row[x + 3] = data[idx];
+            
+            idx += 4;
+          }
         }
-      }
+      };
     } else if (bufImg.getType() == BufferedImage.TYPE_BYTE_GRAY) {
       // TYPE_BYTE_GRAY.
       
-      byte[] data = ((DataBufferByte) dataBuf).getData();
-      
-      for (int y = y0; y != y1; y += yStep) {
-        for (int x = width, idx = y * width; x != 0; x--, idx++) {
-          byte b = data[idx];
-          
-          buf.put(b);
-          buf.put(b);
-          buf.put(b);
-        }
-      }
-    } else if ((raster.getNumBands() == 3)
-        && (model.getPixelSize() == 24)
-        && !alpha) {
-      // Standard RGB.
+      final byte[] data = ((DataBufferByte) dataBuf).getData();
       
-      for (int y = y0; y != y1; y += yStep) {
-        for (int x = 0; x < width; x++) {
-          buf.put((byte) raster.getSample(x, y, 0));
-          buf.put((byte) raster.getSample(x, y, 1));
-          buf.put((byte) raster.getSample(x, y, 2));
+      conv = new RowConverter(buf, rowLen, height, topDown, 0) {
+        @Override
+        protected void convert(int y, byte[] row, int[] samples) {
+          for (int x = 0, idx = y * width; x < row.length; x += 3) {
+            byte b = data[idx++];
+            
+            row[x]     = b;
+            row[x + 1] = b;
+            row[x + 2] = b;
+          }
         }
-      }
-    } else if ((raster.getNumBands() == 4)
-        && (model.getPixelSize() == 32)
-        && alpha
-        && !model.isAlphaPremultiplied()) {
-      // Standard RGBA.
+      };
+    } else if (((raster.getNumBands() == 3)
+          && (model.getPixelSize() == 24)
+          && !alpha)
+        || ((raster.getNumBands() == 4)
+          && (model.getPixelSize() == 32)
+          && alpha
+          && !model.isAlphaPremultiplied())) {
+      // Standard RGB or RGBA.
       
-      for (int y = y0; y != y1; y += yStep) {
-        for (int x = 0; x < width; x++) {
-          buf.put((byte) raster.getSample(x, y, 0));
-          buf.put((byte) raster.getSample(x, y, 1));
-          buf.put((byte) raster.getSample(x, y, 2));
-          buf.put((byte) raster.getSample(x, y, 3));
+      conv = new RowConverter(buf, rowLen, height, topDown, rowLen) {
+        @Override
+        protected void convert(int y, byte[] row, int[] samples) {
+          raster.getPixels(0, y, width, 1, samples);
+          
+          for (int x = 0; x < row.length; x++) {
+            row[x] = (byte) samples[x];
+          }
         }
-      }
+      };
     } else if ((space.getType() == ColorSpace.TYPE_GRAY)
         && (raster.getNumBands() == 1)
         && (model.getPixelSize() == 8)
         && !alpha) {
       // Standard grayscale.
       
-      for (int y = y0; y != y1; y += yStep) {
-        for (int x = 0; x < width; x++) {
-          byte b = (byte) raster.getSample(x, y, 0);
+      conv = new RowConverter(buf, rowLen, height, topDown, width) {
+        @Override
+        protected void convert(int y, byte[] row, int[] samples) {
+          raster.getPixels(0, y, width, 1, samples);
           
-          buf.put(b);
-          buf.put(b);
-          buf.put(b);
+          for (int x = 0, idx = 0; x < row.length; x += 3) {
+            byte b = (byte) samples[idx++];
+            
+            row[x]     = b;
+            row[x + 1] = b;
+            row[x + 2] = b;
+          }
         }
-      }
+      };
     } else if ((space.getType() == ColorSpace.TYPE_GRAY)
         && (raster.getNumBands() == 2)
         && (model.getPixelSize() == 16)
@@ -139,51 +138,48 @@ final class BufferedImageTool {
         && !model.isAlphaPremultiplied()) {
       // Standard grayscale with alpha.
       
-      for (int y = y0; y != y1; y += yStep) {
-        for (int x = 0; x < width; x++) {
-          byte b0 = (byte) raster.getSample(x, y, 0);
-          byte b1 = (byte) raster.getSample(x, y, 1);
+      conv = new RowConverter(buf, rowLen, height, topDown, width * 2) {
+        @Override
+        protected void convert(int y, byte[] row, int[] samples) {
+          raster.getPixels(0, y, width, 1, samples);
           
-          buf.put(b0);
-          buf.put(b0);
-          buf.put(b0);
-          buf.put(b1);
+          for (int x = 0, idx = 0; x < row.length; x += 4) {
+            byte b0 = (byte) samples[idx++];
+            byte b1 = (byte) samples[idx++];
+            
+            row[x]     = b0;
+            row[x + 1] = b0;
+            row[x + 2] = b0;
+            row[x + 3] = b1;
+          }
         }
-      }
+      };
     } else {
       // Other image type. Retrieve the pixel data using
       // format-independent code (which is slower).
       
-      Object data = null;
-      
-      if (!alpha) {
-        // No alpha.
-        
-        for (int y = y0; y != y1; y += yStep) {
-          for (int x = 0; x < width; x++) {
-            data = raster.getDataElements(x, y, data);
+      conv = new RowConverter(buf, rowLen, height, topDown, 0) {
+        @Override
+        protected void convert(int y, byte[] row, int[] samples) {
+          Object data = null;
+          
+          for (int px = 0, x = 0; px < width; px++) {
+            data = raster.getDataElements(px, y, data);
             
-            buf.put((byte) model.getRed  (data));
-            buf.put((byte) model.getGreen(data));
-            buf.put((byte) model.getBlue (data));
-          }
-        }
-      } else {
-        // Alpha.
-        
-        for (int y = y0; y != y1; y += yStep) {
-          for (int x = 0; x < width; x++) {
-            data = raster.getDataElements(x, y, data);
+            row[x++] = (byte) model.getRed  (data);
+            row[x++] = (byte) model.getGreen(data);
+            row[x++] = (byte) model.getBlue (data);
             
-            buf.put((byte) model.getRed  (data));
-            buf.put((byte) model.getGreen(data));
-            buf.put((byte) model.getBlue (data));
-            buf.put((byte) model.getAlpha(data));
+            if (alpha) {
+              row[x++] = (byte) model.getAlpha(data);
+            }
           }
         }
-      }
+      };
     }
     
+    RowSplitter.run(height, rowLen, conv);
+    
     return new Image(buf, width, height, alpha);
   }
   
@@ -222,6 +218,52 @@ final class BufferedImageTool {
     return bufImg;
   }
   
+  /**
+   * Converts source rows into the rows of a byte buffer, which is
+   * written row by row with bulk puts.
+   */
+  private abstract static class RowConverter implements RowSplitter.Rows {
+    private final ByteBuffer buf;
+    private final int        rowLen;
+    private final int        height;
+    private final boolean    topDown;
+    private final int        sampleCount;
+    
+    public RowConverter(
+        ByteBuffer buf,
+        int        rowLen,
+        int        height,
+        boolean    topDown,
+        int        sampleCount) {
+      this.buf         = buf;
+      this.rowLen      = rowLen;
+      this.height      = height;
+      this.topDown     = topDown;
+      this.sampleCount = sampleCount;
+    }
+    
+    /**
+     * Fills {@code row} with the pixels of source row {@code y}.
+     * {@code samples} is scratch space of the length given to the
+     * constructor.
+     */
+    protected abstract void convert(int y, byte[] row, int[] samples);
+    
+    @Override
+    public void run(int y0, int y1) {
+      ByteBuffer buf     = this.buf.duplicate();
+      byte[]     row     = new byte[rowLen];
+      int[]      samples = new int [sampleCount];
+      
+      for (int y = y0; y < y1; y++) {
+        convert(y, row, samples);
+        
+        buf.position((topDown ? y : height - 1 - y) * rowLen);
+        buf.put(row);
+      }
+    }
+  }
+  
   private BufferedImageTool() {
   }
 }
@@ -0,0 +1,55 @@
+/*
+ * Glyph.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.image;
+
+/**
+ * Rasterized glyph of a {@link TextImagizer}.
+ */
+public final class Glyph {
+  /**
+   * Coverage of each pixel, row by row from the top.
+   */
+  public final byte[] alpha;
+  
+  public final int width;
+  public final int height;
+  
+  /**
+   * Offset of the top left pixel from the pixel holding the pen
+   * position on the baseline, with y growing downwards.
+   */
+  public final int x;
+  public final int y;
+  
+  public final float advance;
+  
+  public Glyph(
+      byte[] alpha,
+      int    width,
+      int    height,
+      int    x,
+      int    y,
+      float  advance) {
+    this.alpha   = alpha;
+    this.width   = width;
+    this.height  = height;
+    this.x       = x;
+    this.y       = y;
+    this.advance = advance;
+  }
+}
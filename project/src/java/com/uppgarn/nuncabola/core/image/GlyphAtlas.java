@@ -0,0 +1,336 @@
+/*
+ * GlyphAtlas.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.image;
+
+import com.uppgarn.nuncabola.core.util.*;
+
+import java.awt.geom.*;
+import java.nio.*;
+import java.text.*;
+import java.util.*;
+
+/**
+ * Shared atlas of the glyphs of several {@link TextImagizer}s.
+ * <p>
+ * Each glyph is rasterized once per position within a pixel and
+ * packed into a square alpha image, so that strings can be drawn as
+ * one quad per character. Rows changed since the last upload are
+ * tracked. Strings that need complex text layout, fonts too large to
+ * be drawn glyph by glyph, and glyphs that no longer fit are left to
+ * {@link TextImagizer#getImage}.
+ * <p>
+ * Strings are laid out to cover the same pixels as the image of
+ * {@link TextImagizer#getImage} does once it is centered on the text
+ * size and clipped to it, the way text labels draw it.
+ * <p>
+ * Glyphs are kept per {@link TextImagizer} instance and the atlas is
+ * never reset, so it is meant to live as long as its imagizers. The
+ * GUI creates both anew when it reloads its fonts.
+ */
+public final class GlyphAtlas {
+  private final int         size;
+  private final ByteBuffer  buf;
+  private final AtlasPacker packer;
+  
+  private final Map<TextImagizer, Map<Key, Entry>> entryMaps;
+  
+  private final int[]   pos;
+  private final int[]   clip;
+  private final float[] st;
+  
+  private int dirtyY0;
+  private int dirtyY1;
+  
+  public GlyphAtlas(int size) {
+    this.size = size;
+    
+    buf       = ByteBuffer.allocateDirect(size * size);
+    packer    = new AtlasPacker(size, size);
+    entryMaps = new HashMap<>();
+    pos       = new int  [2];
+    clip      = new int  [4];
+    st        = new float[4];
+    
+    // The whole atlas has yet to be uploaded.
+    
+    dirtyY0 = 0;
+    dirtyY1 = size;
+  }
+  
+  private static boolean requiresLayout(String str) {
+    for (int idx = 0; idx < str.length(); idx++) {
+      char ch = str.charAt(idx);
+      
+      if (Character.isSurrogate(ch)) {
+        return true;
+      }
+      
+      switch (Character.getType(ch)) {
+        case Character.NON_SPACING_MARK:
+        case Character.ENCLOSING_MARK:
+        case Character.COMBINING_SPACING_MARK:
+        case Character.FORMAT:
+        case Character.CONTROL: {
+          return true;
+        }
+      }
+    }
+    
+    return Bidi.requiresBidi(str.toCharArray(), 0, str.length());
+  }
+  
+  public int getSize() {
+    return size;
+  }
+  
+  /**
+   * Returns the coverage of each pixel, row by row from the top.
+   */
+  public ByteBuffer getBuffer() {
+    return buf.duplicate();
+  }
+  
+  /**
+   * Returns the first row changed since the last call of
+   * {@link #clearDirtyRows}.
+   */
+  public int getDirtyY0() {
+    return dirtyY0;
+  }
+  
+  /**
+   * Returns the row after the last changed one, or a value not above
+   * {@link #getDirtyY0} if no row changed.
+   */
+  public int getDirtyY1() {
+    return dirtyY1;
+  }
+  
+  public void clearDirtyRows() {
+    dirtyY0 = size;
+    dirtyY1 = 0;
+  }
+  
+  /**
+   * Lays out {@code str} as drawn by {@code imagizer} into
+   * {@code layout}, adding missing glyphs to the atlas. Returns
+   * {@code false} if the string cannot be drawn from the atlas.
+   */
+  public boolean layout(
+      TextImagizer imagizer,
+      String       str,
+      GlyphLayout  layout) {
+    if (!imagizer.drawsGlyphs() || requiresLayout(str)) {
+      return false;
+    }
+    
+    Dimension size = imagizer.getSize(str);
+    
+    layout.clear(size);
+    
+    Point2D.Float origin = imagizer.getOrigin(str);
+    
+    if (origin == null) {
+      return true;
+    }
+    
+    // The image is centered on the text size, with the extra pixel
+    // of an odd difference on the left and top, and clipped to the
+    // text size plus that pixel.
+    
+    int width  = size.getWidth ();
+    int height = size.getHeight();
+    int padX   = Util.ceilPowerOf2(width)  - width;
+    int padY   = Util.ceilPowerOf2(height) - height;
+    int offX   = (padX + 1) / 2;
+    int offY   = (padY + 1) / 2;
+    
+    clip[0] = -(padX % 2);
+    clip[1] = -(padY % 2);
+    clip[2] = width;
+    clip[3] = height;
+    
+    // Place each glyph where the image has it.
+    
+    float penX = origin.x;
+    float penY = origin.y;
+    
+    for (int idx = 0; idx < str.length(); idx++) {
+      int   pixelX = (int) Math.floor(penX);
+      int   pixelY = (int) Math.floor(penY);
+      Entry entry  = getEntry(
+        imagizer,
+        str.charAt(idx),
+        penX - pixelX,
+        penY - pixelY);
+      
+      if (entry == null) {
+        return false;
+      }
+      
+      if (entry.width > 0) {
+        add(
+          layout,
+          entry,
+          pixelX + entry.x - offX,
+          pixelY + entry.y - offY);
+      }
+      
+      penX += entry.advance;
+    }
+    
+    return true;
+  }
+  
+  /**
+   * Adds the quad of {@code entry} at ({@code x0}, {@code y0}),
+   * clipped to {@link #clip}.
+   */
+  private void add(GlyphLayout layout, Entry entry, int x0, int y0) {
+    int x1 = x0 + entry.width;
+    int y1 = y0 + entry.height;
+    
+    int clipX0 = Math.max(x0, clip[0]);
+    int clipY0 = Math.max(y0, clip[1]);
+    int clipX1 = Math.min(x1, clip[2]);
+    int clipY1 = Math.min(y1, clip[3]);
+    
+    if ((clipX0 >= clipX1) || (clipY0 >= clipY1)) {
+      return;
+    }
+    
+    int atlasX = entry.atlasX - x0;
+    int atlasY = entry.atlasY - y0;
+    
+    st[0] = (float) (atlasX + clipX0) / size;
+    st[1] = (float) (atlasY + clipY0) / size;
+    st[2] = (float) (atlasX + clipX1) / size;
+    st[3] = (float) (atlasY + clipY1) / size;
+    
+    layout.add(clipX0, clipY0, clipX1, clipY1, st);
+  }
+  
+  private Entry getEntry(
+      TextImagizer imagizer,
+      char         ch,
+      float        subX,
+      float        subY) {
+    Map<Key, Entry> entries = entryMaps.get(imagizer);
+    
+    if (entries == null) {
+      entries = new HashMap<>();
+      
+      entryMaps.put(imagizer, entries);
+    }
+    
+    Key key = new Key(ch, subX, subY);
+    
+    // Glyphs that did not fit are kept as null entries, so that they
+    // are not rasterized again.
+    
+    if (entries.containsKey(key)) {
+      return entries.get(key);
+    }
+    
+    Entry entry = createEntry(imagizer.getGlyph(ch, subX, subY));
+    
+    entries.put(key, entry);
+    
+    return entry;
+  }
+  
+  private Entry createEntry(Glyph glyph) {
+    if (glyph.width == 0) {
+      return new Entry(glyph, 0, 0);
+    }
+    
+    if (!packer.add(glyph.width, glyph.height, pos)) {
+      return null;
+    }
+    
+    // Copy the glyph into the atlas.
+    
+    for (int y = 0; y < glyph.height; y++) {
+      buf.position((pos[1] + y) * size + pos[0]);
+      buf.put(glyph.alpha, y * glyph.width, glyph.width);
+    }
+    
+    buf.clear();
+    
+    dirtyY0 = Math.min(dirtyY0, pos[1]);
+    dirtyY1 = Math.max(dirtyY1, pos[1] + glyph.height);
+    
+    return new Entry(glyph, pos[0], pos[1]);
+  }
+  
+  private static final class Entry {
+    public final int   width;
+    public final int   height;
+    public final int   x;
+    public final int   y;
+    public final float advance;
+    public final int   atlasX;
+    public final int   atlasY;
+    
+    public Entry(Glyph glyph, int atlasX, int atlasY) {
+      this.atlasX = atlasX;
+      this.atlasY = atlasY;
+      
+      width   = glyph.width;
+      height  = glyph.height;
+      x       = glyph.x;
+      y       = glyph.y;
+      advance = glyph.advance;
+    }
+  }
+  
+  private static final class Key {
+    public final char  ch;
+    public final float subX;
+    public final float subY;
+    
+    public Key(char ch, float subX, float subY) {
+      this.ch   = ch;
+      this.subX = subX;
+      this.subY = subY;
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      
+      Key key = (Key) obj;
+      
+      return (ch == key.ch)
+        && (Float.compare(subX, key.subX) == 0)
+        && (Float.compare(subY, key.subY) == 0);
+    }
+    
+    @Override
+    public int hashCode() {
+      int hash = ch;
+      
+      hash = hash * 31 + Float.floatToIntBits(subX);
+      hash = hash * 31 + Float.floatToIntBits(subY);
+      
+      return hash;
+    }
+  }
+}
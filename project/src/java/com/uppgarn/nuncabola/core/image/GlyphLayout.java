@@ -0,0 +1,97 @@
+/*
+ * GlyphLayout.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.image;
+
+import java.util.*;
+
+/**
+ * Quads of a string laid out by a {@link GlyphAtlas}.
+ * <p>
+ * Positions are in pixels relative to the top left corner of the
+ * text, with y growing downwards. Texture coordinates are relative
+ * to the atlas, with t growing downwards as well.
+ */
+public final class GlyphLayout {
+  private int     width;
+  private int     height;
+  private int     quadCount;
+  private int  [] coords;
+  private float[] texCoords;
+  
+  public GlyphLayout() {
+    width     = 0;
+    height    = 0;
+    quadCount = 0;
+    coords    = new int  [4 * 16];
+    texCoords = new float[4 * 16];
+  }
+  
+  void clear(Dimension size) {
+    width     = size.getWidth ();
+    height    = size.getHeight();
+    quadCount = 0;
+  }
+  
+  void add(int x0, int y0, int x1, int y1, float[] st) {
+    int off = quadCount * 4;
+    
+    if (off == coords.length) {
+      coords    = Arrays.copyOf(coords,    off * 2);
+      texCoords = Arrays.copyOf(texCoords, off * 2);
+    }
+    
+    coords[off + 0] = x0;
+    coords[off + 1] = y0;
+    coords[off + 2] = x1;
+    coords[off + 3] = y1;
+    
+    System.arraycopy(st, 0, texCoords, off, 4);
+    
+    quadCount++;
+  }
+  
+  /**
+   * Returns the size of the text, as measured by
+   * {@link TextImagizer#getSize}.
+   */
+  public int getWidth() {
+    return width;
+  }
+  
+  public int getHeight() {
+    return height;
+  }
+  
+  public int getQuadCount() {
+    return quadCount;
+  }
+  
+  /**
+   * Returns x0, y0, x1 and y1 of each quad.
+   */
+  public int[] getCoordinates() {
+    return coords;
+  }
+  
+  /**
+   * Returns s0, t0, s1 and t1 of each quad.
+   */
+  public float[] getTextureCoordinates() {
+    return texCoords;
+  }
+}
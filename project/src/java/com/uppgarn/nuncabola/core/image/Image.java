@@ -20,6 +20,7 @@ package com.uppgarn.nuncabola.core.image;
 import com.uppgarn.nuncabola.core.util.*;
 
 import java.nio.*;
+import java.util.*;
 
 public final class Image {
   private final ByteBuffer buf;
@@ -50,158 +51,170 @@ public final class Image {
     return alpha;
   }
   
-  public Image scaledDown(int factor) {
+  public Image scaledDown(final int factor) {
     assert factor >= 1;
     
-    int newWidth  = width  / factor;
-    int newHeight = height / factor;
-    int bytes     = alpha ? 4 : 3;
+    final int newWidth  = width  / factor;
+    final int newHeight = height / factor;
+    final int bytes     = alpha ? 4 : 3;
     
     // Create byte buffer.
     
-    ByteBuffer newBuf = ByteBuffer.allocateDirect(newWidth * newHeight * bytes);
+    final ByteBuffer newBuf =
+      ByteBuffer.allocateDirect(newWidth * newHeight * bytes);
+    
+    // Iterate each destination row, reading the source rows it
+    // covers at once.
+    
+    final int lineLen    = width    * bytes;
+    final int newLineLen = newWidth * bytes;
+    final int xyFactor   = factor * factor;
     
-    // Iterate each component of each destination pixel.
+    // Destination component of each source byte in a line.
     
-    int y0Inc    = (width - newWidth) * factor * bytes;
-    int x0Inc    = (factor - 1)                * bytes;
-    int y1Inc    = (width - factor)            * bytes;
-    int xyFactor = factor * factor;
+    final int[] comps = new int[newLineLen * factor];
+    
+    for (int idx = 0; idx < comps.length; idx++) {
+      comps[idx] = idx / (bytes * factor) * bytes + idx % bytes;
+    }
     
-    for (int y0 = newHeight, off = 0; y0 != 0; y0--, off += y0Inc) {
-      for (int x0 = newWidth; x0 != 0; x0--, off += x0Inc) {
-        for (int b = bytes; b != 0; b--, off++) {
-          // Average the source pixel block for each.
+    RowSplitter.run(newHeight, lineLen * factor, new RowSplitter.Rows() {
+      @Override
+      public void run(int y0Start, int y0End) {
+        ByteBuffer src    = buf   .duplicate();
+        ByteBuffer dst    = newBuf.duplicate();
+        byte[]     lines  = new byte[lineLen * factor];
+        int[]      values = new int [newLineLen];
+        byte[]     line   = new byte[newLineLen];
+        
+        for (int y0 = y0Start; y0 < y0End; y0++) {
+          src.position(y0 * lines.length);
+          src.get(lines);
+          
+          // Sum the source pixel block of each component.
           
-          int value = 0;
+          Arrays.fill(values, 0);
           
-          for (int y1 = factor, idx = off; y1 != 0; y1--, idx += y1Inc) {
-            for (int x1 = factor; x1 != 0; x1--, idx += bytes) {
-              value += buf.get(idx) & 0xFF;
+          for (int y1 = 0; y1 < factor; y1++) {
+            for (int idx = 0, off = y1 * lineLen; idx < comps.length; idx++) {
+              values[comps[idx]] += lines[off + idx] & 0xFF;
             }
           }
           
-          newBuf.put((byte) (value / xyFactor));
+          // Average.
+          
+          for (int idx = 0; idx < newLineLen; idx++) {
+            line[idx] = (byte) (values[idx] / xyFactor);
+          }
+          
+          dst.position(y0 * newLineLen);
+          dst.put(line);
         }
       }
-    }
+    });
     
     return new Image(newBuf, newWidth, newHeight, alpha);
   }
   
-  public Image scaledDown(int newWidth, int newHeight) {
+  public Image scaledDown(final int newWidth, int newHeight) {
     assert newWidth  <= width;
     assert newHeight <= height;
     
-    int bytes = alpha ? 4 : 3;
+    final int bytes = alpha ? 4 : 3;
     
     // Create byte buffer.
     
-    ByteBuffer newBuf = ByteBuffer.allocateDirect(newWidth * newHeight * bytes);
+    final ByteBuffer newBuf =
+      ByteBuffer.allocateDirect(newWidth * newHeight * bytes);
     
     // Calculate indices, weights and factors for both axes.
     
-    int  [] xIndices0 = null, yIndices0 = null;
-    int  [] xIndices1 = null, yIndices1 = null;
-    float[] xWeights0 = null, yWeights0 = null;
-    float[] xWeights1 = null, yWeights1 = null;
-    float[] xFactors  = null, yFactors  = null;
+    final Axis xAxis = new Axis(width,  newWidth);
+    final Axis yAxis = new Axis(height, newHeight);
     
-    for (int axis = 0; axis < 2; axis++) {
-      int size;
-      int newSize;
-      
-      if (axis == 0) {
-        size    = width;
-        newSize = newWidth;
-      } else {
-        size    = height;
-        newSize = newHeight;
-      }
-      
-      int  [] indices0 = new int  [newSize];
-      int  [] indices1 = new int  [newSize];
-      float[] weights0 = new float[newSize];
-      float[] weights1 = new float[newSize];
-      float[] factors  = new float[newSize];
-      
-      float factor = (float) size / newSize;
-      float fIdx0  = 0.0f;
-      
-      for (int idx = 0; idx < newSize; idx++) {
-        float fIdx1 = Util.snapToInt((idx + 1) * factor, 0.01f);
-        int   iIdx0 = (int) fIdx0;
-        int   iIdx1 = (int) fIdx1;
-        
-        indices0[idx] = iIdx0;
-        indices1[idx] = (iIdx1 < fIdx1) ? iIdx1 : iIdx1 - 1;
-        weights0[idx] = 1 - (fIdx0 - indices0[idx]);
-        weights1[idx] = fIdx1 - indices1[idx];
-        factors [idx] = weights0[idx]
-                      + ((indices0[idx] != indices1[idx]) ? weights1[idx] : 0)
-                      + Math.max(indices1[idx] - indices0[idx] - 1, 0);
-        
-        fIdx0 = fIdx1;
-      }
-      
-      if (axis == 0) {
-        xIndices0 = indices0;
-        xIndices1 = indices1;
-        xWeights0 = weights0;
-        xWeights1 = weights1;
-        xFactors  = factors;
-      } else {
-        yIndices0 = indices0;
-        yIndices1 = indices1;
-        yWeights0 = weights0;
-        yWeights1 = weights1;
-        yFactors  = factors;
-      }
-    }
+    // Iterate each destination row, reading the source rows it
+    // covers at once.
     
-    // Iterate each component of each destination pixel.
+    final int lineLen    = width    * bytes;
+    final int newLineLen = newWidth * bytes;
     
-    for (int y0 = 0; y0 < newHeight; y0++) {
-      for (int x0 = 0; x0 < newWidth; x0++) {
-        for (int b = 0; b < bytes; b++) {
-          // Average the source pixel block for each.
+    RowSplitter.run(newHeight, lineLen, new RowSplitter.Rows() {
+      @Override
+      public void run(int y0Start, int y0End) {
+        ByteBuffer src     = buf   .duplicate();
+        ByteBuffer dst     = newBuf.duplicate();
+        byte[]     lines   = new byte[0];
+        byte[]     line    = new byte[newLineLen];
+        float[]    xValues = new float[bytes];
+        float[]    yValues = new float[bytes];
+        
+        for (int y0 = y0Start; y0 < y0End; y0++) {
+          int yIdx0 = yAxis.indices0[y0];
+          int yIdx1 = yAxis.indices1[y0];
+          
+          int len = (yIdx1 - yIdx0 + 1) * lineLen;
           
-          float yValue = 0.0f;
+          if (lines.length < len) {
+            lines = new byte[len];
+          }
           
-          for (int y1 = yIndices0[y0]; y1 <= yIndices1[y0]; y1++) {
-            float xValue = 0.0f;
+          src.position(yIdx0 * lineLen);
+          src.get(lines, 0, len);
+          
+          for (int x0 = 0, off = 0; x0 < newWidth; x0++, off += bytes) {
+            int xIdx0 = xAxis.indices0[x0];
+            int xIdx1 = xAxis.indices1[x0];
+            
+            // Average the source pixel block for each component.
             
-            for (int x1 = xIndices0[x0], idx = (y1 * width + x1) * bytes + b;
-                x1 <= xIndices1[x0];
-                x1++, idx += bytes) {
-              int value = buf.get(idx) & 0xFF;
+            Arrays.fill(yValues, 0.0f);
+            
+            for (int y1 = yIdx0; y1 <= yIdx1; y1++) {
+              Arrays.fill(xValues, 0.0f);
+              
+              for (int x1 = xIdx0, idx = ((y1 - yIdx0) * width + x1) * bytes;
+                  x1 <= xIdx1;
+                  x1++) {
+                float xWeight;
+                
+                if (x1 == xIdx0) {
+                  xWeight = xAxis.weights0[x0];
+                } else if (x1 == xIdx1) {
+                  xWeight = xAxis.weights1[x0];
+                } else {
+                  xWeight = 1.0f;
+                }
+                
+                for (int b = 0; b < bytes; b++, idx++) {
+                  xValues[b] += (lines[idx] & 0xFF) * xWeight;
+                }
+              }
               
-              if (x1 == xIndices0[x0]) {
-                xValue += value * xWeights0[x0];
-              } else if (x1 == xIndices1[x0]) {
-                xValue += value * xWeights1[x0];
+              float yWeight;
+              
+              if (y1 == yIdx0) {
+                yWeight = yAxis.weights0[y0];
+              } else if (y1 == yIdx1) {
+                yWeight = yAxis.weights1[y0];
               } else {
-                xValue += value;
+                yWeight = 1.0f;
+              }
+              
+              for (int b = 0; b < bytes; b++) {
+                yValues[b] += xValues[b] / xAxis.factors[x0] * yWeight;
               }
             }
             
-            xValue /= xFactors[x0];
-            
-            if (y1 == yIndices0[y0]) {
-              yValue += xValue * yWeights0[y0];
-            } else if (y1 == yIndices1[y0]) {
-              yValue += xValue * yWeights1[y0];
-            } else {
-              yValue += xValue;
+            for (int b = 0; b < bytes; b++) {
+              line[off + b] = (byte) (yValues[b] / yAxis.factors[y0] + 0.5f);
             }
           }
           
-          yValue /= yFactors[y0];
-          
-          newBuf.put((byte) (yValue + 0.5f));
+          dst.position(y0 * newLineLen);
+          dst.put(line);
         }
       }
-    }
+    });
     
     return new Image(newBuf, newWidth, newHeight, alpha);
   }
@@ -234,4 +247,39 @@ public final class Image {
     
     return new Image(newBuf, newWidth, newHeight, alpha);
   }
+  
+  private static final class Axis {
+    public final int  [] indices0;
+    public final int  [] indices1;
+    public final float[] weights0;
+    public final float[] weights1;
+    public final float[] factors;
+    
+    public Axis(int size, int newSize) {
+      indices0 = new int  [newSize];
+      indices1 = new int  [newSize];
+      weights0 = new float[newSize];
+      weights1 = new float[newSize];
+      factors  = new float[newSize];
+      
+      float factor = (float) size / newSize;
+      float fIdx0  = 0.0f;
+      
+      for (int idx = 0; idx < newSize; idx++) {
+        float fIdx1 = Util.snapToInt((idx + 1) * factor, 0.01f);
+        int   iIdx0 = (int) fIdx0;
+        int   iIdx1 = (int) fIdx1;
+        
+        indices0[idx] = iIdx0;
+        indices1[idx] = (iIdx1 < fIdx1) ? iIdx1 : iIdx1 - 1;
+        weights0[idx] = 1 - (fIdx0 - indices0[idx]);
+        weights1[idx] = fIdx1 - indices1[idx];
+        factors [idx] = weights0[idx]
+                      + ((indices0[idx] != indices1[idx]) ? weights1[idx] : 0)
+                      + Math.max(indices1[idx] - indices0[idx] - 1, 0);
+        
+        fIdx0 = fIdx1;
+      }
+    }
+  }
 }
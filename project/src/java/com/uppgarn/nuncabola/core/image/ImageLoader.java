@@ -26,6 +26,13 @@ import java.io.*;
 import java.nio.file.*;
 
 public final class ImageLoader {
+  /**
+   * Converts a decoded image.
+   */
+  public static Image load(BufferedImage bufImg, boolean topDown) {
+    return BufferedImageTool.getImage(bufImg, topDown);
+  }
+  
   public static Image load(Path file, boolean topDown) throws IOException {
     BufferedImage bufImg = ImageIO.read(file.toFile());
     
@@ -0,0 +1,90 @@
+/*
+ * RowSplitter.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.image;
+
+import java.util.concurrent.*;
+
+/**
+ * Splits the rows of an image operation across the common
+ * fork-join pool.
+ * <p>
+ * Small images are processed on the calling thread, where the
+ * overhead of forking would outweigh the work.
+ */
+final class RowSplitter {
+  /**
+   * Minimum number of bytes a forked task processes.
+   */
+  private static final int MIN_TASK_BYTES = 1 << 18;
+  
+  /**
+   * Runs {@code rows} on the rows 0 to {@code rowCount},
+   * each of which spans {@code rowBytes} bytes.
+   */
+  public static void run(int rowCount, int rowBytes, Rows rows) {
+    int minRowCount = Math.max(MIN_TASK_BYTES / Math.max(rowBytes, 1), 1);
+    
+    if ((rowCount <= minRowCount)
+        || (ForkJoinPool.getCommonPoolParallelism() <= 1)) {
+      rows.run(0, rowCount);
+    } else {
+      ForkJoinPool.commonPool().invoke(
+        new Task(rows, 0, rowCount, minRowCount));
+    }
+  }
+  
+  private static final class Task extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    
+    private final Rows rows;
+    private final int  y0;
+    private final int  y1;
+    private final int  minRowCount;
+    
+    public Task(Rows rows, int y0, int y1, int minRowCount) {
+      this.rows        = rows;
+      this.y0          = y0;
+      this.y1          = y1;
+      this.minRowCount = minRowCount;
+    }
+    
+    @Override
+    protected void compute() {
+      if (y1 - y0 <= minRowCount) {
+        rows.run(y0, y1);
+      } else {
+        int y = (y0 + y1) >>> 1;
+        
+        invokeAll(
+          new Task(rows, y0, y,  minRowCount),
+          new Task(rows, y,  y1, minRowCount));
+      }
+    }
+  }
+  
+  public interface Rows {
+    /**
+     * Processes the rows {@code y0} (inclusive) to {@code y1}
+     * (exclusive). May be called concurrently on disjoint ranges.
+     */
+    void run(int y0, int y1);
+  }
+  
+  private RowSplitter() {
+  }
+}
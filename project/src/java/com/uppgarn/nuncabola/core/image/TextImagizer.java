@@ -28,6 +28,12 @@ import java.awt.image.*;
 import java.nio.*;
 
 public final class TextImagizer {
+  /**
+   * Size in pixels above which Java2D draws text as the outline of
+   * the whole string rather than glyph by glyph.
+   */
+  private static final float OUTLINE_SIZE = 100.0f;
+  
   private final Font font;
   
   private FontRenderContext renderContext;
@@ -133,15 +139,27 @@ public final class TextImagizer {
     g.setFont (font);
     g.setColor(Color.WHITE);
     
-    float x = (float) ((width  - bounds.getWidth ()) / 2 + bounds.getX());
-    float y = (float) ((height - bounds.getHeight()) / 2 - bounds.getY());
+    Point2D.Float origin = getOrigin(bounds, width, height);
     
-    g.drawString(str, x, y);
+    g.drawString(str, origin.x, origin.y);
     g.dispose();
     
     return bufImg;
   }
   
+  /**
+   * Returns the pen position at which text with {@code bounds} is
+   * drawn centered into an image of the given size.
+   */
+  private static Point2D.Float getOrigin(
+      Rectangle2D bounds,
+      int         width,
+      int         height) {
+    return new Point2D.Float(
+      (float) ((width  - bounds.getWidth ()) / 2 + bounds.getX()),
+      (float) ((height - bounds.getHeight()) / 2 - bounds.getY()));
+  }
+  
   private Image getImage(BufferedImage bufImg) {
     DataBuffer dataBuf = bufImg.getRaster().getDataBuffer();
     byte[]     data    = ((DataBufferByte) dataBuf).getData();
@@ -179,6 +197,133 @@ public final class TextImagizer {
     return getImage(bufImg);
   }
   
+  /**
+   * Returns whether {@link #getImage} draws strings glyph by glyph,
+   * so that glyphs drawn separately add up to the same image.
+   */
+  public boolean drawsGlyphs() {
+    return font.getSize2D() <= OUTLINE_SIZE;
+  }
+  
+  /**
+   * Returns the pen position at the start of {@code str} in the
+   * image of {@link #getImage}. Returns {@code null} if there is no
+   * image.
+   */
+  public Point2D.Float getOrigin(String str) {
+    if (str.isEmpty()) {
+      return null;
+    }
+    
+    Rectangle2D bounds = getBounds(str);
+    
+    int width  = (int) Math.round(bounds.getWidth ());
+    int height = (int) Math.round(bounds.getHeight());
+    
+    if ((width == 0) || (height == 0)) {
+      return null;
+    }
+    
+    return getOrigin(
+      bounds,
+      Util.ceilPowerOf2(width),
+      Util.ceilPowerOf2(height));
+  }
+  
+  /**
+   * Rasterizes {@code ch} the way {@link #getImage} draws it with
+   * the pen at ({@code subX}, {@code subY}), a position within the
+   * first pixel. Offsets of the glyph are relative to that pixel.
+   */
+  public Glyph getGlyph(char ch, float subX, float subY) {
+    String str = String.valueOf(ch);
+    
+    float advance = (float) getBounds(str).getWidth();
+    
+    // Determine the pixels the glyph covers, with some room in case
+    // the pixel bounds are off.
+    
+    Rectangle bounds = font.createGlyphVector(renderContext, str)
+      .getPixelBounds(renderContext, subX, subY);
+    
+    if (bounds.isEmpty()) {
+      return new Glyph(new byte[0], 0, 0, 0, 0, advance);
+    }
+    
+    int x0     = bounds.x - 2;
+    int y0     = bounds.y - 2;
+    int width  = bounds.width  + 4;
+    int height = bounds.height + 4;
+    
+    // Create buffered image.
+    
+    BufferedImage bufImg = new BufferedImage(
+      width,
+      height,
+      BufferedImage.TYPE_4BYTE_ABGR);
+    
+    // Draw glyph.
+    
+    Graphics2D g = bufImg.createGraphics();
+    
+    g.setRenderingHint(
+      RenderingHints.KEY_TEXT_ANTIALIASING,
+      RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+    g.setFont (font);
+    g.setColor(Color.WHITE);
+    
+    g.drawString(str, subX - x0, subY - y0);
+    g.dispose();
+    
+    // Find the covered pixels.
+    
+    DataBuffer dataBuf = bufImg.getRaster().getDataBuffer();
+    byte[]     data    = ((DataBufferByte) dataBuf).getData();
+    
+    int minX = width;
+    int minY = height;
+    int maxX = -1;
+    int maxY = -1;
+    
+    for (int y = 0, idx = 0; y < height; y++) {
+      for (int x = 0; x < width; x++, idx += 4) {
+        if (data[idx] != 0) {
+          minX = Math.min(minX, x);
+          minY = Math.min(minY, y);
+          maxX = Math.max(maxX, x);
+          maxY = Math.max(maxY, y);
+        }
+      }
+    }
+    
+    if (maxX == -1) {
+      return new Glyph(new byte[0], 0, 0, 0, 0, advance);
+    }
+    
+    // Keep the alpha channel of the covered pixels only, with
+    // a transparent margin to keep neighbors apart when filtering.
+    
+    int    alphaWidth  = maxX - minX + 3;
+    int    alphaHeight = maxY - minY + 3;
+    byte[] alpha       = new byte[alphaWidth * alphaHeight];
+    
+    for (int y = minY; y <= maxY; y++) {
+      for (int x = minX, idx = (y - minY + 1) * alphaWidth + 1;
+          x <= maxX;
+          x++, idx++) {
+        alpha[idx] = data[(y * width + x) * 4];
+      }
+    }
+    
+    return new Glyph(
+      alpha,
+      alphaWidth,
+      alphaHeight,
+      x0 + minX - 1,
+      y0 + minY - 1,
+      advance);
+  }
+  
   public boolean canDisplay(char ch) {
     return font.canDisplay(ch);
   }
@@ -0,0 +1,269 @@
+/*
+ * LevelIndex.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.level;
+
+import com.uppgarn.nuncabola.core.folder.*;
+import com.uppgarn.nuncabola.core.solid.*;
+import com.uppgarn.nuncabola.core.util.*;
+
+import com.uppgarn.codelibf.io.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Index of level set and level metadata by data path.
+ * <p>
+ * Each entry carries a stamp of the file it was read from, and is
+ * read again once the stamp changes. Level sets are kept as the
+ * contents of their files, so that every lookup yields a new
+ * {@link LevelSet}; levels are kept as the metas of their solids.
+ * Sources without a file or zip entry behind them are not indexed.
+ * <p>
+ * An index is safe for use by multiple threads. It can be stored with
+ * {@link LevelIndexWriteTool} and restored with
+ * {@link LevelIndexReadTool}.
+ */
+public final class LevelIndex {
+  private final Map<String, Entry<byte[]>> sets;
+  private final Map<String, Entry<Meta>>   metas;
+  
+  private boolean dirty;
+  
+  private long hits;
+  private long misses;
+  
+  public LevelIndex() {
+    sets  = new HashMap<>();
+    metas = new HashMap<>();
+    
+    dirty = false;
+    
+    hits   = 0;
+    misses = 0;
+  }
+  
+  private static <T> List<T> invokeAll(
+      List<Callable<T>> tasks,
+      int               parallelism) {
+    List<T> results = TaskTool.invokeAll(tasks, parallelism);
+    
+    if (results == null) {
+      return Collections.nCopies(tasks.size(), null);
+    }
+    
+    return results;
+  }
+  
+  private synchronized <T> T get(
+      Map<String, Entry<T>> entries,
+      String                path,
+      String                stamp) {
+    Entry<T> entry = entries.get(path);
+    
+    if ((entry != null) && entry.stamp.equals(stamp)) {
+      hits++;
+      
+      return entry.value;
+    }
+    
+    misses++;
+    
+    return null;
+  }
+  
+  private synchronized <T> void put(
+      Map<String, Entry<T>> entries,
+      String                path,
+      String                stamp,
+      T                     value) {
+    entries.put(path, new Entry<>(stamp, value));
+    
+    dirty = true;
+  }
+  
+  /**
+   * Returns the level set at {@code path}, reading its file from
+   * {@code src} unless it is indexed and unchanged.
+   */
+  public LevelSet getLevelSet(String path, Source src) throws IOException {
+    String stamp = SourceStampTool.getStamp(src);
+    
+    if (stamp == null) {
+      return LevelSetReadTool.readLevelSet(src);
+    }
+    
+    byte[] data = get(sets, path, stamp);
+    
+    if (data == null) {
+      try (InputStream in = src.newInputStream()) {
+        data = InputStreamTool.readAllBytes(in, SourceStampTool.getSize(src));
+      }
+      
+      if (data.length <= LevelIndexIOTool.MAX_DATA_SIZE) {
+        put(sets, path, stamp, data);
+      }
+    }
+    
+    return LevelSetReadTool.readLevelSet(new ByteArrayInputStream(data));
+  }
+  
+  /**
+   * Returns the meta of the solid at {@code path}, reading it from
+   * {@code src} unless it is indexed and unchanged.
+   */
+  public Meta getSolidMeta(String path, Source src) throws IOException {
+    String stamp = SourceStampTool.getStamp(src);
+    
+    if (stamp == null) {
+      return SolidReadTool.readSolidMeta(src);
+    }
+    
+    Meta meta = get(metas, path, stamp);
+    
+    if (meta == null) {
+      meta = SolidReadTool.readSolidMeta(src);
+      
+      put(metas, path, stamp, meta);
+    }
+    
+    return meta;
+  }
+  
+  /**
+   * Returns the level sets at {@code paths} in {@code folder}, with
+   * {@code null} for those that cannot be read. Stamps are checked
+   * and changed files read on {@code parallelism} threads.
+   */
+  public List<LevelSet> getLevelSets(
+      final Folder folder,
+      List<String> paths,
+      int          parallelism) {
+    List<Callable<LevelSet>> tasks = new ArrayList<>(paths.size());
+    
+    for (final String path: paths) {
+      tasks.add(new Callable<LevelSet>() {
+        @Override
+        public LevelSet call() {
+          try {
+            return getLevelSet(path, folder.getSource(path));
+          } catch (IOException ex) {
+            return null;
+          }
+        }
+      });
+    }
+    
+    return invokeAll(tasks, parallelism);
+  }
+  
+  /**
+   * Returns the metas of the solids at {@code paths} in
+   * {@code folder}, with {@code null} for those that cannot be read.
+   * Stamps are checked and changed files read on {@code parallelism}
+   * threads.
+   */
+  public List<Meta> getSolidMetas(
+      final Folder folder,
+      List<String> paths,
+      int          parallelism) {
+    List<Callable<Meta>> tasks = new ArrayList<>(paths.size());
+    
+    for (final String path: paths) {
+      tasks.add(new Callable<Meta>() {
+        @Override
+        public Meta call() {
+          try {
+            return getSolidMeta(path, folder.getSource(path));
+          } catch (IOException ex) {
+            return null;
+          }
+        }
+      });
+    }
+    
+    return invokeAll(tasks, parallelism);
+  }
+  
+  /**
+   * Removes the entries of level sets not at {@code setPaths} and of
+   * solids not at {@code solidPaths}, such as those of deleted or
+   * renamed files.
+   */
+  public synchronized void retain(
+      Collection<String> setPaths,
+      Collection<String> solidPaths) {
+    boolean setsChanged  = sets .keySet().retainAll(setPaths);
+    boolean metasChanged = metas.keySet().retainAll(solidPaths);
+    
+    if (setsChanged || metasChanged) {
+      dirty = true;
+    }
+  }
+  
+  synchronized void restoreLevelSet(String path, String stamp, byte[] data) {
+    sets.put(path, new Entry<>(stamp, data));
+  }
+  
+  synchronized void restoreSolidMeta(String path, String stamp, Meta meta) {
+    metas.put(path, new Entry<>(stamp, meta));
+  }
+  
+  synchronized Map<String, Entry<byte[]>> getLevelSetEntries() {
+    return new TreeMap<>(sets);
+  }
+  
+  synchronized Map<String, Entry<Meta>> getSolidMetaEntries() {
+    return new TreeMap<>(metas);
+  }
+  
+  /**
+   * Returns whether entries have been added, replaced or removed
+   * since the index was created or last marked clean.
+   */
+  public synchronized boolean isDirty() {
+    return dirty;
+  }
+  
+  public synchronized void markClean() {
+    dirty = false;
+  }
+  
+  public synchronized int getSize() {
+    return sets.size() + metas.size();
+  }
+  
+  public synchronized long getHitCount() {
+    return hits;
+  }
+  
+  public synchronized long getMissCount() {
+    return misses;
+  }
+  
+  static final class Entry<T> {
+    public final String stamp;
+    public final T      value;
+    
+    public Entry(String stamp, T value) {
+      this.stamp = stamp;
+      this.value = value;
+    }
+  }
+}
@@ -0,0 +1,31 @@
+/*
+ * LevelIndexIOTool.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.level;
+
+final class LevelIndexIOTool {
+  public static final int MAGIC   = 0x58494C4E;
+  public static final int VERSION = 1;
+  
+  /**
+   * Maximum size of an indexed level set file.
+   */
+  public static final int MAX_DATA_SIZE = 1 << 20;
+  
+  private LevelIndexIOTool() {
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * LevelIndexReadTool.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.level;
+
+import com.uppgarn.nuncabola.core.solid.*;
+import com.uppgarn.nuncabola.core.util.*;
+
+import static com.uppgarn.nuncabola.core.binary.BinaryReadTool.*;
+import static com.uppgarn.nuncabola.core.level.LevelIndexIOTool.*;
+
+import com.uppgarn.codelibf.io.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.Path;
+
+public final class LevelIndexReadTool {
+  private static int readCount(InputStream in) throws IOException {
+    int count = readInt(in);
+    
+    if (count < 0) {
+      throw new InvalidDataException();
+    }
+    
+    return count;
+  }
+  
+  private static void readLevelSets(InputStream in, LevelIndex index)
+      throws IOException {
+    for (int count = readCount(in); count > 0; count--) {
+      String path  = readString(in);
+      String stamp = readString(in);
+      int    len   = readCount(in);
+      
+      if (len > MAX_DATA_SIZE) {
+        throw new InvalidDataException();
+      }
+      
+      byte[] data = InputStreamTool.readBytes(in, len);
+      
+      index.restoreLevelSet(path, stamp, data);
+    }
+  }
+  
+  private static void readSolidMetas(InputStream in, LevelIndex index)
+      throws IOException {
+    for (int count = readCount(in); count > 0; count--) {
+      String path  = readString(in);
+      String stamp = readString(in);
+      
+      int  pairCount = readCount(in);
+      Meta meta      = new Meta(Math.min(pairCount, 64));
+      
+      for (int idx = 0; idx < pairCount; idx++) {
+        String key = readString(in);
+        
+        meta.put(key, readString(in));
+      }
+      
+      index.restoreSolidMeta(path, stamp, meta);
+    }
+  }
+  
+  public static LevelIndex readLevelIndex(InputStream inStream)
+      throws IOException {
+    InputStream in = new BufferedInputStream(inStream);
+    
+    if ((readInt(in) != MAGIC) || (readInt(in) != VERSION)) {
+      throw new InvalidDataException();
+    }
+    
+    LevelIndex index = new LevelIndex();
+    
+    readLevelSets (in, index);
+    readSolidMetas(in, index);
+    
+    return index;
+  }
+  
+  public static LevelIndex readLevelIndex(Path file) throws IOException {
+    try (InputStream in = Files.newInputStream(file)) {
+      return readLevelIndex(in);
+    }
+  }
+  
+  private LevelIndexReadTool() {
+  }
+}
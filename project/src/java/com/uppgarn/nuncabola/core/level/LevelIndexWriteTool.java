@@ -0,0 +1,91 @@
+/*
+ * LevelIndexWriteTool.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.level;
+
+import com.uppgarn.nuncabola.core.solid.*;
+
+import static com.uppgarn.nuncabola.core.binary.BinaryWriteTool.*;
+import static com.uppgarn.nuncabola.core.level.LevelIndexIOTool.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.Path;
+import java.util.*;
+
+public final class LevelIndexWriteTool {
+  private static void writeLevelSets(
+      OutputStream                           out,
+      Map<String, LevelIndex.Entry<byte[]>> entries) throws IOException {
+    writeInt(out, entries.size());
+    
+    for (Map.Entry<String, LevelIndex.Entry<byte[]>> entry:
+        entries.entrySet()) {
+      writeString(out, entry.getKey());
+      writeString(out, entry.getValue().stamp);
+      
+      byte[] data = entry.getValue().value;
+      
+      writeInt(out, data.length);
+      out.write(data);
+    }
+  }
+  
+  private static void writeSolidMetas(
+      OutputStream                         out,
+      Map<String, LevelIndex.Entry<Meta>> entries) throws IOException {
+    writeInt(out, entries.size());
+    
+    for (Map.Entry<String, LevelIndex.Entry<Meta>> entry:
+        entries.entrySet()) {
+      writeString(out, entry.getKey());
+      writeString(out, entry.getValue().stamp);
+      
+      Meta meta = entry.getValue().value;
+      
+      writeInt(out, meta.size());
+      
+      for (Map.Entry<String, String> pair: meta.entrySet()) {
+        writeString(out, pair.getKey());
+        writeString(out, pair.getValue());
+      }
+    }
+  }
+  
+  public static void writeLevelIndex(OutputStream outStream, LevelIndex index)
+      throws IOException {
+    OutputStream out = new BufferedOutputStream(outStream);
+    
+    writeInt(out, MAGIC);
+    writeInt(out, VERSION);
+    
+    writeLevelSets (out, index.getLevelSetEntries());
+    writeSolidMetas(out, index.getSolidMetaEntries());
+    
+    out.flush();
+  }
+  
+  public static void writeLevelIndex(Path file, LevelIndex index)
+      throws IOException {
+    try (OutputStream out = Files.newOutputStream(file)) {
+      writeLevelIndex(out, index);
+    }
+  }
+  
+  private LevelIndexWriteTool() {
+  }
+}
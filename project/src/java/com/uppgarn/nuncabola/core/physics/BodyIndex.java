@@ -0,0 +1,459 @@
+/*
+ * BodyIndex.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.physics;
+
+import com.uppgarn.nuncabola.core.solid.*;
+
+import java.util.*;
+
+/**
+ * Broad phase for {@link CollisionDetector}.
+ * <p>
+ * Every body gets a conservative world-space box: static bodies
+ * a fixed one, moving bodies one built from the path points their
+ * movers can reach. Static boxes are binned into a uniform grid
+ * on the x-z plane.
+ */
+final class BodyIndex {
+  /**
+   * Padding that absorbs rounding in the narrow phase.
+   */
+  private static final float MARGIN = 1.0E-2f;
+  
+  private static final int GRID_MIN_BODIES = 8;
+  private static final int GRID_MAX_SIZE   = 64;
+  
+  private static final int[] EMPTY = new int[0];
+  
+  private final Solid sol;
+  
+  /**
+   * Body-space bounds (min x, y, z, max x, y, z) per body.
+   */
+  private final float[] localBounds;
+  
+  /**
+   * Largest body-space vertex distance per body.
+   */
+  private final float[] radii;
+  
+  private final boolean[] bounded;
+  
+  /**
+   * Bounds of all path points reachable from each path.
+   */
+  private final float[] pathBounds;
+  
+  private final boolean[] pathsOriented;
+  
+  /**
+   * Moving and unbounded bodies, tested one by one.
+   */
+  private final int[] dynBodyIdxs;
+  
+  // Grid of static bodies.
+  
+  private int     gridSizeX;
+  private int     gridSizeZ;
+  private float   gridX0;
+  private float   gridZ0;
+  private float   cellSizeX;
+  private float   cellSizeZ;
+  private int[][] cells;
+  
+  private final int[] stamps;
+  
+  private int stamp;
+  
+  public BodyIndex(Solid sol) {
+    this.sol = sol;
+    
+    int bodyCount = sol.base.bodies.length;
+    
+    localBounds = new float  [bodyCount * 6];
+    radii       = new float  [bodyCount];
+    bounded     = new boolean[bodyCount];
+    
+    for (int idx = 0; idx < bodyCount; idx++) {
+      initBodyBounds(idx);
+    }
+    
+    int pathCount = sol.base.pathBases.length;
+    
+    pathBounds    = new float  [pathCount * 6];
+    pathsOriented = new boolean[pathCount];
+    
+    for (int idx = 0; idx < pathCount; idx++) {
+      initPathBounds(idx);
+    }
+    
+    List<Integer> statBodyIdxs = new ArrayList<>();
+    List<Integer> dynBodyIdxs  = new ArrayList<>();
+    
+    for (int idx = 0; idx < bodyCount; idx++) {
+      if (isStatic(sol.base.bodies[idx]) && bounded[idx]) {
+        statBodyIdxs.add(idx);
+      } else {
+        dynBodyIdxs.add(idx);
+      }
+    }
+    
+    if (statBodyIdxs.size() < GRID_MIN_BODIES) {
+      // Not worth a grid; test static bodies one by one.
+      
+      dynBodyIdxs.addAll(statBodyIdxs);
+      Collections.sort(dynBodyIdxs);
+      
+      statBodyIdxs.clear();
+    }
+    
+    this.dynBodyIdxs = toArray(dynBodyIdxs);
+    
+    initGrid(statBodyIdxs);
+    
+    stamps = new int[bodyCount];
+    stamp  = 0;
+  }
+  
+  private static boolean isStatic(Body body) {
+    return (body.mover0Idx < 0) && (body.mover1Idx < 0);
+  }
+  
+  private static int[] toArray(List<Integer> list) {
+    int[] array = new int[list.size()];
+    
+    for (int idx = 0; idx < array.length; idx++) {
+      array[idx] = list.get(idx);
+    }
+    
+    return array;
+  }
+  
+  private void initBodyBounds(int bodyIdx) {
+    Body body = sol.base.bodies[bodyIdx];
+    
+    float[] b = localBounds;
+    int     o = bodyIdx * 6;
+    
+    b[o + 0] = b[o + 1] = b[o + 2] = Float.POSITIVE_INFINITY;
+    b[o + 3] = b[o + 4] = b[o + 5] = Float.NEGATIVE_INFINITY;
+    
+    if ((body.nodeIdx >= 0) && !addNodeBounds(bodyIdx, body.nodeIdx)) {
+      bounded[bodyIdx] = false;
+      
+      return;
+    }
+    
+    bounded[bodyIdx] = true;
+    
+    if (b[o + 0] > b[o + 3]) {
+      // No vertices at all.
+      
+      for (int idx = 0; idx < 6; idx++) {
+        b[o + idx] = 0.0f;
+      }
+    }
+    
+    float r = 0.0f;
+    
+    for (int i = 0; i < 8; i++) {
+      float x = b[o + (((i & 1) == 0) ? 0 : 3)];
+      float y = b[o + (((i & 2) == 0) ? 1 : 4)];
+      float z = b[o + (((i & 4) == 0) ? 2 : 5)];
+      
+      r = Math.max(r, (float) Math.sqrt(x * x + y * y + z * z));
+    }
+    
+    radii[bodyIdx] = r;
+  }
+  
+  private boolean addNodeBounds(int bodyIdx, int nodeIdx) {
+    Node node = sol.base.nodes[nodeIdx];
+    
+    for (int idx = 0; idx < node.lumpCount; idx++) {
+      if (!addLumpBounds(bodyIdx, sol.base.lumps[node.lump0Idx + idx])) {
+        return false;
+      }
+    }
+    
+    return
+         ((node.node0Idx < 0) || addNodeBounds(bodyIdx, node.node0Idx))
+      && ((node.node1Idx < 0) || addNodeBounds(bodyIdx, node.node1Idx));
+  }
+  
+  private boolean addLumpBounds(int bodyIdx, Lump lump) {
+    if ((lump.flags & Lump.DETAIL) != 0) {
+      return true;
+    }
+    
+    if ((lump.vertCount == 0) && (lump.sideCount != 0)) {
+      // Sides without vertices cannot be bounded.
+      
+      return false;
+    }
+    
+    float[] b = localBounds;
+    int     o = bodyIdx * 6;
+    
+    for (int idx = 0; idx < lump.vertCount; idx++) {
+      Vertex vert = sol.base.verts[sol.base.indices[lump.vert0Idx + idx]];
+      
+      b[o + 0] = Math.min(b[o + 0], vert.p.x);
+      b[o + 1] = Math.min(b[o + 1], vert.p.y);
+      b[o + 2] = Math.min(b[o + 2], vert.p.z);
+      b[o + 3] = Math.max(b[o + 3], vert.p.x);
+      b[o + 4] = Math.max(b[o + 4], vert.p.y);
+      b[o + 5] = Math.max(b[o + 5], vert.p.z);
+    }
+    
+    return true;
+  }
+  
+  private void initPathBounds(int pathIdx) {
+    PathBase[] pathBases = sol.base.pathBases;
+    
+    float[] b = pathBounds;
+    int     o = pathIdx * 6;
+    
+    b[o + 0] = b[o + 1] = b[o + 2] = Float.POSITIVE_INFINITY;
+    b[o + 3] = b[o + 4] = b[o + 5] = Float.NEGATIVE_INFINITY;
+    
+    boolean oriented = false;
+    
+    // Follow the chain until it loops.
+    
+    boolean[] visited = new boolean[pathBases.length];
+    
+    for (int idx = pathIdx;
+        (idx >= 0) && (idx < pathBases.length) && !visited[idx];
+        idx = pathBases[idx].pathIdx) {
+      PathBase pathBase = pathBases[idx];
+      
+      b[o + 0] = Math.min(b[o + 0], pathBase.p.x);
+      b[o + 1] = Math.min(b[o + 1], pathBase.p.y);
+      b[o + 2] = Math.min(b[o + 2], pathBase.p.z);
+      b[o + 3] = Math.max(b[o + 3], pathBase.p.x);
+      b[o + 4] = Math.max(b[o + 4], pathBase.p.y);
+      b[o + 5] = Math.max(b[o + 5], pathBase.p.z);
+      
+      oriented |= (pathBase.flags & PathBase.ORIENTED) != 0;
+      
+      visited[idx] = true;
+    }
+    
+    pathsOriented[pathIdx] = oriented;
+  }
+  
+  private void initGrid(List<Integer> bodyIdxs) {
+    if (bodyIdxs.isEmpty()) {
+      cells = null;
+      
+      return;
+    }
+    
+    float x0 = Float.POSITIVE_INFINITY;
+    float z0 = Float.POSITIVE_INFINITY;
+    float x1 = Float.NEGATIVE_INFINITY;
+    float z1 = Float.NEGATIVE_INFINITY;
+    
+    for (int bodyIdx: bodyIdxs) {
+      int o = bodyIdx * 6;
+      
+      x0 = Math.min(x0, localBounds[o + 0]);
+      z0 = Math.min(z0, localBounds[o + 2]);
+      x1 = Math.max(x1, localBounds[o + 3]);
+      z1 = Math.max(z1, localBounds[o + 5]);
+    }
+    
+    int size = (int) Math.ceil(Math.sqrt(bodyIdxs.size()));
+    
+    gridSizeX = Math.min(size, GRID_MAX_SIZE);
+    gridSizeZ = Math.min(size, GRID_MAX_SIZE);
+    gridX0    = x0;
+    gridZ0    = z0;
+    cellSizeX = Math.max((x1 - x0) / gridSizeX, MARGIN);
+    cellSizeZ = Math.max((z1 - z0) / gridSizeZ, MARGIN);
+    
+    List<List<Integer>> lists = new ArrayList<>(gridSizeX * gridSizeZ);
+    
+    for (int idx = 0; idx < gridSizeX * gridSizeZ; idx++) {
+      lists.add(new ArrayList<Integer>());
+    }
+    
+    for (int bodyIdx: bodyIdxs) {
+      int o = bodyIdx * 6;
+      
+      int cx0 = getCellX(localBounds[o + 0]);
+      int cz0 = getCellZ(localBounds[o + 2]);
+      int cx1 = getCellX(localBounds[o + 3]);
+      int cz1 = getCellZ(localBounds[o + 5]);
+      
+      for (int cz = cz0; cz <= cz1; cz++) {
+        for (int cx = cx0; cx <= cx1; cx++) {
+          lists.get(cz * gridSizeX + cx).add(bodyIdx);
+        }
+      }
+    }
+    
+    cells = new int[lists.size()][];
+    
+    for (int idx = 0; idx < cells.length; idx++) {
+      List<Integer> list = lists.get(idx);
+      
+      cells[idx] = list.isEmpty() ? EMPTY : toArray(list);
+    }
+  }
+  
+  private int getCellX(float x) {
+    int cx = (int) Math.floor((x - gridX0) / cellSizeX);
+    
+    return Math.max(0, Math.min(cx, gridSizeX - 1));
+  }
+  
+  private int getCellZ(float z) {
+    int cz = (int) Math.floor((z - gridZ0) / cellSizeZ);
+    
+    return Math.max(0, Math.min(cz, gridSizeZ - 1));
+  }
+  
+  private boolean overlapsStatic(int bodyIdx, float[] q) {
+    int o = bodyIdx * 6;
+    
+    return
+         (localBounds[o + 0] <= q[3]) && (localBounds[o + 3] >= q[0])
+      && (localBounds[o + 1] <= q[4]) && (localBounds[o + 4] >= q[1])
+      && (localBounds[o + 2] <= q[5]) && (localBounds[o + 5] >= q[2]);
+  }
+  
+  private boolean overlapsDynamic(int bodyIdx, float[] q) {
+    if (!bounded[bodyIdx]) {
+      return true;
+    }
+    
+    Body body = sol.base.bodies[bodyIdx];
+    
+    if (isStatic(body)) {
+      return overlapsStatic(bodyIdx, q);
+    }
+    
+    float[] b = query_b;
+    
+    // Body-space extent, or a cube that holds every rotation of it.
+    
+    if ((body.mover1Idx >= 0)
+        && pathsOriented[sol.movers[body.mover1Idx].pathIdx]) {
+      float r = radii[bodyIdx];
+      
+      b[0] = b[1] = b[2] = -r;
+      b[3] = b[4] = b[5] = +r;
+    } else {
+      System.arraycopy(localBounds, bodyIdx * 6, b, 0, 6);
+    }
+    
+    // Translated by every point the position mover can reach.
+    
+    if (body.mover0Idx >= 0) {
+      int o = sol.movers[body.mover0Idx].pathIdx * 6;
+      
+      for (int idx = 0; idx < 6; idx++) {
+        b[idx] += pathBounds[o + idx];
+      }
+    }
+    
+    return
+         (b[0] <= q[3]) && (b[3] >= q[0])
+      && (b[1] <= q[4]) && (b[4] >= q[1])
+      && (b[2] <= q[5]) && (b[5] >= q[2]);
+  }
+  
+  /**
+   * Stores the indices of all bodies that {@code ball} might hit
+   * within {@code dt} seconds in {@code bodyIdxs}, in ascending
+   * order, and returns their number.
+   */
+  public int query(int[] bodyIdxs, Ball ball, float dt) {
+    float[] q = query_q;
+    
+    // Swept box of the ball.
+    
+    float x0 = ball.p.x;
+    float y0 = ball.p.y;
+    float z0 = ball.p.z;
+    float x1 = x0 + ball.v.x * dt;
+    float y1 = y0 + ball.v.y * dt;
+    float z1 = z0 + ball.v.z * dt;
+    float r  = ball.r + MARGIN;
+    
+    q[0] = Math.min(x0, x1) - r;
+    q[1] = Math.min(y0, y1) - r;
+    q[2] = Math.min(z0, z1) - r;
+    q[3] = Math.max(x0, x1) + r;
+    q[4] = Math.max(y0, y1) + r;
+    q[5] = Math.max(z0, z1) + r;
+    
+    int count = 0;
+    
+    for (int bodyIdx: dynBodyIdxs) {
+      if (overlapsDynamic(bodyIdx, q)) {
+        bodyIdxs[count++] = bodyIdx;
+      }
+    }
+    
+    if (cells == null) {
+      return count;
+    }
+    
+    int cx0 = getCellX(q[0]);
+    int cz0 = getCellZ(q[2]);
+    int cx1 = getCellX(q[3]);
+    int cz1 = getCellZ(q[5]);
+    
+    int dynCount = count;
+    
+    if (++stamp == 0) {
+      Arrays.fill(stamps, 0);
+      
+      stamp = 1;
+    }
+    
+    for (int cz = cz0; cz <= cz1; cz++) {
+      for (int cx = cx0; cx <= cx1; cx++) {
+        for (int bodyIdx: cells[cz * gridSizeX + cx]) {
+          if ((stamps[bodyIdx] != stamp) && overlapsStatic(bodyIdx, q)) {
+            stamps[bodyIdx] = stamp;
+            
+            bodyIdxs[count++] = bodyIdx;
+          }
+        }
+      }
+    }
+    
+    if ((count > dynCount) && ((dynCount > 0) || (cx1 > cx0) || (cz1 > cz0))) {
+      // Restore body order so that ties resolve as before.
+      
+      Arrays.sort(bodyIdxs, 0, count);
+    }
+    
+    return count;
+  }
+  
+  // Storage for reusable objects to minimize object creation.
+  
+  private final float[] query_q = new float[6];
+  private final float[] query_b = new float[6];
+}
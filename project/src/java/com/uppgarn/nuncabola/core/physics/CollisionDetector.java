@@ -20,18 +20,32 @@ package com.uppgarn.nuncabola.core.physics;
 import com.uppgarn.nuncabola.core.math.*;
 import com.uppgarn.nuncabola.core.solid.*;
 
-final class CollisionDetector {
+public final class CollisionDetector {
   private static final float SMALL = 1.0E-3f;
   private static final float LARGE = 1.0E+5f;
   
   private final Solid sol;
   
-  private Motion motion;
+  private CollisionBase collBase;
+  
+  private Motion    motion;
+  private BodyIndex bodyIndex;
+  
+  private final int[] bodyIdxs;
   
   public CollisionDetector(Solid sol) {
     this.sol = sol;
     
-    motion = new Motion(sol);
+    collBase = null;
+    
+    motion    = new Motion   (sol);
+    bodyIndex = new BodyIndex(sol);
+    
+    bodyIdxs = new int[sol.base.bodies.length];
+  }
+  
+  public Motion getMotion() {
+    return motion;
   }
   
   /**
@@ -257,47 +271,73 @@ final class CollisionDetector {
   
   private float testVertex(
       Vector3 t_,
-      Vertex  vert,
+      int     vertIdx,
       Vector3 o,
       Vector3 w,
       Ball    ball) {
-    return intersectVertex(t_, o, vert.p, w, ball.p, ball.v, ball.r);
+    Vector3 q = testVertex_q;
+    
+    float[] data = collBase.vertData;
+    int     i    = vertIdx * CollisionBase.VERT_STRIDE;
+    
+    q.set(data[i], data[i + 1], data[i + 2]);
+    
+    return intersectVertex(t_, o, q, w, ball.p, ball.v, ball.r);
   }
   
   private float testEdge(
       Vector3 t_,
-      Edge    edge,
+      int     edgeIdx,
       Vector3 o,
       Vector3 w,
       Ball    ball) {
+    Vector3 q = testEdge_q;
     Vector3 u = testEdge_u;
     
-    Vertex vert0 = sol.base.verts[edge.vert0Idx];
-    Vertex vert1 = sol.base.verts[edge.vert1Idx];
+    float[] data = collBase.edgeData;
+    int     i    = edgeIdx * CollisionBase.EDGE_STRIDE;
     
-    u.subtract(vert1.p, vert0.p);
+    q.set(data[i],     data[i + 1], data[i + 2]);
+    u.set(data[i + 3], data[i + 4], data[i + 5]);
     
-    return intersectEdge(t_, o, vert0.p, u, w, ball.p, ball.v, ball.r);
+    return intersectEdge(t_, o, q, u, w, ball.p, ball.v, ball.r);
   }
   
   private float testSide(
       Vector3 t_,
-      Side    side,
-      Lump    lump,
+      int     sideIdx,
+      int     lumpIdx,
       Vector3 o,
       Vector3 w,
       Ball    ball,
       float   dt) {
-    float t = intersectSide(t_, o, w, side.n, side.d, ball.p, ball.v, ball.r);
+    Vector3 n = testSide_n;
+    
+    float[] planes = collBase.planeData;
+    int     i      = sideIdx * CollisionBase.PLANE_STRIDE;
+    
+    n.set(planes[i], planes[i + 1], planes[i + 2]);
+    
+    float t = intersectSide(t_, o, w, n, planes[i + 3], ball.p, ball.v, ball.r);
     
     if (t < dt) {
-      for (int idx = 0; idx < lump.sideCount; idx++) {
-        Side side0 = sol.base.sides[sol.base.indices[lump.side0Idx + idx]];
+      int side0Idx  = collBase.lumpSide0Idxs [lumpIdx];
+      int sideCount = collBase.lumpSideCounts[lumpIdx];
+      
+      for (int idx = 0; idx < sideCount; idx++) {
+        int sideIdx0 = collBase.lumpSideIdxs[side0Idx + idx];
+        
+        if (sideIdx0 == sideIdx) {
+          continue;
+        }
         
-        if ((side != side0)
-            && (t_.dot(side0.n) -
-                o .dot(side0.n) -
-                w .dot(side0.n) * t > side0.d)) {
+        int i0 = sideIdx0 * CollisionBase.PLANE_STRIDE;
+        
+        n.set(planes[i0], planes[i0 + 1], planes[i0 + 2]);
+        
+        if (t_.dot(n) -
+            o .dot(n) -
+            w .dot(n) * t > planes[i0 + 3]) {
           return LARGE;
         }
       }
@@ -308,14 +348,14 @@ final class CollisionDetector {
   
   private float testLump(
       Vector3 t_,
-      Lump    lump,
+      int     lumpIdx,
       Vector3 o,
       Vector3 w,
       Ball    ball,
       float   dt) {
     // Short circuit a non-solid lump.
     
-    if ((lump.flags & Lump.DETAIL) != 0) {
+    if ((collBase.lumpFlags[lumpIdx] & Lump.DETAIL) != 0) {
       return dt;
     }
     
@@ -328,10 +368,11 @@ final class CollisionDetector {
     if (ball.r > 0.0f) {
       // Test all vertices.
       
-      for (int idx = 0; idx < lump.vertCount; idx++) {
-        Vertex vert = sol.base.verts[sol.base.indices[lump.vert0Idx + idx]];
-        
-        float u = testVertex(u_, vert, o, w, ball);
+      int vert0Idx  = collBase.lumpVert0Idxs [lumpIdx];
+      int vertCount = collBase.lumpVertCounts[lumpIdx];
+      
+      for (int idx = 0; idx < vertCount; idx++) {
+        float u = testVertex(u_, vert0Idx + idx, o, w, ball);
         
         if (u < t) {
           t_.copyFrom(u_);
@@ -342,10 +383,11 @@ final class CollisionDetector {
       
       // Test all edges.
       
-      for (int idx = 0; idx < lump.edgeCount; idx++) {
-        Edge edge = sol.base.edges[sol.base.indices[lump.edge0Idx + idx]];
-        
-        float u = testEdge(u_, edge, o, w, ball);
+      int edge0Idx  = collBase.lumpEdge0Idxs [lumpIdx];
+      int edgeCount = collBase.lumpEdgeCounts[lumpIdx];
+      
+      for (int idx = 0; idx < edgeCount; idx++) {
+        float u = testEdge(u_, edge0Idx + idx, o, w, ball);
         
         if (u < t) {
           t_.copyFrom(u_);
@@ -357,10 +399,13 @@ final class CollisionDetector {
     
     // Test all sides.
     
-    for (int idx = 0; idx < lump.sideCount; idx++) {
-      Side side = sol.base.sides[sol.base.indices[lump.side0Idx + idx]];
+    int side0Idx  = collBase.lumpSide0Idxs [lumpIdx];
+    int sideCount = collBase.lumpSideCounts[lumpIdx];
+    
+    for (int idx = 0; idx < sideCount; idx++) {
+      int sideIdx = collBase.lumpSideIdxs[side0Idx + idx];
       
-      float u = testSide(u_, side, lump, o, w, ball, t);
+      float u = testSide(u_, sideIdx, lumpIdx, o, w, ball, t);
       
       if (u < t) {
         t_.copyFrom(u_);
@@ -373,20 +418,26 @@ final class CollisionDetector {
   }
   
   private boolean testFore(
-      Side    side,
+      int     sideIdx,
       Vector3 o,
       Vector3 w,
       Ball    ball,
       float   dt) {
     Vector3 q = testFore_q;
+    Vector3 n = testFore_n;
+    
+    float[] planes = collBase.planeData;
+    int     i      = sideIdx * CollisionBase.PLANE_STRIDE;
+    
+    n.set(planes[i], planes[i + 1], planes[i + 2]);
     
     // If the ball is not behind the plane, the test passes.
     
     q.subtract(ball.p, o);
     
-    float d = side.d;
+    float d = planes[i + 3];
     
-    if (q.dot(side.n) - d + ball.r >= 0.0f) {
+    if (q.dot(n) - d + ball.r >= 0.0f) {
       return true;
     }
     
@@ -394,9 +445,9 @@ final class CollisionDetector {
     
     q.addScaled(q, ball.v, dt);
     
-    d += w.dot(side.n) * dt;
+    d += w.dot(n) * dt;
     
-    if (q.dot(side.n) - d + ball.r >= 0.0f) {
+    if (q.dot(n) - d + ball.r >= 0.0f) {
       return true;
     }
     
@@ -406,20 +457,26 @@ final class CollisionDetector {
   }
   
   private boolean testBack(
-      Side    side,
+      int     sideIdx,
       Vector3 o,
       Vector3 w,
       Ball    ball,
       float   dt) {
     Vector3 q = testBack_q;
+    Vector3 n = testBack_n;
+    
+    float[] planes = collBase.planeData;
+    int     i      = sideIdx * CollisionBase.PLANE_STRIDE;
+    
+    n.set(planes[i], planes[i + 1], planes[i + 2]);
     
     // If the ball is not in front of the plane, the test passes.
     
     q.subtract(ball.p, o);
     
-    float d = side.d;
+    float d = planes[i + 3];
     
-    if (q.dot(side.n) - d - ball.r <= 0.0f) {
+    if (q.dot(n) - d - ball.r <= 0.0f) {
       return true;
     }
     
@@ -427,9 +484,9 @@ final class CollisionDetector {
     
     q.addScaled(q, ball.v, dt);
     
-    d += w.dot(side.n) * dt;
+    d += w.dot(n) * dt;
     
-    if (q.dot(side.n) - d - ball.r <= 0.0f) {
+    if (q.dot(n) - d - ball.r <= 0.0f) {
       return true;
     }
     
@@ -440,7 +497,7 @@ final class CollisionDetector {
   
   private float testNode(
       Vector3 t_,
-      Node    node,
+      int     nodeIdx,
       Vector3 o,
       Vector3 w,
       Ball    ball,
@@ -451,10 +508,11 @@ final class CollisionDetector {
     
     // Test all lumps.
     
-    for (int idx = 0; idx < node.lumpCount; idx++) {
-      Lump lump = sol.base.lumps[node.lump0Idx + idx];
-      
-      float u = testLump(u_, lump, o, w, ball, t);
+    int lump0Idx  = collBase.nodeLump0Idxs [nodeIdx];
+    int lumpCount = collBase.nodeLumpCounts[nodeIdx];
+    
+    for (int idx = 0; idx < lumpCount; idx++) {
+      float u = testLump(u_, lump0Idx + idx, o, w, ball, t);
       
       if (u < t) {
         t_.copyFrom(u_);
@@ -463,13 +521,14 @@ final class CollisionDetector {
       }
     }
     
+    int sideIdx  = collBase.nodeSideIdxs [nodeIdx];
+    int node0Idx = collBase.nodeNode0Idxs[nodeIdx];
+    int node1Idx = collBase.nodeNode1Idxs[nodeIdx];
+    
     // Test in front of this node.
     
-    if ((node.node0Idx >= 0)
-        && testFore(sol.base.sides[node.sideIdx], o, w, ball, t)) {
-      Node node0 = sol.base.nodes[node.node0Idx];
-      
-      float u = testNode(u_, node0, o, w, ball, t);
+    if ((node0Idx >= 0) && testFore(sideIdx, o, w, ball, t)) {
+      float u = testNode(u_, node0Idx, o, w, ball, t);
       
       if (u < t) {
         t_.copyFrom(u_);
@@ -480,11 +539,8 @@ final class CollisionDetector {
     
     // Test behind this node.
     
-    if ((node.node1Idx >= 0)
-        && testBack(sol.base.sides[node.sideIdx], o, w, ball, t)) {
-      Node node1 = sol.base.nodes[node.node1Idx];
-      
-      float u = testNode(u_, node1, o, w, ball, t);
+    if ((node1Idx >= 0) && testBack(sideIdx, o, w, ball, t)) {
+      float u = testNode(u_, node1Idx, o, w, ball, t);
       
       if (u < t) {
         t_.copyFrom(u_);
@@ -509,8 +565,6 @@ final class CollisionDetector {
     Quaternion e_ = testBody_e_;
     Vector3    w_ = testBody_w_;
     
-    Node node = sol.base.nodes[body.nodeIdx];
-    
     motion.getBodyPosition   (o_, body, 0.0f);
     motion.getBodyVelocity   (w_, body, dt);
     motion.getBodyOrientation(e_, body, 0.0f);
@@ -558,7 +612,7 @@ final class CollisionDetector {
       ball0.v.subtract(p1, p0);
       ball0.v.scale   (ball0.v, 1.0f / dt);
       
-      float u = testNode(u_, node, z, z, ball0, dt);
+      float u = testNode(u_, body.nodeIdx, z, z, ball0, dt);
       
       if (u < dt) {
         // Compute the final orientation.
@@ -582,7 +636,7 @@ final class CollisionDetector {
         return u;
       }
     } else {
-      float u = testNode(u_, node, o_, w_, ball, dt);
+      float u = testNode(u_, body.nodeIdx, o_, w_, ball, dt);
       
       if (u < dt) {
         t_.copyFrom(u_);
@@ -601,7 +655,19 @@ final class CollisionDetector {
     
     float t = dt;
     
-    for (Body body: sol.base.bodies) {
+    // Solids that never collide do not need the collision geometry.
+    
+    if (collBase == null) {
+      collBase = sol.base.getCollisionBase();
+    }
+    
+    // Only bodies near the swept ball need a full test.
+    
+    int count = bodyIndex.query(bodyIdxs, ball, dt);
+    
+    for (int idx = 0; idx < count; idx++) {
+      Body body = sol.base.bodies[bodyIdxs[idx]];
+      
       float u = testBody(u_, w_, body, ball, t);
       
       if (u < t) {
@@ -624,10 +690,15 @@ final class CollisionDetector {
   private final Vector3      intersectEdge_e    = new Vector3();
   private final Vector3      intersectEdge_p_   = new Vector3();
   private final Vector3      intersectEdge_v_   = new Vector3();
+  private final Vector3      testVertex_q       = new Vector3();
+  private final Vector3      testEdge_q         = new Vector3();
   private final Vector3      testEdge_u         = new Vector3();
+  private final Vector3      testSide_n         = new Vector3();
   private final Vector3      testLump_u_        = new Vector3();
   private final Vector3      testFore_q         = new Vector3();
+  private final Vector3      testFore_n         = new Vector3();
   private final Vector3      testBack_q         = new Vector3();
+  private final Vector3      testBack_n         = new Vector3();
   private final Vector3Stack testNode_u_        = new Vector3Stack(16);
   private final Vector3      testBody_u_        = new Vector3();
   private final Vector3      testBody_o_        = new Vector3();
@@ -0,0 +1,384 @@
+/*
+ * EntityIndex.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.physics;
+
+import com.uppgarn.nuncabola.core.math.*;
+import com.uppgarn.nuncabola.core.solid.*;
+
+import java.util.*;
+
+/**
+ * Broad phase for {@link EntityDetector}.
+ * <p>
+ * Items, switches, teleporters and goals are binned into uniform
+ * grids on the x-z plane by their halos. Queries only visit the cells
+ * near the ball and return every entity within reach by squared
+ * distance, in ascending order. The detector then tests them exactly,
+ * so results match testing all entities.
+ */
+public final class EntityIndex {
+  /**
+   * Padding that absorbs rounding in the exact tests.
+   */
+  private static final float MARGIN = 1.0E-2f;
+  
+  private static final int GRID_MAX_SIZE = 64;
+  
+  private static final int[] EMPTY = new int[0];
+  
+  private final Grid itemGrid;
+  private final Grid switchGrid;
+  private final Grid teleGrid;
+  private final Grid goalGrid;
+  
+  /**
+   * Switches the ball is inside of. They are reported by every query,
+   * so that the ball can be seen leaving them.
+   */
+  private final int[] pinnedSwitchIdxs;
+  
+  private int pinnedSwitchCount;
+  
+  public EntityIndex(Solid sol) {
+    // Items.
+    
+    int itemCount = sol.items.length;
+    
+    float[] itemData = new float[itemCount * 3];
+    
+    for (int idx = 0; idx < itemCount; idx++) {
+      setEntity(itemData, idx, sol.items[idx].p, ItemBase.RADIUS);
+    }
+    
+    itemGrid = new Grid(itemData);
+    
+    // Switches.
+    
+    int switchCount = sol.switches.length;
+    
+    float[] switchData = new float[switchCount * 3];
+    
+    for (int idx = 0; idx < switchCount; idx++) {
+      SwitchBase switchBase = sol.switches[idx].base;
+      
+      setEntity(switchData, idx, switchBase.p, switchBase.r);
+    }
+    
+    switchGrid = new Grid(switchData);
+    
+    // Teleporters.
+    
+    int teleCount = sol.base.teles.length;
+    
+    float[] teleData = new float[teleCount * 3];
+    
+    for (int idx = 0; idx < teleCount; idx++) {
+      Teleporter tele = sol.base.teles[idx];
+      
+      setEntity(teleData, idx, tele.p, tele.r);
+    }
+    
+    teleGrid = new Grid(teleData);
+    
+    // Goals.
+    
+    int goalCount = sol.base.goals.length;
+    
+    float[] goalData = new float[goalCount * 3];
+    
+    for (int idx = 0; idx < goalCount; idx++) {
+      Goal goal = sol.base.goals[idx];
+      
+      setEntity(goalData, idx, goal.p, goal.r);
+    }
+    
+    goalGrid = new Grid(goalData);
+    
+    pinnedSwitchIdxs  = new int[switchCount];
+    pinnedSwitchCount = 0;
+  }
+  
+  private static void setEntity(float[] data, int idx, Vector3 p, float r) {
+    data[idx * 3 + 0] = p.x;
+    data[idx * 3 + 1] = p.z;
+    data[idx * 3 + 2] = Math.max(r, 0.0f);
+  }
+  
+  /**
+   * Stores the indices of all items {@code ball} might touch in
+   * {@code itemIdxs}, in ascending order, and returns their number.
+   */
+  public int findItems(int[] itemIdxs, Ball ball) {
+    int count = itemGrid.query(itemIdxs, 0, ball);
+    
+    Arrays.sort(itemIdxs, 0, count);
+    
+    return count;
+  }
+  
+  /**
+   * Stores the indices of all switches {@code ball} might touch
+   * or is pinned to in {@code switchIdxs}, in ascending order,
+   * and returns their number.
+   */
+  public int findSwitches(int[] switchIdxs, Ball ball) {
+    int count = switchGrid.query(switchIdxs, 0, ball);
+    
+    for (int idx = 0; idx < pinnedSwitchCount; idx++) {
+      count = switchGrid.add(switchIdxs, count, pinnedSwitchIdxs[idx]);
+    }
+    
+    Arrays.sort(switchIdxs, 0, count);
+    
+    return count;
+  }
+  
+  public int findTeleporters(int[] teleIdxs, Ball ball) {
+    int count = teleGrid.query(teleIdxs, 0, ball);
+    
+    Arrays.sort(teleIdxs, 0, count);
+    
+    return count;
+  }
+  
+  public int findGoals(int[] goalIdxs, Ball ball) {
+    int count = goalGrid.query(goalIdxs, 0, ball);
+    
+    Arrays.sort(goalIdxs, 0, count);
+    
+    return count;
+  }
+  
+  /**
+   * Sets whether the switch is reported regardless of distance.
+   */
+  public void setSwitchPinned(int switchIdx, boolean pinned) {
+    for (int idx = 0; idx < pinnedSwitchCount; idx++) {
+      if (pinnedSwitchIdxs[idx] == switchIdx) {
+        if (!pinned) {
+          pinnedSwitchIdxs[idx] = pinnedSwitchIdxs[--pinnedSwitchCount];
+        }
+        
+        return;
+      }
+    }
+    
+    if (pinned) {
+      pinnedSwitchIdxs[pinnedSwitchCount++] = switchIdx;
+    }
+  }
+  
+  private static final class Grid {
+    /**
+     * Position (x, z) and halo radius per entity.
+     */
+    private final float[] data;
+    
+    private int     sizeX;
+    private int     sizeZ;
+    private float   x0;
+    private float   z0;
+    private float   cellSizeX;
+    private float   cellSizeZ;
+    private int[][] cells;
+    
+    /**
+     * Entities whose halo is too large for the grid.
+     */
+    private final int[] unboundedIdxs;
+    
+    private final int[] stamps;
+    
+    private int stamp;
+    
+    public Grid(float[] data) {
+      this.data = data;
+      
+      int count = data.length / 3;
+      
+      stamps = new int[count];
+      stamp  = 0;
+      
+      List<Integer> idxs          = new ArrayList<>(count);
+      List<Integer> unboundedIdxs = new ArrayList<>();
+      
+      float x0 = Float.POSITIVE_INFINITY;
+      float z0 = Float.POSITIVE_INFINITY;
+      float x1 = Float.NEGATIVE_INFINITY;
+      float z1 = Float.NEGATIVE_INFINITY;
+      
+      for (int idx = 0; idx < count; idx++) {
+        float x = data[idx * 3 + 0];
+        float z = data[idx * 3 + 1];
+        float r = data[idx * 3 + 2] + MARGIN;
+        
+        // Entities with a non-finite position or an undefined halo
+        // never pass the exact tests.
+        
+        if (!Float.isFinite(x) || !Float.isFinite(z) || Float.isNaN(r)) {
+          continue;
+        }
+        
+        if (!Float.isFinite(x - r)
+            || !Float.isFinite(x + r)
+            || !Float.isFinite(z - r)
+            || !Float.isFinite(z + r)) {
+          unboundedIdxs.add(idx);
+          
+          continue;
+        }
+        
+        idxs.add(idx);
+        
+        x0 = Math.min(x0, x - r);
+        z0 = Math.min(z0, z - r);
+        x1 = Math.max(x1, x + r);
+        z1 = Math.max(z1, z + r);
+      }
+      
+      this.unboundedIdxs = toArray(unboundedIdxs);
+      
+      if (idxs.isEmpty()) {
+        cells = null;
+        
+        return;
+      }
+      
+      int size = (int) Math.ceil(Math.sqrt(idxs.size()));
+      
+      sizeX     = Math.min(size, GRID_MAX_SIZE);
+      sizeZ     = Math.min(size, GRID_MAX_SIZE);
+      this.x0   = x0;
+      this.z0   = z0;
+      cellSizeX = Math.max((x1 - x0) / sizeX, MARGIN);
+      cellSizeZ = Math.max((z1 - z0) / sizeZ, MARGIN);
+      
+      List<List<Integer>> lists = new ArrayList<>(sizeX * sizeZ);
+      
+      for (int idx = 0; idx < sizeX * sizeZ; idx++) {
+        lists.add(new ArrayList<Integer>());
+      }
+      
+      for (int idx: idxs) {
+        float x = data[idx * 3 + 0];
+        float z = data[idx * 3 + 1];
+        float r = data[idx * 3 + 2] + MARGIN;
+        
+        int cx0 = getCellX(x - r);
+        int cz0 = getCellZ(z - r);
+        int cx1 = getCellX(x + r);
+        int cz1 = getCellZ(z + r);
+        
+        for (int cz = cz0; cz <= cz1; cz++) {
+          for (int cx = cx0; cx <= cx1; cx++) {
+            lists.get(cz * sizeX + cx).add(idx);
+          }
+        }
+      }
+      
+      cells = new int[lists.size()][];
+      
+      for (int idx = 0; idx < cells.length; idx++) {
+        List<Integer> list = lists.get(idx);
+        
+        cells[idx] = list.isEmpty() ? EMPTY : toArray(list);
+      }
+    }
+    
+    private static int[] toArray(List<Integer> list) {
+      int[] array = new int[list.size()];
+      
+      for (int idx = 0; idx < array.length; idx++) {
+        array[idx] = list.get(idx);
+      }
+      
+      return array;
+    }
+    
+    private int getCellX(float x) {
+      int cx = (int) Math.floor((x - x0) / cellSizeX);
+      
+      return Math.max(0, Math.min(cx, sizeX - 1));
+    }
+    
+    private int getCellZ(float z) {
+      int cz = (int) Math.floor((z - z0) / cellSizeZ);
+      
+      return Math.max(0, Math.min(cz, sizeZ - 1));
+    }
+    
+    /**
+     * Adds {@code idx} to {@code idxs} unless already added by
+     * the current query.
+     */
+    public int add(int[] idxs, int count, int idx) {
+      if (stamps[idx] != stamp) {
+        stamps[idx] = stamp;
+        
+        idxs[count++] = idx;
+      }
+      
+      return count;
+    }
+    
+    /**
+     * Adds the entities whose halo might be within the radius of
+     * {@code ball} on the x-z plane.
+     */
+    public int query(int[] idxs, int count, Ball ball) {
+      stamp++;
+      
+      for (int idx: unboundedIdxs) {
+        count = add(idxs, count, idx);
+      }
+      
+      if (cells == null) {
+        return count;
+      }
+      
+      float x = ball.p.x;
+      float z = ball.p.z;
+      float r = ball.r + MARGIN;
+      
+      int cx0 = getCellX(x - r);
+      int cz0 = getCellZ(z - r);
+      int cx1 = getCellX(x + r);
+      int cz1 = getCellZ(z + r);
+      
+      for (int cz = cz0; cz <= cz1; cz++) {
+        for (int cx = cx0; cx <= cx1; cx++) {
+          for (int idx: cells[cz * sizeX + cx]) {
+            if (stamps[idx] == stamp) {
+              continue;
+            }
+            
+            float dx    = data[idx * 3 + 0] - x;
+            float dz    = data[idx * 3 + 1] - z;
+            float reach = data[idx * 3 + 2] + r + MARGIN;
+            
+            if (dx * dx + dz * dz <= reach * reach) {
+              count = add(idxs, count, idx);
+            }
+          }
+        }
+      }
+      
+      return count;
+    }
+  }
+}
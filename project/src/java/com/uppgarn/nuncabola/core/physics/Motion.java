@@ -20,28 +20,182 @@ package com.uppgarn.nuncabola.core.physics;
 import com.uppgarn.nuncabola.core.math.*;
 import com.uppgarn.nuncabola.core.solid.*;
 
+import java.util.*;
+
+/**
+ * Computes body transforms from mover states.
+ * <p>
+ * Interpolated positions and orientations are cached per mover,
+ * keyed on the path index and time they were computed for. A mover
+ * that is stepped or moved to another path thus no longer matches its
+ * cached entries. Each mover keeps two entries, which covers the
+ * current time and the time at the end of the next step.
+ */
 public final class Motion {
+  private static final int WAYS = 2;
+  
   private final Solid sol;
   
+  // Position cache.
+  
+  private final int  [] posPathIdxs;
+  private final int  [] posTimes;
+  private final float[] posData;
+  private final int  [] posNextWays;
+  
+  // Orientation cache.
+  
+  private final int  [] oriPathIdxs;
+  private final int  [] oriTimes;
+  private final float[] oriData;
+  private final int  [] oriNextWays;
+  
+  private long hits;
+  private long misses;
+  
   public Motion(Solid sol) {
     this.sol = sol;
+    
+    int count = sol.movers.length * WAYS;
+    
+    posPathIdxs = new int  [count];
+    posTimes    = new int  [count];
+    posData     = new float[count * 3];
+    posNextWays = new int  [sol.movers.length];
+    
+    oriPathIdxs = new int  [count];
+    oriTimes    = new int  [count];
+    oriData     = new float[count * 4];
+    oriNextWays = new int  [sol.movers.length];
+    
+    Arrays.fill(posPathIdxs, -1);
+    Arrays.fill(oriPathIdxs, -1);
+    
+    hits   = 0;
+    misses = 0;
   }
   
   private float erp(float t) {
     return 3.0f * t * t - 2.0f * t * t * t;
   }
   
+  private int findEntry(
+      int[] pathIdxs,
+      int[] times,
+      int   moverIdx,
+      int   pathIdx,
+      int   time) {
+    for (int idx = moverIdx * WAYS; idx < (moverIdx + 1) * WAYS; idx++) {
+      if ((pathIdxs[idx] == pathIdx) && (times[idx] == time)) {
+        hits++;
+        
+        return idx;
+      }
+    }
+    
+    misses++;
+    
+    return -1;
+  }
+  
+  private int addEntry(
+      int[] pathIdxs,
+      int[] times,
+      int[] nextWays,
+      int   moverIdx,
+      int   pathIdx,
+      int   time) {
+    int way = nextWays[moverIdx];
+    int idx = moverIdx * WAYS + way;
+    
+    nextWays[moverIdx] = (way + 1) % WAYS;
+    
+    pathIdxs[idx] = pathIdx;
+    times   [idx] = time;
+    
+    return idx;
+  }
+  
+  private void getPosition(Vector3 p, int moverIdx, int pathIdx, float t) {
+    int time = Float.floatToRawIntBits(t);
+    int idx  = findEntry(posPathIdxs, posTimes, moverIdx, pathIdx, time);
+    
+    if (idx >= 0) {
+      int o = idx * 3;
+      
+      p.set(posData[o], posData[o + 1], posData[o + 2]);
+      
+      return;
+    }
+    
+    PathBase pathBase0 = sol.base.pathBases[pathIdx];
+    PathBase pathBase1 = sol.base.pathBases[pathBase0.pathIdx];
+    
+    float s = t / pathBase0.t;
+    
+    p.copyFrom(pathBase0.p, pathBase1.p, pathBase0.smooth ? erp(s) : s);
+    
+    idx = addEntry(
+      posPathIdxs,
+      posTimes,
+      posNextWays,
+      moverIdx,
+      pathIdx,
+      time);
+    
+    int o = idx * 3;
+    
+    posData[o]     = p.x;
+    posData[o + 1] = p.y;
+    posData[o + 2] = p.z;
+  }
+  
+  private void getOrientation(
+      Quaternion e,
+      int        moverIdx,
+      int        pathIdx,
+      float      t) {
+    int time = Float.floatToRawIntBits(t);
+    int idx  = findEntry(oriPathIdxs, oriTimes, moverIdx, pathIdx, time);
+    
+    if (idx >= 0) {
+      int o = idx * 4;
+      
+      e.set(oriData[o], oriData[o + 1], oriData[o + 2], oriData[o + 3]);
+      
+      return;
+    }
+    
+    PathBase pathBase0 = sol.base.pathBases[pathIdx];
+    PathBase pathBase1 = sol.base.pathBases[pathBase0.pathIdx];
+    
+    float s = t / pathBase0.t;
+    
+    e.copyFrom(pathBase0.e, pathBase1.e, pathBase0.smooth ? erp(s) : s);
+    
+    idx = addEntry(
+      oriPathIdxs,
+      oriTimes,
+      oriNextWays,
+      moverIdx,
+      pathIdx,
+      time);
+    
+    int o = idx * 4;
+    
+    oriData[o]     = e.w;
+    oriData[o + 1] = e.x;
+    oriData[o + 2] = e.y;
+    oriData[o + 3] = e.z;
+  }
+  
   public void getBodyPosition(Vector3 p, Body body, float dt) {
     if (body.mover0Idx >= 0) {
       Mover mover = sol.movers[body.mover0Idx];
       
-      PathBase pathBase0 = sol.base.pathBases[mover    .pathIdx];
-      PathBase pathBase1 = sol.base.pathBases[pathBase0.pathIdx];
-      
       float t = sol.paths[mover.pathIdx].enabled ? mover.t + dt : mover.t;
-      float s = t / pathBase0.t;
       
-      p.copyFrom(pathBase0.p, pathBase1.p, pathBase0.smooth ? erp(s) : s);
+      getPosition(p, body.mover0Idx, mover.pathIdx, t);
       
       return;
     }
@@ -59,9 +213,8 @@ public final class Motion {
       if    (((pathBase0.flags & PathBase.ORIENTED) != 0)
           || ((pathBase1.flags & PathBase.ORIENTED) != 0)) {
         float t = sol.paths[mover.pathIdx].enabled ? mover.t + dt : mover.t;
-        float s = t / pathBase0.t;
         
-        e.copyFrom(pathBase0.e, pathBase1.e, pathBase0.smooth ? erp(s) : s);
+        getOrientation(e, body.mover1Idx, mover.pathIdx, t);
         
         return;
       }
@@ -112,6 +265,14 @@ public final class Motion {
     return false;
   }
   
+  public long getHitCount() {
+    return hits;
+  }
+  
+  public long getMissCount() {
+    return misses;
+  }
+  
   // Storage for reusable objects to minimize object creation.
   
   private final Vector3 getBodyVelocity_p = new Vector3();
@@ -0,0 +1,306 @@
+/*
+ * PathScheduler.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.physics;
+
+import com.uppgarn.nuncabola.core.solid.*;
+
+/**
+ * Keeps the next path-change deadline of every mover on an enabled
+ * path and of every running switch timer.
+ * <p>
+ * Deadlines are absolute millisecond counts in a binary min-heap.
+ * While its path stays enabled, a mover advances in step with the
+ * clock, so its deadline only changes when it wraps to the next path.
+ * Changes to the enabled state of paths invalidate the schedule,
+ * which is then rebuilt on next use.
+ * <p>
+ * Entries are numbered movers first, then switches, both in solid
+ * order.
+ */
+final class PathScheduler {
+  private final Solid sol;
+  
+  /**
+   * Deadline of each entry.
+   */
+  private final long[] deadlines;
+  
+  /**
+   * Entries in heap order.
+   */
+  private final int[] heap;
+  
+  /**
+   * Position of each entry in {@link #heap}, or -1 if unscheduled.
+   */
+  private final int[] heapIdxs;
+  
+  private int heapSize;
+  
+  // Scratch space for due entries.
+  
+  private final int[] dueIdxs;
+  private final int[] stack;
+  
+  private long    clock;
+  private boolean valid;
+  
+  public PathScheduler(Solid sol) {
+    this.sol = sol;
+    
+    int count = sol.movers.length + sol.switches.length;
+    
+    deadlines = new long[count];
+    heap      = new int [count];
+    heapIdxs  = new int [count];
+    heapSize  = 0;
+    dueIdxs   = new int [count];
+    stack     = new int [count];
+    clock     = 0;
+    valid     = false;
+  }
+  
+  /**
+   * Marks the schedule as out of date. Must be called after changing
+   * the state of paths, movers or switches outside of the simulation.
+   */
+  public void invalidate() {
+    valid = false;
+  }
+  
+  /**
+   * Advances the clock by {@code ms} milliseconds.
+   */
+  public void advance(int ms) {
+    clock += ms;
+  }
+  
+  public void moverWrapped(int moverIdx) {
+    if (valid) {
+      scheduleMover(moverIdx);
+    }
+  }
+  
+  public void switchExpired(int switchIdx) {
+    if (valid) {
+      remove(sol.movers.length + switchIdx);
+    }
+  }
+  
+  /**
+   * Collects all entries due within {@code ms} milliseconds.
+   * <p>
+   * Returns their number. They are available through
+   * {@link #getDueEntry(int)} in ascending order.
+   */
+  public int collectDueEntries(int ms) {
+    if (!valid) {
+      rebuild();
+    }
+    
+    long limit = clock + ms;
+    
+    int count     = 0;
+    int stackSize = 0;
+    
+    if ((heapSize > 0) && (deadlines[heap[0]] < limit)) {
+      stack[stackSize++] = 0;
+    }
+    
+    while (stackSize > 0) {
+      int pos = stack[--stackSize];
+      
+      dueIdxs[count++] = heap[pos];
+      
+      for (int child = 2 * pos + 1; child <= 2 * pos + 2; child++) {
+        if ((child < heapSize) && (deadlines[heap[child]] < limit)) {
+          stack[stackSize++] = child;
+        }
+      }
+    }
+    
+    // Restore solid order.
+    
+    for (int idx = 1; idx < count; idx++) {
+      int entryIdx = dueIdxs[idx];
+      int idx0     = idx;
+      
+      while ((idx0 > 0) && (dueIdxs[idx0 - 1] > entryIdx)) {
+        dueIdxs[idx0] = dueIdxs[idx0 - 1];
+        
+        idx0--;
+      }
+      
+      dueIdxs[idx0] = entryIdx;
+    }
+    
+    return count;
+  }
+  
+  public int getDueEntry(int idx) {
+    return dueIdxs[idx];
+  }
+  
+  private void rebuild() {
+    heapSize = 0;
+    
+    for (int idx = 0; idx < heapIdxs.length; idx++) {
+      heapIdxs[idx] = -1;
+    }
+    
+    // Movers.
+    
+    for (int moverIdx = 0; moverIdx < sol.movers.length; moverIdx++) {
+      Mover mover = sol.movers[moverIdx];
+      Path  path  = sol.paths[mover.pathIdx];
+      
+      if (path.enabled) {
+        append(moverIdx, clock + path.base.tm - mover.tm);
+      }
+    }
+    
+    // Switches.
+    
+    for (int switchIdx = 0; switchIdx < sol.switches.length; switchIdx++) {
+      Switch zwitch = sol.switches[switchIdx];
+      
+      if (zwitch.tm < zwitch.base.tm) {
+        append(
+          sol.movers.length + switchIdx,
+          clock + zwitch.base.tm - zwitch.tm);
+      }
+    }
+    
+    for (int pos = heapSize / 2 - 1; pos >= 0; pos--) {
+      siftDown(pos);
+    }
+    
+    valid = true;
+  }
+  
+  private void scheduleMover(int moverIdx) {
+    Mover mover = sol.movers[moverIdx];
+    Path  path  = sol.paths[mover.pathIdx];
+    
+    if (path.enabled) {
+      update(moverIdx, clock + path.base.tm - mover.tm);
+    } else {
+      remove(moverIdx);
+    }
+  }
+  
+  private void append(int entryIdx, long deadline) {
+    deadlines[entryIdx] = deadline;
+    
+    heap    [heapSize] = entryIdx;
+    heapIdxs[entryIdx] = heapSize;
+    
+    heapSize++;
+  }
+  
+  private void update(int entryIdx, long deadline) {
+    if (heapIdxs[entryIdx] < 0) {
+      append(entryIdx, deadline);
+      
+      siftUp(heapSize - 1);
+    } else {
+      deadlines[entryIdx] = deadline;
+      
+      siftUp  (heapIdxs[entryIdx]);
+      siftDown(heapIdxs[entryIdx]);
+    }
+  }
+  
+  private void remove(int entryIdx) {
+    int pos = heapIdxs[entryIdx];
+    
+    if (pos < 0) {
+      return;
+    }
+    
+    heapIdxs[entryIdx] = -1;
+    
+    heapSize--;
+    
+    if (pos < heapSize) {
+      int lastIdx = heap[heapSize];
+      
+      set(pos, lastIdx);
+      
+      siftUp  (heapIdxs[lastIdx]);
+      siftDown(heapIdxs[lastIdx]);
+    }
+  }
+  
+  private boolean isEarlier(int entryIdx0, int entryIdx1) {
+    long deadline0 = deadlines[entryIdx0];
+    long deadline1 = deadlines[entryIdx1];
+    
+    return (deadline0 < deadline1)
+      || ((deadline0 == deadline1) && (entryIdx0 < entryIdx1));
+  }
+  
+  private void set(int pos, int entryIdx) {
+    heap    [pos]      = entryIdx;
+    heapIdxs[entryIdx] = pos;
+  }
+  
+  private void siftUp(int pos) {
+    int entryIdx = heap[pos];
+    
+    while (pos > 0) {
+      int parent = (pos - 1) / 2;
+      
+      if (!isEarlier(entryIdx, heap[parent])) {
+        break;
+      }
+      
+      set(pos, heap[parent]);
+      
+      pos = parent;
+    }
+    
+    set(pos, entryIdx);
+  }
+  
+  private void siftDown(int pos) {
+    int entryIdx = heap[pos];
+    
+    while (true) {
+      int child = 2 * pos + 1;
+      
+      if (child >= heapSize) {
+        break;
+      }
+      
+      if ((child + 1 < heapSize) && isEarlier(heap[child + 1], heap[child])) {
+        child++;
+      }
+      
+      if (!isEarlier(heap[child], entryIdx)) {
+        break;
+      }
+      
+      set(pos, heap[child]);
+      
+      pos = child;
+    }
+    
+    set(pos, entryIdx);
+  }
+}
@@ -27,6 +27,7 @@ public final class Simulation {
   
   private PathEnabler       pathEnabler;
   private CollisionDetector collDetect;
+  private PathScheduler     scheduler;
   
   public Simulation(Solid sol, SimulationListener listener) {
     this.sol      = sol;
@@ -34,12 +35,15 @@ public final class Simulation {
     
     pathEnabler = new PathEnabler      (sol, createPathEnablerListener());
     collDetect  = new CollisionDetector(sol);
+    scheduler   = new PathScheduler    (sol);
   }
   
   private PathEnablerListener createPathEnablerListener() {
     return new PathEnablerListener() {
       @Override
       public void pathEnabled(int pathIdx, boolean enabled) {
+        scheduler.invalidate();
+        
         if (listener != null) {
           listener.pathEnabled(pathIdx, enabled);
         }
@@ -61,15 +65,30 @@ public final class Simulation {
     return ms;
   }
   
+  private float getMoverTime(Mover mover, float t) {
+    Path path = sol.paths[mover.pathIdx];
+    
+    if (path.enabled && (mover.tm + getAccumulatorTime(t) > path.base.tm)) {
+      return Util.millisecondsToSeconds(path.base.tm - mover.tm);
+    }
+    
+    return t;
+  }
+  
+  private float getSwitchTime(Switch zwitch, float t) {
+    if ((zwitch.tm < zwitch.base.tm)
+        && (zwitch.tm + getAccumulatorTime(t) > zwitch.base.tm)) {
+      return Util.millisecondsToSeconds(zwitch.base.tm - zwitch.tm);
+    }
+    
+    return t;
+  }
+  
   private float getMoversTime(float dt) {
     float t = dt;
     
     for (Mover mover: sol.movers) {
-      Path path = sol.paths[mover.pathIdx];
-      
-      if (path.enabled && (mover.tm + getAccumulatorTime(t) > path.base.tm)) {
-        t = Util.millisecondsToSeconds(path.base.tm - mover.tm);
-      }
+      t = getMoverTime(mover, t);
     }
     
     return t;
@@ -79,16 +98,13 @@ public final class Simulation {
     float t = dt;
     
     for (Switch zwitch: sol.switches) {
-      if ((zwitch.tm < zwitch.base.tm)
-          && (zwitch.tm + getAccumulatorTime(t) > zwitch.base.tm)) {
-        t = Util.millisecondsToSeconds(zwitch.base.tm - zwitch.tm);
-      }
+      t = getSwitchTime(zwitch, t);
     }
     
     return t;
   }
   
-  private float getPathTime(float dt) {
+  private float scanPathTime(float dt) {
     float t = dt;
     
     t = getMoversTime  (t);
@@ -97,6 +113,36 @@ public final class Simulation {
     return t;
   }
   
+  /**
+   * Returns the same time as {@link #scanPathTime(float)}, but only
+   * visits the movers and switches that are due within {@code dt}.
+   * <p>
+   * Entries that are not due cannot shorten any time up to
+   * {@code dt}. Should rounding ever lengthen the time instead,
+   * all entries are scanned.
+   */
+  private float getPathTime(float dt) {
+    int count = scheduler.collectDueEntries(getAccumulatorTime(dt));
+    
+    float t = dt;
+    
+    for (int idx = 0; idx < count; idx++) {
+      int entryIdx = scheduler.getDueEntry(idx);
+      
+      if (entryIdx < sol.movers.length) {
+        t = getMoverTime(sol.movers[entryIdx], t);
+      } else {
+        t = getSwitchTime(sol.switches[entryIdx - sol.movers.length], t);
+      }
+      
+      if (t > dt) {
+        return scanPathTime(dt);
+      }
+    }
+    
+    return t;
+  }
+  
   /**
    * Integrates the rotation of the given basis {@code e} under
    * angular velocity {@code w} through time {@code dt}.
@@ -257,6 +303,8 @@ public final class Simulation {
         mover.t  = 0.0f;
         mover.tm = 0;
         
+        scheduler.moverWrapped(moverIdx);
+        
         if (listener != null) {
           listener.moverModified(moverIdx, mover.pathIdx, mover.t);
         }
@@ -282,6 +330,8 @@ public final class Simulation {
       zwitch.tm += ms;
       
       if (zwitch.tm >= zwitch.base.tm) {
+        scheduler.switchExpired(switchIdx);
+        
         // Update the path.
         
         if ((zwitch.base.pathIdx >= 0)
@@ -333,11 +383,25 @@ public final class Simulation {
     
     int ms = stepAccumulator(dt);
     
+    scheduler.advance(ms);
+    
     stepMovers  (dt, ms);
     stepSwitches(dt, ms);
     stepBalls   (dt);
   }
   
+  public Motion getMotion() {
+    return collDetect.getMotion();
+  }
+  
+  /**
+   * Must be called after switches or paths were changed outside
+   * of this simulation.
+   */
+  public void invalidatePathSchedule() {
+    scheduler.invalidate();
+  }
+  
   public void step(float dt) {
     float tt = dt;
     
@@ -17,13 +17,10 @@
 
 package com.uppgarn.nuncabola.core.renderers;
 
-import com.uppgarn.nuncabola.core.graphics.*;
-import com.uppgarn.nuncabola.core.image.*;
 import com.uppgarn.nuncabola.core.math.*;
 import com.uppgarn.nuncabola.core.solid.*;
 
-import static org.lwjgl.opengl.GL11.*;
-import static org.lwjgl.opengl.GL12.*;
+import java.util.*;
 
 final class Asset {
   public static final int WHITE_INT = 0xFFFFFFFF;
@@ -51,10 +48,38 @@ final class Asset {
   private final int eInt;
   private final int hInt;
   
-  private int texture;
+  private final int texture;
+  
+  /**
+   * Creates the assets of {@code mtrls}, acquiring their textures
+   * from the texture cache at once.
+   */
+  public static Asset[] createAssets(
+      Material[] mtrls,
+      boolean    shadowedEnabled) {
+    int[] textures =
+      RendererHome.getTextureCache().acquire(Arrays.asList(mtrls));
+    
+    Asset[] assets = new Asset[mtrls.length];
+    
+    for (int idx = 0; idx < mtrls.length; idx++) {
+      assets[idx] = new Asset(mtrls[idx], shadowedEnabled, textures[idx]);
+    }
+    
+    return assets;
+  }
   
   public Asset(Material mtrl, boolean shadowedEnabled) {
-    this.mtrl = mtrl;
+    this(
+      mtrl,
+      shadowedEnabled,
+      TextureCache.isTextured(mtrl)
+        ? RendererHome.getTextureCache().acquire(mtrl) : 0);
+  }
+  
+  private Asset(Material mtrl, boolean shadowedEnabled, int texture) {
+    this.mtrl    = mtrl;
+    this.texture = texture;
     
     flags = shadowedEnabled ? mtrl.flags : mtrl.flags & ~Material.SHADOWED;
     
@@ -63,62 +88,30 @@ final class Asset {
     sInt = toInt (mtrl.s);
     eInt = toInt (mtrl.e);
     hInt = toByte(mtrl.h);
-    
-    texture = createTexture();
   }
   
-  private Image getImage(String path) {
+  /**
+   * Returns the paths at which the image of a material path is looked
+   * up, in order.
+   */
+  static List<String> getImagePaths(String path) {
+    List<String> paths = new ArrayList<>(4);
+    
     if (!path.isEmpty()) {
       for (int idx0 = 0; idx0 < 2; idx0++) {
         String path0 = (idx0 == 0) ? "textures/".concat(path) : path;
         
         if (path0.endsWith(".png") || path0.endsWith(".jpg")) {
-          Image img = RendererHome.loadImage(path0);
-          
-          if (img != null) {
-            return img;
-          }
+          paths.add(path0);
         } else {
           for (int idx1 = 0; idx1 < 2; idx1++) {
-            String path1 = path0.concat((idx1 == 0) ? ".png" : ".jpg");
-            
-            Image img = RendererHome.loadImage(path1);
-            
-            if (img != null) {
-              return img;
-            }
+            paths.add(path0.concat((idx1 == 0) ? ".png" : ".jpg"));
           }
         }
       }
     }
     
-    return null;
-  }
-  
-  private Image getImage() {
-    if (mtrl.d.a == 0.0f) {
-      return null;
-    }
-    
-    return getImage(mtrl.path);
-  }
-  
-  private int createTexture() {
-    int texture = Gfx.createTexture(getImage(), true);
-    
-    if (texture != 0) {
-      // Set the texture to clamp or repeat based on material type.
-      
-      int sParam = ((flags & Material.CLAMP_S) != 0)
-                   ? GL_CLAMP_TO_EDGE : GL_REPEAT;
-      int tParam = ((flags & Material.CLAMP_T) != 0)
-                   ? GL_CLAMP_TO_EDGE : GL_REPEAT;
-      
-      glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, sParam);
-      glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, tParam);
-    }
-    
-    return texture;
+    return paths;
   }
   
   public Material getMaterial() {
@@ -154,6 +147,6 @@ final class Asset {
   }
   
   public void deinitialize() {
-    glDeleteTextures(texture);
+    RendererHome.getTextureCache().release(texture);
   }
 }
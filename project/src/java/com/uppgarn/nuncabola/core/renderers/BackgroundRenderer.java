@@ -38,11 +38,17 @@ public final class BackgroundRenderer {
       return null;
     }
     
-    Material mtrl = sol.base.mtrls[0];
+    // Change a copy, as the solid base may be shared.
+    
+    Material[] mtrls = sol.base.mtrls.clone();
+    
+    Material mtrl = new Material(mtrls[0]);
     mtrl.flags |= Material.CLAMP_T;
     mtrl.path   = texturePath;
     
-    return new SolidKit(sol);
+    mtrls[0] = mtrl;
+    
+    return new SolidKit(sol, mtrls);
   }
   
   void draw(State state) {
@@ -0,0 +1,224 @@
+/*
+ * CacheFiles.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.renderers;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+
+/**
+ * File handling shared by the {@link MeshCache} and the
+ * {@link ImageCache}.
+ * <p>
+ * Cache files are named after a hash of a data path. They are written
+ * to a temporary file first, so that readers never see a partial
+ * file. After each write, the least recently used files are deleted
+ * until the cache files of the directory take up at most
+ * {@link #MAX_SIZE} bytes. Reading a file marks it as used.
+ */
+final class CacheFiles {
+  /**
+   * Maximum total size of the cache files in a directory.
+   */
+  private static final long MAX_SIZE = 512L << 20;
+  
+  private static final String TEMP_EXTENSION = ".tmp";
+  
+  /**
+   * Derives the name of the cache file of the data file at
+   * {@code path}.
+   */
+  public static String getFileName(String path, String extension) {
+    long hash = 0xCBF29CE484222325L;
+    
+    for (int idx = 0; idx < path.length(); idx++) {
+      hash ^= path.charAt(idx);
+      hash *= 0x100000001B3L;
+    }
+    
+    return String.format("%016x", hash).concat(extension);
+  }
+  
+  /**
+   * Marks {@code file} as recently used.
+   */
+  public static void touch(Path file) {
+    try {
+      Files.setLastModifiedTime(
+        file,
+        FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException ex) {
+      // Keep the old time.
+    }
+  }
+  
+  /**
+   * Maps {@code file} into memory in little-endian byte order.
+   */
+  public static ByteBuffer map(Path file) throws IOException {
+    ByteBuffer buf;
+    
+    try (FileChannel channel = FileChannel.open(file)) {
+      buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    
+    touch(file);
+    
+    return buf.order(ByteOrder.LITTLE_ENDIAN);
+  }
+  
+  /**
+   * Reads a key written by {@link #putKey} and compares it
+   * with {@code key}.
+   */
+  public static boolean readKey(ByteBuffer buf, String key) {
+    byte[] keyBytes = new byte[buf.getInt()];
+    buf.get(keyBytes);
+    
+    return key.equals(new String(keyBytes, StandardCharsets.UTF_8));
+  }
+  
+  public static byte[] getKeyBytes(String key) {
+    return key.getBytes(StandardCharsets.UTF_8);
+  }
+  
+  public static void putKey(ByteBuffer buf, byte[] keyBytes) {
+    buf.putInt(keyBytes.length);
+    buf.put   (keyBytes);
+  }
+  
+  /**
+   * Writes {@code bufs} to {@code file} in {@code dir}, then trims
+   * the directory.
+   */
+  public static void write(Path dir, Path file, ByteBuffer... bufs)
+      throws IOException {
+    Path tempFile = Files.createTempFile(dir, null, TEMP_EXTENSION);
+    
+    try {
+      try (FileChannel channel = FileChannel.open(
+          tempFile,
+          StandardOpenOption.WRITE)) {
+        while (hasRemaining(bufs)) {
+          channel.write(bufs);
+        }
+      }
+      
+      Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+    
+    trim(dir);
+  }
+  
+  private static boolean hasRemaining(ByteBuffer[] bufs) {
+    for (ByteBuffer buf: bufs) {
+      if (buf.hasRemaining()) {
+        return true;
+      }
+    }
+    
+    return false;
+  }
+  
+  private static boolean isCacheFile(Path file) {
+    String name = file.getFileName().toString();
+    
+    return name.endsWith(MeshCache .EXTENSION)
+        || name.endsWith(ImageCache.EXTENSION);
+  }
+  
+  /**
+   * Deletes the least recently used cache files in {@code dir}
+   * while they take up more than {@link #MAX_SIZE} bytes.
+   */
+  private static void trim(Path dir) {
+    List<Entry> entries   = new ArrayList<>();
+    long        totalSize = 0;
+    
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+      for (Path file: stream) {
+        if (!isCacheFile(file)) {
+          continue;
+        }
+        
+        BasicFileAttributes attrs;
+        
+        try {
+          attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException ex) {
+          continue;
+        }
+        
+        entries.add(new Entry(
+          file,
+          attrs.size(),
+          attrs.lastModifiedTime().toMillis()));
+        
+        totalSize += attrs.size();
+      }
+    } catch (IOException | DirectoryIteratorException ex) {
+      return;
+    }
+    
+    if (totalSize <= MAX_SIZE) {
+      return;
+    }
+    
+    Collections.sort(entries, new Comparator<Entry>() {
+      @Override
+      public int compare(Entry entry0, Entry entry1) {
+        return Long.compare(entry0.time, entry1.time);
+      }
+    });
+    
+    for (Entry entry: entries) {
+      if (totalSize <= MAX_SIZE) {
+        break;
+      }
+      
+      try {
+        Files.deleteIfExists(entry.file);
+        
+        totalSize -= entry.size;
+      } catch (IOException ex) {
+        // The file may be in use. Try the next one.
+      }
+    }
+  }
+  
+  private CacheFiles() {
+  }
+  
+  private static final class Entry {
+    public final Path file;
+    public final long size;
+    public final long time;
+    
+    public Entry(Path file, long size, long time) {
+      this.file = file;
+      this.size = size;
+      this.time = time;
+    }
+  }
+}
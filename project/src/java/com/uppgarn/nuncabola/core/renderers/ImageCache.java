@@ -0,0 +1,275 @@
+/*
+ * ImageCache.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.renderers;
+
+import com.uppgarn.nuncabola.core.folder.*;
+import com.uppgarn.nuncabola.core.graphics.*;
+import com.uppgarn.nuncabola.core.image.*;
+
+import com.uppgarn.codelibf.io.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+/**
+ * On-disk cache of decoded and scaled texture images.
+ * <p>
+ * Each image file gets one cache file, named after its data path.
+ * The file starts with the data path and the stamp of the image
+ * file, so that it is rebuilt once the image changes, and with the
+ * source size and scale factor, so that it is rebuilt once the
+ * texture quality changes. The raw pixels follow. Reading maps the
+ * file into memory and hands the pixels to GL directly.
+ */
+final class ImageCache {
+  private static final int MAGIC   = 0x4E42494D;
+  private static final int VERSION = 1;
+  
+  static final String EXTENSION = ".nbi";
+  
+  /**
+   * Returns the image at {@code path}, loaded from {@code src} and
+   * scaled as by {@link Gfx#getTextureImage}, reading it from the
+   * cache in {@code dir} if possible. Returns {@code null} if the
+   * image cannot be loaded.
+   */
+  public static Image getTextureImage(Path dir, String path, Source src) {
+    String stamp = SourceStampTool.getStamp(src);
+    
+    if (stamp == null) {
+      return loadTextureImage(src);
+    }
+    
+    String key  = path + "|" + stamp;
+    Path   file = dir.resolve(getFileName(path));
+    
+    try {
+      Image img = read(file, key);
+      
+      if (img != null) {
+        return img;
+      }
+    } catch (IOException ex) {
+      // Rebuild missing or unreadable file.
+    }
+    
+    Image img;
+    
+    try {
+      img = ImageLoader.load(src, false);
+    } catch (IOException ex) {
+      return null;
+    }
+    
+    if (img == null) {
+      return null;
+    }
+    
+    Image textureImg = Gfx.getTextureImage(img);
+    
+    try {
+      write(dir, file, key, img, textureImg);
+    } catch (IOException ex) {
+      // Keep going without cache.
+    }
+    
+    return textureImg;
+  }
+  
+  /**
+   * Makes sure the cache in {@code dir} holds the image at
+   * {@code path}, without keeping its pixels in memory. Returns
+   * {@code false} if the image cannot be loaded or cached.
+   */
+  public static boolean prepare(Path dir, String path, Source src) {
+    String stamp = SourceStampTool.getStamp(src);
+    
+    if (stamp == null) {
+      return false;
+    }
+    
+    String key  = path + "|" + stamp;
+    Path   file = dir.resolve(getFileName(path));
+    
+    try {
+      if (isCurrent(file, key)) {
+        return true;
+      }
+    } catch (IOException ex) {
+      // Rebuild missing or unreadable file.
+    }
+    
+    try {
+      Image img = ImageLoader.load(src, false);
+      
+      if (img == null) {
+        return false;
+      }
+      
+      write(dir, file, key, img, Gfx.getTextureImage(img));
+    } catch (IOException ex) {
+      return false;
+    }
+    
+    return true;
+  }
+  
+  private static Image loadTextureImage(Source src) {
+    try {
+      Image img = ImageLoader.load(src, false);
+      
+      return (img == null) ? null : Gfx.getTextureImage(img);
+    } catch (IOException ex) {
+      return null;
+    }
+  }
+  
+  private static String getFileName(String path) {
+    return CacheFiles.getFileName(path, EXTENSION);
+  }
+  
+  /**
+   * Reads the header in {@code buf}. Returns {@code null} if it does
+   * not match {@code key} and the current texture quality.
+   */
+  private static Header readHeader(ByteBuffer buf, String key) {
+    if ((buf.getInt() != MAGIC)
+        || (buf.getInt() != VERSION)
+        || !CacheFiles.readKey(buf, key)) {
+      return null;
+    }
+    
+    int     srcWidth  = buf.getInt();
+    int     srcHeight = buf.getInt();
+    int     factor    = buf.getInt();
+    int     width     = buf.getInt();
+    int     height    = buf.getInt();
+    boolean alpha     = buf.getInt() != 0;
+    
+    if ((factor != Gfx.getTextureFactor(srcWidth, srcHeight))
+        || (width  != srcWidth  / factor)
+        || (height != srcHeight / factor)) {
+      return null;
+    }
+    
+    return new Header(width, height, alpha);
+  }
+  
+  /**
+   * Checks the header of {@code file} without mapping the pixels,
+   * and marks the file as used if it is current.
+   */
+  private static boolean isCurrent(Path file, String key)
+      throws IOException {
+    byte[]     keyBytes = CacheFiles.getKeyBytes(key);
+    ByteBuffer buf      = ByteBuffer.allocate(4 * 9 + keyBytes.length);
+    long       size;
+    
+    try (FileChannel channel = FileChannel.open(file)) {
+      size = channel.size();
+      
+      while (buf.hasRemaining() && (channel.read(buf) != -1)) {
+        // Keep reading.
+      }
+    }
+    
+    buf.flip();
+    buf.order(ByteOrder.LITTLE_ENDIAN);
+    
+    try {
+      Header header = readHeader(buf, key);
+      
+      if ((header == null)
+          || (size != buf.position() + (long) header.getDataSize())) {
+        return false;
+      }
+    } catch (BufferUnderflowException | IllegalArgumentException ex) {
+      return false;
+    }
+    
+    CacheFiles.touch(file);
+    
+    return true;
+  }
+  
+  private static Image read(Path file, String key) throws IOException {
+    ByteBuffer buf = CacheFiles.map(file);
+    
+    try {
+      Header header = readHeader(buf, key);
+      
+      if ((header == null) || (buf.remaining() != header.getDataSize())) {
+        return null;
+      }
+      
+      return new Image(buf.slice(), header.width, header.height, header.alpha);
+    } catch (BufferUnderflowException | IllegalArgumentException ex) {
+      return null;
+    }
+  }
+  
+  private static void write(
+      Path   dir,
+      Path   file,
+      String key,
+      Image  img,
+      Image  textureImg) throws IOException {
+    ByteBuffer data     = textureImg.getBuffer();
+    byte[]     keyBytes = CacheFiles.getKeyBytes(key);
+    
+    // Header.
+    
+    ByteBuffer header = ByteBuffer.allocate(4 * 9 + keyBytes.length);
+    header.order(ByteOrder.LITTLE_ENDIAN);
+    
+    header.putInt(MAGIC);
+    header.putInt(VERSION);
+    CacheFiles.putKey(header, keyBytes);
+    header.putInt(img.getWidth ());
+    header.putInt(img.getHeight());
+    header.putInt(Gfx.getTextureFactor(img.getWidth(), img.getHeight()));
+    header.putInt(textureImg.getWidth ());
+    header.putInt(textureImg.getHeight());
+    header.putInt(textureImg.hasAlpha() ? 1 : 0);
+    
+    header.flip();
+    
+    CacheFiles.write(dir, file, header, data);
+  }
+  
+  private ImageCache() {
+  }
+  
+  private static final class Header {
+    public final int     width;
+    public final int     height;
+    public final boolean alpha;
+    
+    public Header(int width, int height, boolean alpha) {
+      this.width  = width;
+      this.height = height;
+      this.alpha  = alpha;
+    }
+    
+    public int getDataSize() {
+      return width * height * (alpha ? 4 : 3);
+    }
+  }
+}
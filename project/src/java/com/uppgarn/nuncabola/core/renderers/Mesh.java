@@ -35,20 +35,35 @@ final class Mesh {
   public static final int EBO_BLOCK = 3;
   public static final int EBO_TOTAL = EBO_BLOCK * EBO_ENTRY;
   
+  /**
+   * Element size of meshes with more than
+   * {@link #MAX_SHORT_VERT_COUNT} vertices.
+   */
+  public static final int EBO_ENTRY_INT = 4;
+  
+  public static final int MAX_SHORT_VERT_COUNT = 1 << 16;
+  
   private final Asset asset;
   
   private int vbo;
   private int vertCount;
   private int ebo;
   private int elemCount;
+  private int elemType;
   
-  public Mesh(Asset asset, ByteBuffer vboBuf, ByteBuffer eboBuf) {
+  public Mesh(
+      Asset      asset,
+      ByteBuffer vboBuf,
+      ByteBuffer eboBuf,
+      int        eboEntry) {
     this.asset = asset;
     
     vbo       = createVBO(vboBuf);
     vertCount = vboBuf.limit() / VBO_ENTRY;
     ebo       = createEBO(eboBuf);
-    elemCount = eboBuf.limit() / EBO_ENTRY;
+    elemCount = eboBuf.limit() / eboEntry;
+    elemType  = (eboEntry == EBO_ENTRY_INT)
+                ? GL_UNSIGNED_INT : GL_UNSIGNED_SHORT;
   }
   
   private int createVBO(ByteBuffer vboBuf) {
@@ -99,7 +114,7 @@ final class Mesh {
     if ((state.getFlags() & Material.PARTICLE) != 0) {
       glDrawArrays(GL_POINTS, 0, vertCount);
     } else {
-      glDrawElements(GL_TRIANGLES, elemCount, GL_UNSIGNED_SHORT, 0);
+      glDrawElements(GL_TRIANGLES, elemCount, elemType, 0);
     }
   }
   
@@ -0,0 +1,208 @@
+/*
+ * MeshCache.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.renderers;
+
+import com.uppgarn.nuncabola.core.solid.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.file.Path;
+
+/**
+ * On-disk cache of the mesh data of solids.
+ * <p>
+ * Each solid known to the {@link SolidCache} gets one file, named
+ * after its data path. The file starts with the solid cache key of
+ * the solid, so that it is rebuilt once the solid file changes, and
+ * holds the vertex and element data in native byte order. Reading
+ * maps the file into memory and hands slices of it to GL directly.
+ */
+final class MeshCache {
+  private static final int MAGIC   = 0x4D424E4E;
+  private static final int VERSION = 2;
+  
+  static final String EXTENSION = ".nbm";
+  
+  private static final int BYTE_ORDER =
+    (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN) ? 0 : 1;
+  
+  /**
+   * Returns the mesh data of {@code solBase}, reading them from
+   * the cache in {@code dir} if possible. {@code dir} may be
+   * {@code null} to bypass the cache.
+   */
+  public static MeshData getMeshData(Path dir, SolidBase solBase) {
+    String key = (dir == null) ? null : SolidCache.getKey(solBase);
+    
+    if (key == null) {
+      return MeshCreator.createMeshData(solBase);
+    }
+    
+    Path file = dir.resolve(getFileName(key));
+    
+    try {
+      MeshData data = read(file, key, solBase);
+      
+      if (data != null) {
+        return data;
+      }
+    } catch (IOException ex) {
+      // Rebuild missing or unreadable file.
+    }
+    
+    MeshData data = MeshCreator.createMeshData(solBase);
+    
+    try {
+      write(dir, file, key, data);
+    } catch (IOException ex) {
+      // Keep going without cache.
+    }
+    
+    return data;
+  }
+  
+  /**
+   * Derives the file name from the data path part of {@code key},
+   * so that a changed solid replaces its old file.
+   */
+  private static String getFileName(String key) {
+    int    idx  = key.indexOf('|');
+    String path = (idx == -1) ? key : key.substring(0, idx);
+    
+    return CacheFiles.getFileName(path, EXTENSION);
+  }
+  
+  private static MeshData read(Path file, String key, SolidBase solBase)
+      throws IOException {
+    ByteBuffer buf = CacheFiles.map(file);
+    
+    try {
+      if ((buf.getInt() != MAGIC)
+          || (buf.getInt() != VERSION)
+          || (buf.getInt() != BYTE_ORDER)
+          || !CacheFiles.readKey(buf, key)) {
+        return null;
+      }
+      
+      int vboSize = buf.getInt();
+      int eboSize = buf.getInt();
+      
+      if (buf.getInt() != solBase.bodies.length) {
+        return null;
+      }
+      
+      MeshData.Entry[][] entryArrays =
+        new MeshData.Entry[solBase.bodies.length][];
+      
+      for (int idx = 0; idx < entryArrays.length; idx++) {
+        MeshData.Entry[] entries = new MeshData.Entry[buf.getInt()];
+        
+        for (int idx0 = 0; idx0 < entries.length; idx0++) {
+          MeshData.Entry entry = new MeshData.Entry(
+            buf.getInt(),
+            buf.getInt(),
+            buf.getInt(),
+            buf.getInt(),
+            buf.getInt(),
+            buf.getInt());
+          
+          if ((entry.mtrlIdx < 0)
+              || (entry.mtrlIdx >= solBase.mtrls.length)
+              || !isRange(entry.vboOff, entry.vboLen, vboSize)
+              || !isRange(entry.eboOff, entry.eboLen, eboSize)
+              || ((entry.eboEntry != Mesh.EBO_ENTRY)
+                && (entry.eboEntry != Mesh.EBO_ENTRY_INT))) {
+            return null;
+          }
+          
+          entries[idx0] = entry;
+        }
+        
+        entryArrays[idx] = entries;
+      }
+      
+      ByteBuffer vboData = slice(buf, vboSize);
+      ByteBuffer eboData = slice(buf, eboSize);
+      
+      return new MeshData(entryArrays, vboData, eboData);
+    } catch (BufferUnderflowException | IllegalArgumentException ex) {
+      return null;
+    }
+  }
+  
+  private static boolean isRange(int off, int len, int size) {
+    return (off >= 0) && (len >= 0) && (len <= size - off);
+  }
+  
+  private static ByteBuffer slice(ByteBuffer buf, int len) {
+    ByteBuffer buf0 = buf.duplicate();
+    buf0.limit(buf.position() + len);
+    
+    buf.position(buf.position() + len);
+    
+    return buf0.slice().order(ByteOrder.nativeOrder());
+  }
+  
+  private static void write(Path dir, Path file, String key, MeshData data)
+      throws IOException {
+    MeshData.Entry[][] entryArrays = data.getEntryArrays();
+    
+    ByteBuffer vboData  = data.getVBOData();
+    ByteBuffer eboData  = data.getEBOData();
+    byte[]     keyBytes = CacheFiles.getKeyBytes(key);
+    
+    // Header.
+    
+    int headerSize = 4 * 7 + keyBytes.length;
+    
+    for (MeshData.Entry[] entries: entryArrays) {
+      headerSize += 4 + 4 * 6 * entries.length;
+    }
+    
+    ByteBuffer header = ByteBuffer.allocate(headerSize);
+    header.order(ByteOrder.LITTLE_ENDIAN);
+    
+    header.putInt(MAGIC);
+    header.putInt(VERSION);
+    header.putInt(BYTE_ORDER);
+    CacheFiles.putKey(header, keyBytes);
+    header.putInt(vboData.remaining());
+    header.putInt(eboData.remaining());
+    header.putInt(entryArrays.length);
+    
+    for (MeshData.Entry[] entries: entryArrays) {
+      header.putInt(entries.length);
+      
+      for (MeshData.Entry entry: entries) {
+        header.putInt(entry.mtrlIdx);
+        header.putInt(entry.vboOff);
+        header.putInt(entry.vboLen);
+        header.putInt(entry.eboOff);
+        header.putInt(entry.eboLen);
+        header.putInt(entry.eboEntry);
+      }
+    }
+    
+    header.flip();
+    
+    CacheFiles.write(dir, file, header, vboData, eboData);
+  }
+  
+  private MeshCache() {
+  }
+}
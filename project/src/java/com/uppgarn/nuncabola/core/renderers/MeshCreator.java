@@ -19,33 +19,107 @@ package com.uppgarn.nuncabola.core.renderers;
 
 import com.uppgarn.nuncabola.core.solid.*;
 
-import org.lwjgl.*;
-
 import java.nio.*;
-import java.util.*;
 
-final class MeshCreator {
-  public static Mesh[][] createMeshArrays(SolidBase solBase, Asset[] assets) {
-    return new MeshCreator(solBase, assets).createMeshArrays();
+/**
+ * Builds the meshes of a solid, one per body and used material.
+ * <p>
+ * The geoms of each body are bucketed by material in a single pass.
+ * Meshes with more vertices than short elements can address get
+ * 32-bit elements.
+ */
+public final class MeshCreator {
+  static MeshData createMeshData(SolidBase solBase) {
+    return new MeshCreator(solBase).createMeshData();
+  }
+  
+  /**
+   * Builds the mesh data of {@code solBase} without GL and returns
+   * the number of elements, for benchmarking.
+   */
+  public static long getElementCount(SolidBase solBase) {
+    MeshData data = createMeshData(solBase);
+    
+    long count = 0;
+    
+    for (MeshData.Entry[] entries: data.getEntryArrays()) {
+      for (MeshData.Entry entry: entries) {
+        count += entry.eboLen / entry.eboEntry;
+      }
+    }
+    
+    return count;
   }
   
   private final SolidBase solBase;
-  private final Asset[]   assets;
+  
+  /**
+   * Geom indices of each body, grouped by material.
+   */
+  private final int[][] bodyGeomIdxs;
+  
+  /**
+   * Start of each material group in {@link #bodyGeomIdxs}, followed
+   * by its end.
+   */
+  private final int[][] bodyMtrlStarts;
   
   private ByteBuffer vboBuf;
   private ByteBuffer eboBuf;
-  private int[]      indices;
+  private int[]      elems;
   
-  private MeshCreator(SolidBase solBase, Asset[] assets) {
+  /**
+   * Remapped vertex index of each offset, valid where the stamp
+   * equals the current mesh number.
+   */
+  private int[] indices;
+  private int[] stamps;
+  private int   stamp;
+  
+  private MeshCreator(SolidBase solBase) {
     this.solBase = solBase;
-    this.assets  = assets;
     
-    int offsetCount  = solBase.offsets.length;
-    int maxGeomCount = getMaximumGeomCount();
+    int bodyCount = solBase.bodies.length;
+    
+    bodyGeomIdxs   = new int[bodyCount][];
+    bodyMtrlStarts = new int[bodyCount][];
+    
+    for (int idx = 0; idx < bodyCount; idx++) {
+      bucketGeoms(idx);
+    }
+    
+    // Size buffers by the largest possible meshes. A mesh has at most
+    // as many vertices as elements or offsets.
+    
+    int vboSize      = 0;
+    int eboSize      = 0;
+    int maxElemCount = 0;
+    
+    for (int[] mtrlStarts: bodyMtrlStarts) {
+      for (int mtrlIdx = 0; mtrlIdx < solBase.mtrls.length; mtrlIdx++) {
+        int elemCount =
+          (mtrlStarts[mtrlIdx + 1] - mtrlStarts[mtrlIdx]) * Mesh.EBO_BLOCK;
+        int vertCount = Math.min(elemCount, solBase.offsets.length);
+        
+        vboSize += vertCount * Mesh.VBO_ENTRY;
+        eboSize += elemCount * getElementSize(vertCount);
+        
+        maxElemCount = Math.max(maxElemCount, elemCount);
+      }
+    }
     
-    vboBuf  = BufferUtils.createByteBuffer(offsetCount  * Mesh.VBO_TOTAL);
-    eboBuf  = BufferUtils.createByteBuffer(maxGeomCount * Mesh.EBO_TOTAL);
-    indices = new int[offsetCount];
+    vboBuf  = ByteBuffer.allocateDirect(vboSize).order(ByteOrder.nativeOrder());
+    eboBuf  = ByteBuffer.allocateDirect(eboSize).order(ByteOrder.nativeOrder());
+    elems   = new int[maxElemCount];
+    indices = new int[solBase.offsets.length];
+    stamps  = new int[solBase.offsets.length];
+    stamp   = 0;
+  }
+  
+  private static int getElementSize(int vertCount) {
+    return (vertCount > Mesh.MAX_SHORT_VERT_COUNT)
+      ? Mesh.EBO_ENTRY_INT
+      : Mesh.EBO_ENTRY;
   }
   
   private int getGeomCount(Body body) {
@@ -66,54 +140,60 @@ final class MeshCreator {
     return count;
   }
   
-  private int getMaximumGeomCount() {
-    int count = 0;
-    
-    for (Body body: solBase.bodies) {
-      count = Math.max(count, getGeomCount(body));
-    }
-    
-    return count;
+  private boolean isMaterialValid(Geom geom) {
+    return (geom.mtrlIdx >= 0) && (geom.mtrlIdx < solBase.mtrls.length);
   }
   
-  private boolean isMaterialUsed(int geom0Idx, int geomCount, int mtrlIdx) {
-    for (int idx = 0; idx < geomCount; idx++) {
-      Geom geom = solBase.geoms[solBase.indices[geom0Idx + idx]];
-      
-      if (geom.mtrlIdx == mtrlIdx) {
-        return true;
-      }
-    }
+  /**
+   * Sorts the geoms of a body by material with a counting sort, which
+   * keeps their order within each material.
+   */
+  private void bucketGeoms(int bodyIdx) {
+    Body body = solBase.bodies[bodyIdx];
     
-    return false;
-  }
-  
-  private boolean isMaterialUsed(Body body, int mtrlIdx) {
-    // Lump geoms.
+    int[] geomIdxs   = new int[getGeomCount(body)];
+    int[] mtrlStarts = new int[solBase.mtrls.length + 1];
+    int   geomIdx    = 0;
+    
+    // Collect geoms and count them per material.
     
     for (int idx = 0; idx < body.lumpCount; idx++) {
       Lump lump = solBase.lumps[body.lump0Idx + idx];
       
-      if (isMaterialUsed(lump.geom0Idx, lump.geomCount, mtrlIdx)) {
-        return true;
+      for (int idx0 = 0; idx0 < lump.geomCount; idx0++) {
+        geomIdxs[geomIdx++] = solBase.indices[lump.geom0Idx + idx0];
       }
     }
     
-    // Body geoms.
+    for (int idx = 0; idx < body.geomCount; idx++) {
+      geomIdxs[geomIdx++] = solBase.indices[body.geom0Idx + idx];
+    }
     
-    return isMaterialUsed(body.geom0Idx, body.geomCount, mtrlIdx);
-  }
-  
-  private int getMaterialCount(Body body) {
-    int count = 0;
+    for (int idx: geomIdxs) {
+      if (isMaterialValid(solBase.geoms[idx])) {
+        mtrlStarts[solBase.geoms[idx].mtrlIdx + 1]++;
+      }
+    }
+    
+    // Turn counts into starts.
     
     for (int mtrlIdx = 0; mtrlIdx < solBase.mtrls.length; mtrlIdx++) {
-      if (isMaterialUsed(body, mtrlIdx)) {
-        count++;
+      mtrlStarts[mtrlIdx + 1] += mtrlStarts[mtrlIdx];
+    }
+    
+    // Distribute geoms.
+    
+    int[] sortedIdxs = new int[mtrlStarts[solBase.mtrls.length]];
+    int[] nextIdxs   = mtrlStarts.clone();
+    
+    for (int idx: geomIdxs) {
+      if (isMaterialValid(solBase.geoms[idx])) {
+        sortedIdxs[nextIdxs[solBase.geoms[idx].mtrlIdx]++] = idx;
       }
     }
     
-    return count;
+    bodyGeomIdxs  [bodyIdx] = sortedIdxs;
+    bodyMtrlStarts[bodyIdx] = mtrlStarts;
   }
   
   private void setVertex(Offset offset) {
@@ -133,91 +213,99 @@ final class MeshCreator {
     vboBuf.putFloat(texc.t);
   }
   
-  private void setElement(int elem) {
-    eboBuf.putShort((short) elem);
-  }
-  
-  private void fillBuffers(int offsetIdx) {
+  private int getVertexIndex(int offsetIdx, int vbo0Pos) {
     // Add vertex attributes to the VBO data if needed.
     
-    if (indices[offsetIdx] == -1) {
-      indices[offsetIdx] = vboBuf.position() / Mesh.VBO_ENTRY;
+    if (stamps[offsetIdx] != stamp) {
+      stamps [offsetIdx] = stamp;
+      indices[offsetIdx] = (vboBuf.position() - vbo0Pos) / Mesh.VBO_ENTRY;
       
       setVertex(solBase.offsets[offsetIdx]);
     }
     
-    // Add remapped offset index to the EBO data.
-    
-    setElement(indices[offsetIdx]);
+    return indices[offsetIdx];
   }
   
-  private void fillBuffers(Geom geom, int mtrlIdx) {
-    if (geom.mtrlIdx != mtrlIdx) {
-      return;
-    }
+  private MeshData.Entry createEntry(int bodyIdx, int mtrlIdx) {
+    int[] geomIdxs   = bodyGeomIdxs  [bodyIdx];
+    int[] mtrlStarts = bodyMtrlStarts[bodyIdx];
     
-    fillBuffers(geom.offset0Idx);
-    fillBuffers(geom.offset1Idx);
-    fillBuffers(geom.offset2Idx);
-  }
-  
-  private void fillBuffers(int geom0Idx, int geomCount, int mtrlIdx) {
-    for (int idx = 0; idx < geomCount; idx++) {
-      Geom geom = solBase.geoms[solBase.indices[geom0Idx + idx]];
-      
-      fillBuffers(geom, mtrlIdx);
-    }
-  }
-  
-  private void fillBuffers(Body body, int mtrlIdx) {
-    // Lump geoms.
+    int vboOff = vboBuf.position();
+    int eboOff = eboBuf.position();
     
-    for (int idx = 0; idx < body.lumpCount; idx++) {
-      Lump lump = solBase.lumps[body.lump0Idx + idx];
+    stamp++;
+    
+    // Fill VBO data and collect remapped offset indices.
+    
+    int elemCount = 0;
+    
+    for (int idx = mtrlStarts[mtrlIdx]; idx < mtrlStarts[mtrlIdx + 1]; idx++) {
+      Geom geom = solBase.geoms[geomIdxs[idx]];
       
-      fillBuffers(lump.geom0Idx, lump.geomCount, mtrlIdx);
+      elems[elemCount++] = getVertexIndex(geom.offset0Idx, vboOff);
+      elems[elemCount++] = getVertexIndex(geom.offset1Idx, vboOff);
+      elems[elemCount++] = getVertexIndex(geom.offset2Idx, vboOff);
     }
     
-    // Body geoms.
+    // Fill EBO data.
+    
+    int vboLen   = vboBuf.position() - vboOff;
+    int eboEntry = getElementSize(vboLen / Mesh.VBO_ENTRY);
+    
+    if (eboEntry == Mesh.EBO_ENTRY_INT) {
+      for (int idx = 0; idx < elemCount; idx++) {
+        eboBuf.putInt(elems[idx]);
+      }
+    } else {
+      for (int idx = 0; idx < elemCount; idx++) {
+        eboBuf.putShort((short) elems[idx]);
+      }
+    }
     
-    fillBuffers(body.geom0Idx, body.geomCount, mtrlIdx);
+    return new MeshData.Entry(
+      mtrlIdx,
+      vboOff,
+      vboLen,
+      eboOff,
+      eboBuf.position() - eboOff,
+      eboEntry);
   }
   
-  private Mesh createMesh(Body body, int mtrlIdx) {
-    vboBuf.clear();
-    eboBuf.clear();
-    
-    Arrays.fill(indices, -1);
+  private MeshData.Entry[] createEntries(int bodyIdx) {
+    int[] mtrlStarts = bodyMtrlStarts[bodyIdx];
     
-    fillBuffers(body, mtrlIdx);
+    int count = 0;
     
-    vboBuf.flip();
-    eboBuf.flip();
+    for (int mtrlIdx = 0; mtrlIdx < solBase.mtrls.length; mtrlIdx++) {
+      if (mtrlStarts[mtrlIdx + 1] > mtrlStarts[mtrlIdx]) {
+        count++;
+      }
+    }
     
-    return new Mesh(assets[mtrlIdx], vboBuf, eboBuf);
-  }
-  
-  private Mesh[] createMeshes(Body body) {
-    Mesh[] meshes = new Mesh[getMaterialCount(body)];
+    MeshData.Entry[] entries = new MeshData.Entry[count];
     
-    for (int mtrlIdx = 0, meshIdx = 0;
+    for (int mtrlIdx = 0, entryIdx = 0;
         mtrlIdx < solBase.mtrls.length;
         mtrlIdx++) {
-      if (isMaterialUsed(body, mtrlIdx)) {
-        meshes[meshIdx++] = createMesh(body, mtrlIdx);
+      if (mtrlStarts[mtrlIdx + 1] > mtrlStarts[mtrlIdx]) {
+        entries[entryIdx++] = createEntry(bodyIdx, mtrlIdx);
       }
     }
     
-    return meshes;
+    return entries;
   }
   
-  private Mesh[][] createMeshArrays() {
-    Mesh[][] meshArrays = new Mesh[solBase.bodies.length][];
+  private MeshData createMeshData() {
+    MeshData.Entry[][] entryArrays =
+      new MeshData.Entry[solBase.bodies.length][];
     
     for (int idx = 0; idx < solBase.bodies.length; idx++) {
-      meshArrays[idx] = createMeshes(solBase.bodies[idx]);
+      entryArrays[idx] = createEntries(idx);
     }
     
-    return meshArrays;
+    vboBuf.flip();
+    eboBuf.flip();
+    
+    return new MeshData(entryArrays, vboBuf, eboBuf);
   }
 }
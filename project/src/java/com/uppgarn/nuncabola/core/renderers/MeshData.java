@@ -0,0 +1,115 @@
+/*
+ * MeshData.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.renderers;
+
+import java.nio.*;
+
+/**
+ * Vertex and element data of the meshes of a solid, in the layout
+ * that {@link Mesh} hands to GL.
+ * <p>
+ * Meshes are listed per body in order of material index. Their data
+ * are consecutive ranges of one vertex and one element buffer, which
+ * may be memory-mapped from the {@link MeshCache}.
+ */
+final class MeshData {
+  private final Entry[][]  entryArrays;
+  private final ByteBuffer vboData;
+  private final ByteBuffer eboData;
+  
+  public MeshData(
+      Entry[][]  entryArrays,
+      ByteBuffer vboData,
+      ByteBuffer eboData) {
+    this.entryArrays = entryArrays;
+    this.vboData     = vboData;
+    this.eboData     = eboData;
+  }
+  
+  private static ByteBuffer slice(ByteBuffer data, int off, int len) {
+    ByteBuffer buf = data.duplicate();
+    buf.position(off);
+    buf.limit   (off + len);
+    
+    return buf.slice();
+  }
+  
+  public Entry[][] getEntryArrays() {
+    return entryArrays;
+  }
+  
+  public ByteBuffer getVBOData() {
+    return vboData.duplicate();
+  }
+  
+  public ByteBuffer getEBOData() {
+    return eboData.duplicate();
+  }
+  
+  public Mesh[][] createMeshArrays(Asset[] assets) {
+    Mesh[][] meshArrays = new Mesh[entryArrays.length][];
+    
+    for (int idx = 0; idx < entryArrays.length; idx++) {
+      Entry[] entries = entryArrays[idx];
+      Mesh [] meshes  = new Mesh[entries.length];
+      
+      for (int idx0 = 0; idx0 < entries.length; idx0++) {
+        Entry entry = entries[idx0];
+        
+        meshes[idx0] = new Mesh(
+          assets[entry.mtrlIdx],
+          slice(vboData, entry.vboOff, entry.vboLen),
+          slice(eboData, entry.eboOff, entry.eboLen),
+          entry.eboEntry);
+      }
+      
+      meshArrays[idx] = meshes;
+    }
+    
+    return meshArrays;
+  }
+  
+  public static final class Entry {
+    public final int mtrlIdx;
+    public final int vboOff;
+    public final int vboLen;
+    public final int eboOff;
+    public final int eboLen;
+    
+    /**
+     * Size of an element, {@link Mesh#EBO_ENTRY} or
+     * {@link Mesh#EBO_ENTRY_INT}.
+     */
+    public final int eboEntry;
+    
+    public Entry(
+        int mtrlIdx,
+        int vboOff,
+        int vboLen,
+        int eboOff,
+        int eboLen,
+        int eboEntry) {
+      this.mtrlIdx = mtrlIdx;
+      this.vboOff  = vboOff;
+      this.vboLen  = vboLen;
+      this.eboOff  = eboOff;
+      this.eboLen   = eboLen;
+      this.eboEntry = eboEntry;
+    }
+  }
+}
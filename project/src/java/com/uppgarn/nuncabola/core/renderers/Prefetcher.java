@@ -0,0 +1,224 @@
+/*
+ * Prefetcher.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.renderers;
+
+import com.uppgarn.nuncabola.core.folder.*;
+import com.uppgarn.nuncabola.core.image.*;
+import com.uppgarn.nuncabola.core.solid.*;
+
+import com.uppgarn.codelibf.io.*;
+import com.uppgarn.codelibf.util.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Loads the data of a level on a background thread ahead of time.
+ * <p>
+ * Solids are read into the {@link SolidCache}. The images of their
+ * materials are written to the {@link ImageCache} if images are
+ * cached, and otherwise decoded and held until the renderer takes
+ * them, so that loading the level only has to do the GL work. A new
+ * request replaces a pending or running one, and cancelling drops
+ * both the request and the images not yet taken.
+ */
+final class Prefetcher {
+  public static Prefetcher create(Folder dataFolder, Path cacheDir) {
+    Prefetcher instance = new Prefetcher(dataFolder, cacheDir);
+    instance.start();
+    
+    return instance;
+  }
+  
+  private final Folder dataFolder;
+  private final Path   cacheDir;
+  
+  private Map<String, Image> images;
+  private Request            request;
+  private Request            active;
+  
+  private TerminableThread thread;
+  
+  private Prefetcher(Folder dataFolder, Path cacheDir) {
+    this.dataFolder = dataFolder;
+    this.cacheDir   = cacheDir;
+    
+    images  = new HashMap<>();
+    request = null;
+    active  = null;
+    
+    thread = new RequestThread();
+  }
+  
+  private void start() {
+    thread.start();
+  }
+  
+  public synchronized void prefetch(
+      List<String> solidPaths,
+      List<String> imagePaths) {
+    images.clear();
+    
+    request = new Request(solidPaths, imagePaths);
+    active  = request;
+    notify();
+  }
+  
+  /**
+   * Stops the current request and forgets the images not yet taken.
+   */
+  public synchronized void cancel() {
+    images.clear();
+    
+    request = null;
+    active  = null;
+  }
+  
+  /**
+   * Returns and forgets the prefetched image at {@code path},
+   * or {@code null} if it has not been prefetched (yet).
+   */
+  public synchronized Image takeImage(String path) {
+    return images.remove(path);
+  }
+  
+  public void deinitialize() {
+    thread.terminate();
+    
+    synchronized (this) {
+      images.clear();
+    }
+  }
+  
+  private synchronized boolean isSuperseded(Request request) {
+    return active != request;
+  }
+  
+  private static final class Request {
+    public final List<String> solidPaths;
+    public final List<String> imagePaths;
+    
+    public Request(List<String> solidPaths, List<String> imagePaths) {
+      this.solidPaths = solidPaths;
+      this.imagePaths = imagePaths;
+    }
+  }
+  
+  private final class RequestThread extends TerminableThread {
+    private void handleSolid(Request request, String path) {
+      SolidBase solBase;
+      
+      try {
+        solBase = SolidCache.getSolidBase(path, dataFolder.getSource(path));
+      } catch (IOException ex) {
+        return;
+      }
+      
+      for (Material mtrl: solBase.mtrls) {
+        if (isSuperseded(request) || isInterrupted()) {
+          return;
+        }
+        
+        // Skip materials drawn without texture (see Asset).
+        
+        if (mtrl.d.a != 0.0f) {
+          handleImage(request, mtrl.path);
+        }
+      }
+    }
+    
+    private void handleImage(Request request, String path) {
+      for (String path0: Asset.getImagePaths(path)) {
+        synchronized (Prefetcher.this) {
+          if (images.containsKey(path0)) {
+            return;
+          }
+        }
+        
+        Source src = dataFolder.getSource(path0);
+        
+        // Cached images are read from their files when needed.
+        
+        if ((cacheDir != null) && ImageCache.prepare(cacheDir, path0, src)) {
+          return;
+        }
+        
+        Image img;
+        
+        try {
+          img = ImageLoader.load(src, false);
+        } catch (IOException ex) {
+          continue;
+        }
+        
+        if (img != null) {
+          synchronized (Prefetcher.this) {
+            // Drop the image if the map has been cleared since.
+            
+            if (!isSuperseded(request)) {
+              images.put(path0, img);
+            }
+          }
+          
+          return;
+        }
+      }
+    }
+    
+    private void handle(Request request) {
+      for (String path: request.solidPaths) {
+        if (isSuperseded(request) || isInterrupted()) {
+          return;
+        }
+        
+        handleSolid(request, path);
+      }
+      
+      for (String path: request.imagePaths) {
+        if (isSuperseded(request) || isInterrupted()) {
+          return;
+        }
+        
+        handleImage(request, path);
+      }
+    }
+    
+    @Override
+    public void run() {
+      try {
+        while (!Thread.currentThread().isInterrupted()) {
+          Request request;
+          
+          synchronized (Prefetcher.this) {
+            while ((request = Prefetcher.this.request) == null) {
+              Prefetcher.this.wait();
+            }
+            
+            Prefetcher.this.request = null;
+          }
+          
+          handle(request);
+        }
+      } catch (InterruptedException ex) {
+        // Allow thread to exit.
+      }
+    }
+  }
+}
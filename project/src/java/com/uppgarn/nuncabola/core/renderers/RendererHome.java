@@ -18,13 +18,19 @@
 package com.uppgarn.nuncabola.core.renderers;
 
 import com.uppgarn.nuncabola.core.folder.*;
+import com.uppgarn.nuncabola.core.graphics.*;
 import com.uppgarn.nuncabola.core.image.*;
+import com.uppgarn.nuncabola.core.level.*;
 import com.uppgarn.nuncabola.core.solid.*;
 
 import java.io.*;
+import java.nio.file.*;
+import java.nio.file.Path;
+import java.util.*;
 
 public final class RendererHome {
   private static Folder  dataFolder;
+  private static Path    cacheDir;
   private static boolean background;
   private static boolean shadow;
   private static float   fov;
@@ -40,19 +46,29 @@ public final class RendererHome {
   
   private static BallRenderer ballRend;
   
+  private static Prefetcher   prefetcher;
+  private static TextureCache textureCache;
+  
   public static void initialize(
       Folder  dataFolder,
+      Path    cacheDir,
       boolean background,
       boolean shadow,
       float   fov,
       String  ballPath) {
     RendererHome.dataFolder = dataFolder;
+    RendererHome.cacheDir   = cacheDir;
     RendererHome.background = background;
     RendererHome.shadow     = shadow;
     RendererHome.fov        = fov;
     
     RendererHome.ballPath = ballPath;
     
+    // Renderers load their images through these.
+    
+    prefetcher   = Prefetcher.create(dataFolder, cacheDir);
+    textureCache = new TextureCache();
+    
     billRend   = new BillboardRenderer();
     haloRend   = new HaloRenderer();
     itemRend   = new ItemRenderer();
@@ -63,6 +79,14 @@ public final class RendererHome {
     ballRend = new BallRenderer();
   }
   
+  /**
+   * Returns the directory of the mesh and image caches, or
+   * {@code null} if meshes and images are not cached.
+   */
+  static Path getCacheDirectory() {
+    return cacheDir;
+  }
+  
   static boolean getBackground() {
     return background;
   }
@@ -81,13 +105,20 @@ public final class RendererHome {
   
   static Solid loadSolid(String path) {
     try {
-      return SolidReadTool.readSolid(dataFolder.getSource(path));
+      return new Solid(
+        SolidCache.getSolidBase(path, dataFolder.getSource(path)));
     } catch (IOException ex) {
       return null;
     }
   }
   
   static Image loadImage(String path) {
+    Image img = prefetcher.takeImage(path);
+    
+    if (img != null) {
+      return img;
+    }
+    
     try {
       return ImageLoader.load(dataFolder.getSource(path), false);
     } catch (IOException ex) {
@@ -95,6 +126,33 @@ public final class RendererHome {
     }
   }
   
+  /**
+   * Returns the image at {@code path} scaled for use as a texture,
+   * taking it from the image cache if images are cached.
+   */
+  static Image loadTextureImage(String path) {
+    // The prefetcher only holds images it could not cache.
+    
+    Image img = prefetcher.takeImage(path);
+    
+    if ((img == null) && (cacheDir != null)) {
+      return ImageCache.getTextureImage(
+        cacheDir,
+        path,
+        dataFolder.getSource(path));
+    }
+    
+    if (img == null) {
+      img = loadImage(path);
+    }
+    
+    return (img == null) ? null : Gfx.getTextureImage(img);
+  }
+  
+  static TextureCache getTextureCache() {
+    return textureCache;
+  }
+  
   static BillboardRenderer getBillboardRenderer() {
     return billRend;
   }
@@ -135,6 +193,34 @@ public final class RendererHome {
     ballRend = new BallRenderer();
   }
   
+  /**
+   * Starts loading the solids and images of {@code level} in the
+   * background, so that a subsequent {@link GameRenderer} for it
+   * mostly finds its data in memory.
+   */
+  public static void prefetch(Level level) {
+    List<String> solidPaths = new ArrayList<>(2);
+    List<String> imagePaths = new ArrayList<>(1);
+    
+    solidPaths.add(level.getSolidPath());
+    
+    if (background && !level.getBackgroundSolidPath().isEmpty()) {
+      solidPaths.add(level.getBackgroundSolidPath());
+    }
+    
+    imagePaths.add(level.getBackgroundGradientPath());
+    
+    prefetcher.prefetch(solidPaths, imagePaths);
+  }
+  
+  /**
+   * Stops prefetching and drops the prefetched images, once the level
+   * they were loaded for is not going to be played next.
+   */
+  public static void cancelPrefetch() {
+    prefetcher.cancel();
+  }
+  
   public static void step(float dt) {
     haloRend.step(dt);
     itemRend.step(dt);
@@ -153,15 +239,21 @@ public final class RendererHome {
     
     ballRend.deinitialize();
     
-    dataFolder = null;
-    ballPath   = null;
-    billRend   = null;
-    haloRend   = null;
-    itemRend   = null;
-    partRend   = null;
-    shadowRend = null;
-    fadeRend   = null;
-    ballRend   = null;
+    prefetcher  .deinitialize();
+    textureCache.deinitialize();
+    
+    dataFolder   = null;
+    cacheDir     = null;
+    ballPath     = null;
+    billRend     = null;
+    haloRend     = null;
+    itemRend     = null;
+    partRend     = null;
+    shadowRend   = null;
+    fadeRend     = null;
+    ballRend     = null;
+    prefetcher   = null;
+    textureCache = null;
   }
   
   private RendererHome() {
@@ -27,9 +27,13 @@ final class SolidKit {
   private Simulation    sim;
   
   public SolidKit(Solid sol) {
+    this(sol, sol.base.mtrls);
+  }
+  
+  public SolidKit(Solid sol, Material[] mtrls) {
     this.sol = sol;
     
-    rend = new SolidRenderer(sol, false);
+    rend = new SolidRenderer(sol, mtrls, false);
     sim  = null;
   }
   
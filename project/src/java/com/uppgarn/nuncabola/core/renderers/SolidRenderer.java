@@ -30,8 +30,9 @@ import static org.lwjgl.opengl.GL11.*;
 import java.util.*;
 
 final class SolidRenderer {
-  private final Solid   sol;
-  private final boolean shadowedEnabled;
+  private final Solid      sol;
+  private final Material[] mtrls;
+  private final boolean    shadowedEnabled;
   
   private Motion motion;
   
@@ -41,7 +42,16 @@ final class SolidRenderer {
   private boolean             reflectiveUsed;
   
   public SolidRenderer(Solid sol, boolean shadowedEnabled) {
+    this(sol, sol.base.mtrls, shadowedEnabled);
+  }
+  
+  /**
+   * Creates a renderer that draws {@code sol} with {@code mtrls}
+   * in place of the materials of its base.
+   */
+  public SolidRenderer(Solid sol, Material[] mtrls, boolean shadowedEnabled) {
     this.sol             = sol;
+    this.mtrls           = mtrls;
     this.shadowedEnabled = shadowedEnabled;
     
     motion = new Motion(sol);
@@ -53,17 +63,12 @@ final class SolidRenderer {
   }
   
   private Asset[] createAssets() {
-    Asset[] assets = new Asset[sol.base.mtrls.length];
-    
-    for (int idx = 0; idx < sol.base.mtrls.length; idx++) {
-      assets[idx] = new Asset(sol.base.mtrls[idx], shadowedEnabled);
-    }
-    
-    return assets;
+    return Asset.createAssets(mtrls, shadowedEnabled);
   }
   
   private Mesh[][] createMeshArrays() {
-    return MeshCreator.createMeshArrays(sol.base, assets);
+    return MeshCache.getMeshData(RendererHome.getCacheDirectory(), sol.base)
+      .createMeshArrays(assets);
   }
   
   private Map<Pass, PassInfo> createPassInfos() {
@@ -77,7 +82,7 @@ final class SolidRenderer {
   }
   
   private boolean createReflectiveUsed() {
-    for (Material mtrl: sol.base.mtrls) {
+    for (Material mtrl: mtrls) {
       if ((mtrl.flags & Material.REFLECTIVE) != 0) {
         return true;
       }
@@ -0,0 +1,329 @@
+/*
+ * TextureCache.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.renderers;
+
+import com.uppgarn.nuncabola.core.graphics.*;
+import com.uppgarn.nuncabola.core.image.*;
+import com.uppgarn.nuncabola.core.solid.*;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Shares the textures of assets.
+ * <p>
+ * Textures are keyed by the path their image was found at and by
+ * the wrap flags of the material, and counted by reference. Images
+ * of missing textures are decoded and scaled on a pool of worker
+ * threads; only the upload happens on the GL thread. A released
+ * texture is kept idle for a while, so that the next level can take
+ * it over. Images that fail to upload are not cached.
+ */
+final class TextureCache {
+  private static final int MAX_IDLE_COUNT = 64;
+  
+  private static final int WRAP_FLAGS = Material.CLAMP_S | Material.CLAMP_T;
+  
+  /**
+   * Determines if the material is drawn with an image.
+   */
+  public static boolean isTextured(Material mtrl) {
+    return (mtrl.d.a != 0.0f) && !mtrl.path.isEmpty();
+  }
+  
+  private final ForkJoinPool pool;
+  
+  /**
+   * Path the image of each material path was found at, or the empty
+   * string if none was found.
+   */
+  private final Map<String, String> resolvedPaths;
+  
+  private final Map<Key, Entry>     entries;
+  private final Map<Integer, Entry> textureEntries;
+  
+  /**
+   * Entries without references, least recently released first.
+   */
+  private final Map<Key, Entry> idleEntries;
+  
+  public TextureCache() {
+    pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    
+    resolvedPaths  = new HashMap<>();
+    entries        = new HashMap<>();
+    textureEntries = new HashMap<>();
+    idleEntries    = new LinkedHashMap<>();
+  }
+  
+  /**
+   * Returns the texture of each of {@code mtrls} and adds
+   * a reference to it. Materials without image get 0.
+   */
+  public int[] acquire(List<Material> mtrls) {
+    int[] textures = new int[mtrls.size()];
+    
+    // Decode the images of unknown material paths and keys.
+    
+    Map<String, List<String>> decodePaths = new LinkedHashMap<>();
+    
+    for (Material mtrl: mtrls) {
+      if (!isTextured(mtrl) || decodePaths.containsKey(mtrl.path)) {
+        continue;
+      }
+      
+      String resolvedPath = resolvedPaths.get(mtrl.path);
+      
+      if (resolvedPath == null) {
+        decodePaths.put(mtrl.path, Asset.getImagePaths(mtrl.path));
+      } else if (!resolvedPath.isEmpty()
+          && !entries.containsKey(new Key(resolvedPath, mtrl.flags))) {
+        decodePaths.put(mtrl.path, Collections.singletonList(resolvedPath));
+      }
+    }
+    
+    Map<String, Image> images = decode(decodePaths);
+    
+    // Look up or create the textures.
+    
+    for (int idx = 0; idx < textures.length; idx++) {
+      Material mtrl = mtrls.get(idx);
+      
+      if (!isTextured(mtrl)) {
+        continue;
+      }
+      
+      String resolvedPath = resolvedPaths.get(mtrl.path);
+      
+      if ((resolvedPath == null) || resolvedPath.isEmpty()) {
+        continue;
+      }
+      
+      Key   key   = new Key(resolvedPath, mtrl.flags);
+      Entry entry = entries.get(key);
+      
+      if (entry == null) {
+        int texture = createTexture(images.get(mtrl.path), key);
+        
+        if (texture == 0) {
+          continue;
+        }
+        
+        entry = new Entry(key, texture);
+        
+        entries       .put(key,           entry);
+        textureEntries.put(entry.texture, entry);
+      }
+      
+      if (entry.refCount++ == 0) {
+        idleEntries.remove(key);
+      }
+      
+      textures[idx] = entry.texture;
+    }
+    
+    return textures;
+  }
+  
+  public int acquire(Material mtrl) {
+    return acquire(Collections.singletonList(mtrl))[0];
+  }
+  
+  /**
+   * Removes a reference to {@code texture}.
+   */
+  public void release(int texture) {
+    if (texture == 0) {
+      return;
+    }
+    
+    Entry entry = textureEntries.get(texture);
+    
+    if (entry == null) {
+      glDeleteTextures(texture);
+      
+      return;
+    }
+    
+    if (--entry.refCount > 0) {
+      return;
+    }
+    
+    idleEntries.put(entry.key, entry);
+    
+    // Delete the least recently released textures.
+    
+    Iterator<Entry> it = idleEntries.values().iterator();
+    
+    while (idleEntries.size() > MAX_IDLE_COUNT) {
+      delete(it.next());
+      
+      it.remove();
+    }
+  }
+  
+  /**
+   * Decodes the first image found for each material path, also
+   * remembering where it was found.
+   */
+  private Map<String, Image> decode(Map<String, List<String>> decodePaths) {
+    List<Callable<Image>> tasks = new ArrayList<>(decodePaths.size());
+    
+    final List<String> mtrlPaths = new ArrayList<>(decodePaths.keySet());
+    final String[]     found     = new String[mtrlPaths.size()];
+    
+    for (int idx = 0; idx < mtrlPaths.size(); idx++) {
+      final int          idx0  = idx;
+      final List<String> paths = decodePaths.get(mtrlPaths.get(idx));
+      
+      tasks.add(new Callable<Image>() {
+        @Override
+        public Image call() {
+          for (String path: paths) {
+            Image img = RendererHome.loadTextureImage(path);
+            
+            if (img != null) {
+              found[idx0] = path;
+              
+              return img;
+            }
+          }
+          
+          found[idx0] = "";
+          
+          return null;
+        }
+      });
+    }
+    
+    List<Image> imgs = new ArrayList<>(tasks.size());
+    
+    try {
+      if (tasks.size() == 1) {
+        imgs.add(tasks.get(0).call());
+      } else {
+        for (Future<Image> future: pool.invokeAll(tasks)) {
+          imgs.add(future.get());
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException ex) {
+      throw new RuntimeException(ex.getCause());
+    } catch (Exception ex) {
+      throw new RuntimeException(ex);
+    }
+    
+    Map<String, Image> images = new HashMap<>();
+    
+    for (int idx = 0; idx < imgs.size(); idx++) {
+      String mtrlPath = mtrlPaths.get(idx);
+      
+      // A path given without candidates was already resolved.
+      
+      if (found[idx] != null) {
+        resolvedPaths.put(mtrlPath, found[idx]);
+      }
+      
+      images.put(mtrlPath, imgs.get(idx));
+    }
+    
+    return images;
+  }
+  
+  private int createTexture(Image img, Key key) {
+    int texture = Gfx.uploadTexture(img, true);
+    
+    if (texture != 0) {
+      // Set the texture to clamp or repeat based on material type.
+      
+      int sParam = ((key.flags & Material.CLAMP_S) != 0)
+                   ? GL_CLAMP_TO_EDGE : GL_REPEAT;
+      int tParam = ((key.flags & Material.CLAMP_T) != 0)
+                   ? GL_CLAMP_TO_EDGE : GL_REPEAT;
+      
+      glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, sParam);
+      glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, tParam);
+    }
+    
+    return texture;
+  }
+  
+  private void delete(Entry entry) {
+    glDeleteTextures(entry.texture);
+    
+    entries       .remove(entry.key);
+    textureEntries.remove(entry.texture);
+  }
+  
+  public void deinitialize() {
+    for (Entry entry: entries.values()) {
+      glDeleteTextures(entry.texture);
+    }
+    
+    resolvedPaths .clear();
+    entries       .clear();
+    textureEntries.clear();
+    idleEntries   .clear();
+    
+    pool.shutdown();
+  }
+  
+  private static final class Key {
+    public final String path;
+    public final int    flags;
+    
+    public Key(String path, int flags) {
+      this.path  = path;
+      this.flags = flags & WRAP_FLAGS;
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      
+      Key key = (Key) obj;
+      
+      return path.equals(key.path) && (flags == key.flags);
+    }
+    
+    @Override
+    public int hashCode() {
+      return path.hashCode() * 31 + flags;
+    }
+  }
+  
+  private static final class Entry {
+    public final Key key;
+    public final int texture;
+    
+    public int refCount;
+    
+    public Entry(Key key, int texture) {
+      this.key     = key;
+      this.texture = texture;
+      
+      refCount = 0;
+    }
+  }
+}
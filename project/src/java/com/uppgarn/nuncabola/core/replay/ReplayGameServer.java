@@ -24,46 +24,32 @@ import com.uppgarn.codelibf.io.*;
 import java.io.*;
 
 public final class ReplayGameServer extends GameServer {
-  private final Source src;
-  
-  private InputStream in;
+  private ReplayReader   reader;
+  private CommandDecoder decoder;
+  private int            updateIdx;
   
   private boolean errorOccurred;
   private boolean closed;
   
   public ReplayGameServer(Source src) {
-    this.src = src;
-    
     // Open replay.
     
-    InputStream in;
+    ReplayReader reader;
     
     try {
-      in = new BufferedInputStream(src.newInputStream());
-      
-      // Skip header.
-      
-      try {
-        ReplayInfoReadTool.readReplayInfo(in);
-      } catch (IOException ex) {
-        // An error occurred, close replay.
-        
-        try {
-          in.close();
-        } catch (IOException ex0) {
-        }
-        
-        in = null;
-      }
-    } catch (SourceException ex) {
+      reader = ReplayReader.open(src);
+    } catch (IOException ex) {
       // Replay opening failed.
       
-      in = null;
+      reader = null;
     }
     
-    this.in = in;
+    this.reader = reader;
+    
+    decoder   = (this.reader == null) ? null : this.reader.newDecoder(0);
+    updateIdx = 0;
     
-    errorOccurred = this.in == null;
+    errorOccurred = this.reader == null;
     closed        = false;
     
     readUpdate();
@@ -78,7 +64,7 @@ public final class ReplayGameServer extends GameServer {
       Command cmd;
       
       do {
-        cmd = CommandReadTool.readCommand(in);
+        cmd = decoder.decode();
         
         sendCommand(cmd);
       } while (cmd.getType() != Command.Type.END_OF_UPDATE);
@@ -87,11 +73,79 @@ public final class ReplayGameServer extends GameServer {
     }
   }
   
+  /**
+   * Returns the index of the current update.
+   */
+  public int getUpdateIndex() {
+    return updateIdx;
+  }
+  
+  /**
+   * Returns the number of complete updates of the replay.
+   */
+  public int getUpdateCount() {
+    return (reader == null) ? 0 : reader.getUpdateCount();
+  }
+  
+  /**
+   * Returns the index of the update at the specified replay time.
+   */
+  public int getUpdateIndex(float time) {
+    return (reader == null) ? 0 : reader.getUpdateIndex(time);
+  }
+  
+  /**
+   * Returns the replay time at which the current update starts.
+   */
+  public float getTime() {
+    if ((reader == null) || (reader.getUpdateCount() == 0)) {
+      return 0.0f;
+    }
+    
+    if (updateIdx < reader.getUpdateCount()) {
+      return reader.getUpdateTime(updateIdx);
+    }
+    
+    int lastIdx = reader.getUpdateCount() - 1;
+    
+    return reader.getUpdateTime(lastIdx)
+      + reader.getUpdateRate(lastIdx).getTime();
+  }
+  
   public void step() {
     assert !closed;
     
     clearCommands();
     
+    updateIdx++;
+    
+    readUpdate();
+  }
+  
+  /**
+   * Makes the specified update the current one.
+   * <p>
+   * Only the commands of that update are sent, so clients must
+   * have executed all earlier updates to reproduce its state.
+   */
+  public void seek(int idx) {
+    assert !closed;
+    
+    if (reader == null) {
+      return;
+    }
+    
+    clearCommands();
+    
+    idx = Math.max(0, Math.min(idx, reader.getUpdateCount()));
+    
+    setRate((idx == 0) ? Rate.DEFAULT : reader.getUpdateRate(idx - 1));
+    
+    decoder   = reader.newDecoder(idx);
+    updateIdx = idx;
+    
+    errorOccurred = false;
+    
     readUpdate();
   }
   
@@ -100,14 +154,10 @@ public final class ReplayGameServer extends GameServer {
       return;
     }
     
-    // Close replay.
+    // Release replay.
     
-    if (in != null) {
-      try {
-        in.close();
-      } catch (IOException ex) {
-      }
-    }
+    reader  = null;
+    decoder = null;
     
     closed = true;
   }
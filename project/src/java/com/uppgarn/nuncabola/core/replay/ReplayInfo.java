@@ -39,6 +39,8 @@ public final class ReplayInfo {
   private int     time;
   private int     coins;
   
+  private boolean compressed;
+  
   public ReplayInfo() {
     mode = SeriesMode.NORMAL;
     
@@ -55,6 +57,8 @@ public final class ReplayInfo {
     status    = Status.NONE;
     time      = 0;
     coins     = 0;
+    
+    compressed = false;
   }
   
   public ReplayInfo(Series series) {
@@ -73,6 +77,8 @@ public final class ReplayInfo {
     status    = series.getStatus();
     time      = series.getTime();
     coins     = series.getCoins();
+    
+    compressed = false;
   }
   
   public SeriesMode getMode() {
@@ -178,4 +184,15 @@ public final class ReplayInfo {
   public void setCoins(int coins) {
     this.coins = coins;
   }
+  
+  /**
+   * Returns whether the commands are stored in compressed blocks.
+   */
+  public boolean isCompressed() {
+    return compressed;
+  }
+  
+  public void setCompressed(boolean compressed) {
+    this.compressed = compressed;
+  }
 }
@@ -24,6 +24,24 @@ final class ReplayInfoIOTool {
   public static final int MAGIC   = 0x52424EAF;
   public static final int VERSION = 9;
   
+  /**
+   * Version of replays with compressed commands.
+   * <p>
+   * Such replays cannot be read by Neverball.
+   */
+  public static final int VERSION_COMPRESSED = 0x10009;
+  
+  /**
+   * Uncompressed size after which a block of commands is completed.
+   */
+  public static final int BLOCK_SIZE = 64 * 1024;
+  
+  /**
+   * Largest uncompressed size of a block of commands. Blocks end
+   * after a whole update, so they may exceed {@link #BLOCK_SIZE}.
+   */
+  public static final int MAX_BLOCK_SIZE = 16 * BLOCK_SIZE;
+  
   public static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter
     .ofPattern("yyyy-MM-dd'T'HH:mm:ss")
     .withZone(ZoneId.of("UTC"));
@@ -64,12 +64,15 @@ public final class ReplayInfoReadTool {
     int magic   = readInt(in);
     int version = readInt(in);
     
-    if ((magic != MAGIC) || (version != VERSION)) {
+    if ((magic != MAGIC)
+        || ((version != VERSION) && (version != VERSION_COMPRESSED))) {
       throw new InvalidDataException();
     }
     
     ReplayInfo info = new ReplayInfo();
     
+    info.setCompressed(version == VERSION_COMPRESSED);
+    
     info.setTime  (readInt(in));
     info.setCoins (readInt(in));
     info.setStatus(getStatus(readInt(in)));
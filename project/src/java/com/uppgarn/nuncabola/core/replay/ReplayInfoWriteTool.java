@@ -65,7 +65,7 @@ public final class ReplayInfoWriteTool {
   public static void writeReplayInfo(OutputStream out, ReplayInfo info)
       throws IOException {
     writeInt(out, MAGIC);
-    writeInt(out, VERSION);
+    writeInt(out, info.isCompressed() ? VERSION_COMPRESSED : VERSION);
     
     writeInt(out, info.getTime());
     writeInt(out, info.getCoins());
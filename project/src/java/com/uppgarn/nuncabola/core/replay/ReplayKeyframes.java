@@ -0,0 +1,94 @@
+/*
+ * ReplayKeyframes.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.replay;
+
+import com.uppgarn.nuncabola.core.game.*;
+
+import java.util.*;
+
+/**
+ * Snapshots of the client-side game state at regular update intervals.
+ * <p>
+ * Keyframes are taken while a replay is played, so that seeking only
+ * needs to execute the updates following the nearest earlier keyframe.
+ */
+public final class ReplayKeyframes {
+  /**
+   * Number of updates between keyframes.
+   */
+  public static final int INTERVAL = 450;
+  
+  private final List<Keyframe> keyframes;
+  
+  public ReplayKeyframes() {
+    keyframes = new ArrayList<>();
+  }
+  
+  /**
+   * Takes a keyframe if the specified update is due for one
+   * and no keyframe has been taken for it yet.
+   * <p>
+   * Keyframes must be taken in order, which is the case when
+   * every update is executed after the restoration of a keyframe.
+   */
+  public void update(int updateIdx, Game game, GameClient client) {
+    if ((updateIdx % INTERVAL != 0)
+        || (updateIdx / INTERVAL != keyframes.size())) {
+      return;
+    }
+    
+    keyframes.add(new Keyframe(updateIdx, new Game(game), client.getState()));
+  }
+  
+  /**
+   * Returns the last keyframe at or before the specified update,
+   * or {@code null} if there is none.
+   */
+  public Keyframe get(int updateIdx) {
+    if (keyframes.isEmpty()) {
+      return null;
+    }
+    
+    return keyframes.get(Math.min(updateIdx / INTERVAL, keyframes.size() - 1));
+  }
+  
+  public static final class Keyframe {
+    private final int              updateIdx;
+    private final Game             game;
+    private final GameClient.State clientState;
+    
+    private Keyframe(int updateIdx, Game game, GameClient.State clientState) {
+      this.updateIdx   = updateIdx;
+      this.game        = game;
+      this.clientState = clientState;
+    }
+    
+    public int getUpdateIndex() {
+      return updateIdx;
+    }
+    
+    /**
+     * Copies this keyframe into the specified game and client.
+     */
+    public void restore(Game game, GameClient client) {
+      game.copyFrom(this.game);
+      
+      client.setState(clientState);
+    }
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * ReplayQueue.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.replay;
+
+import java.io.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * Single-producer, single-consumer byte queue of fixed capacity.
+ * <p>
+ * The producer writes to the queue as an output stream and the
+ * consumer drains it to another stream. Neither side takes a lock:
+ * each owns one of the two positions and only reads the other.
+ * A producer that finds the queue full waits for the consumer.
+ */
+final class ReplayQueue extends OutputStream {
+  private static final long WAIT_NANOS = 100000;
+  
+  private final byte[] bytes;
+  private final int    mask;
+  
+  /**
+   * Total number of bytes written. Only changed by the producer.
+   */
+  private final AtomicLong writePos;
+  
+  /**
+   * Total number of bytes drained. Only changed by the consumer.
+   */
+  private final AtomicLong readPos;
+  
+  private final Thread consumer;
+  
+  private volatile boolean consumerWaiting;
+  private volatile boolean producerWaiting;
+  private volatile Thread  producer;
+  
+  // Metrics, only changed by the producer.
+  
+  private volatile int  maxDepth;
+  private volatile long stalls;
+  
+  /**
+   * Creates a queue with a capacity of {@code 1 << bits} bytes,
+   * drained by the given thread.
+   */
+  public ReplayQueue(int bits, Thread consumer) {
+    this.consumer = consumer;
+    
+    bytes = new byte[1 << bits];
+    mask  = bytes.length - 1;
+    
+    writePos = new AtomicLong();
+    readPos  = new AtomicLong();
+    
+    consumerWaiting = false;
+    producerWaiting = false;
+    producer        = null;
+    
+    maxDepth = 0;
+    stalls   = 0;
+  }
+  
+  public int getCapacity() {
+    return bytes.length;
+  }
+  
+  /**
+   * Returns the number of bytes written but not yet drained.
+   */
+  public int getDepth() {
+    return (int) (writePos.get() - readPos.get());
+  }
+  
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+  
+  /**
+   * Returns how often the producer had to wait for free space.
+   */
+  public long getStallCount() {
+    return stalls;
+  }
+  
+  @Override
+  public void write(int b) {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+  
+  /**
+   * Appends the given bytes, waiting for free space as needed.
+   * <p>
+   * Bytes become visible to the consumer as soon as they fit,
+   * so a run of bytes is published at once unless it exceeds
+   * the free space.
+   */
+  @Override
+  public void write(byte[] b, int off, int len) {
+    while (len > 0) {
+      long wPos = writePos.get();
+      int  free = bytes.length - (int) (wPos - readPos.get());
+      
+      if (free == 0) {
+        awaitSpace();
+        
+        continue;
+      }
+      
+      int count  = Math.min(len, free);
+      int start  = (int) wPos & mask;
+      int count0 = Math.min(count, bytes.length - start);
+      
+      System.arraycopy(b, off, bytes, start, count0);
+      System.arraycopy(b, off + count0, bytes, 0, count - count0);
+      
+      writePos.set(wPos + count);
+      
+      off += count;
+      len -= count;
+      
+      // Update metrics.
+      
+      int depth = bytes.length - free + count;
+      
+      if (depth > maxDepth) {
+        maxDepth = depth;
+      }
+      
+      // Wake up consumer.
+      
+      if (consumerWaiting) {
+        LockSupport.unpark(consumer);
+      }
+    }
+  }
+  
+  private void awaitSpace() {
+    stalls++;
+    
+    producer        = Thread.currentThread();
+    producerWaiting = true;
+    
+    if (writePos.get() - readPos.get() == bytes.length) {
+      LockSupport.parkNanos(this, WAIT_NANOS);
+    }
+    
+    producerWaiting = false;
+  }
+  
+  /**
+   * Waits until there are bytes to drain or the consumer is
+   * interrupted. Must only be called by the consumer.
+   */
+  public void await() {
+    consumerWaiting = true;
+    
+    if ((getDepth() == 0) && !Thread.currentThread().isInterrupted()) {
+      LockSupport.park(this);
+    }
+    
+    consumerWaiting = false;
+  }
+  
+  /**
+   * Writes all queued bytes to the given stream and frees them.
+   * Must only be called by the consumer.
+   *
+   * @return the number of bytes drained
+   */
+  public int drainTo(OutputStream out) throws IOException {
+    long rPos  = readPos.get();
+    int  count = (int) (writePos.get() - rPos);
+    
+    if (count == 0) {
+      return 0;
+    }
+    
+    int start  = (int) rPos & mask;
+    int count0 = Math.min(count, bytes.length - start);
+    
+    try {
+      out.write(bytes, start, count0);
+      out.write(bytes, 0, count - count0);
+    } finally {
+      // Free space even if writing failed.
+      
+      readPos.set(rPos + count);
+      
+      if (producerWaiting) {
+        LockSupport.unpark(producer);
+      }
+    }
+    
+    return count;
+  }
+}
@@ -0,0 +1,301 @@
+/*
+ * ReplayReader.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.replay;
+
+import com.uppgarn.nuncabola.core.game.*;
+import com.uppgarn.nuncabola.core.util.*;
+
+import com.uppgarn.codelibf.io.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Gives random access to the updates of a replay.
+ * <p>
+ * Replays are read into memory rather than mapped, as they are small
+ * and a mapped file cannot be deleted or overwritten on all systems.
+ * Compressed replays are expanded into memory.
+ * The offset and start time of every update is indexed on creation,
+ * so that playback can start at any update.
+ */
+public final class ReplayReader {
+  public static ReplayReader open(Source src) throws IOException {
+    return new ReplayReader(getBytes(src));
+  }
+  
+  private static ByteBuffer getBytes(Source src) throws IOException {
+    Path file = src.getFile();
+    
+    if (file != null) {
+      return ByteBuffer.wrap(Files.readAllBytes(file));
+    }
+    
+    try (InputStream in = src.newInputStream()) {
+      long size = (src instanceof ZipSource) ? ((ZipSource) src).getSize() : -1;
+      
+      return ByteBuffer.wrap(InputStreamTool.readAllBytes(in, size));
+    }
+  }
+  
+  private final ReplayInfo info;
+  private final ByteBuffer buf;
+  
+  private int[]   updateOffsets;
+  private float[] updateTimes;
+  private Rate[]  updateRates;
+  private int     updateCount;
+  private int     endOffset;
+  
+  private ReplayReader(ByteBuffer bytes) throws IOException {
+    // Read header.
+    
+    BufferInputStream in = new BufferInputStream(bytes.duplicate());
+    
+    info = ReplayInfoReadTool.readReplayInfo(in);
+    
+    // Get commands.
+    
+    ByteBuffer body = bytes.duplicate();
+    body.position(in.getPosition());
+    body = body.slice();
+    
+    buf = info.isCompressed() ? decompress(body) : body;
+    
+    // Index updates.
+    
+    updateOffsets = new int  [256];
+    updateTimes   = new float[256];
+    updateRates   = new Rate [256];
+    updateCount   = 0;
+    endOffset     = 0;
+    
+    createIndex();
+  }
+  
+  /**
+   * Expands compressed blocks of quantized commands into
+   * regularly encoded commands.
+   * <p>
+   * A truncated or damaged block ends the commands, like
+   * a truncated update does in uncompressed replays. A block larger
+   * than {@link ReplayInfoIOTool#MAX_BLOCK_SIZE} is rejected before
+   * memory is allocated for it.
+   */
+  private static ByteBuffer decompress(ByteBuffer body)
+      throws IOException {
+    body.order(ByteOrder.LITTLE_ENDIAN);
+    
+    CommandEncoder encoder  = new CommandEncoder();
+    Inflater       inflater = new Inflater();
+    
+    try {
+      while (body.remaining() >= 8) {
+        int rawLen  = body.getInt();
+        int compLen = body.getInt();
+        
+        if ((rawLen < 0) || (rawLen > ReplayInfoIOTool.MAX_BLOCK_SIZE)) {
+          throw new InvalidDataException();
+        }
+        if ((compLen < 0) || (compLen > body.remaining())) {
+          break;
+        }
+        
+        // Inflate block.
+        
+        byte[] comp = new byte[compLen];
+        byte[] raw  = new byte[rawLen];
+        
+        body.get(comp);
+        
+        inflater.reset();
+        inflater.setInput(comp);
+        
+        try {
+          if (inflater.inflate(raw) != rawLen) {
+            break;
+          }
+        } catch (DataFormatException ex) {
+          break;
+        }
+        
+        // Re-encode commands.
+        
+        CommandDecoder decoder = new CommandDecoder(ByteBuffer.wrap(raw), true);
+        
+        try {
+          while (decoder.hasRemaining()) {
+            encoder.encode(decoder.decode());
+          }
+        } catch (IOException ex) {
+          break;
+        }
+      }
+    } finally {
+      inflater.end();
+    }
+    
+    return encoder.getBytes();
+  }
+  
+  private void createIndex() {
+    CommandDecoder decoder = newDecoder(0);
+    
+    Rate   rate = Rate.DEFAULT;
+    double time = 0.0;
+    
+    try {
+      while (true) {
+        Command.Type type = decoder.peekType();
+        
+        if (type == Command.Type.RATE) {
+          Command.Rate cmd = (Command.Rate) decoder.decode();
+          
+          if (cmd.ups > 0) {
+            rate = new Rate(cmd.ups);
+          }
+        } else {
+          decoder.skip();
+        }
+        
+        if (type == Command.Type.END_OF_UPDATE) {
+          addUpdate(endOffset, (float) time, rate);
+          
+          time      += rate.getTime();
+          endOffset  = decoder.position();
+        }
+      }
+    } catch (IOException ex) {
+      // End of replay or truncated update.
+    }
+  }
+  
+  private void addUpdate(int offset, float time, Rate rate) {
+    if (updateCount == updateOffsets.length) {
+      int length = updateCount * 2;
+      
+      updateOffsets = Arrays.copyOf(updateOffsets, length);
+      updateTimes   = Arrays.copyOf(updateTimes,   length);
+      updateRates   = Arrays.copyOf(updateRates,   length);
+    }
+    
+    updateOffsets[updateCount] = offset;
+    updateTimes  [updateCount] = time;
+    updateRates  [updateCount] = rate;
+    
+    updateCount++;
+  }
+  
+  public ReplayInfo getInfo() {
+    return info;
+  }
+  
+  /**
+   * Returns the number of complete updates.
+   */
+  public int getUpdateCount() {
+    return updateCount;
+  }
+  
+  /**
+   * Returns the time at which the specified update starts.
+   */
+  public float getUpdateTime(int idx) {
+    return updateTimes[idx];
+  }
+  
+  /**
+   * Returns the rate in effect after the specified update.
+   */
+  public Rate getUpdateRate(int idx) {
+    return updateRates[idx];
+  }
+  
+  /**
+   * Returns the index of the last update starting at or before
+   * the specified time, or 0 if there is none.
+   */
+  public int getUpdateIndex(float time) {
+    int lo = 0;
+    int hi = updateCount - 1;
+    
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      
+      if (updateTimes[mid] <= time) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    
+    return lo;
+  }
+  
+  /**
+   * Returns a decoder positioned at the specified update.
+   * <p>
+   * An index equal to the update count positions the decoder
+   * after the last complete update.
+   */
+  public CommandDecoder newDecoder(int idx) {
+    int offset = (idx < updateCount) ? updateOffsets[idx] : endOffset;
+    
+    ByteBuffer buf0 = buf.duplicate();
+    buf0.position(offset);
+    
+    return new CommandDecoder(buf0);
+  }
+  
+  private static final class BufferInputStream extends InputStream {
+    private final ByteBuffer buf;
+    
+    public BufferInputStream(ByteBuffer buf) {
+      this.buf = buf;
+    }
+    
+    public int getPosition() {
+      return buf.position();
+    }
+    
+    @Override
+    public int read() {
+      return buf.hasRemaining() ? (buf.get() & 0xff) : -1;
+    }
+    
+    @Override
+    public int read(byte[] bytes, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      
+      if (!buf.hasRemaining()) {
+        return -1;
+      }
+      
+      int count = Math.min(len, buf.remaining());
+      
+      buf.get(bytes, off, count);
+      
+      return count;
+    }
+  }
+}
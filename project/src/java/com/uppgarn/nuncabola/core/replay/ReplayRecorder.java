@@ -20,16 +20,23 @@ package com.uppgarn.nuncabola.core.replay;
 import com.uppgarn.nuncabola.core.game.*;
 import com.uppgarn.nuncabola.core.series.*;
 
+import static com.uppgarn.nuncabola.core.binary.BinaryWriteTool.*;
+import static com.uppgarn.nuncabola.core.replay.ReplayInfoIOTool.*;
+
+import com.uppgarn.codelibf.io.*;
 import com.uppgarn.codelibf.util.*;
 
 import java.io.*;
+import java.nio.*;
 import java.nio.channels.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.zip.*;
 
 public final class ReplayRecorder {
-  private final Path   file;
-  private final Series series;
+  private final Path    file;
+  private final Series  series;
+  private final boolean compressed;
   
   private SeekableByteChannel channel;
   private OutputStream        out;
@@ -38,8 +45,13 @@ public final class ReplayRecorder {
   private boolean closed;
   
   public ReplayRecorder(Path file, Series series) {
-    this.file   = file;
-    this.series = series;
+    this(file, series, false);
+  }
+  
+  public ReplayRecorder(Path file, Series series, boolean compressed) {
+    this.file       = file;
+    this.series     = series;
+    this.compressed = compressed;
     
     // Create replay.
     
@@ -57,7 +69,7 @@ public final class ReplayRecorder {
       // Write header.
       
       try {
-        ReplayInfoWriteTool.writeReplayInfo(out, new ReplayInfo(series));
+        ReplayInfoWriteTool.writeReplayInfo(out, createInfo());
         
         out.flush();
       } catch (IOException ex) {
@@ -86,12 +98,19 @@ public final class ReplayRecorder {
     if (this.channel == null) {
       cmdRecorder = null;
     } else {
-      cmdRecorder = CommandRecorder.create(this.out);
+      cmdRecorder = CommandRecorder.create(this.out, this.compressed);
     }
     
     closed = false;
   }
   
+  private ReplayInfo createInfo() {
+    ReplayInfo info = new ReplayInfo(series);
+    info.setCompressed(compressed);
+    
+    return info;
+  }
+  
   public void record(Command cmd) {
     assert !closed;
     
@@ -122,7 +141,7 @@ public final class ReplayRecorder {
         
         channel.position(0);
         
-        ReplayInfoWriteTool.writeReplayInfo(out, new ReplayInfo(series));
+        ReplayInfoWriteTool.writeReplayInfo(out, createInfo());
         
         out.flush();
       } catch (IOException ex) {
@@ -148,9 +167,42 @@ public final class ReplayRecorder {
     closed = true;
   }
   
+  /**
+   * Returns the number of recorded bytes not yet written.
+   */
+  public int getQueueDepth() {
+    return (cmdRecorder == null) ? 0 : cmdRecorder.getQueue().getDepth();
+  }
+  
+  public int getMaxQueueDepth() {
+    return (cmdRecorder == null) ? 0 : cmdRecorder.getQueue().getMaxDepth();
+  }
+  
+  /**
+   * Returns how often recording had to wait for the writer thread.
+   */
+  public long getStallCount() {
+    return (cmdRecorder == null) ? 0 : cmdRecorder.getQueue().getStallCount();
+  }
+  
+  /**
+   * Returns the number of command bytes written to the replay,
+   * after compression if enabled.
+   */
+  public long getBytesWritten() {
+    return (cmdRecorder == null) ? 0 : cmdRecorder.getBytesWritten();
+  }
+  
   private static final class CommandRecorder {
-    public static CommandRecorder create(OutputStream out) {
-      CommandRecorder instance = new CommandRecorder(out);
+    /**
+     * Capacity of the queue as a power of two (256 KiB).
+     */
+    private static final int QUEUE_BITS = 18;
+    
+    public static CommandRecorder create(
+        OutputStream out,
+        boolean      compressed) {
+      CommandRecorder instance = new CommandRecorder(out, compressed);
       instance.start();
       
       return instance;
@@ -158,26 +210,62 @@ public final class ReplayRecorder {
     
     private final OutputStream out;
     
-    private Queue<Command> cmds;
+    /**
+     * Quantized commands of the current block, or {@code null}
+     * if the replay is not compressed.
+     */
+    private final CommandEncoder block;
+    
+    /**
+     * Encoded commands of the current update.
+     * Only used by the recording thread.
+     */
+    private final CommandEncoder update;
     
-    private TerminableThread thread;
+    private final TerminableThread thread;
+    private final ReplayQueue      queue;
     
-    private CommandRecorder(OutputStream out) {
+    private volatile long bytesWritten;
+    
+    private CommandRecorder(OutputStream out, boolean compressed) {
       this.out = out;
       
-      cmds = new ArrayDeque<>();
+      block  = compressed ? new CommandEncoder(true) : null;
+      update = new CommandEncoder();
       
       thread = new CommandThread();
+      queue  = new ReplayQueue(QUEUE_BITS, thread);
+      
+      bytesWritten = 0;
     }
     
     private void start() {
       thread.start();
     }
     
+    public ReplayQueue getQueue() {
+      return queue;
+    }
+    
+    public long getBytesWritten() {
+      return bytesWritten;
+    }
+    
     public void record(Command cmd) {
-      synchronized (cmds) {
-        cmds.add(cmd);
-        cmds.notify();
+      // Commands may be reused by the server, so encode them now.
+      
+      update.encode(cmd);
+      
+      // Publish whole updates.
+      
+      if (cmd.getType() == Command.Type.END_OF_UPDATE) {
+        try {
+          update.writeTo(queue);
+        } catch (IOException ex) {
+          throw new AssertionError();
+        }
+        
+        update.reset();
       }
     }
     
@@ -188,22 +276,41 @@ public final class ReplayRecorder {
     private final class CommandThread extends TerminableThread {
       private boolean errorOccurred = false;
       
-      private void handle(Command cmd) {
+      private Staging  staging  = null;
+      private Deflater deflater = null;
+      private byte[]   comp     = null;
+      
+      private void handle(boolean last) {
         if (errorOccurred) {
+          // Discard commands.
+          
+          try {
+            queue.drainTo(NullOutputStream.getInstance());
+          } catch (IOException ex) {
+          }
+          
           return;
         }
         
         synchronized (getInterruptionLock()) {
           boolean wasInterrupted = Thread.interrupted();
           
-          // Write command.
+          // Write commands.
           
           try {
-            CommandWriteTool.writeCommand(out, cmd);
-            
-            if (cmd.getType() == Command.Type.END_OF_UPDATE) {
-              out.flush();
+            if (block == null) {
+              bytesWritten += queue.drainTo(out);
+            } else {
+              if (staging == null) {
+                staging = new Staging();
+              }
+              
+              queue.drainTo(staging);
+              
+              compress(last);
             }
+            
+            out.flush();
           } catch (IOException ex) {
             errorOccurred = true;
           }
@@ -214,29 +321,111 @@ public final class ReplayRecorder {
         }
       }
       
-      @Override
-      public void run() {
-        try {
-          while (!Thread.currentThread().isInterrupted()) {
-            Command cmd;
-            
-            synchronized (cmds) {
-              while ((cmd = cmds.poll()) == null) {
-                cmds.wait();
-              }
-            }
-            
-            handle(cmd);
+      /**
+       * Adds the complete commands drained so far to the current block,
+       * writing the block once it is complete.
+       * Blocks always end after a whole update.
+       */
+      private void compress(boolean last) throws IOException {
+        ByteBuffer buf = staging.getBuffer();
+        buf.limit(CommandDecoder.getCompleteLength(buf));
+        
+        CommandDecoder decoder = new CommandDecoder(buf);
+        
+        while (decoder.hasRemaining()) {
+          Command cmd = decoder.decode();
+          
+          block.encode(cmd);
+          
+          if ((cmd.getType() == Command.Type.END_OF_UPDATE)
+              && (block.size() >= BLOCK_SIZE)) {
+            writeBlock();
           }
-        } catch (InterruptedException ex) {
-          // Allow thread to exit.
         }
         
-        synchronized (cmds) {
-          for (Command cmd; (cmd = cmds.poll()) != null;) {
-            handle(cmd);
+        staging.discard(buf.limit());
+        
+        if (last && (block.size() > 0)) {
+          writeBlock();
+        }
+      }
+      
+      private void writeBlock() throws IOException {
+        if (deflater == null) {
+          deflater = new Deflater(Deflater.BEST_COMPRESSION);
+          comp     = new byte[BLOCK_SIZE];
+        }
+        
+        ByteBuffer raw = block.getBytes();
+        
+        byte[] bytes = new byte[raw.remaining()];
+        raw.get(bytes);
+        
+        // Compress block.
+        
+        deflater.reset();
+        deflater.setInput(bytes);
+        deflater.finish();
+        
+        int compLen = 0;
+        
+        while (!deflater.finished()) {
+          if (compLen == comp.length) {
+            comp = Arrays.copyOf(comp, comp.length * 2);
           }
+          
+          compLen += deflater.deflate(comp, compLen, comp.length - compLen);
         }
+        
+        // Write block.
+        
+        writeInt(out, bytes.length);
+        writeInt(out, compLen);
+        
+        out.write(comp, 0, compLen);
+        
+        bytesWritten += 8 + compLen;
+        
+        block.reset();
+      }
+      
+      @Override
+      public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+          queue.await();
+          
+          handle(false);
+        }
+        
+        // Flush remaining commands.
+        
+        handle(true);
+        
+        if (deflater != null) {
+          deflater.end();
+        }
+      }
+    }
+    
+    /**
+     * Drained bytes awaiting compression.
+     */
+    private static final class Staging extends ByteArrayOutputStream {
+      public Staging() {
+        super(BLOCK_SIZE);
+      }
+      
+      public ByteBuffer getBuffer() {
+        return ByteBuffer.wrap(buf, 0, count);
+      }
+      
+      /**
+       * Removes the given number of leading bytes.
+       */
+      public void discard(int len) {
+        System.arraycopy(buf, len, buf, 0, count - len);
+        
+        count -= len;
       }
     }
   }
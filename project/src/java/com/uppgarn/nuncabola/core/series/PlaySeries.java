@@ -240,6 +240,48 @@ public final class PlaySeries extends Series {
     }
   }
   
+  /**
+   * Returns the level that will be played next if the current level
+   * is completed, or {@code null} if there is none.
+   * <p>
+   * Unlike {@link #playNextLevel()}, this changes no level status.
+   */
+  public Level getLikelyNextLevel() {
+    assert !isStopped();
+    
+    if (getStatus().isOver()) {
+      return (nextLevelIdx == -1) ? null : levels.get(nextLevelIdx);
+    }
+    
+    for (int idx = levelIdx + 1; idx < set.getLevelCount(); idx++) {
+      Level level = levels.get(idx);
+      
+      if (level == null) {
+        continue;
+      }
+      
+      switch (getMode()) {
+        case NORMAL: {
+          if (!(level.isBonus()
+              && (getLevelScore(idx).getStatus() == LevelStatus.LOCKED))) {
+            return level;
+          }
+          
+          break;
+        }
+        case CHALLENGE: {
+          if (!level.isBonus()) {
+            return level;
+          }
+          
+          break;
+        }
+      }
+    }
+    
+    return null;
+  }
+  
   public boolean canRestartLevel() {
     return !isStopped()
       && !getStatus().isOver()
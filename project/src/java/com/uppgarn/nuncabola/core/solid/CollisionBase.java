@@ -0,0 +1,199 @@
+/*
+ * CollisionBase.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.solid;
+
+/**
+ * Packed collision geometry of a {@link SolidBase}.
+ * <p>
+ * Vertices, edges and sides are stored per lump in contiguous
+ * primitive arrays, so that testing a lump reads its data in order
+ * instead of following indirect indices to small objects.
+ */
+public final class CollisionBase {
+  public static final int VERT_STRIDE  = 3;
+  public static final int EDGE_STRIDE  = 6;
+  public static final int PLANE_STRIDE = 4;
+  
+  /**
+   * Lump flags.
+   */
+  public final int[] lumpFlags;
+  
+  /**
+   * Index of first vertex of each lump in {@link #vertData}.
+   */
+  public final int[] lumpVert0Idxs;
+  public final int[] lumpVertCounts;
+  
+  /**
+   * Index of first edge of each lump in {@link #edgeData}.
+   */
+  public final int[] lumpEdge0Idxs;
+  public final int[] lumpEdgeCounts;
+  
+  /**
+   * Index of first side of each lump in {@link #lumpSideIdxs}.
+   */
+  public final int[] lumpSide0Idxs;
+  public final int[] lumpSideCounts;
+  
+  /**
+   * Vertex positions (x, y, z), grouped by lump.
+   */
+  public final float[] vertData;
+  
+  /**
+   * Edge start points (x, y, z) and extents (x, y, z), grouped by lump.
+   */
+  public final float[] edgeData;
+  
+  /**
+   * Side indices, grouped by lump.
+   */
+  public final int[] lumpSideIdxs;
+  
+  /**
+   * Side planes (normal x, y, z, distance) by side index.
+   */
+  public final float[] planeData;
+  
+  /**
+   * Node splitting sides, children and lumps.
+   */
+  public final int[] nodeSideIdxs;
+  public final int[] nodeNode0Idxs;
+  public final int[] nodeNode1Idxs;
+  public final int[] nodeLump0Idxs;
+  public final int[] nodeLumpCounts;
+  
+  public CollisionBase(SolidBase solBase) {
+    int lumpCount = solBase.lumps.length;
+    
+    lumpFlags      = new int[lumpCount];
+    lumpVert0Idxs  = new int[lumpCount];
+    lumpVertCounts = new int[lumpCount];
+    lumpEdge0Idxs  = new int[lumpCount];
+    lumpEdgeCounts = new int[lumpCount];
+    lumpSide0Idxs  = new int[lumpCount];
+    lumpSideCounts = new int[lumpCount];
+    
+    int vertCount = 0;
+    int edgeCount = 0;
+    int sideCount = 0;
+    
+    for (Lump lump: solBase.lumps) {
+      vertCount += lump.vertCount;
+      edgeCount += lump.edgeCount;
+      sideCount += lump.sideCount;
+    }
+    
+    vertData     = new float[vertCount * VERT_STRIDE];
+    edgeData     = new float[edgeCount * EDGE_STRIDE];
+    lumpSideIdxs = new int  [sideCount];
+    
+    vertCount = 0;
+    edgeCount = 0;
+    sideCount = 0;
+    
+    for (int idx = 0; idx < lumpCount; idx++) {
+      Lump lump = solBase.lumps[idx];
+      
+      lumpFlags[idx] = lump.flags;
+      
+      // Vertices.
+      
+      lumpVert0Idxs [idx] = vertCount;
+      lumpVertCounts[idx] = lump.vertCount;
+      
+      for (int idx0 = 0; idx0 < lump.vertCount; idx0++) {
+        Vertex vert = solBase.verts[solBase.indices[lump.vert0Idx + idx0]];
+        
+        int o = vertCount++ * VERT_STRIDE;
+        
+        vertData[o + 0] = vert.p.x;
+        vertData[o + 1] = vert.p.y;
+        vertData[o + 2] = vert.p.z;
+      }
+      
+      // Edges.
+      
+      lumpEdge0Idxs [idx] = edgeCount;
+      lumpEdgeCounts[idx] = lump.edgeCount;
+      
+      for (int idx0 = 0; idx0 < lump.edgeCount; idx0++) {
+        Edge edge = solBase.edges[solBase.indices[lump.edge0Idx + idx0]];
+        
+        Vertex vert0 = solBase.verts[edge.vert0Idx];
+        Vertex vert1 = solBase.verts[edge.vert1Idx];
+        
+        int o = edgeCount++ * EDGE_STRIDE;
+        
+        edgeData[o + 0] = vert0.p.x;
+        edgeData[o + 1] = vert0.p.y;
+        edgeData[o + 2] = vert0.p.z;
+        edgeData[o + 3] = vert1.p.x - vert0.p.x;
+        edgeData[o + 4] = vert1.p.y - vert0.p.y;
+        edgeData[o + 5] = vert1.p.z - vert0.p.z;
+      }
+      
+      // Sides.
+      
+      lumpSide0Idxs [idx] = sideCount;
+      lumpSideCounts[idx] = lump.sideCount;
+      
+      for (int idx0 = 0; idx0 < lump.sideCount; idx0++) {
+        lumpSideIdxs[sideCount++] = solBase.indices[lump.side0Idx + idx0];
+      }
+    }
+    
+    // Planes.
+    
+    planeData = new float[solBase.sides.length * PLANE_STRIDE];
+    
+    for (int idx = 0; idx < solBase.sides.length; idx++) {
+      Side side = solBase.sides[idx];
+      
+      int o = idx * PLANE_STRIDE;
+      
+      planeData[o + 0] = side.n.x;
+      planeData[o + 1] = side.n.y;
+      planeData[o + 2] = side.n.z;
+      planeData[o + 3] = side.d;
+    }
+    
+    // Nodes.
+    
+    int nodeCount = solBase.nodes.length;
+    
+    nodeSideIdxs   = new int[nodeCount];
+    nodeNode0Idxs  = new int[nodeCount];
+    nodeNode1Idxs  = new int[nodeCount];
+    nodeLump0Idxs  = new int[nodeCount];
+    nodeLumpCounts = new int[nodeCount];
+    
+    for (int idx = 0; idx < nodeCount; idx++) {
+      Node node = solBase.nodes[idx];
+      
+      nodeSideIdxs  [idx] = node.sideIdx;
+      nodeNode0Idxs [idx] = node.node0Idx;
+      nodeNode1Idxs [idx] = node.node1Idx;
+      nodeLump0Idxs [idx] = node.lump0Idx;
+      nodeLumpCounts[idx] = node.lumpCount;
+    }
+  }
+}
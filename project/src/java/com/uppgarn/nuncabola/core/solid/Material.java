@@ -99,4 +99,21 @@ public final class Material {
     
     path = "";
   }
+  
+  public Material(Material src) {
+    flags = src.flags;
+    
+    d = new Color4(src.d);
+    a = new Color4(src.a);
+    s = new Color4(src.s);
+    e = new Color4(src.e);
+    h = src.h;
+    
+    alphaFunc = src.alphaFunc;
+    alphaRef  = src.alphaRef;
+    
+    angle = src.angle;
+    
+    path = src.path;
+  }
 }
@@ -43,6 +43,11 @@ public final class SolidBase {
   public ItemBase  [] itemBases;
   public BallBase  [] ballBases;
   
+  /**
+   * Packed collision geometry, or {@code null} if not yet built.
+   */
+  private CollisionBase collBase;
+  
   public SolidBase() {
     meta = new Meta();
     
@@ -68,5 +73,19 @@ public final class SolidBase {
     switchBases = new SwitchBase[0];
     itemBases   = new ItemBase  [0];
     ballBases   = new BallBase  [0];
+    
+    collBase = null;
+  }
+  
+  /**
+   * Returns the packed collision geometry, building it on first use.
+   * Solids that are only rendered never build it.
+   */
+  public synchronized CollisionBase getCollisionBase() {
+    if (collBase == null) {
+      collBase = new CollisionBase(this);
+    }
+    
+    return collBase;
   }
 }
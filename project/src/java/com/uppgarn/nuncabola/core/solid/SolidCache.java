@@ -0,0 +1,191 @@
+/*
+ * SolidCache.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.solid;
+
+import com.uppgarn.nuncabola.core.folder.*;
+
+import com.uppgarn.codelibf.io.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Process-wide cache of solid bases.
+ * <p>
+ * Entries are keyed by data path and by a stamp of the underlying
+ * file, so that a changed file is read again. Solid bases are weighed
+ * by file size and evicted in least recently used order once their
+ * total weight exceeds the budget. Sources without a file or zip
+ * entry behind them are not cached.
+ * <p>
+ * Cached solid bases are shared and must not be modified.
+ */
+public final class SolidCache {
+  public static final long DEFAULT_BUDGET = 32L << 20;
+  
+  private static final Map<String, Entry> bases =
+    new LinkedHashMap<>(16, 0.75f, true);
+  
+  private static final Map<SolidBase, String> keys = new IdentityHashMap<>();
+  
+  private static long budget = DEFAULT_BUDGET;
+  private static long weight = 0;
+  
+  private static long hits      = 0;
+  private static long misses    = 0;
+  private static long evictions = 0;
+  
+  private static long getWeight(Source src) {
+    return Math.max(SourceStampTool.getSize(src), 0);
+  }
+  
+  /**
+   * Returns the solid base at {@code path}, reading it from
+   * {@code src} unless it is cached.
+   */
+  public static SolidBase getSolidBase(String path, Source src)
+      throws IOException {
+    String stamp = SourceStampTool.getStamp(src);
+    
+    if (stamp == null) {
+      return SolidReadTool.readSolidBase(src);
+    }
+    
+    String key = path + "|" + stamp;
+    
+    synchronized (SolidCache.class) {
+      Entry entry = bases.get(key);
+      
+      if (entry != null) {
+        hits++;
+        
+        return entry.solBase;
+      }
+      
+      misses++;
+    }
+    
+    // Read outside the lock, so that other solids can be served
+    // meanwhile.
+    
+    SolidBase solBase = SolidReadTool.readSolidBase(src);
+    
+    synchronized (SolidCache.class) {
+      Entry entry = bases.get(key);
+      
+      if (entry != null) {
+        // Another thread was faster.
+        
+        return entry.solBase;
+      }
+      
+      entry = new Entry(solBase, getWeight(src));
+      
+      bases.put(key, entry);
+      keys .put(solBase, key);
+      
+      weight += entry.weight;
+      
+      evict();
+    }
+    
+    return solBase;
+  }
+  
+  /**
+   * Evicts least recently used solid bases until the budget is met.
+   * The most recently used one is always kept.
+   */
+  private static void evict() {
+    for (Iterator<Entry> it = bases.values().iterator();
+        (weight > budget) && (bases.size() > 1);) {
+      Entry entry = it.next();
+      
+      it.remove();
+      
+      keys.remove(entry.solBase);
+      
+      weight -= entry.weight;
+      
+      evictions++;
+    }
+  }
+  
+  /**
+   * Returns the key of {@code solBase} if it is cached, or
+   * {@code null} otherwise. The key consists of the data path and
+   * the stamp of the file the solid base was read from, so it
+   * changes whenever the file does.
+   */
+  public static synchronized String getKey(SolidBase solBase) {
+    return keys.get(solBase);
+  }
+  
+  public static synchronized long getBudget() {
+    return budget;
+  }
+  
+  /**
+   * Sets the total file size of the solid bases to keep.
+   */
+  public static synchronized void setBudget(long budget) {
+    SolidCache.budget = Math.max(budget, 0);
+    
+    evict();
+  }
+  
+  public static synchronized int getSize() {
+    return bases.size();
+  }
+  
+  public static synchronized long getWeight() {
+    return weight;
+  }
+  
+  public static synchronized long getHitCount() {
+    return hits;
+  }
+  
+  public static synchronized long getMissCount() {
+    return misses;
+  }
+  
+  public static synchronized long getEvictionCount() {
+    return evictions;
+  }
+  
+  public static synchronized void clear() {
+    bases.clear();
+    keys .clear();
+    
+    weight = 0;
+  }
+  
+  private SolidCache() {
+  }
+  
+  private static final class Entry {
+    public final SolidBase solBase;
+    public final long      weight;
+    
+    public Entry(SolidBase solBase, long weight) {
+      this.solBase = solBase;
+      this.weight  = weight;
+    }
+  }
+}
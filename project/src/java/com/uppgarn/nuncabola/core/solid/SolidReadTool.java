@@ -17,19 +17,28 @@
 
 package com.uppgarn.nuncabola.core.solid;
 
+import com.uppgarn.nuncabola.core.math.*;
 import com.uppgarn.nuncabola.core.util.*;
 
 import static com.uppgarn.nuncabola.core.binary.BinaryReadTool.*;
-import static com.uppgarn.nuncabola.core.math.MathReadTool.*;
 import static com.uppgarn.nuncabola.core.solid.SolidIOTool.*;
 
 import com.uppgarn.codelibf.io.*;
 
 import java.io.*;
+import java.nio.*;
 import java.nio.charset.*;
 import java.nio.file.*;
 import java.util.*;
 
+/**
+ * Reads solids.
+ * <p>
+ * A solid is decoded from a little-endian buffer holding the whole
+ * file, so that sections of fixed-size records can be read in bulk.
+ * Files and other sources are read into memory at once, as a mapped
+ * file cannot be deleted or overwritten on all systems.
+ */
 public final class SolidReadTool {
   private static String getString(byte[] bytes, int off) throws IOException {
     if ((off < 0) || (off > bytes.length)) {
@@ -45,6 +54,57 @@ public final class SolidReadTool {
     return new String(bytes, off, len, StandardCharsets.UTF_8);
   }
   
+  private static String getString(ByteBuffer buf, int padLen)
+      throws IOException {
+    byte[] bytes = new byte[padLen];
+    buf.get(bytes);
+    
+    return getString(bytes, 0);
+  }
+  
+  /**
+   * Reads {@code count} ints in bulk.
+   */
+  private static int[] getInts(ByteBuffer buf, int count) throws IOException {
+    if (count < 0) {
+      throw new InvalidDataException();
+    }
+    if (count > buf.remaining() / 4) {
+      throw new EOFException();
+    }
+    
+    int[] vals = new int[count];
+    
+    buf.asIntBuffer().get(vals);
+    buf.position(buf.position() + count * 4);
+    
+    return vals;
+  }
+  
+  /**
+   * Reads {@code count} floats in bulk.
+   */
+  private static float[] getFloats(ByteBuffer buf, int count)
+      throws IOException {
+    if (count < 0) {
+      throw new InvalidDataException();
+    }
+    if (count > buf.remaining() / 4) {
+      throw new EOFException();
+    }
+    
+    float[] vals = new float[count];
+    
+    buf.asFloatBuffer().get(vals);
+    buf.position(buf.position() + count * 4);
+    
+    return vals;
+  }
+  
+  private static float getFloat(int[] vals, int idx) {
+    return Float.intBitsToFloat(vals[idx]);
+  }
+  
   private static Meta readMeta(InputStream in, int byteCount, int entryCount)
       throws IOException {
     Meta meta = new Meta(entryCount);
@@ -63,23 +123,55 @@ public final class SolidReadTool {
     return meta;
   }
   
-  private static Material readMaterial(InputStream in, int version)
+  private static Meta readMeta(ByteBuffer buf, int byteCount, int entryCount)
+      throws IOException {
+    Meta meta = new Meta(entryCount);
+    
+    if (byteCount > 0) {
+      if (byteCount > buf.remaining()) {
+        throw new EOFException();
+      }
+      
+      byte[] bytes = new byte[byteCount];
+      buf.get(bytes);
+      
+      int[] offs = getInts(buf, entryCount * 2);
+      
+      for (int idx = 0; idx < entryCount; idx++) {
+        String key   = getString(bytes, offs[idx * 2 + 0]);
+        String value = getString(bytes, offs[idx * 2 + 1]);
+        
+        meta.put(key, value);
+      }
+    }
+    
+    return meta;
+  }
+  
+  private static void readColor4(Color4 c, ByteBuffer buf) {
+    c.r = buf.getFloat();
+    c.g = buf.getFloat();
+    c.b = buf.getFloat();
+    c.a = buf.getFloat();
+  }
+  
+  private static Material readMaterial(ByteBuffer buf, int version)
       throws IOException {
     Material mtrl = new Material();
     
-    readColor4(mtrl.d, in);
-    readColor4(mtrl.a, in);
-    readColor4(mtrl.s, in);
-    readColor4(mtrl.e, in);
+    readColor4(mtrl.d, buf);
+    readColor4(mtrl.a, buf);
+    readColor4(mtrl.s, buf);
+    readColor4(mtrl.e, buf);
     
-    mtrl.h     = readFloat (in);
-    mtrl.flags = readInt   (in);
-    mtrl.path  = readString(in, 64);
+    mtrl.h     = buf.getFloat();
+    mtrl.flags = buf.getInt  ();
+    mtrl.path  = getString(buf, 64);
     
     if (version >= VERSION_1_6) {
       if ((mtrl.flags & Material.ALPHA_TEST) != 0) {
-        mtrl.alphaFunc = readInt  (in);
-        mtrl.alphaRef  = readFloat(in);
+        mtrl.alphaFunc = buf.getInt  ();
+        mtrl.alphaRef  = buf.getFloat();
       }
     } else {
       if (mtrl.flags == 0) {
@@ -133,254 +225,364 @@ public final class SolidReadTool {
     return mtrl;
   }
   
-  private static Vertex readVertex(InputStream in) throws IOException {
-    Vertex vert = new Vertex();
-    
-    readVector3(vert.p, in);
+  private static void readVertices(SolidBase solBase, ByteBuffer buf)
+      throws IOException {
+    float[] vals = getFloats(buf, solBase.verts.length * 3);
     
-    return vert;
+    for (int idx = 0, o = 0; idx < solBase.verts.length; idx++, o += 3) {
+      Vertex vert = new Vertex();
+      
+      vert.p.x = vals[o + 0];
+      vert.p.y = vals[o + 1];
+      vert.p.z = vals[o + 2];
+      
+      solBase.verts[idx] = vert;
+    }
   }
   
-  private static Edge readEdge(InputStream in) throws IOException {
-    Edge edge = new Edge();
-    
-    edge.vert0Idx = readInt(in);
-    edge.vert1Idx = readInt(in);
+  private static void readEdges(SolidBase solBase, ByteBuffer buf)
+      throws IOException {
+    int[] vals = getInts(buf, solBase.edges.length * 2);
     
-    return edge;
+    for (int idx = 0, o = 0; idx < solBase.edges.length; idx++, o += 2) {
+      Edge edge = new Edge();
+      
+      edge.vert0Idx = vals[o + 0];
+      edge.vert1Idx = vals[o + 1];
+      
+      solBase.edges[idx] = edge;
+    }
   }
   
-  private static Side readSide(InputStream in) throws IOException {
-    Side side = new Side();
-    
-    readVector3(side.n, in);
-    
-    side.d = readFloat(in);
+  private static void readSides(SolidBase solBase, ByteBuffer buf)
+      throws IOException {
+    float[] vals = getFloats(buf, solBase.sides.length * 4);
     
-    return side;
+    for (int idx = 0, o = 0; idx < solBase.sides.length; idx++, o += 4) {
+      Side side = new Side();
+      
+      side.n.x = vals[o + 0];
+      side.n.y = vals[o + 1];
+      side.n.z = vals[o + 2];
+      side.d   = vals[o + 3];
+      
+      solBase.sides[idx] = side;
+    }
   }
   
-  private static Texc readTexc(InputStream in) throws IOException {
-    Texc texc = new Texc();
-    
-    texc.s = readFloat(in);
-    texc.t = readFloat(in);
+  private static void readTexcs(SolidBase solBase, ByteBuffer buf)
+      throws IOException {
+    float[] vals = getFloats(buf, solBase.texcs.length * 2);
     
-    return texc;
+    for (int idx = 0, o = 0; idx < solBase.texcs.length; idx++, o += 2) {
+      Texc texc = new Texc();
+      
+      texc.s = vals[o + 0];
+      texc.t = vals[o + 1];
+      
+      solBase.texcs[idx] = texc;
+    }
   }
   
-  private static Offset readOffset(InputStream in) throws IOException {
+  private static Offset createOffset(int[] vals, int o) {
     Offset offset = new Offset();
     
-    offset.texcIdx = readInt(in);
-    offset.sideIdx = readInt(in);
-    offset.vertIdx = readInt(in);
+    offset.texcIdx = vals[o + 0];
+    offset.sideIdx = vals[o + 1];
+    offset.vertIdx = vals[o + 2];
     
     return offset;
   }
   
-  private static Geom readGeom(
-      SolidBase   solBase,
-      int[]       currOffsetCount,
-      InputStream in,
-      int         version) throws IOException {
-    Geom geom = new Geom();
-    
-    geom.mtrlIdx = readInt(in);
+  private static void readOffsets(SolidBase solBase, ByteBuffer buf)
+      throws IOException {
+    int[] vals = getInts(buf, solBase.offsets.length * 3);
     
+    for (int idx = 0, o = 0; idx < solBase.offsets.length; idx++, o += 3) {
+      solBase.offsets[idx] = createOffset(vals, o);
+    }
+  }
+  
+  private static void readGeoms(SolidBase solBase, ByteBuffer buf, int version)
+      throws IOException {
     if (version >= VERSION_1_6) {
-      geom.offset0Idx = readInt(in);
-      geom.offset1Idx = readInt(in);
-      geom.offset2Idx = readInt(in);
-    } else {
-      if (solBase.mtrls[geom.mtrlIdx].d.a == 0.0f) {
-        geom.mtrlIdx = -1;
+      int[] vals = getInts(buf, solBase.geoms.length * 4);
+      
+      for (int idx = 0, o = 0; idx < solBase.geoms.length; idx++, o += 4) {
+        Geom geom = new Geom();
+        
+        geom.mtrlIdx    = vals[o + 0];
+        geom.offset0Idx = vals[o + 1];
+        geom.offset1Idx = vals[o + 2];
+        geom.offset2Idx = vals[o + 3];
+        
+        solBase.geoms[idx] = geom;
       }
+    } else {
+      // Offsets are stored inline.
       
-      geom.offset0Idx = currOffsetCount[0]++;
-      geom.offset1Idx = currOffsetCount[0]++;
-      geom.offset2Idx = currOffsetCount[0]++;
+      int[] vals = getInts(buf, solBase.geoms.length * 10);
       
-      solBase.offsets[geom.offset0Idx] = readOffset(in);
-      solBase.offsets[geom.offset1Idx] = readOffset(in);
-      solBase.offsets[geom.offset2Idx] = readOffset(in);
+      for (int idx = 0, o = 0; idx < solBase.geoms.length; idx++, o += 10) {
+        Geom geom = new Geom();
+        
+        geom.mtrlIdx = vals[o];
+        
+        if (solBase.mtrls[geom.mtrlIdx].d.a == 0.0f) {
+          geom.mtrlIdx = -1;
+        }
+        
+        geom.offset0Idx = idx * 3 + 0;
+        geom.offset1Idx = idx * 3 + 1;
+        geom.offset2Idx = idx * 3 + 2;
+        
+        solBase.offsets[geom.offset0Idx] = createOffset(vals, o + 1);
+        solBase.offsets[geom.offset1Idx] = createOffset(vals, o + 4);
+        solBase.offsets[geom.offset2Idx] = createOffset(vals, o + 7);
+        
+        solBase.geoms[idx] = geom;
+      }
     }
-    
-    return geom;
   }
   
-  private static Lump readLump(InputStream in) throws IOException {
-    Lump lump = new Lump();
-    
-    lump.flags     = readInt(in);
-    lump.vert0Idx  = readInt(in);
-    lump.vertCount = readInt(in);
-    lump.edge0Idx  = readInt(in);
-    lump.edgeCount = readInt(in);
-    lump.geom0Idx  = readInt(in);
-    lump.geomCount = readInt(in);
-    lump.side0Idx  = readInt(in);
-    lump.sideCount = readInt(in);
+  private static void readLumps(SolidBase solBase, ByteBuffer buf)
+      throws IOException {
+    int[] vals = getInts(buf, solBase.lumps.length * 9);
     
-    return lump;
+    for (int idx = 0, o = 0; idx < solBase.lumps.length; idx++, o += 9) {
+      Lump lump = new Lump();
+      
+      lump.flags     = vals[o + 0];
+      lump.vert0Idx  = vals[o + 1];
+      lump.vertCount = vals[o + 2];
+      lump.edge0Idx  = vals[o + 3];
+      lump.edgeCount = vals[o + 4];
+      lump.geom0Idx  = vals[o + 5];
+      lump.geomCount = vals[o + 6];
+      lump.side0Idx  = vals[o + 7];
+      lump.sideCount = vals[o + 8];
+      
+      solBase.lumps[idx] = lump;
+    }
   }
   
-  private static Node readNode(InputStream in) throws IOException {
-    Node node = new Node();
-    
-    node.sideIdx   = readInt(in);
-    node.node0Idx  = readInt(in);
-    node.node1Idx  = readInt(in);
-    node.lump0Idx  = readInt(in);
-    node.lumpCount = readInt(in);
+  private static void readNodes(SolidBase solBase, ByteBuffer buf)
+      throws IOException {
+    int[] vals = getInts(buf, solBase.nodes.length * 5);
     
-    return node;
+    for (int idx = 0, o = 0; idx < solBase.nodes.length; idx++, o += 5) {
+      Node node = new Node();
+      
+      node.sideIdx   = vals[o + 0];
+      node.node0Idx  = vals[o + 1];
+      node.node1Idx  = vals[o + 2];
+      node.lump0Idx  = vals[o + 3];
+      node.lumpCount = vals[o + 4];
+      
+      solBase.nodes[idx] = node;
+    }
   }
   
-  private static PathBase readPathBase(InputStream in, int version)
-      throws IOException {
+  private static PathBase readPathBase(ByteBuffer buf, int version) {
     PathBase pathBase = new PathBase();
     
-    readVector3(pathBase.p, in);
+    pathBase.p.x = buf.getFloat();
+    pathBase.p.y = buf.getFloat();
+    pathBase.p.z = buf.getFloat();
     
-    pathBase.tm      = Util.secondsToMilliseconds(readFloat(in));
+    pathBase.tm      = Util.secondsToMilliseconds(buf.getFloat());
     pathBase.t       = Util.millisecondsToSeconds(pathBase.tm);
-    pathBase.pathIdx = readInt(in);
-    pathBase.enabled = readInt(in) != 0;
-    pathBase.smooth  = readInt(in) != 0;
+    pathBase.pathIdx = buf.getInt();
+    pathBase.enabled = buf.getInt() != 0;
+    pathBase.smooth  = buf.getInt() != 0;
     
     if (version >= VERSION_1_6) {
-      pathBase.flags = readInt(in);
+      pathBase.flags = buf.getInt();
       
       if ((pathBase.flags & PathBase.ORIENTED) != 0) {
-        readQuaternion(pathBase.e, in);
+        pathBase.e.w = buf.getFloat();
+        pathBase.e.x = buf.getFloat();
+        pathBase.e.y = buf.getFloat();
+        pathBase.e.z = buf.getFloat();
       }
     }
     
     return pathBase;
   }
   
-  private static Body readBody(
-      InputStream      in,
+  private static void readBodies(
+      SolidBase        solBase,
+      ByteBuffer       buf,
       int              version,
       MoverBaseCreator moverBaseCreator) throws IOException {
-    Body body = new Body();
-    
-    int path0Idx = readInt(in);
-    int path1Idx = (version >= VERSION_1_6) ? readInt(in) : -1;
-    
-    body.mover0Idx = (path0Idx >= 0)
-                     ? moverBaseCreator.add(path0Idx) : -1;
-    body.mover1Idx = ((path1Idx >= 0) && (path1Idx != path0Idx))
-                     ? moverBaseCreator.add(path1Idx) : body.mover0Idx;
+    int stride = (version >= VERSION_1_6) ? 7 : 6;
     
-    body.nodeIdx   = readInt(in);
-    body.lump0Idx  = readInt(in);
-    body.lumpCount = readInt(in);
-    body.geom0Idx  = readInt(in);
-    body.geomCount = readInt(in);
+    int[] vals = getInts(buf, solBase.bodies.length * stride);
     
-    return body;
+    for (int idx = 0, o = 0; idx < solBase.bodies.length; idx++, o += stride) {
+      Body body = new Body();
+      
+      int path0Idx = vals[o];
+      int path1Idx = (version >= VERSION_1_6) ? vals[o + 1] : -1;
+      
+      body.mover0Idx = (path0Idx >= 0)
+                       ? moverBaseCreator.add(path0Idx) : -1;
+      body.mover1Idx = ((path1Idx >= 0) && (path1Idx != path0Idx))
+                       ? moverBaseCreator.add(path1Idx) : body.mover0Idx;
+      
+      int o0 = o + stride - 5;
+      
+      body.nodeIdx   = vals[o0 + 0];
+      body.lump0Idx  = vals[o0 + 1];
+      body.lumpCount = vals[o0 + 2];
+      body.geom0Idx  = vals[o0 + 3];
+      body.geomCount = vals[o0 + 4];
+      
+      solBase.bodies[idx] = body;
+    }
   }
   
-  private static ItemBase readItemBase(InputStream in) throws IOException {
-    ItemBase itemBase = new ItemBase();
-    
-    readVector3(itemBase.p, in);
-    
-    itemBase.type  = readInt(in);
-    itemBase.value = readInt(in);
+  private static void readItemBases(SolidBase solBase, ByteBuffer buf)
+      throws IOException {
+    int[] vals = getInts(buf, solBase.itemBases.length * 5);
     
-    return itemBase;
+    for (int idx = 0, o = 0; idx < solBase.itemBases.length; idx++, o += 5) {
+      ItemBase itemBase = new ItemBase();
+      
+      itemBase.p.x   = getFloat(vals, o + 0);
+      itemBase.p.y   = getFloat(vals, o + 1);
+      itemBase.p.z   = getFloat(vals, o + 2);
+      itemBase.type  = vals[o + 3];
+      itemBase.value = vals[o + 4];
+      
+      solBase.itemBases[idx] = itemBase;
+    }
   }
   
-  private static Goal readGoal(InputStream in) throws IOException {
-    Goal goal = new Goal();
-    
-    readVector3(goal.p, in);
-    
-    goal.r = readFloat(in);
+  private static void readGoals(SolidBase solBase, ByteBuffer buf)
+      throws IOException {
+    float[] vals = getFloats(buf, solBase.goals.length * 4);
     
-    return goal;
+    for (int idx = 0, o = 0; idx < solBase.goals.length; idx++, o += 4) {
+      Goal goal = new Goal();
+      
+      goal.p.x = vals[o + 0];
+      goal.p.y = vals[o + 1];
+      goal.p.z = vals[o + 2];
+      goal.r   = vals[o + 3];
+      
+      solBase.goals[idx] = goal;
+    }
   }
   
-  private static Teleporter readTeleporter(InputStream in) throws IOException {
-    Teleporter tele = new Teleporter();
-    
-    readVector3(tele.p, in);
-    readVector3(tele.q, in);
-    
-    tele.r = readFloat(in);
+  private static void readTeleporters(SolidBase solBase, ByteBuffer buf)
+      throws IOException {
+    float[] vals = getFloats(buf, solBase.teles.length * 7);
     
-    return tele;
+    for (int idx = 0, o = 0; idx < solBase.teles.length; idx++, o += 7) {
+      Teleporter tele = new Teleporter();
+      
+      tele.p.x = vals[o + 0];
+      tele.p.y = vals[o + 1];
+      tele.p.z = vals[o + 2];
+      tele.q.x = vals[o + 3];
+      tele.q.y = vals[o + 4];
+      tele.q.z = vals[o + 5];
+      tele.r   = vals[o + 6];
+      
+      solBase.teles[idx] = tele;
+    }
   }
   
-  private static SwitchBase readSwitchBase(InputStream in) throws IOException {
-    SwitchBase switchBase = new SwitchBase();
-    
-    readVector3(switchBase.p, in);
-    
-    switchBase.r         = readFloat(in);
-    switchBase.pathIdx   = readInt  (in);
-    switchBase.tm        = Util.secondsToMilliseconds(readFloat(in));
-    switchBase.t         = Util.millisecondsToSeconds(switchBase.tm);
-    
-    readFloat(in);
-    
-    switchBase.enabled   = readInt(in) != 0;
-    
-    readInt  (in);
-    
-    switchBase.invisible = readInt(in) != 0;
+  private static void readSwitchBases(SolidBase solBase, ByteBuffer buf)
+      throws IOException {
+    int[] vals = getInts(buf, solBase.switchBases.length * 10);
     
-    return switchBase;
+    for (int idx = 0, o = 0; idx < solBase.switchBases.length; idx++, o += 10) {
+      SwitchBase switchBase = new SwitchBase();
+      
+      // Values 6 and 8 are not used.
+      
+      switchBase.p.x       = getFloat(vals, o + 0);
+      switchBase.p.y       = getFloat(vals, o + 1);
+      switchBase.p.z       = getFloat(vals, o + 2);
+      switchBase.r         = getFloat(vals, o + 3);
+      switchBase.pathIdx   = vals[o + 4];
+      switchBase.tm        = Util.secondsToMilliseconds(getFloat(vals, o + 5));
+      switchBase.t         = Util.millisecondsToSeconds(switchBase.tm);
+      switchBase.enabled   = vals[o + 7] != 0;
+      switchBase.invisible = vals[o + 9] != 0;
+      
+      solBase.switchBases[idx] = switchBase;
+    }
   }
   
-  private static Billboard readBillboard(InputStream in) throws IOException {
-    Billboard bill = new Billboard();
-    
-    bill.flags   = readInt  (in);
-    bill.mtrlIdx = readInt  (in);
-    bill.t       = readFloat(in);
-    bill.d       = readFloat(in);
-    bill.w0      = readFloat(in);
-    bill.w1      = readFloat(in);
-    bill.w2      = readFloat(in);
-    bill.h0      = readFloat(in);
-    bill.h1      = readFloat(in);
-    bill.h2      = readFloat(in);
-    bill.rx0     = readFloat(in);
-    bill.rx1     = readFloat(in);
-    bill.rx2     = readFloat(in);
-    bill.ry0     = readFloat(in);
-    bill.ry1     = readFloat(in);
-    bill.ry2     = readFloat(in);
-    bill.rz0     = readFloat(in);
-    bill.rz1     = readFloat(in);
-    bill.rz2     = readFloat(in);
-    
-    readVector3(bill.p, in);
+  private static void readBillboards(SolidBase solBase, ByteBuffer buf)
+      throws IOException {
+    int[] vals = getInts(buf, solBase.bills.length * 22);
     
-    return bill;
+    for (int idx = 0, o = 0; idx < solBase.bills.length; idx++, o += 22) {
+      Billboard bill = new Billboard();
+      
+      bill.flags   = vals[o + 0];
+      bill.mtrlIdx = vals[o + 1];
+      bill.t       = getFloat(vals, o +  2);
+      bill.d       = getFloat(vals, o +  3);
+      bill.w0      = getFloat(vals, o +  4);
+      bill.w1      = getFloat(vals, o +  5);
+      bill.w2      = getFloat(vals, o +  6);
+      bill.h0      = getFloat(vals, o +  7);
+      bill.h1      = getFloat(vals, o +  8);
+      bill.h2      = getFloat(vals, o +  9);
+      bill.rx0     = getFloat(vals, o + 10);
+      bill.rx1     = getFloat(vals, o + 11);
+      bill.rx2     = getFloat(vals, o + 12);
+      bill.ry0     = getFloat(vals, o + 13);
+      bill.ry1     = getFloat(vals, o + 14);
+      bill.ry2     = getFloat(vals, o + 15);
+      bill.rz0     = getFloat(vals, o + 16);
+      bill.rz1     = getFloat(vals, o + 17);
+      bill.rz2     = getFloat(vals, o + 18);
+      bill.p.x     = getFloat(vals, o + 19);
+      bill.p.y     = getFloat(vals, o + 20);
+      bill.p.z     = getFloat(vals, o + 21);
+      
+      solBase.bills[idx] = bill;
+    }
   }
   
-  private static BallBase readBallBase(InputStream in) throws IOException {
-    BallBase ballBase = new BallBase();
-    
-    readVector3(ballBase.p, in);
-    
-    ballBase.r = readFloat(in);
+  private static void readBallBases(SolidBase solBase, ByteBuffer buf)
+      throws IOException {
+    float[] vals = getFloats(buf, solBase.ballBases.length * 4);
     
-    return ballBase;
+    for (int idx = 0, o = 0; idx < solBase.ballBases.length; idx++, o += 4) {
+      BallBase ballBase = new BallBase();
+      
+      ballBase.p.x = vals[o + 0];
+      ballBase.p.y = vals[o + 1];
+      ballBase.p.z = vals[o + 2];
+      ballBase.r   = vals[o + 3];
+      
+      solBase.ballBases[idx] = ballBase;
+    }
   }
   
-  private static Vista readVista(InputStream in) throws IOException {
-    Vista vista = new Vista();
-    
-    readVector3(vista.p, in);
-    readVector3(vista.q, in);
+  private static void readVistas(SolidBase solBase, ByteBuffer buf)
+      throws IOException {
+    float[] vals = getFloats(buf, solBase.vistas.length * 6);
     
-    return vista;
+    for (int idx = 0, o = 0; idx < solBase.vistas.length; idx++, o += 6) {
+      Vista vista = new Vista();
+      
+      vista.p.x = vals[o + 0];
+      vista.p.y = vals[o + 1];
+      vista.p.z = vals[o + 2];
+      vista.q.x = vals[o + 3];
+      vista.q.y = vals[o + 4];
+      vista.q.z = vals[o + 5];
+      
+      solBase.vistas[idx] = vista;
+    }
   }
   
   public static Meta readSolidMeta(InputStream in) throws IOException {
@@ -421,9 +623,22 @@ public final class SolidReadTool {
     }
   }
   
-  public static SolidBase readSolidBase(InputStream in) throws IOException {
-    int magic   = readInt(in);
-    int version = readInt(in);
+  /**
+   * Reads a solid base from the remaining bytes of {@code buf}.
+   */
+  public static SolidBase readSolidBase(ByteBuffer buf) throws IOException {
+    buf = buf.slice().order(ByteOrder.LITTLE_ENDIAN);
+    
+    try {
+      return decodeSolidBase(buf);
+    } catch (BufferUnderflowException ex) {
+      throw new EOFException();
+    }
+  }
+  
+  private static SolidBase decodeSolidBase(ByteBuffer buf) throws IOException {
+    int magic   = buf.getInt();
+    int version = buf.getInt();
     
     if ((magic != MAGIC)
         || (version < VERSION_MINIMUM)
@@ -437,42 +652,49 @@ public final class SolidReadTool {
     
     // Element counts.
     
-    int dictByteCount  = readInt(in);
-    int dictEntryCount = readInt(in);
-    
-    int mtrlCount   = readInt(in);
-    int vertCount   = readInt(in);
-    int edgeCount   = readInt(in);
-    int sideCount   = readInt(in);
-    int texcCount   = readInt(in);
-    int offsetCount = (version >= VERSION_1_6) ? readInt(in) : 0;
-    int geomCount   = readInt(in);
-    int lumpCount   = readInt(in);
-    int nodeCount   = readInt(in);
-    int pathCount   = readInt(in);
-    int bodyCount   = readInt(in);
-    int itemCount   = readInt(in);
-    int goalCount   = readInt(in);
-    int teleCount   = readInt(in);
-    int switchCount = readInt(in);
-    int billCount   = readInt(in);
-    int ballCount   = readInt(in);
-    int vistaCount  = readInt(in);
-    
-    int indexCount = readInt(in);
+    int dictByteCount  = buf.getInt();
+    int dictEntryCount = buf.getInt();
+    
+    int[] counts = getInts(buf, (version >= VERSION_1_6) ? 19 : 18);
+    int   c      = 0;
+    
+    int mtrlCount   = counts[c++];
+    int vertCount   = counts[c++];
+    int edgeCount   = counts[c++];
+    int sideCount   = counts[c++];
+    int texcCount   = counts[c++];
+    int offsetCount = (version >= VERSION_1_6) ? counts[c++] : 0;
+    int geomCount   = counts[c++];
+    int lumpCount   = counts[c++];
+    int nodeCount   = counts[c++];
+    int pathCount   = counts[c++];
+    int bodyCount   = counts[c++];
+    int itemCount   = counts[c++];
+    int goalCount   = counts[c++];
+    int teleCount   = counts[c++];
+    int switchCount = counts[c++];
+    int billCount   = counts[c++];
+    int ballCount   = counts[c++];
+    int vistaCount  = counts[c++];
+    
+    int indexCount = counts[c++];
     
     if (version < VERSION_1_6) {
       offsetCount = geomCount * 3;
     }
     
+    for (int count: counts) {
+      if (count < 0) {
+        throw new InvalidDataException();
+      }
+    }
+    
     // Meta.
     
-    solBase.meta = readMeta(in, dictByteCount, dictEntryCount);
+    solBase.meta = readMeta(buf, dictByteCount, dictEntryCount);
     
     // Create arrays.
     
-    solBase.indices = new int[indexCount];
-    
     solBase.mtrls   = new Material  [mtrlCount];
     solBase.verts   = new Vertex    [vertCount];
     solBase.edges   = new Edge      [edgeCount];
@@ -498,124 +720,56 @@ public final class SolidReadTool {
     // Materials.
     
     for (int idx = 0; idx < mtrlCount; idx++) {
-      solBase.mtrls[idx] = readMaterial(in, version);
-    }
-    
-    // Vertices.
-    
-    for (int idx = 0; idx < vertCount; idx++) {
-      solBase.verts[idx] = readVertex(in);
-    }
-    
-    // Edges.
-    
-    for (int idx = 0; idx < edgeCount; idx++) {
-      solBase.edges[idx] = readEdge(in);
-    }
-    
-    // Sides.
-    
-    for (int idx = 0; idx < sideCount; idx++) {
-      solBase.sides[idx] = readSide(in);
+      solBase.mtrls[idx] = readMaterial(buf, version);
     }
     
-    // Texcs.
+    // Vertices, edges, sides, texcs.
     
-    for (int idx = 0; idx < texcCount; idx++) {
-      solBase.texcs[idx] = readTexc(in);
-    }
+    readVertices(solBase, buf);
+    readEdges   (solBase, buf);
+    readSides   (solBase, buf);
+    readTexcs   (solBase, buf);
     
-    // Offsets.
+    // Offsets and geoms.
     
     if (version >= VERSION_1_6) {
-      for (int idx = 0; idx < offsetCount; idx++) {
-        solBase.offsets[idx] = readOffset(in);
-      }
+      readOffsets(solBase, buf);
     }
     
-    // Geoms.
+    readGeoms(solBase, buf, version);
     
-    int[] currOffsetCount = new int[1];
+    // Lumps and nodes.
     
-    for (int idx = 0; idx < geomCount; idx++) {
-      solBase.geoms[idx] = readGeom(solBase, currOffsetCount, in, version);
-    }
-    
-    // Lumps.
-    
-    for (int idx = 0; idx < lumpCount; idx++) {
-      solBase.lumps[idx] = readLump(in);
-    }
-    
-    // Nodes.
-    
-    for (int idx = 0; idx < nodeCount; idx++) {
-      solBase.nodes[idx] = readNode(in);
-    }
+    readLumps(solBase, buf);
+    readNodes(solBase, buf);
     
     // Path bases.
     
     for (int idx = 0; idx < pathCount; idx++) {
-      solBase.pathBases[idx] = readPathBase(in, version);
+      solBase.pathBases[idx] = readPathBase(buf, version);
     }
     
     // Bodies.
     
-    for (int idx = 0; idx < bodyCount; idx++) {
-      solBase.bodies[idx] = readBody(in, version, moverBaseCreator);
-    }
+    readBodies(solBase, buf, version, moverBaseCreator);
     
     // Mover bases.
     
     solBase.moverBases = moverBaseCreator.create();
     
-    // Item bases.
-    
-    for (int idx = 0; idx < itemCount; idx++) {
-      solBase.itemBases[idx] = readItemBase(in);
-    }
-    
-    // Goals.
-    
-    for (int idx = 0; idx < goalCount; idx++) {
-      solBase.goals[idx] = readGoal(in);
-    }
-    
-    // Teleporters.
-    
-    for (int idx = 0; idx < teleCount; idx++) {
-      solBase.teles[idx] = readTeleporter(in);
-    }
-    
-    // Switch bases.
-    
-    for (int idx = 0; idx < switchCount; idx++) {
-      solBase.switchBases[idx] = readSwitchBase(in);
-    }
-    
-    // Billboards.
-    
-    for (int idx = 0; idx < billCount; idx++) {
-      solBase.bills[idx] = readBillboard(in);
-    }
-    
-    // Ball bases.
+    // Remaining entities.
     
-    for (int idx = 0; idx < ballCount; idx++) {
-      solBase.ballBases[idx] = readBallBase(in);
-    }
-    
-    // Vistas.
-    
-    for (int idx = 0; idx < vistaCount; idx++) {
-      solBase.vistas[idx] = readVista(in);
-    }
+    readItemBases  (solBase, buf);
+    readGoals      (solBase, buf);
+    readTeleporters(solBase, buf);
+    readSwitchBases(solBase, buf);
+    readBillboards (solBase, buf);
+    readBallBases  (solBase, buf);
+    readVistas     (solBase, buf);
     
     // Indices.
     
-    for (int idx = 0; idx < indexCount; idx++) {
-      solBase.indices[idx] = readInt(in);
-    }
+    solBase.indices = getInts(buf, indexCount);
     
     // Add lit flag to old materials.
     
@@ -631,16 +785,27 @@ public final class SolidReadTool {
     return solBase;
   }
   
+  public static SolidBase readSolidBase(InputStream in) throws IOException {
+    return readSolidBase(ByteBuffer.wrap(InputStreamTool.readAllBytes(in, -1)));
+  }
+  
   public static SolidBase readSolidBase(java.nio.file.Path file)
       throws IOException {
-    try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
-      return readSolidBase(in);
-    }
+    return readSolidBase(ByteBuffer.wrap(Files.readAllBytes(file)));
   }
   
   public static SolidBase readSolidBase(Source src) throws IOException {
-    try (InputStream in = new BufferedInputStream(src.newInputStream())) {
-      return readSolidBase(in);
+    java.nio.file.Path file = src.getFile();
+    
+    if (file != null) {
+      return readSolidBase(file);
+    }
+    
+    long size = (src instanceof ZipSource) ? ((ZipSource) src).getSize() : -1;
+    
+    try (InputStream in = src.newInputStream()) {
+      return readSolidBase(
+        ByteBuffer.wrap(InputStreamTool.readAllBytes(in, size)));
     }
   }
   
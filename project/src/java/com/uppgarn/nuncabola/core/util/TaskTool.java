@@ -0,0 +1,57 @@
+/*
+ * TaskTool.java
+ *
+ * Copyright (c) 2003-2020 Nuncabola authors
+ * See authors.txt for details.
+ *
+ * Nuncabola is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+
+package com.uppgarn.nuncabola.core.util;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+public final class TaskTool {
+  /**
+   * Runs {@code tasks} on a pool of {@code parallelism} threads and
+   * returns their results in the order of the tasks. Returns
+   * {@code null} if the current thread is interrupted while waiting,
+   * leaving its interrupt flag set. An exception thrown by a task is
+   * rethrown as a {@link RuntimeException}.
+   */
+  public static <T> List<T> invokeAll(
+      List<? extends Callable<T>> tasks,
+      int                         parallelism) {
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    
+    try {
+      List<T> results = new ArrayList<>(tasks.size());
+      
+      for (Future<T> future: pool.invokeAll(tasks)) {
+        results.add(future.get());
+      }
+      
+      return results;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      
+      return null;
+    } catch (ExecutionException ex) {
+      throw new RuntimeException(ex.getCause());
+    } finally {
+      pool.shutdown();
+    }
+  }
+  
+  private TaskTool() {
+  }
+}
@@ -18,20 +18,36 @@
 package com.uppgarn.nuncabola.functions;
 
 import com.uppgarn.nuncabola.core.folder.*;
+import com.uppgarn.nuncabola.core.level.*;
 
 import static com.uppgarn.nuncabola.functions.BaseFuncs.*;
 
 import com.uppgarn.codelibf.io.*;
 
+import java.io.*;
 import java.nio.file.*;
 import java.util.*;
 
 public final class DataFuncs {
-  private static Folder dataFolder;
+  private static Folder     dataFolder;
+  private static LevelIndex levelIndex;
   
   public static void initialize() {
     dataFolder = new RootFolder(
       Arrays.asList(new Path[] {getUserDataDirectory(), getDataDirectory()}));
+    levelIndex = loadLevelIndex();
+  }
+  
+  private static Path getLevelIndexFile() {
+    return getUserDirectory().resolve("levels.idx");
+  }
+  
+  private static LevelIndex loadLevelIndex() {
+    try {
+      return LevelIndexReadTool.readLevelIndex(getLevelIndexFile());
+    } catch (IOException ex) {
+      return new LevelIndex();
+    }
   }
   
   public static Folder getDataFolder() {
@@ -53,10 +69,40 @@ public final class DataFuncs {
     return dataFolder.getSource(path);
   }
   
+  public static LevelIndex getLevelIndex() {
+    return levelIndex;
+  }
+  
+  /**
+   * Returns the number of threads to read data files on.
+   */
+  public static int getParallelism() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+  
+  /**
+   * Stores the level index if it has changed.
+   */
+  public static void saveLevelIndex() {
+    if (!levelIndex.isDirty()) {
+      return;
+    }
+    
+    try {
+      LevelIndexWriteTool.writeLevelIndex(getLevelIndexFile(), levelIndex);
+      
+      levelIndex.markClean();
+    } catch (IOException ex) {
+    }
+  }
+  
   public static void deinitialize() {
+    saveLevelIndex();
+    
     dataFolder.close();
     
     dataFolder = null;
+    levelIndex = null;
   }
   
   private DataFuncs() {
@@ -61,6 +61,10 @@ public final class GameFuncs {
     
     gameRend = new GameRenderer(game);
     
+    // The renderer has taken what it could use of the prefetched data.
+    
+    RendererHome.cancelPrefetch();
+    
     // Fade.
     
     fade = 0.0f;
@@ -72,7 +76,8 @@ public final class GameFuncs {
   
   private static SolidBase loadSolidBase(String path) throws FuncsException {
     try {
-      SolidBase solBase = SolidReadTool.readSolidBase(
+      SolidBase solBase = SolidCache.getSolidBase(
+        path,
         DataFuncs.getSource(path));
       
       if (solBase.ballBases.length == 0) {
@@ -85,6 +90,17 @@ public final class GameFuncs {
     }
   }
   
+  /**
+   * Starts loading the data of {@code level} in the background.
+   */
+  public static void prefetch(Level level) {
+    RendererHome.prefetch(level);
+  }
+  
+  public static void cancelPrefetch() {
+    RendererHome.cancelPrefetch();
+  }
+  
   public static Level getLevel() {
     return level;
   }
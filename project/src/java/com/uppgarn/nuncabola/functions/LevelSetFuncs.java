@@ -55,23 +55,26 @@ public final class LevelSetFuncs {
     setScore = loadSetScore();
   }
   
-  private static Level loadLevel(String path) {
-    try {
-      Meta meta = SolidReadTool.readSolidMeta(DataFuncs.getSource(path));
-      
-      return LevelParser.parse(meta, path);
-    } catch (IOException ex) {
-      return null;
-    }
-  }
-  
   private static List<Level> createLevels() {
+    List<Meta> metas = DataFuncs.getLevelIndex().getSolidMetas(
+      DataFuncs.getDataFolder(),
+      set.getLevelPaths(),
+      DataFuncs.getParallelism());
+    
     List<Level> levels = new ArrayList<>(set.getLevelCount());
     
-    for (String path: set.getLevelPaths()) {
-      levels.add(loadLevel(path));
+    for (int idx = 0; idx < metas.size(); idx++) {
+      Meta meta = metas.get(idx);
+      
+      if (meta == null) {
+        levels.add(null);
+      } else {
+        levels.add(LevelParser.parse(meta, set.getLevelPath(idx)));
+      }
     }
     
+    DataFuncs.saveLevelIndex();
+    
     return levels;
   }
   
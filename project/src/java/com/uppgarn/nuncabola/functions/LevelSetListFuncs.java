@@ -54,27 +54,28 @@ public final class LevelSetListFuncs {
     });
   }
   
-  private static LevelSet loadSet(String path) {
-    try {
-      LevelSet set = LevelSetReadTool.readLevelSet(DataFuncs.getSource(path));
-      
-      if (set.getID().equals("misc") && !getBooleanPref(Pref.CHEAT)) {
-        return null;
+  /**
+   * Loads the level sets at {@code paths}, adding the level paths of
+   * every readable one to {@code levelPaths}.
+   */
+  private static List<LevelSet> loadSets(
+      Collection<String> paths,
+      Set<String>        levelPaths) {
+    List<LevelSet> sets0 = DataFuncs.getLevelIndex().getLevelSets(
+      DataFuncs.getDataFolder(),
+      new ArrayList<>(paths),
+      DataFuncs.getParallelism());
+    
+    List<LevelSet> sets = new ArrayList<>(sets0.size());
+    
+    for (LevelSet set: sets0) {
+      if (set == null) {
+        continue;
       }
       
-      return set;
-    } catch (IOException ex) {
-      return null;
-    }
-  }
-  
-  private static List<LevelSet> loadSets(Collection<String> paths) {
-    List<LevelSet> sets = new ArrayList<>(paths.size());
-    
-    for (String path: paths) {
-      LevelSet set = loadSet(path);
+      levelPaths.addAll(set.getLevelPaths());
       
-      if (set != null) {
+      if (!(set.getID().equals("misc") && !getBooleanPref(Pref.CHEAT))) {
         sets.add(set);
       }
     }
@@ -83,11 +84,12 @@ public final class LevelSetListFuncs {
   }
   
   private static List<LevelSet> createSets() {
-    LevelSetList setList  = loadSetList();
-    Set<String>  setPaths = getSetPaths(setList);
+    LevelSetList setList    = loadSetList();
+    Set<String>  setPaths   = getSetPaths(setList);
+    Set<String>  levelPaths = new HashSet<>();
     
-    List<LevelSet> sets0 = loadSets(setList.getSetPaths());
-    List<LevelSet> sets1 = loadSets(setPaths);
+    List<LevelSet> sets0 = loadSets(setList.getSetPaths(), levelPaths);
+    List<LevelSet> sets1 = loadSets(setPaths,              levelPaths);
     
     sets1.sort(new Comparator<LevelSet>() {
       @Override
@@ -100,6 +102,14 @@ public final class LevelSetListFuncs {
     sets.addAll(sets0);
     sets.addAll(sets1);
     
+    // Drop index entries of files that are gone.
+    
+    Set<String> allSetPaths = new HashSet<>(setPaths);
+    allSetPaths.addAll(setList.getSetPaths());
+    
+    DataFuncs.getLevelIndex().retain(allSetPaths, levelPaths);
+    DataFuncs.saveLevelIndex();
+    
     return sets;
   }
   
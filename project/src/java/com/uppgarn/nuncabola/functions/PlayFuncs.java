@@ -36,6 +36,7 @@ public final class PlayFuncs {
   private static PlayGameServer gameServer;
   private static GameClient     gameClient;
   private static float          accum;
+  private static boolean        prefetched;
   
   public static void initialize(
       SeriesMode mode,
@@ -85,7 +86,8 @@ public final class PlayFuncs {
     
     replayRecorder = new ReplayRecorder(
       ReplayFileFuncs.getGameReplayFile(),
-      series);
+      series,
+      getBooleanPref(Pref.REPLAY_COMPRESSED));
     
     // Input.
     
@@ -118,6 +120,10 @@ public final class PlayFuncs {
     
     accum = 0.0f;
     
+    // Prefetch.
+    
+    prefetched = false;
+    
     // Process first update.
     
     processCommands();
@@ -164,6 +170,26 @@ public final class PlayFuncs {
     }
     
     updateGame();
+    
+    prefetchNextLevel();
+  }
+  
+  /**
+   * Starts loading the likely next level once the goal is unlocked
+   * or the level is over.
+   */
+  private static void prefetchNextLevel() {
+    if (prefetched || !(currGame.goalsUnlocked || currGame.status.isOver())) {
+      return;
+    }
+    
+    prefetched = true;
+    
+    Level level = series.getLikelyNextLevel();
+    
+    if (level != null) {
+      GameFuncs.prefetch(level);
+    }
   }
   
   public static void stopRecording() {
@@ -190,6 +216,8 @@ public final class PlayFuncs {
   public static void restartLevel() {
     replayRecorder.close();
     
+    GameFuncs.cancelPrefetch();
+    
     series.restartLevel();
     
     reset();
@@ -202,6 +230,8 @@ public final class PlayFuncs {
   public static void retryLevel() {
     replayRecorder.close();
     
+    GameFuncs.cancelPrefetch();
+    
     series.retryLevel();
     
     reset();
@@ -232,6 +262,8 @@ public final class PlayFuncs {
   public static void deinitialize() {
     replayRecorder.close();
     
+    GameFuncs.cancelPrefetch();
+    
     series         = null;
     currGame       = null;
     prevGame       = null;
@@ -38,8 +38,10 @@ public final class ReplayFuncs {
   private static Game             prevGame;
   private static ReplayGameServer gameServer;
   private static GameClient       gameClient;
+  private static ReplayKeyframes  keyframes;
   private static float            accum;
   private static Speed            speed;
+  private static boolean          seeking;
   
   public static void initialize(Source src) throws FuncsException {
     initialize(src, true);
@@ -92,6 +94,18 @@ public final class ReplayFuncs {
     
     series = new ReplaySeries(info, GameFuncs.getLevel());
     
+    // Game server.
+    
+    gameServer = new ReplayGameServer(src);
+    
+    // Keyframes.
+    
+    keyframes = new ReplayKeyframes();
+    
+    // Speed.
+    
+    speed = Speed.NORMAL;
+    
     reset();
   }
   
@@ -103,7 +117,7 @@ public final class ReplayFuncs {
     
     // Game server.
     
-    gameServer = new ReplayGameServer(src);
+    gameServer.seek(0);
     
     // Game client.
     
@@ -113,7 +127,7 @@ public final class ReplayFuncs {
       new GameClientListener() {
         @Override
         public void soundRequested(String path, float amp) {
-          if (soundEnabled) {
+          if (soundEnabled && !seeking) {
             Audio.playSound(path, amp);
           }
         }
@@ -123,10 +137,6 @@ public final class ReplayFuncs {
     
     accum = 0.0f;
     
-    // Speed.
-    
-    speed = Speed.NORMAL;
-    
     // Process first update.
     
     processCommands();
@@ -137,9 +147,15 @@ public final class ReplayFuncs {
   }
   
   private static void processCommands() {
+    if (gameServer.getCommands().isEmpty()) {
+      return;
+    }
+    
     for (Command cmd: gameServer.getCommands()) {
       gameClient.execute(cmd);
     }
+    
+    keyframes.update(gameServer.getUpdateIndex(), currGame, gameClient);
   }
   
   private static void updateGame() {
@@ -186,11 +202,66 @@ public final class ReplayFuncs {
     updateGame();
   }
   
-  public static void repeat() {
-    gameServer.close();
+  /**
+   * Returns the replay time of the current update.
+   */
+  public static float getTime() {
+    return gameServer.getTime();
+  }
+  
+  /**
+   * Continues the replay at the specified replay time.
+   */
+  public static void seek(float time) {
+    int updateIdx = gameServer.getUpdateIndex(time);
+    
+    ReplayKeyframes.Keyframe keyframe = keyframes.get(updateIdx);
+    
+    if (keyframe == null) {
+      // Nothing has been played.
+      
+      return;
+    }
+    
+    seeking = true;
     
+    // Updates depend on all earlier ones, so continue from the nearest
+    // earlier keyframe when going back or when it saves updates.
+    
+    if (updateIdx < gameServer.getUpdateIndex()) {
+      series.repeat();
+      
+      keyframe.restore(currGame, gameClient);
+      
+      gameServer.seek(keyframe.getUpdateIndex());
+    } else if (keyframe.getUpdateIndex() > gameServer.getUpdateIndex()) {
+      keyframe.restore(currGame, gameClient);
+      
+      gameServer.seek(keyframe.getUpdateIndex());
+    }
+    
+    // Process updates up to the requested one.
+    
+    while (gameServer.getUpdateIndex() < updateIdx) {
+      gameServer.step();
+      
+      processCommands();
+    }
+    
+    seeking = false;
+    
+    accum = 0.0f;
+    
+    prevGame.copyFrom(currGame);
+    
+    updateGame();
+  }
+  
+  public static void repeat() {
     series.repeat();
     
+    speed = Speed.NORMAL;
+    
     reset();
   }
   
@@ -205,6 +276,7 @@ public final class ReplayFuncs {
     prevGame   = null;
     gameServer = null;
     gameClient = null;
+    keyframes  = null;
   }
   
   private ReplayFuncs() {
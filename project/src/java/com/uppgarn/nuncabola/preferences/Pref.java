@@ -62,6 +62,7 @@ public enum Pref {
   KEY_PAUSE               (Key.get("Escape")),
   KEY_RESTART             (Key.get("r")),
   KEY_SCORE_TYPE_CYCLE    (Key.get("Tab")),
+  LEVEL_CACHE             (true),
   LOCK_GOALS              (true),
   MIPMAP                  (true),
   MOUSE_INVERT            (false),
@@ -75,6 +76,7 @@ public enum Pref {
   MULTISAMPLE             (0),
   PLAYER                  (""),
   REFLECTION              (true),
+  REPLAY_COMPRESSED       (false),
   REPLAY_NAME_PATTERN     ("%s-%l"),
   RESPONSE_CONTROLLER     (50),
   RESPONSE_KEYBOARD       (50),
@@ -104,6 +104,8 @@ final class PrefsIOTool {
     map.put("replay_name",            Pref.REPLAY_NAME_PATTERN);
     map.put("theme",                  Pref.THEME);
     map.put("gc_explicit",            Pref.GC_EXPLICIT);
+    map.put("replay_compress",        Pref.REPLAY_COMPRESSED);
+    map.put("level_cache",            Pref.LEVEL_CACHE);
     
     return map;
   }
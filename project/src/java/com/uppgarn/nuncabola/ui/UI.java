@@ -338,6 +338,7 @@ public final class UI {
   private static void initializeRendererHome() {
     RendererHome.initialize(
       DataFuncs.getDataFolder(),
+      getBooleanPref(Pref.LEVEL_CACHE) ? getCacheDirectory() : null,
       getBooleanPref(Pref.BACKGROUND),
       getBooleanPref(Pref.SHADOW),
       getIntPref    (Pref.VIEW_FOV),
@@ -20,12 +20,17 @@ package com.uppgarn.nuncabola.ui.screens;
 import com.uppgarn.nuncabola.core.gui.*;
 import com.uppgarn.nuncabola.core.replay.*;
 import com.uppgarn.nuncabola.functions.*;
+import com.uppgarn.nuncabola.preferences.*;
 import com.uppgarn.nuncabola.ui.*;
 import com.uppgarn.nuncabola.ui.hud.*;
 
+import static com.uppgarn.nuncabola.functions.BaseFuncs.*;
+
 public final class ReplayMainScreen extends ReplayActionScreen {
   public static final ReplayMainScreen INSTANCE = new ReplayMainScreen();
   
+  private static final float SEEK_TIME = 5.0f;
+  
   private ReplaySeries series;
   private HUD          hud;
   
@@ -63,6 +68,17 @@ public final class ReplayMainScreen extends ReplayActionScreen {
     super.timer(dt);
   }
   
+  @Override
+  public void keyDown(int code, char ch) {
+    if        (isKey(code, ch, Pref.KEY_LEFT)) {
+      ReplayFuncs.seek(ReplayFuncs.getTime() - SEEK_TIME);
+    } else if (isKey(code, ch, Pref.KEY_RIGHT)) {
+      ReplayFuncs.seek(ReplayFuncs.getTime() + SEEK_TIME);
+    } else {
+      super.keyDown(code, ch);
+    }
+  }
+  
   @Override
   public void leave(Screen to) {
     super.leave(to);